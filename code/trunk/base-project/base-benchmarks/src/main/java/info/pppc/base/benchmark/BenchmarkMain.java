@@ -0,0 +1,61 @@
+package info.pppc.base.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The launcher class for the benchmarks. The launcher accepts the same
+ * arguments as the launcher of JMH. In contrast to the launcher of JMH,
+ * it writes the results as JSON to jmh-result.json by default, so that
+ * the results of different versions can be compared. The format and the
+ * file can be changed using the -rf and -rff arguments.
+ *
+ * @author Mac
+ */
+public class BenchmarkMain {
+
+	/**
+	 * The name of the default result file.
+	 */
+	public static final String RESULT_FILE = "jmh-result.json";
+
+	/**
+	 * Runs the benchmarks that match the command line arguments.
+	 *
+	 * @param args The command line arguments as accepted by JMH.
+	 * @throws RunnerException Thrown if a benchmark fails.
+	 */
+	public static void main(String[] args) throws RunnerException {
+		CommandLineOptions cmd = null;
+		try {
+			cmd = new CommandLineOptions(args);
+		} catch (CommandLineOptionException e) {
+			System.err.println("Error parsing command line: " + e.getMessage());
+			System.exit(1);
+			return;
+		}
+		if (cmd.shouldHelp() || cmd.shouldList()) {
+			// let the default launcher deal with informative options
+			try {
+				org.openjdk.jmh.Main.main(args);
+			} catch (Exception e) {
+				throw new RunnerException(e);
+			}
+			return;
+		}
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmd);
+		if (! cmd.getResultFormat().hasValue()) {
+			builder.resultFormat(ResultFormatType.JSON);
+		}
+		if (! cmd.getResult().hasValue()) {
+			builder.result(RESULT_FILE);
+		}
+		new Runner(builder.build()).run();
+	}
+
+}
@@ -0,0 +1,121 @@
+package info.pppc.base.benchmark;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The byte queue is a growing buffer that connects an output stream with
+ * an input stream in the same thread. The bytes written to the output
+ * stream can be read from the input stream. In contrast to piped streams,
+ * the queue never blocks, thus, a benchmark can write a message and read
+ * it back without a second thread. Reading from an empty queue signals
+ * the end of the stream.
+ *
+ * @author Mac
+ */
+public final class ByteQueue {
+
+	/**
+	 * The buffer that contains the bytes.
+	 */
+	private byte[] buffer = new byte[4096];
+
+	/**
+	 * The index of the first byte that has not been read.
+	 */
+	private int head = 0;
+
+	/**
+	 * The index of the first free byte.
+	 */
+	private int tail = 0;
+
+	/**
+	 * The input stream that reads from the queue.
+	 */
+	private InputStream input = new InputStream() {
+		public int read() {
+			if (head == tail) return -1;
+			return buffer[head++] & 0xff;
+		}
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) return 0;
+			if (head == tail) return -1;
+			int size = Math.min(len, tail - head);
+			System.arraycopy(buffer, head, b, off, size);
+			head += size;
+			return size;
+		}
+		public int available() {
+			return tail - head;
+		}
+	};
+
+	/**
+	 * The output stream that writes to the queue.
+	 */
+	private OutputStream output = new OutputStream() {
+		public void write(int b) {
+			ensure(1);
+			buffer[tail++] = (byte)b;
+		}
+		public void write(byte[] b, int off, int len) {
+			ensure(len);
+			System.arraycopy(b, off, buffer, tail, len);
+			tail += len;
+		}
+	};
+
+	/**
+	 * Creates a new empty queue.
+	 */
+	public ByteQueue() {
+		super();
+	}
+
+	/**
+	 * Returns the input stream that reads from the queue.
+	 *
+	 * @return The input stream of the queue.
+	 */
+	public InputStream getInputStream() {
+		return input;
+	}
+
+	/**
+	 * Returns the output stream that writes to the queue.
+	 *
+	 * @return The output stream of the queue.
+	 */
+	public OutputStream getOutputStream() {
+		return output;
+	}
+
+	/**
+	 * Removes all bytes from the queue.
+	 */
+	public void clear() {
+		head = 0;
+		tail = 0;
+	}
+
+	/**
+	 * Ensures that the specified number of bytes can be appended, either
+	 * by compacting or by growing the buffer.
+	 *
+	 * @param length The number of bytes to append.
+	 */
+	private void ensure(int length) {
+		if (tail + length <= buffer.length) return;
+		int size = tail - head;
+		byte[] target = buffer;
+		if (size + length > buffer.length) {
+			target = new byte[Math.max(buffer.length * 2, size + length)];
+		}
+		System.arraycopy(buffer, head, target, 0, size);
+		buffer = target;
+		head = 0;
+		tail = size;
+	}
+
+}
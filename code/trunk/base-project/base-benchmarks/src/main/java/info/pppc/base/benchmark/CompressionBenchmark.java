@@ -0,0 +1,182 @@
+package info.pppc.base.benchmark;
+
+import info.pppc.base.system.InvocationBroker;
+import info.pppc.base.system.plugin.IPlugin;
+import info.pppc.base.system.plugin.IStreamConnector;
+import info.pppc.basex.plugin.modifier.GZIPCompressor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the compression and decompression of messages by the gzip
+ * compressor. Each invocation opens a compressing connector, writes a
+ * message, closes the connector and reads the message back through a
+ * decompressing connector. The message consists of repeated words, so
+ * that it can be compressed. The compressor is attached to the plug-in
+ * manager of the broker since it refuses to work without one.
+ *
+ * @author Mac
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+	/**
+	 * A connector that provides the streams of a byte queue.
+	 *
+	 * @author Mac
+	 */
+	private static class QueueConnector implements IStreamConnector {
+
+		/**
+		 * The queue that provides the streams.
+		 */
+		private ByteQueue queue;
+
+		/**
+		 * Creates a new connector for the queue.
+		 *
+		 * @param queue The queue that provides the streams.
+		 */
+		public QueueConnector(ByteQueue queue) {
+			this.queue = queue;
+		}
+
+		/**
+		 * Returns the input stream of the queue.
+		 *
+		 * @return The input stream of the queue.
+		 */
+		public InputStream getInputStream() {
+			return queue.getInputStream();
+		}
+
+		/**
+		 * Returns the output stream of the queue.
+		 *
+		 * @return The output stream of the queue.
+		 */
+		public OutputStream getOutputStream() {
+			return queue.getOutputStream();
+		}
+
+		/**
+		 * Does nothing.
+		 */
+		public void release() { }
+
+		/**
+		 * Returns null since there is no plug-in.
+		 *
+		 * @return Null.
+		 */
+		public IPlugin getPlugin() {
+			return null;
+		}
+
+	}
+
+	/**
+	 * The size of the messages in bytes.
+	 */
+	@Param({ "1024", "65536" })
+	public int size;
+
+	/**
+	 * The compressor that creates the connectors.
+	 */
+	private GZIPCompressor compressor;
+
+	/**
+	 * The queue that receives the compressed message.
+	 */
+	private ByteQueue queue;
+
+	/**
+	 * The message that is compressed.
+	 */
+	private byte[] message;
+
+	/**
+	 * The buffer that receives the decompressed message.
+	 */
+	private byte[] received;
+
+	/**
+	 * Starts the compressor and creates the message.
+	 */
+	@Setup(Level.Trial)
+	public void setup() {
+		compressor = new GZIPCompressor();
+		compressor.setPluginManager(InvocationBroker.getInstance().getPluginManager());
+		compressor.start();
+		queue = new ByteQueue();
+		String[] words = { "base ", "invocation ", "broker ", "plugin ", "session ", "connector " };
+		Random random = new Random(0);
+		message = new byte[size];
+		for (int i = 0; i < size; ) {
+			byte[] word = words[random.nextInt(words.length)].getBytes();
+			for (int j = 0; j < word.length && i < size; j++, i++) {
+				message[i] = word[j];
+			}
+		}
+		received = new byte[size];
+	}
+
+	/**
+	 * Stops the compressor and the broker.
+	 */
+	@TearDown(Level.Trial)
+	public void teardown() {
+		compressor.stop();
+		InvocationBroker.getInstance().shutdown();
+	}
+
+	/**
+	 * Compresses a message and decompresses it again.
+	 *
+	 * @return The decompressed message.
+	 * @throws IOException Thrown if the message cannot be decompressed.
+	 */
+	@Benchmark
+	public byte[] roundTrip() throws IOException {
+		queue.clear();
+		IStreamConnector writer = compressor.openSession(new QueueConnector(queue), null);
+		OutputStream output = writer.getOutputStream();
+		output.write(message, 0, message.length);
+		output.close();
+		IStreamConnector reader = compressor.openSession(new QueueConnector(queue), null);
+		InputStream input = reader.getInputStream();
+		int offset = 0;
+		while (offset < received.length) {
+			int read = input.read(received, offset, received.length - offset);
+			if (read == -1) throw new IOException("Message truncated.");
+			offset += read;
+		}
+		reader.release();
+		return received;
+	}
+
+}
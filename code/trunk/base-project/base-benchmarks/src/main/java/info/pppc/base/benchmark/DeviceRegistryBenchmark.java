@@ -0,0 +1,129 @@
+package info.pppc.base.benchmark;
+
+import info.pppc.base.system.DeviceDescription;
+import info.pppc.base.system.DeviceRegistry;
+import info.pppc.base.system.IExtension;
+import info.pppc.base.system.InvocationBroker;
+import info.pppc.base.system.ObjectID;
+import info.pppc.base.system.PluginDescription;
+import info.pppc.base.system.SystemID;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the lookups of the device registry with a varying number of
+ * registered devices. Each device exports a number of services and
+ * provides a number of plug-ins. The lookups use a device in the middle
+ * of the registry.
+ *
+ * @author Mac
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeviceRegistryBenchmark {
+
+	/**
+	 * The number of services exported by each device.
+	 */
+	private static final int SERVICES = 4;
+
+	/**
+	 * The number of devices that are registered.
+	 */
+	@Param({ "10", "100", "1000" })
+	public int devices;
+
+	/**
+	 * The registry of the broker.
+	 */
+	private DeviceRegistry registry;
+
+	/**
+	 * The system that is looked up.
+	 */
+	private SystemID system;
+
+	/**
+	 * A service that is exported by the system that is looked up.
+	 */
+	private ObjectID service;
+
+	/**
+	 * Starts the broker and registers the devices.
+	 */
+	@Setup(Level.Trial)
+	public void setup() {
+		registry = InvocationBroker.getInstance().getDeviceRegistry();
+		for (int i = 0; i < devices; i++) {
+			SystemID id = new SystemID(i + 1);
+			DeviceDescription description = new DeviceDescription(id, "device" + i, DeviceDescription.TYPE_DESKTOP);
+			for (int j = 0; j < SERVICES; j++) {
+				description.addService(new ObjectID(i * SERVICES + j + 1));
+			}
+			registry.registerDevice(description);
+			registry.registerPlugin(id, new PluginDescription((short)0x0100, IExtension.EXTENSION_TRANSCEIVER));
+			registry.registerPlugin(id, new PluginDescription((short)0x0400, IExtension.EXTENSION_SERIALIZATION));
+			registry.registerPlugin(id, new PluginDescription((short)0x0503, IExtension.EXTENSION_SEMANTIC));
+		}
+		int middle = devices / 2;
+		system = new SystemID(middle + 1);
+		service = new ObjectID(middle * SERVICES + 1);
+	}
+
+	/**
+	 * Stops the broker.
+	 */
+	@TearDown(Level.Trial)
+	public void teardown() {
+		InvocationBroker.getInstance().shutdown();
+	}
+
+	/**
+	 * Looks up the description of a device.
+	 *
+	 * @return The description of the device.
+	 */
+	@Benchmark
+	public Object getDeviceDescription() {
+		return registry.getDeviceDescription(system);
+	}
+
+	/**
+	 * Looks up the plug-ins of a device.
+	 *
+	 * @return The plug-ins of the device.
+	 */
+	@Benchmark
+	public Object getPluginDescriptions() {
+		return registry.getPluginDescriptions(system);
+	}
+
+	/**
+	 * Looks up the devices that export a service.
+	 *
+	 * @return The devices that export the service.
+	 */
+	@Benchmark
+	public Object getDevicesByService() {
+		return registry.getDevices(service);
+	}
+
+}
@@ -0,0 +1,99 @@
+package info.pppc.base.benchmark;
+
+import info.pppc.base.system.event.Event;
+import info.pppc.base.system.event.IListener;
+import info.pppc.base.system.event.ListenerBundle;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the delivery of events through a listener bundle with a
+ * varying number of listeners. Half of the listeners are registered
+ * for a different type, so that the filtering is measured as well.
+ *
+ * @author Mac
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerBundleBenchmark {
+
+	/**
+	 * The type of the events that are fired.
+	 */
+	private static final int TYPE_FIRED = 1;
+
+	/**
+	 * The type of the events that are not fired.
+	 */
+	private static final int TYPE_OTHER = 2;
+
+	/**
+	 * The number of registered listeners.
+	 */
+	@Param({ "0", "1", "8" })
+	public int listeners;
+
+	/**
+	 * The bundle that fires the events.
+	 */
+	private ListenerBundle bundle;
+
+	/**
+	 * The data object of the events.
+	 */
+	private Object data = new Object();
+
+	/**
+	 * Creates the bundle and registers the listeners.
+	 *
+	 * @param hole The black hole that consumes the events.
+	 */
+	@Setup
+	public void setup(final Blackhole hole) {
+		bundle = new ListenerBundle(this);
+		for (int i = 0; i < listeners; i++) {
+			IListener listener = new IListener() {
+				public void handleEvent(Event event) {
+					hole.consume(event.getData());
+				}
+			};
+			bundle.addListener((i % 2 == 0) ? TYPE_FIRED : TYPE_OTHER, listener);
+		}
+	}
+
+	/**
+	 * Fires an event with a data object.
+	 */
+	@Benchmark
+	public void fireEvent() {
+		bundle.fireEvent(TYPE_FIRED, data);
+	}
+
+	/**
+	 * Fires an event that can be undone by the listeners.
+	 *
+	 * @return The result of the event delivery.
+	 */
+	@Benchmark
+	public boolean fireUndoableEvent() {
+		return bundle.fireUndoableEvent(TYPE_FIRED, data);
+	}
+
+}
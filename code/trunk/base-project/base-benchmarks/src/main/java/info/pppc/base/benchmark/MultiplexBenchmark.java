@@ -0,0 +1,220 @@
+package info.pppc.base.benchmark;
+
+import info.pppc.base.system.InvocationBroker;
+import info.pppc.base.system.PluginDescription;
+import info.pppc.base.system.plugin.IPluginManager;
+import info.pppc.base.system.plugin.IStreamConnector;
+import info.pppc.basex.plugin.util.IMultiplexPlugin;
+import info.pppc.basex.plugin.util.MultiplexFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the stream throughput of two multiplexers that are connected
+ * by piped streams. The benchmark opens a single stream from the first
+ * to the second multiplexer. A separate thread drains the stream on the
+ * side of the second multiplexer. Each invocation writes a chunk, flushes
+ * it and waits until the chunk has been drained.
+ *
+ * @author Mac
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiplexBenchmark {
+
+	/**
+	 * The plug-in that is used by the multiplexers. It hands incoming
+	 * connectors to the drain thread.
+	 *
+	 * @author Mac
+	 */
+	private class Plugin implements IMultiplexPlugin {
+
+		/**
+		 * Starts a thread that drains the incoming connector.
+		 *
+		 * @param source The multiplexer that received the connector.
+		 * @param connector The incoming connector.
+		 */
+		public void acceptConnector(MultiplexFactory source, final IStreamConnector connector) {
+			Thread drain = new Thread("multiplex-drain") {
+				public void run() {
+					drain(connector);
+				}
+			};
+			drain.setDaemon(true);
+			drain.start();
+		}
+
+		/**
+		 * Does nothing.
+		 *
+		 * @param multiplexer The multiplexer that has been closed.
+		 */
+		public void closeMultiplexer(MultiplexFactory multiplexer) { }
+
+		/**
+		 * Returns the plug-in manager of the broker.
+		 *
+		 * @return The plug-in manager of the broker.
+		 */
+		public IPluginManager getPluginManager() {
+			return InvocationBroker.getInstance().getPluginManager();
+		}
+
+		/**
+		 * Does nothing.
+		 */
+		public void start() { }
+
+		/**
+		 * Does nothing.
+		 */
+		public void stop() { }
+
+		/**
+		 * Returns null since the plug-in is not installed.
+		 *
+		 * @return Null.
+		 */
+		public PluginDescription getPluginDescription() {
+			return null;
+		}
+
+	}
+
+	/**
+	 * The size of the chunks in bytes.
+	 */
+	@Param({ "256", "4096", "65536" })
+	public int size;
+
+	/**
+	 * The multiplexer that writes the chunks.
+	 */
+	private MultiplexFactory sender;
+
+	/**
+	 * The multiplexer that receives the chunks.
+	 */
+	private MultiplexFactory receiver;
+
+	/**
+	 * The connector that writes the chunks.
+	 */
+	private IStreamConnector connector;
+
+	/**
+	 * The output stream of the connector.
+	 */
+	private OutputStream output;
+
+	/**
+	 * The chunk that is written.
+	 */
+	private byte[] chunk;
+
+	/**
+	 * The number of bytes that have been written.
+	 */
+	private long written = 0;
+
+	/**
+	 * The number of bytes that have been drained.
+	 */
+	private long drained = 0;
+
+	/**
+	 * Connects the multiplexers and opens the stream.
+	 *
+	 * @throws IOException Thrown if the streams cannot be connected.
+	 */
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		PipedOutputStream forward = new PipedOutputStream();
+		PipedOutputStream backward = new PipedOutputStream();
+		PipedInputStream forwardIn = new PipedInputStream(forward, 65536);
+		PipedInputStream backwardIn = new PipedInputStream(backward, 65536);
+		Plugin plugin = new Plugin();
+		sender = new MultiplexFactory(plugin, backwardIn, forward);
+		receiver = new MultiplexFactory(plugin, forwardIn, backward);
+		connector = sender.openConnector();
+		output = connector.getOutputStream();
+		chunk = new byte[size];
+	}
+
+	/**
+	 * Closes the stream and the multiplexers.
+	 */
+	@TearDown(Level.Trial)
+	public void teardown() {
+		connector.release();
+		sender.close();
+		receiver.close();
+		InvocationBroker.getInstance().shutdown();
+	}
+
+	/**
+	 * Writes a chunk and waits until it has been drained.
+	 *
+	 * @throws IOException Thrown if the chunk cannot be written.
+	 * @throws InterruptedException Thrown if the thread is interrupted.
+	 */
+	@Benchmark
+	public void transfer() throws IOException, InterruptedException {
+		output.write(chunk, 0, chunk.length);
+		output.flush();
+		synchronized (this) {
+			written += chunk.length;
+			while (drained < written) {
+				wait();
+			}
+		}
+	}
+
+	/**
+	 * Reads the connector until it is closed and counts the bytes.
+	 *
+	 * @param incoming The connector to drain.
+	 */
+	private void drain(IStreamConnector incoming) {
+		byte[] buffer = new byte[65536];
+		try {
+			InputStream input = incoming.getInputStream();
+			while (true) {
+				int read = input.read(buffer, 0, buffer.length);
+				if (read == -1) break;
+				synchronized (this) {
+					drained += read;
+					notifyAll();
+				}
+			}
+		} catch (IOException e) {
+			// the connector has been closed
+		}
+	}
+
+}
@@ -0,0 +1,112 @@
+package info.pppc.base.benchmark;
+
+import info.pppc.base.system.operation.IMonitor;
+import info.pppc.base.system.operation.IOperation;
+import info.pppc.base.system.operation.OperationPool;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the submission and execution of operations by the operation
+ * pool. Each invocation submits a batch of empty operations and waits
+ * until all of them have been executed. Thus, the result is the average
+ * time per operation, including the hand-off to the pool threads.
+ *
+ * @author Mac
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperationPoolBenchmark {
+
+	/**
+	 * The number of operations that are submitted per invocation.
+	 */
+	private static final int BATCH = 100;
+
+	/**
+	 * The number of default threads of the pool.
+	 */
+	@Param({ "1", "4" })
+	public int threads;
+
+	/**
+	 * The pool that executes the operations.
+	 */
+	private OperationPool pool;
+
+	/**
+	 * The number of operations that have not been executed.
+	 */
+	private int pending = 0;
+
+	/**
+	 * The operation that is submitted.
+	 */
+	private IOperation operation = new IOperation() {
+		public void perform(IMonitor monitor) {
+			synchronized (OperationPoolBenchmark.this) {
+				pending -= 1;
+				if (pending == 0) {
+					OperationPoolBenchmark.this.notifyAll();
+				}
+			}
+		}
+	};
+
+	/**
+	 * Creates the pool.
+	 */
+	@Setup(Level.Trial)
+	public void setup() {
+		pool = new OperationPool(threads, 0);
+	}
+
+	/**
+	 * Stops the pool.
+	 */
+	@TearDown(Level.Trial)
+	public void teardown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Submits a batch of operations and waits for their execution.
+	 *
+	 * @throws InterruptedException Thrown if the thread is interrupted.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void submit() throws InterruptedException {
+		synchronized (this) {
+			pending = BATCH;
+		}
+		for (int i = 0; i < BATCH; i++) {
+			pool.performOperation(operation);
+		}
+		synchronized (this) {
+			while (pending != 0) {
+				wait();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+package info.pppc.base.benchmark;
+
+import info.pppc.base.system.security.io.SecureInputStream;
+import info.pppc.base.system.security.io.SecureOutputStream;
+import info.pppc.base.system.security.sym.AESSymmetricKey;
+import info.pppc.base.system.security.sym.HMACSymmetricKey;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the encryption and decryption of messages by the secure output
+ * and input streams. The streams are kept open across invocations, since
+ * the cipher is stateful. Each invocation writes and flushes a message
+ * and reads it back.
+ *
+ * @author Mac
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecureStreamBenchmark {
+
+	/**
+	 * The size of the messages in bytes.
+	 */
+	@Param({ "64", "1024", "16384" })
+	public int size;
+
+	/**
+	 * The queue that connects the streams.
+	 */
+	private ByteQueue queue;
+
+	/**
+	 * The stream that encrypts the messages.
+	 */
+	private SecureOutputStream output;
+
+	/**
+	 * The stream that decrypts the messages.
+	 */
+	private SecureInputStream input;
+
+	/**
+	 * The message that is written.
+	 */
+	private byte[] message;
+
+	/**
+	 * The buffer that receives the message.
+	 */
+	private byte[] received;
+
+	/**
+	 * Creates the keys, the streams and the message.
+	 */
+	@Setup
+	public void setup() {
+		Random random = new Random(0);
+		byte[] aes = new byte[16];
+		byte[] hmac = new byte[20];
+		random.nextBytes(aes);
+		random.nextBytes(hmac);
+		queue = new ByteQueue();
+		output = new SecureOutputStream(queue.getOutputStream(), 
+				new AESSymmetricKey(aes), new HMACSymmetricKey(hmac));
+		input = new SecureInputStream(queue.getInputStream(), 
+				new AESSymmetricKey(aes), new HMACSymmetricKey(hmac));
+		message = new byte[size];
+		random.nextBytes(message);
+		received = new byte[size];
+	}
+
+	/**
+	 * Encrypts a message and decrypts it again.
+	 *
+	 * @return The decrypted message.
+	 * @throws IOException Thrown if the message cannot be decrypted.
+	 */
+	@Benchmark
+	public byte[] roundTrip() throws IOException {
+		output.write(message, 0, message.length);
+		output.flush();
+		int offset = 0;
+		while (offset < received.length) {
+			int read = input.read(received, offset, received.length - offset);
+			if (read == -1) throw new IOException("Message truncated.");
+			offset += read;
+		}
+		return received;
+	}
+
+}
@@ -0,0 +1,126 @@
+package info.pppc.base.benchmark;
+
+import info.pppc.base.system.DeviceDescription;
+import info.pppc.base.system.Invocation;
+import info.pppc.base.system.InvocationBroker;
+import info.pppc.base.system.ObjectID;
+import info.pppc.base.system.ReferenceID;
+import info.pppc.base.system.SystemID;
+import info.pppc.base.system.io.ObjectInputStream;
+import info.pppc.base.system.io.ObjectOutputStream;
+import info.pppc.base.system.nf.NFCollection;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures round trips of invocations and device descriptions through
+ * the object output and input streams. The broker is started during the
+ * setup since it registers the abbreviations of the serializable classes.
+ *
+ * @author Mac
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+	/**
+	 * The invocation that is serialized.
+	 */
+	private Invocation invocation;
+
+	/**
+	 * The device description that is serialized.
+	 */
+	private DeviceDescription description;
+
+	/**
+	 * The buffer that receives the serialized objects.
+	 */
+	private ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+
+	/**
+	 * Starts the broker and creates the objects.
+	 */
+	@Setup(Level.Trial)
+	public void setup() {
+		InvocationBroker.getInstance();
+		SystemID target = new SystemID(42);
+		invocation = new Invocation(new ReferenceID(SystemID.SYSTEM, new ObjectID(1)),
+				new ReferenceID(target, new ObjectID(2)), "void process(int, java.lang.String, byte[])",
+				new Object[] { new Integer(7), "payload", new byte[256] });
+		invocation.setID(new Integer(1));
+		invocation.setType(Invocation.TYPE_INVOKE);
+		invocation.setRequirements(NFCollection.getDefault(NFCollection.TYPE_SYNCHRONOUS, false));
+		description = new DeviceDescription(target, "benchmark", DeviceDescription.TYPE_DESKTOP);
+		for (int i = 0; i < 8; i++) {
+			description.addService(new ObjectID(i + 1));
+		}
+	}
+
+	/**
+	 * Stops the broker.
+	 */
+	@TearDown(Level.Trial)
+	public void teardown() {
+		InvocationBroker.getInstance().shutdown();
+	}
+
+	/**
+	 * Serializes and deserializes the invocation.
+	 *
+	 * @return The deserialized invocation.
+	 * @throws IOException Thrown if the serialization fails.
+	 */
+	@Benchmark
+	public Object invocationRoundTrip() throws IOException {
+		return roundTrip(invocation);
+	}
+
+	/**
+	 * Serializes and deserializes the device description.
+	 *
+	 * @return The deserialized device description.
+	 * @throws IOException Thrown if the serialization fails.
+	 */
+	@Benchmark
+	public Object descriptionRoundTrip() throws IOException {
+		return roundTrip(description);
+	}
+
+	/**
+	 * Serializes the object into the buffer and reads it back.
+	 *
+	 * @param object The object to serialize.
+	 * @return The deserialized object.
+	 * @throws IOException Thrown if the serialization fails.
+	 */
+	private Object roundTrip(Object object) throws IOException {
+		buffer.reset();
+		ObjectOutputStream output = new ObjectOutputStream(buffer);
+		output.writeObject(object);
+		output.flush();
+		ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+		return input.readObject();
+	}
+
+}
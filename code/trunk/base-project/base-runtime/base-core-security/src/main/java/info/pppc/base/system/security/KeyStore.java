@@ -4,6 +4,8 @@ import info.pppc.base.system.Invocation;
 import info.pppc.base.system.InvocationBroker;
 import info.pppc.base.system.ReferenceID;
 import info.pppc.base.system.SystemID;
+import info.pppc.base.system.event.Event;
+import info.pppc.base.system.event.IListener;
 import info.pppc.base.system.nf.NFCollection;
 import info.pppc.base.system.security.ecc.ECCCertificate;
 import info.pppc.base.system.security.rsa.RSACertificate;
@@ -13,6 +15,7 @@ import info.pppc.base.system.util.Logging;
 
 import java.io.IOException;
 import java.util.Enumeration;
+import java.util.Hashtable;
 import java.util.Vector;
 
 import org.bouncycastle.asn1.x509.X509Name;
@@ -258,10 +261,15 @@ public class KeyStore {
 		new int[] { TRUST_LEVEL_NONE, TRUST_LEVEL_MARGINAL, TRUST_LEVEL_FULL };
 	
 	/**
-	 * The instance of the key store.
+	 * The instance of the key store of the default broker.
 	 */
 	protected static KeyStore instance = null;
 
+	/**
+	 * The instances of the key store of additional brokers hashed by broker.
+	 */
+	private static Hashtable instances = new Hashtable();
+
 	/**
 	 * The vector that contains the key store entries.
 	 */
@@ -282,32 +290,101 @@ public class KeyStore {
 	 * Initializes the key store using the keys provided by the provider.
 	 * This method must be called before the middleware is started. It must
 	 * only be called once. If it is called multiple times, it will throw
-	 * an illegal state exception. 
+	 * an illegal state exception. If the calling thread is bound to an
+	 * additional broker, the key store is initialized for that broker. 
+	 * Since the id of an additional broker cannot be changed once it is
+	 * running, the broker must be created with the id that is returned
+	 * by getSystemID for the provider.
 	 * 
 	 * @param provider The provider of the keys.
 	 * @throws IllegalStateException Thrown if the initialization is performed
 	 * 	multiple times.
 	 */
 	public static void initialize(ICertificateProvider provider) throws IllegalStateException {
-		if (KeyStore.instance != null) 
+		if (findInstance() != null) 
 			throw new IllegalStateException("Key store has already been initialized.");
-		instance = new KeyStore(provider);
+		setInstance(new KeyStore(provider));
 	}
 	
 	/**
-	 * Returns the global instance of the key store. If the instance has not
-	 * been created yet, it will be created. This method will throw an exception
-	 * if the provider has not been set before this method is called.
+	 * Returns the instance of the key store of the broker of the calling 
+	 * thread. This method will throw an exception if the provider has not 
+	 * been set for the broker before this method is called.
 	 * 
-	 * @return The global instance of the key store.
+	 * @return The instance of the key store.
 	 * @throws IllegalArgumentException Thrown if the provider has not been
 	 * 	set before this call using the initialize method.
 	 */
 	public static KeyStore getInstance() throws IllegalStateException {
-		if (instance == null) {
+		KeyStore store = findInstance();
+		if (store == null) {
 			throw new IllegalStateException("Key store has not been initialized.");
 		}
-		return instance;
+		return store;
+	}
+	
+	/**
+	 * Returns the system id that is derived from the device certificate
+	 * of the specified provider. This is the id that must be used by
+	 * additional brokers that shall use a key store with the provider.
+	 * 
+	 * @param provider The provider of the keys.
+	 * @return The system id derived from the device certificate.
+	 * @throws IllegalArgumentException Thrown if the device certificate
+	 * 	is missing or cannot be loaded.
+	 */
+	public static SystemID getSystemID(ICertificateProvider provider) throws IllegalArgumentException {
+		byte[] dcBytes = provider.getDeviceCertificate();
+		if (dcBytes == null) 
+			throw new IllegalArgumentException("Could not find device certificate.");
+		AbstractCertificate device = null;
+		try {
+			device = new ECCCertificate(dcBytes);
+		} catch (Exception e) { }
+		if (device == null) {
+			try {
+				device = new RSACertificate(dcBytes);
+			} catch (Exception e) { 
+				throw new IllegalArgumentException("Could not load device certificate.");
+			}
+		}
+		return new SystemID(device.getFingerprint());
+	}
+	
+	/**
+	 * Returns the instance of the key store of the broker of the calling
+	 * thread or null if the key store has not been initialized for the
+	 * broker.
+	 * 
+	 * @return The instance of the key store or null if there is none.
+	 */
+	protected static KeyStore findInstance() {
+		InvocationBroker context = InvocationBroker.getBinding();
+		if (context == null) {
+			return instance;
+		}
+		return (KeyStore)instances.get(context);
+	}
+	
+	/**
+	 * Sets the instance of the key store of the broker of the calling 
+	 * thread. The instances of additional brokers are removed when the
+	 * broker is shut down.
+	 * 
+	 * @param store The instance of the key store.
+	 */
+	protected static void setInstance(KeyStore store) {
+		final InvocationBroker context = InvocationBroker.getBinding();
+		if (context == null) {
+			instance = store;
+		} else {
+			instances.put(context, store);
+			context.addBrokerListener(InvocationBroker.EVENT_BROKER_SHUTDOWN, new IListener() {
+				public void handleEvent(Event event) {
+					instances.remove(context);
+				}
+			});
+		}
 	}
 	
 	/**
@@ -324,7 +401,11 @@ public class KeyStore {
 		try {
 			AbstractCertificate device = createCertificate(dcBytes, dkBytes);
 			addCertificate(device, TRUST_LEVEL_FULL);
-			SystemID.setBytes(device.getFingerprint());
+			if (InvocationBroker.getBinding() == null) {
+				SystemID.setBytes(device.getFingerprint());
+			} else if (! SystemID.getLocal().equals(new SystemID(device.getFingerprint()))) {
+				throw new IllegalArgumentException("Broker id does not match device certificate.");
+			}
 		} catch (IOException e) {
 			throw new IllegalArgumentException("Could not load device key pair.");
 		}
@@ -352,7 +433,7 @@ public class KeyStore {
 		bytes = new byte[AESSymmetricKey.STANDARD_AES_KEY_AND_BLOCK_SIZE / 8];
 		StaticSecurity.getSecureRandom().nextBytes(bytes);
 		HMACSymmetricKey signature = new HMACSymmetricKey(bytes);
-		addKey(SystemID.SYSTEM, signature, encryption, TRUST_LEVEL_FULL);
+		addKey(SystemID.getLocal(), signature, encryption, TRUST_LEVEL_FULL);
 	}
 	
 	/**
@@ -766,10 +847,10 @@ public class KeyStore {
 				return (getTimestamp(system) != TIMESTAMP_MISSING);
 			systems.addElement(system);
 		}
+		InvocationBroker broker = InvocationBroker.getInstance();
 		Invocation invocation = new Invocation
-			(new ReferenceID(SystemID.SYSTEM), new ReferenceID(system), "", new Object[0]);
+			(new ReferenceID(broker.getSystemID()), new ReferenceID(system), "", new Object[0]);
 		invocation.setRequirements(NFCollection.getDefault(NFCollection.TYPE_EXCHANGE, true));
-		InvocationBroker broker = InvocationBroker.getInstance();
 		broker.invoke(invocation);
 		synchronized (systems) {
 			systems.removeElement(system);
@@ -94,7 +94,7 @@ public abstract class SecureSkeleton extends Skeleton {
 		// the communication is secure, else it is insecure
 		InvocationBroker broker = InvocationBroker.getInstance();
 		DeviceRegistry registry = broker.getDeviceRegistry();
-		PluginDescription[] plugins = registry.getPluginDescriptions(SystemID.SYSTEM);
+		PluginDescription[] plugins = registry.getPluginDescriptions(broker.getSystemID());
 		while (session != null) {
 			for (int i = 0; i < plugins.length; i++) {
 				if (plugins[i].getAbility() == session.getAbility()) {
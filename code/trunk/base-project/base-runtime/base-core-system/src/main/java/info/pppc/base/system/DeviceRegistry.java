@@ -86,6 +86,11 @@ public final class DeviceRegistry implements IOperation {
 	 */
 	private NullMonitor monitor = new NullMonitor();
 
+	/**
+	 * The id of the local system of the broker that uses this registry.
+	 */
+	private SystemID system;
+
 	/**
 	 * Creates a new device registry. This method will be called when the 
 	 * invocation broker is started.
@@ -93,6 +98,7 @@ public final class DeviceRegistry implements IOperation {
 	 * @param broker The invocation broker.
 	 */
 	protected DeviceRegistry(InvocationBroker broker) {
+		system = broker.getSystemID();
 		broker.performOperation(this, monitor);
 		broker.addBrokerListener(InvocationBroker.EVENT_BROKER_SHUTDOWN, new IListener() {
 			public void handleEvent(Event event) {
@@ -314,7 +320,7 @@ public final class DeviceRegistry implements IOperation {
 		synchronized (monitor) {
 			unwrapped = privateGetDevices(ids);
 		}
-		unwrapped.removeElement(SystemID.SYSTEM);
+		unwrapped.removeElement(system);
 		return privateWrapDevices(unwrapped);
 	}
 
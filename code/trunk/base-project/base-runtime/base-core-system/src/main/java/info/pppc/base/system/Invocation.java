@@ -4,6 +4,8 @@ import info.pppc.base.system.io.IObjectInput;
 import info.pppc.base.system.io.IObjectOutput;
 import info.pppc.base.system.io.ISerializable;
 import info.pppc.base.system.nf.NFCollection;
+import info.pppc.base.system.nf.NFDimension;
+import info.pppc.base.system.trace.TraceContext;
 
 import java.io.IOException;
 
@@ -300,6 +302,45 @@ public final class Invocation implements ISerializable {
 		requirements = collection;
 	}
 
+	/**
+	 * Returns the trace context of the invocation. The context is set
+	 * by the tracer of the system that issued the invocation and it is
+	 * stored as a dimension of the requirements. Thus, systems that do
+	 * not trace invocations transfer it without interpreting it.
+	 * 
+	 * @return The trace context or null if the invocation is not traced.
+	 */
+	public TraceContext getTrace() {
+		NFCollection collection = requirements;
+		if (collection == null) return null;
+		NFDimension dimension = collection.getDimension
+			(TraceContext.EXTENSION_TRACE, TraceContext.IDENTIFIER_CONTEXT);
+		if (dimension == null) return null;
+		return TraceContext.valueOf(dimension.getHardValue());
+	}
+
+	/**
+	 * Sets the trace context of the invocation. The context is stored
+	 * in the requirements of the invocation, thus, it must be set after
+	 * the requirements.
+	 * 
+	 * @param trace The trace context or null to disable tracing.
+	 */
+	public void setTrace(TraceContext trace) {
+		if (trace == null) {
+			if (requirements != null) {
+				requirements.removeDimension
+					(TraceContext.EXTENSION_TRACE, TraceContext.IDENTIFIER_CONTEXT);
+			}
+		} else {
+			if (requirements == null) {
+				requirements = new NFCollection();
+			}
+			requirements.addDimension(TraceContext.EXTENSION_TRACE, 
+				new NFDimension(TraceContext.IDENTIFIER_CONTEXT, trace.toBytes()));
+		}
+	}
+
 	/**
 	 * Deserializes the invocation from the given stream.
 	 * 
@@ -4,6 +4,8 @@ import info.pppc.base.system.event.Event;
 import info.pppc.base.system.event.IListener;
 import info.pppc.base.system.event.ListenerBundle;
 import info.pppc.base.system.io.ObjectStreamTranslator;
+import info.pppc.base.system.metric.Metric;
+import info.pppc.base.system.metric.MetricRegistry;
 import info.pppc.base.system.nf.NFCollection;
 import info.pppc.base.system.nf.NFDimension;
 import info.pppc.base.system.operation.IMonitor;
@@ -11,9 +13,13 @@ import info.pppc.base.system.operation.IOperation;
 import info.pppc.base.system.operation.IOperator;
 import info.pppc.base.system.operation.NullMonitor;
 import info.pppc.base.system.operation.OperationPool;
+import info.pppc.base.system.trace.Tracer;
 import info.pppc.base.system.util.Logging;
 
 import java.util.Date;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
 
 /**
  * The invocation broker is responsible for synchronization, threading and performing remote
@@ -96,6 +102,14 @@ public final class InvocationBroker implements IOperator {
 	 * integer. If no value is specified 0 is assumed.
 	 */
 	public static final String PROPERTY_THREAD_DEFAULT = "info.pppc.tdef";
+
+	/**
+	 * This is the name of the system property that enables the recording of
+	 * metrics upon startup. If the property is set to true, the metric registry
+	 * records the latency of invocations and plug-in sessions. If no value is
+	 * specified, metrics are not recorded until they are enabled explicitly.
+	 */
+	public static final String PROPERTY_METRICS = "info.pppc.metrics";
 	
 	/**
 	 * The event constant that denotes that the broker is performing a shutdown.
@@ -105,40 +119,201 @@ public final class InvocationBroker implements IOperator {
 	public static final int EVENT_BROKER_SHUTDOWN = 1;
 
 	/**
-	 * The next free and unused id for invocations. The invocation broker assigns locally
-	 * unique identifiers to invocations in order to enable systems to perform matching between
-	 * different invocations that might contain different contents. The assigner of an id
-	 * is always (!) the system that first sent the message. Other systems send replies and
-	 * other status messages using the same (!) id. Thus, the id together with the creator
-	 * of the invocation are unique identifiers for one (!) call.
-	 * Generation of invocation identifiers is synchronized to the class object of the broker.
+	 * The event constant that denotes that the broker has dispatched an
+	 * invocation that has been received from some system. The source 
+	 * object will be the broker and the data object will be the invocation.
+	 * Listeners for this event are called for every invocation, thus,
+	 * they must not block.
 	 */
-	private static int INVOCATION_ID = Integer.MIN_VALUE;
+	public static final int EVENT_INVOCATION_RECEIVED = 2;
+	
+	/**
+	 * The event constant that denotes that a synchronous invocation that
+	 * has been issued by this system has returned without an exception.
+	 * This implies that the target system has received the invocation.
+	 * The source object will be the broker and the data object will be 
+	 * the invocation. Listeners for this event are called for every 
+	 * invocation, thus, they must not block.
+	 */
+	public static final int EVENT_INVOCATION_CONFIRMED = 4;
 
 	/**
 	 * The machine's broker. At the present time this singleton is the only way of ensuring
 	 * that each proxy generated in application space is capable of accessing the broker
 	 * of the vm. If we would use a manual registration of proxies (programmed by the
-	 * application developer) we could get rid of this global variable.
+	 * application developer) we could get rid of this global variable. This is the
+	 * default broker, additional brokers are accessed through thread bindings.
+	 */
+	private static volatile InvocationBroker broker;
+
+	/**
+	 * The brokers that are bound to threads hashed by thread. Since threads that
+	 * are not bound use the default broker, this table is empty unless additional
+	 * brokers have been created. The table is modified while holding its lock.
+	 */
+	private static Hashtable contexts = new Hashtable();
+
+	/**
+	 * A flag that indicates whether the table of bindings contains bindings. 
+	 * This enables unbound threads to access the default broker without 
+	 * acquiring a lock.
+	 */
+	private static volatile boolean bound = false;
+
+	/**
+	 * The number of bindings that triggers the removal of the bindings of
+	 * threads that have terminated without removing their binding.
 	 */
-	private static InvocationBroker broker;
+	private static int sweep = 16;
 	
 	/**
-	 * Returns the invocation broker of this JVM. This is the preferred way to access the 
-	 * internals of base directly. This is for instance used by proxies to access the 
-	 * broker and to perform remote calls.
+	 * Returns the invocation broker of the calling thread. This is the preferred way 
+	 * to access the internals of base directly. This is for instance used by proxies 
+	 * to access the broker and to perform remote calls. If the thread is bound to a 
+	 * broker, this method returns the bound broker. Otherwise, it returns the default 
+	 * broker of this JVM which is created on demand.
 	 * 
-	 * @return The only broker on this machine.
+	 * @return The broker of the calling thread.
 	 */
 	public static InvocationBroker getInstance() {
-		if (broker == null) {
-			broker = new InvocationBroker();
+		if (bound) {
+			InvocationBroker context = (InvocationBroker)contexts.get(Thread.currentThread());
+			if (context != null) {
+				return context;
+			}
+		}
+		InvocationBroker b = broker;
+		if (b != null) {
+			return b;
+		}
+		synchronized (InvocationBroker.class) {
+			if (broker == null) {
+				broker = new InvocationBroker();
+			}
+			return broker;			
+		}
+	}
+
+	/**
+	 * Returns the broker that is bound to the calling thread or null if the
+	 * thread is not bound to a broker. In contrast to getInstance, this method
+	 * never creates the default broker.
+	 * 
+	 * @return The broker bound to the calling thread or null if the thread
+	 * 	is not bound.
+	 */
+	public static InvocationBroker getBinding() {
+		if (! bound) {
+			return null;
+		}
+		return (InvocationBroker)contexts.get(Thread.currentThread());
+	}
+
+	/**
+	 * Binds the calling thread to the specified broker. Afterwards, the 
+	 * static accessors such as getInstance will return the bound broker 
+	 * on this thread. The operations that are performed by a broker are 
+	 * bound automatically. Applications that use an additional broker must
+	 * bind their own threads before they create proxies or services and they
+	 * should restore the previous binding in a finally block afterwards. 
+	 * Binding null or the default broker removes the binding. The bindings
+	 * of threads that terminate while they are bound are removed lazily.
+	 * 
+	 * @param context The broker to bind or null to remove the binding.
+	 * @return The broker that has been bound previously or null if the
+	 * 	thread has not been bound.
+	 */
+	public static InvocationBroker bind(InvocationBroker context) {
+		Thread thread = Thread.currentThread();
+		synchronized (contexts) {
+			if (context == null || context == broker) {
+				InvocationBroker previous = (InvocationBroker)contexts.remove(thread);
+				bound = ! contexts.isEmpty();
+				return previous;
+			}
+			InvocationBroker previous = (InvocationBroker)contexts.put(thread, context);
+			bound = true;
+			if (previous == null && contexts.size() > sweep) {
+				Vector dead = new Vector();
+				Enumeration e = contexts.keys();
+				while (e.hasMoreElements()) {
+					Thread t = (Thread)e.nextElement();
+					if (! t.isAlive()) {
+						dead.addElement(t);
+					}
+				}
+				for (int i = dead.size() - 1; i >= 0; i--) {
+					contexts.remove(dead.elementAt(i));
+				}
+				sweep = Math.max(16, contexts.size() * 2);
+			}
+			return previous;
+		}
+	}
+	
+	/**
+	 * Reads the name of the default broker from the system properties. If
+	 * the name is not set, the current time is used.
+	 * 
+	 * @return The name of the default broker.
+	 */
+	private static String getDefaultName() {
+		String n = System.getProperty(PROPERTY_DEVICE_NAME);
+		if (n == null) {
+			n = new Date().toString().substring(11, 19);
+		}
+		return n;
+	}
+	
+	/**
+	 * Reads the type of the default broker from the system properties. If
+	 * the type is not set or invalid, the type is unknown.
+	 * 
+	 * @return The type of the default broker.
+	 */
+	private static short getDefaultType() {
+		String type = System.getProperty(PROPERTY_DEVICE_TYPE);
+		short t = DeviceDescription.TYPE_UNKOWN;
+		if (type != null) {
+			try {
+				t = Short.parseShort(type);
+			} catch (NumberFormatException e) {
+				t = DeviceDescription.TYPE_UNKOWN;
+			}
 		}
-		return broker;
+		return t;
 	}
 
 	////////////////// broker instance implementation
 
+	/**
+	 * The id of the system that is represented by this broker.
+	 */
+	private SystemID system;
+	
+	/**
+	 * The next free and unused id for invocations. The invocation broker assigns locally
+	 * unique identifiers to invocations in order to enable systems to perform matching between
+	 * different invocations that might contain different contents. The assigner of an id
+	 * is always (!) the system that first sent the message. Other systems send replies and
+	 * other status messages using the same (!) id. Thus, the id together with the creator
+	 * of the invocation are unique identifiers for one (!) call.
+	 * Generation of invocation identifiers is synchronized to the identifier lock.
+	 */
+	private int invocationID = Integer.MIN_VALUE;
+	
+	/**
+	 * The lock that synchronizes the generation of invocation identifiers.
+	 */
+	private Object identifierLock = new Object();
+	
+	/**
+	 * A flag that indicates whether the threads that perform operations
+	 * are bound to this broker. This is false for the default broker since 
+	 * unbound threads use the default broker anyway.
+	 */
+	private boolean binding;
+
 	/**
 	 * The device registry used to send remote requests.
 	 */
@@ -160,6 +335,17 @@ public final class InvocationBroker implements IOperator {
 	 */
 	private ListenerBundle listeners = new ListenerBundle(this);
 
+	/**
+	 * The metric registry that records the latency and throughput of
+	 * invocations and plug-in sessions.
+	 */
+	private MetricRegistry metricRegistry;
+
+	/**
+	 * The tracer that creates and propagates the spans of invocations.
+	 */
+	private Tracer tracer = new Tracer();
+
 	/**
 	 * The pool that is used by the broker to schedule operations asynchronously.
 	 * This value is initialized in the brokers constructor using the threading
@@ -168,26 +354,46 @@ public final class InvocationBroker implements IOperator {
 	private OperationPool pool;
 	
 	/**
-	 * Creates a new invocation broker instance.
+	 * Creates the default invocation broker instance.
 	 */
 	private InvocationBroker() {
-		Logging.debug(getClass(), "Broker started on system " + SystemID.SYSTEM + " ...");
-		// retrieve the system properties for device name and type
-		String n = System.getProperty(PROPERTY_DEVICE_NAME);
-		if (n == null) {
-			n = new Date().toString().substring(11, 19);
-		}
-		String type = System.getProperty(PROPERTY_DEVICE_TYPE);
-		short t = DeviceDescription.TYPE_UNKOWN;
-		if (type != null) {
-			try {
-				t = Short.parseShort(type);
-			} catch (NumberFormatException e) {
-				t = DeviceDescription.TYPE_UNKOWN;
-			}
-		}
+		this(SystemID.SYSTEM, getDefaultName(), getDefaultType(), false);
+	}
+	
+	/**
+	 * Creates an additional invocation broker that represents the system
+	 * with the specified id. The broker has its own registries, plug-in 
+	 * manager and operation pool. In order to use the broker with proxies, 
+	 * services and plug-ins, the threads that create them must be bound 
+	 * to the broker, see bind. The threading properties are read from the
+	 * system properties.
+	 * 
+	 * @param system The id of the system represented by the broker.
+	 * @param name The name of the system represented by the broker.
+	 * @param type The type of the system represented by the broker.
+	 * @throws NullPointerException Thrown if the system id is null.
+	 */
+	public InvocationBroker(SystemID system, String name, short type) {
+		this(system, name, type, true);
+	}
+	
+	/**
+	 * Creates a new invocation broker instance.
+	 * 
+	 * @param system The id of the system represented by the broker.
+	 * @param name The name of the system represented by the broker.
+	 * @param type The type of the system represented by the broker.
+	 * @param binding True to bind the threads that perform operations,
+	 * 	false for the default broker.
+	 * @throws NullPointerException Thrown if the system id is null.
+	 */
+	private InvocationBroker(SystemID system, String name, short type, boolean binding) {
+		if (system == null) throw new NullPointerException("System id must not be null.");
+		this.system = system;
+		this.binding = binding;
+		Logging.debug(getClass(), "Broker started on system " + system + " ...");
 		// create a new device description
-		final DeviceDescription description = new DeviceDescription(SystemID.SYSTEM, n, t);
+		final DeviceDescription description = new DeviceDescription(system, name, type);
 		// retrieve the system properties for threading
 		int td = 0;
 		String tDefault = System.getProperty(PROPERTY_THREAD_DEFAULT);
@@ -207,12 +413,23 @@ public final class InvocationBroker implements IOperator {
 		}
 		// create a new thread pool using the configuration
 		pool = new OperationPool(td, tm);
+		// create the metric registry and enable it if requested
+		metricRegistry = new MetricRegistry(this);
+		metricRegistry.setEnabled("true".equals(System.getProperty(PROPERTY_METRICS)));
 		// startup the local registries and managers
 		objectRegistry = new ObjectRegistry();
 		deviceRegistry = new DeviceRegistry(this);
 		pluginManager = new PluginManager(this);
 		// register device description at the local registry
 		getDeviceRegistry().registerDevice(description);
+		// remove the metrics of systems that leave
+		deviceRegistry.addDeviceListener(DeviceRegistry.EVENT_DEVICE_REMOVED, new IListener() {
+			public void handleEvent(Event event) {
+				if (event.getData() instanceof DeviceDescription) {
+					metricRegistry.removeSystem(((DeviceDescription)event.getData()).getSystemID());
+				}
+			}
+		});
 		// create a listener that tracks the object registry for changes
 		IListener listener = new IListener() {
 			public void handleEvent(Event event) {
@@ -241,6 +458,15 @@ public final class InvocationBroker implements IOperator {
 				| ObjectRegistry.EVENT_KNOWN_REMOVED, listener);	
 	}
 	
+	/**
+	 * Returns the id of the system that is represented by this broker.
+	 * 
+	 * @return The system id of the broker.
+	 */
+	public SystemID getSystemID() {
+		return system;
+	}
+	
 	/**
  	 * Returns the device registry of this invocation broker.
  	 * 
@@ -267,6 +493,25 @@ public final class InvocationBroker implements IOperator {
 	public PluginManager getPluginManager() {
 		return pluginManager;
 	}
+
+	/**
+	 * Returns the metric registry of this invocation broker.
+	 * 
+	 * @return The metric registry of the broker.
+	 */
+	public MetricRegistry getMetricRegistry() {
+		return metricRegistry;
+	}
+
+	/**
+	 * Returns the tracer of this invocation broker. Tracing is disabled 
+	 * until a sink is set at the tracer.
+	 * 
+	 * @return The tracer of the broker.
+	 */
+	public Tracer getTracer() {
+		return tracer;
+	}
 	
 	/**
 	 * Called to perform a synchronous call. After the method
@@ -278,17 +523,42 @@ public final class InvocationBroker implements IOperator {
 	public void invoke(final Invocation invocation) {
 		if (isValid(invocation)) {
 			// update the invocation id
-			synchronized (getClass()) {
-				invocation.setID(new Integer(INVOCATION_ID));
-				if (INVOCATION_ID < Integer.MAX_VALUE) {
-					INVOCATION_ID += 1;
+			synchronized (identifierLock) {
+				invocation.setID(new Integer(invocationID));
+				if (invocationID < Integer.MAX_VALUE) {
+					invocationID += 1;
 				} else {
-					INVOCATION_ID = Integer.MIN_VALUE;
+					invocationID = Integer.MIN_VALUE;
 				}
 			}
+			Metric metric = metricRegistry.getMetric
+				(MetricRegistry.ABILITY_INVOCATION, invocation.getTarget().getSystem());
+			long start = (metric == null) ? 0 : System.currentTimeMillis();
 			pluginManager.sendSynchronous(invocation);
+			if (invocation.getException() == null) {
+				if (metric != null) metric.record(System.currentTimeMillis() - start);
+				if (isSynchronous(invocation)) {
+					listeners.fireEvent(EVENT_INVOCATION_CONFIRMED, invocation);
+				}
+			} else if (metric != null) {
+				metric.fail();
+			}
 		}
 	}
+	
+	/**
+	 * Determines whether an invocation is performed using synchronous
+	 * semantics, i.e. whether the caller waits for the result.
+	 * 
+	 * @param invocation The invocation to check.
+	 * @return True if the invocation is synchronous, false otherwise.
+	 */
+	private boolean isSynchronous(Invocation invocation) {
+		NFDimension type = invocation.getRequirements().getDimension
+			(NFCollection.EXTENSION_SEMANTIC, NFDimension.IDENTIFIER_TYPE);
+		return (type != null && type.getHardValue() instanceof Short 
+			&& ((Short)type.getHardValue()).shortValue() == NFCollection.TYPE_SYNCHRONOUS);
+	}
 		
 	/**
 	 * Determines whether an invocation contains all necessary parts. If not
@@ -329,7 +599,12 @@ public final class InvocationBroker implements IOperator {
 				if (handler == null) {
 					invocation.setException(new InvocationException("Target object not found."));
 				} else {
+					Metric metric = (invocation.getSource() == null) ? null : metricRegistry.getMetric
+						(MetricRegistry.ABILITY_DISPATCH, invocation.getSource().getSystem());
+					long start = (metric == null) ? 0 : System.currentTimeMillis();
 					handler.invoke(invocation, session);
+					if (metric != null) metric.record(System.currentTimeMillis() - start);
+					listeners.fireEvent(EVENT_INVOCATION_RECEIVED, invocation);
 				}
 			}
 		}
@@ -346,7 +621,7 @@ public final class InvocationBroker implements IOperator {
 	 * @throws NullPointerException Thrown if the operation is null.
 	 */
 	public void performOperation(IOperation operation) {
-		pool.performOperation(operation, new NullMonitor());
+		pool.performOperation(bindOperation(operation), new NullMonitor());
 	}
 
 	/**
@@ -365,14 +640,42 @@ public final class InvocationBroker implements IOperator {
 	 * 	monitor.
 	 */
 	public synchronized void performOperation(final IOperation operation, final IMonitor monitor) {
-		pool.performOperation(operation, monitor);
+		pool.performOperation(bindOperation(operation), monitor);
+	}
+	
+	/**
+	 * Wraps the operation of an additional broker such that the thread
+	 * that performs the operation is bound to the broker. Operations of
+	 * the default broker are returned as they are, since unbound threads
+	 * use the default broker.
+	 * 
+	 * @param operation The operation to wrap.
+	 * @return The operation that binds the performing thread.
+	 * @throws NullPointerException Thrown if the operation is null.
+	 */
+	private IOperation bindOperation(final IOperation operation) {
+		if (operation == null) throw new NullPointerException("Operation must not be null.");
+		if (! binding) {
+			return operation;
+		}
+		return new IOperation() {
+			public void perform(IMonitor monitor) throws Exception {
+				InvocationBroker previous = bind(InvocationBroker.this);
+				try {
+					operation.perform(monitor);	
+				} finally {
+					bind(previous);
+				}
+			}
+		};
 	}
 	
 	/**
 	 * Adds a listener that listeners to certain types of events from the 
-	 * broker. At the present time the only event that is issued by the 
-	 * broker is the EVENT_BROKER_SHUTDOWN event that signals that the
-	 * system is shutting down. 
+	 * broker. The broker issues the EVENT_BROKER_SHUTDOWN event that signals
+	 * that the system is shutting down as well as the EVENT_INVOCATION_RECEIVED
+	 * and EVENT_INVOCATION_CONFIRMED events that signal the successful
+	 * exchange of invocations with other systems. 
 	 * 
 	 * @param types The types of events to register for.
 	 * @param listener The listener to register.
@@ -399,11 +702,16 @@ public final class InvocationBroker implements IOperator {
 	 * the plug-in manager.
 	 */
 	public void shutdown() {
-		Logging.debug(getClass(), "Broker shutdown on system " + SystemID.SYSTEM + " ...");
+		Logging.debug(getClass(), "Broker shutdown on system " + system + " ...");
 		listeners.fireEvent(EVENT_BROKER_SHUTDOWN, true);
+		metricRegistry.shutdown();
 		pool.shutdown();
 		Logging.debug(getClass(), "Broker shutdown complete.");
-		broker = null;
+		synchronized (InvocationBroker.class) {
+			if (broker == this) {
+				broker = null;
+			}
+		}
 	}
 	
 
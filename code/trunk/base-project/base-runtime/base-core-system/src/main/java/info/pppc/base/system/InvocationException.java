@@ -63,7 +63,7 @@ public class InvocationException extends Exception implements ISerializable {
 	 * @throws IOException Thrown by the stream.
 	 */
 	public void writeObject(IObjectOutput output) throws IOException {
-		output.writeUTF("SERIALIZED SOURCE(" + SystemID.SYSTEM + ") " + message);
+		output.writeUTF("SERIALIZED SOURCE(" + SystemID.getLocal() + ") " + message);
 	}
 	
 	/**
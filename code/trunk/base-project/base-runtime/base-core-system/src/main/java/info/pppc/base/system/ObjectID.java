@@ -37,7 +37,7 @@ public final class ObjectID implements ISerializable {
      * the count and the current epoche, this field identifies an object
      * uniquely.
      */
-    private SystemID creator = SystemID.SYSTEM;
+    private SystemID creator = SystemID.getLocal();
 
     /**
      * A locally unique and epoche independent count. For the current
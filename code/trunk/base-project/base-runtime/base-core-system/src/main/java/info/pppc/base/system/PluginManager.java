@@ -5,6 +5,8 @@ import info.pppc.base.system.event.IListener;
 import info.pppc.base.system.event.ListenerBundle;
 import info.pppc.base.system.io.ObjectInputStream;
 import info.pppc.base.system.io.ObjectOutputStream;
+import info.pppc.base.system.metric.MeteredConnector;
+import info.pppc.base.system.metric.Metric;
 import info.pppc.base.system.nf.NFCollection;
 import info.pppc.base.system.nf.NFDimension;
 import info.pppc.base.system.operation.IMonitor;
@@ -307,8 +309,10 @@ public final class PluginManager implements IPluginManager, ISemanticManager,
 	/**
 	 * The default session strategy that is used in all cases where no 
 	 * specialized strategy is available. This strategy will add extension
-	 * layers only if there is a need for them and it does not perform an 
-	 * additional ordering of plug-ins.
+	 * layers only if there is a need for them. The only ordering that it
+	 * performs is to prefer transceivers that reach the target on the same
+	 * host, i.e. whose remote and local descriptions carry the same host
+	 * identity.
 	 * 
 	 * @author Marcus Handte
 	 */
@@ -323,7 +327,31 @@ public final class PluginManager implements IPluginManager, ISemanticManager,
 		 * @return A vector of plug-ins that correspond to the query.
 		 */
 		public Vector getPlugin(short extension, Vector plugins, NFCollection collection) {
-			return plugins;	
+			if (extension != EXTENSION_TRANSCEIVER) {
+				return plugins;
+			}
+			Vector local = null;
+			for (int i = 0, s = plugins.size(); i < s; i++) {
+				PluginDescription remote = (PluginDescription)plugins.elementAt(i);
+				Object host = remote.getProperty(ITransceiver.PROPERTY_HOST);
+				if (host == null) continue;
+				IPlugin plugin = PluginManager.this.getPlugin(remote.getAbility());
+				if (plugin != null && host.equals(plugin.getPluginDescription()
+						.getProperty(ITransceiver.PROPERTY_HOST))) {
+					if (local == null) local = new Vector();
+					local.addElement(remote);
+				}
+			}
+			if (local == null) {
+				return plugins;
+			}
+			for (int i = 0, s = plugins.size(); i < s; i++) {
+				Object remote = plugins.elementAt(i);
+				if (! local.contains(remote)) {
+					local.addElement(remote);
+				}
+			}
+			return local;
 		}
 	}
 	
@@ -446,64 +474,71 @@ public final class PluginManager implements IPluginManager, ISemanticManager,
 	
 	/**
 	 * Adds and starts the specified plug-in. This method updates internal 
-	 * data structures, sets the call back and starts the plug-in.
+	 * data structures, sets the call back and starts the plug-in. While
+	 * the plug-in is started, the calling thread is bound to the broker
+	 * of this manager.
 	 * 
 	 * @param plugin The plug-in to add.
 	 */
 	public void addPlugin(IPlugin plugin) {
 		Logging.debug(getClass(), "Installing plugin " + plugin.getClass().getName());
-		synchronized (plugins) {
-			PluginDescription pd = plugin.getPluginDescription();
-			IPlugin p = getPlugin(pd.getAbility());
-			if (p == null) {
-				plugins.addElement(plugin);
-				registry.registerPlugin(SystemID.SYSTEM, pd);
-				try {
-					switch (pd.getExtension()) {
-						case EXTENSION_SEMANTIC:
-							ISemantic sp = (ISemantic)plugin;
-							sp.setSemanticManager(this);
-							break;
-						case EXTENSION_ROUTING:
-							IRouting rp = (IRouting)plugin;
-							rp.setRoutingManager(this);
-							break;
-						case EXTENSION_SERIALIZATION:
-							IModifier zp = (IModifier)plugin;
-							zp.setPluginManager(this);
-							break;
-						case EXTENSION_COMPRESSION:
-							IModifier cp = (IModifier)plugin;
-							cp.setPluginManager(this);
-							break;
-						case EXTENSION_ENCRYPTION:
-							IModifier ep = (IModifier)plugin;
-							ep.setPluginManager(this);
-							break;
-						case EXTENSION_TRANSCEIVER:
-							ITransceiver tp = (ITransceiver)plugin;
-							tp.setTransceiverManager(this);
-							tp.addTransceiverListener(ITransceiver.EVENT_TRANCEIVER_DISABLED 
-									| ITransceiver.EVENT_TRANCEIVER_ENABLED, manager);
-							break;
-						case EXTENSION_DISCOVERY:
-							IDiscovery dp = (IDiscovery)plugin;	
-							dp.setDiscoveryManager(this);
-							break;
-						default:
-							Logging.debug(getClass(), "Unkown plugin extension found.");
-							throw new RuntimeException("Unkown plugin extension.");
+		InvocationBroker previous = InvocationBroker.bind(broker);
+		try {
+			synchronized (plugins) {
+				PluginDescription pd = plugin.getPluginDescription();
+				IPlugin p = getPlugin(pd.getAbility());
+				if (p == null) {
+					plugins.addElement(plugin);
+					registry.registerPlugin(broker.getSystemID(), pd);
+					try {
+						switch (pd.getExtension()) {
+							case EXTENSION_SEMANTIC:
+								ISemantic sp = (ISemantic)plugin;
+								sp.setSemanticManager(this);
+								break;
+							case EXTENSION_ROUTING:
+								IRouting rp = (IRouting)plugin;
+								rp.setRoutingManager(this);
+								break;
+							case EXTENSION_SERIALIZATION:
+								IModifier zp = (IModifier)plugin;
+								zp.setPluginManager(this);
+								break;
+							case EXTENSION_COMPRESSION:
+								IModifier cp = (IModifier)plugin;
+								cp.setPluginManager(this);
+								break;
+							case EXTENSION_ENCRYPTION:
+								IModifier ep = (IModifier)plugin;
+								ep.setPluginManager(this);
+								break;
+							case EXTENSION_TRANSCEIVER:
+								ITransceiver tp = (ITransceiver)plugin;
+								tp.setTransceiverManager(this);
+								tp.addTransceiverListener(ITransceiver.EVENT_TRANCEIVER_DISABLED 
+										| ITransceiver.EVENT_TRANCEIVER_ENABLED, manager);
+								break;
+							case EXTENSION_DISCOVERY:
+								IDiscovery dp = (IDiscovery)plugin;	
+								dp.setDiscoveryManager(this);
+								break;
+							default:
+								Logging.debug(getClass(), "Unkown plugin extension found.");
+								throw new RuntimeException("Unkown plugin extension.");
+						}
+						plugin.start();
+					} catch (Throwable t) {
+						Logging.error(getClass(), "Could not install plugin.", t);
+						plugins.removeElement(plugin);
+						registry.removePlugin(broker.getSystemID(), pd);
 					}
-					plugin.start();
-				} catch (Throwable t) {
-					Logging.error(getClass(), "Could not install plugin.", t);
-					plugins.removeElement(plugin);
-					registry.removePlugin(SystemID.SYSTEM, pd);
+					listeners.fireEvent(EVENT_PLUGIN_ADDED, pd);
+				} else {
+					throw new IllegalArgumentException("Cannot install plugin with same ability.");
 				}
-				listeners.fireEvent(EVENT_PLUGIN_ADDED, pd);
-			} else {
-				throw new IllegalArgumentException("Cannot install plugin with same ability.");
 			}
+		} finally {
+			InvocationBroker.bind(previous);
 		}
 	}
 
@@ -515,27 +550,32 @@ public final class PluginManager implements IPluginManager, ISemanticManager,
 	 */
 	public void removePlugin(IPlugin plugin) {
 		Logging.debug(getClass(), "Removing plugin " + plugin.getClass().getName());
-		synchronized (plugins) {
-			PluginDescription pd = plugin.getPluginDescription();
-			for (int i = 0; i < plugins.size(); i++) {
-				IPlugin p = (IPlugin)plugins.elementAt(i);
-				if (p == plugin) {
-					try {
-						plugin.stop();
-					} catch (Throwable t) {
-						Logging.error(getClass(), 
-							"Caught exception while removing plugin.", t);
-					}
-					if (p.getPluginDescription().getExtension() == EXTENSION_TRANSCEIVER) {
-						ITransceiver transceiver = (ITransceiver)p;
-						transceiver.removeTransceiverListener(ITransceiver.EVENT_TRANCEIVER_DISABLED 
-								| ITransceiver.EVENT_TRANCEIVER_ENABLED, manager);
+		InvocationBroker previous = InvocationBroker.bind(broker);
+		try {
+			synchronized (plugins) {
+				PluginDescription pd = plugin.getPluginDescription();
+				for (int i = 0; i < plugins.size(); i++) {
+					IPlugin p = (IPlugin)plugins.elementAt(i);
+					if (p == plugin) {
+						try {
+							plugin.stop();
+						} catch (Throwable t) {
+							Logging.error(getClass(), 
+								"Caught exception while removing plugin.", t);
+						}
+						if (p.getPluginDescription().getExtension() == EXTENSION_TRANSCEIVER) {
+							ITransceiver transceiver = (ITransceiver)p;
+							transceiver.removeTransceiverListener(ITransceiver.EVENT_TRANCEIVER_DISABLED 
+									| ITransceiver.EVENT_TRANCEIVER_ENABLED, manager);
+						}
+						listeners.fireEvent(EVENT_PLUGIN_REMOVED, pd);
+						registry.removePlugin(broker.getSystemID(), pd);
+						plugins.removeElement(plugin);
 					}
-					listeners.fireEvent(EVENT_PLUGIN_REMOVED, pd);
-					registry.removePlugin(SystemID.SYSTEM, pd);
-					plugins.removeElement(plugin);
 				}
 			}
+		} finally {
+			InvocationBroker.bind(previous);
 		}
 	}
 	
@@ -579,7 +619,7 @@ public final class PluginManager implements IPluginManager, ISemanticManager,
 	protected void sendSynchronous(Invocation invocation) {
 		SystemID target = invocation.getTarget().getSystem();
 		NFCollection collection = invocation.getRequirements();
-		PluginDescription[] compatible = registry.getPluginDescriptions(SystemID.SYSTEM, target);
+		PluginDescription[] compatible = registry.getPluginDescriptions(broker.getSystemID(), target);
 		Session session = prepareSession(EXTENSION_SEMANTIC, target, compatible, collection);
 		if (session == null) {
 			invocation.setException(new InvocationException("Could not satisfy requirements."));
@@ -619,7 +659,7 @@ public final class PluginManager implements IPluginManager, ISemanticManager,
 		// prepares a new session, the passed session is used as basis for the new one
 		Session s = (Session)session;
 		SystemID target = s.getTarget();
-		PluginDescription[] compatible = registry.getPluginDescriptions(SystemID.SYSTEM, target);
+		PluginDescription[] compatible = registry.getPluginDescriptions(broker.getSystemID(), target);
 		Session child = prepareSession(EXTENSION_SERIALIZATION, target, compatible, requirements);
 		if (child != null) {
 			Session copy = new Session
@@ -803,13 +843,22 @@ public final class PluginManager implements IPluginManager, ISemanticManager,
 		if (transceiver == null) {
 			throw new IOException("Could not find transceiver plugin."); 
 		} 
-		IStreamConnector connector = transceiver.openSession((ISession)s);
+		SystemID target = s.getTarget();
+		long start = System.currentTimeMillis();
+		IStreamConnector connector = null;
+		try {
+			connector = transceiver.openSession((ISession)s);
+		} catch (IOException e) {
+			fail(s.getAbility(), target);
+			throw e;
+		}
+		connector = meter(connector, s.getAbility(), target, start, s.getParent() == session);
 		// serialize session data - top down
 		try {
 			// <source><sessioncount>(<ability><remotedatacount><remotedata>)*
 			OutputStream stream = connector.getOutputStream();	
 			ObjectOutputStream oos = new ObjectOutputStream(stream);
-			oos.writeBytes(SystemID.SYSTEM.getBytes());
+			oos.writeBytes(broker.getSystemID().getBytes());
 			oos.writeShort(sessions);
 			Session sd = (Session)session;
 			for (int i = 0; i < sessions; i++) {
@@ -835,16 +884,52 @@ public final class PluginManager implements IPluginManager, ISemanticManager,
 			if (modifier == null) {
 				throw new IOException("Could not find modifier plugin.");
 			}
+			start = System.currentTimeMillis();
 			try {
 				connector = modifier.openSession(connector, (ISession)s);	
 			} catch (IOException e) {
+				fail(s.getAbility(), target);
 				connector.release();
 				throw e;
 			}
+			connector = meter(connector, s.getAbility(), target, start, s.getParent() == session);
 		}
 		return connector;
 	}
 
+	/**
+	 * Records the latency of opening a layer of a connector stack. If 
+	 * the connector of the layer is consumed by another layer, it is
+	 * wrapped with a connector that counts the transferred bytes. The
+	 * top connector is never wrapped since semantic plug-ins may rely 
+	 * on its type.
+	 * 
+	 * @param connector The connector of the layer.
+	 * @param ability The ability of the plug-in that provides the layer.
+	 * @param system The system of the peer.
+	 * @param start The time at which the opening of the layer started.
+	 * @param top True if the connector is the top of the stack.
+	 * @return The connector, possibly wrapped.
+	 */
+	private IStreamConnector meter(IStreamConnector connector, short ability, SystemID system, long start, boolean top) {
+		Metric metric = broker.getMetricRegistry().getMetric(ability, system);
+		if (metric == null) return connector;
+		metric.record(System.currentTimeMillis() - start);
+		if (top) return connector;
+		return new MeteredConnector(connector, metric);
+	}
+	
+	/**
+	 * Records that a layer of a connector stack could not be opened.
+	 * 
+	 * @param ability The ability of the plug-in that provides the layer.
+	 * @param system The system of the peer.
+	 */
+	private void fail(short ability, SystemID system) {
+		Metric metric = broker.getMetricRegistry().getMetric(ability, system);
+		if (metric != null) metric.fail();
+	}
+
 	/***
 	 * Called by transceiver plug-ins whenever a new connector is opened by a 
 	 * remote device. This implementation tries to read the session information
@@ -858,6 +943,7 @@ public final class PluginManager implements IPluginManager, ISemanticManager,
 		IOperation receiver = new IOperation() {
 			public void perform(IMonitor monitor) throws Exception {
 				try {
+					long start = System.currentTimeMillis();
 					IStreamConnector connector = c;
 					// <source><sessioncount>(<ability><remotedatacount><remotedata>)*
 					InputStream input = connector.getInputStream();
@@ -890,10 +976,18 @@ public final class PluginManager implements IPluginManager, ISemanticManager,
 						session.setRemote(remote);
 						parent = session;
 					}
+					// account the transceiver layer, if it is known
+					IPlugin transceiver = c.getPlugin();
+					if (transceiver != null) {
+						connector = meter(connector, transceiver.getPluginDescription().getAbility(), 
+							source, start, sessions <= 1);
+					}
 					// compose stack, starting from lowest session
 					for (int i = 0; i < sessions - 1; i++) {
 						IModifier modifier = (IModifier)getPlugin(parent.getAbility());
+						start = System.currentTimeMillis();
 						connector = modifier.openSession(connector, (ISession)parent);		
+						connector = meter(connector, parent.getAbility(), source, start, i == sessions - 2);
 						parent = parent.getParent();	
 					}
 					// finally, open semantic plug-in and fire it out
@@ -996,7 +1090,7 @@ public final class PluginManager implements IPluginManager, ISemanticManager,
 			SystemID id = device.getSystemID();
 			if (id != null) {
 				if (ttl >= 0) {
-					if (! id.equals(SystemID.SYSTEM)) {
+					if (! id.equals(broker.getSystemID())) {
 						registry.registerDevice(device, ttl);									
 					}
 				} else {
@@ -1024,7 +1118,7 @@ public final class PluginManager implements IPluginManager, ISemanticManager,
 		if (id != null) {
 			if (plugin != null) {
 				if (ttl >= 0) {
-					if (! id.equals(SystemID.SYSTEM)) {
+					if (! id.equals(broker.getSystemID())) {
 						registry.registerPlugin(id, plugin, ttl);									
 					}
 				} else {
@@ -3,6 +3,8 @@ package info.pppc.base.system;
 import info.pppc.base.system.nf.NFCollection;
 import info.pppc.base.system.operation.IMonitor;
 import info.pppc.base.system.operation.IOperation;
+import info.pppc.base.system.trace.Span;
+import info.pppc.base.system.trace.Tracer;
 
 /**
  * The superclass for all proxies. The proxy synchronizes access to the
@@ -153,9 +155,16 @@ public abstract class Proxy {
 					
 			}
 			final FutureResult future = result;
+			// start the span on the calling thread to continue its trace
+			final Tracer tracer = broker.getTracer();
+			final Span span = tracer.startClient(invocation);
 			IOperation performer = new IOperation() {
 				public void perform(IMonitor monitor) {
-					broker.invoke(invocation);
+					try {
+						broker.invoke(invocation);
+					} finally {
+						tracer.finish(span, invocation);
+					}
 					// remove plug-ins after call returned
 					if (p != null && system != null) {
 						for (int i = 0; i < p.length; i++) {
@@ -191,7 +200,13 @@ public abstract class Proxy {
 					registry.registerPlugin(system, p[j]);	
 				}	
 			}
-			broker.invoke(invocation);
+			Tracer tracer = broker.getTracer();
+			Span span = tracer.startClient(invocation);
+			try {
+				broker.invoke(invocation);
+			} finally {
+				tracer.finish(span, invocation);
+			}
 			if (p != null && system != null) {
 				for (int j = 0; j < p.length; j++) {
 					registry.removePlugin(system, p[j]);	
@@ -222,7 +237,13 @@ public abstract class Proxy {
 					registry.registerPlugin(system, p[j]);	
 				}	
 			}
-			broker.invoke(invocation);
+			Tracer tracer = broker.getTracer();
+			Span span = tracer.startClient(invocation);
+			try {
+				broker.invoke(invocation);
+			} finally {
+				tracer.finish(span, invocation);
+			}
 			if (p != null && system != null) {
 				for (int j = 0; j < p.length; j++) {
 					registry.removePlugin(system, p[j]);	
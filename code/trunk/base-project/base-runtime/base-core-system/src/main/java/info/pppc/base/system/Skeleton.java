@@ -1,5 +1,7 @@
 package info.pppc.base.system;
 
+import info.pppc.base.system.trace.Span;
+import info.pppc.base.system.trace.Tracer;
 
 /**
  * The superclass for all skeletons. A skeleton keeps a reference
@@ -54,9 +56,15 @@ public abstract class Skeleton implements IInvocationHandler {
 	 * @param session The session used to receive the invocation.
 	 */
 	public void invoke(Invocation msg, ISession session) {
-		Result result = dispatch(msg.getSignature(), msg.getArguments());
-		msg.setResult(result.getValue());
-		msg.setException(result.getException());
+		Tracer tracer = InvocationBroker.getInstance().getTracer();
+		Span span = tracer.startServer(msg);
+		try {
+			Result result = dispatch(msg.getSignature(), msg.getArguments());
+			msg.setResult(result.getValue());
+			msg.setException(result.getException());
+		} finally {
+			tracer.finish(span, msg);
+		}
 	}
 	
 	/**
@@ -37,7 +37,9 @@ public final class SystemID implements ISerializable {
 	/**
 	 * The id of the local system. Currently, this value is created
 	 * randomly. Actually, it should be configured manually outside
-	 * of a development environment.
+	 * of a development environment. This is the id of the default
+	 * broker, brokers that are created as additional contexts have
+	 * their own ids, see getLocal.
 	 */
 	public static final SystemID SYSTEM = new SystemID(new Random().nextLong());
 	
@@ -59,13 +61,31 @@ public final class SystemID implements ISerializable {
 		if (property != null) {
 			try {
 				long id = Long.parseLong(property);
-				setBytes(toBytes(id)); 
+				SYSTEM.systemID = toBytes(id);
+				SYSTEM.rehash();
 			} catch (NumberFormatException e) {
 				Logging.error(SystemID.class, "Could not restore system id.", e);
 			}
 		}
 	}
 
+	/**
+	 * Returns the id of the local system in the context of the calling
+	 * thread. If the thread is bound to a broker, this is the id of the
+	 * bound broker. Otherwise, it is the id of the default broker.
+	 * Plug-ins should use this method instead of SYSTEM so that they
+	 * can be installed on several brokers in the same virtual machine.
+	 * 
+	 * @return The id of the local system.
+	 */
+	public static SystemID getLocal() {
+		InvocationBroker context = InvocationBroker.getBinding();
+		if (context != null) {
+			return context.getSystemID();
+		}
+		return SYSTEM;
+	}
+
 	/**
 	 * Converts a compact byte representation of a system id
 	 * into a system id object.
@@ -251,14 +271,16 @@ public final class SystemID implements ISerializable {
 	}
 	
 	/**
-	 * Sets the local system id. Warning, this method may only be called
-	 * before the micro broker is booting up.
+	 * Sets the local system id in the context of the calling thread,
+	 * see getLocal. Warning, this method may only be called before the
+	 * micro broker is booting up.
 	 * 
 	 * @param system The byte representation of the local system id.
 	 */
 	public static final void setBytes(byte[] system) {
-		SYSTEM.systemID = system;
-		SYSTEM.rehash();
+		SystemID local = getLocal();
+		local.systemID = system;
+		local.rehash();
 	}
 	
 }
@@ -1,5 +1,8 @@
 package info.pppc.base.system.event;
 
+import info.pppc.base.system.operation.IMonitor;
+import info.pppc.base.system.operation.IOperation;
+import info.pppc.base.system.operation.IOperator;
 import info.pppc.base.system.util.Logging;
 
 import java.util.Vector;
@@ -10,20 +13,54 @@ import java.util.Vector;
  * This includes undo support and type management. Note that each listener can
  * only be registered once per event type.
  * 
+ * The registrations are stored in an array that is copied whenever a 
+ * listener is added or removed. Thus, firing an event does not acquire a
+ * lock and it does not allocate any objects. The convenience methods do
+ * not even create an event if no listener is registered for the type.
+ * If an operator is set, events that cannot be undone are delivered 
+ * asynchronously by the operator in the order in which they are fired.
+ * 
  * @author Marcus Handte
  */
 public final class ListenerBundle {
 
 	/**
-	 * The listeners that have been registered for some events.
+	 * An entry stores a listener together with the types for which it
+	 * is registered. Entries are immutable, a change of the types 
+	 * replaces the entry.
+	 * 
+	 * @author Marcus Handte
 	 */
-	private Vector listeners = new Vector();
+	private static final class Entry {
+		
+		/**
+		 * The listener of the entry.
+		 */
+		private final IListener listener;
+		
+		/**
+		 * The types for which the listener is registered.
+		 */
+		private final int types;
+		
+		/**
+		 * Creates a new entry for the specified listener and types.
+		 * 
+		 * @param listener The listener of the entry.
+		 * @param types The types of the listener.
+		 */
+		public Entry(IListener listener, int types) {
+			this.listener = listener;
+			this.types = types;
+		}
+	}
 
 	/**
-	 * The types for which the corresponding listener (i.e. the listener at the
-	 * same index in the listener vector) is registered.
+	 * The entries of the listeners that have been registered for some 
+	 * events. The array is never modified, instead it is replaced 
+	 * whenever a listener is added or removed.
 	 */
-	private Vector types = new Vector();
+	private volatile Entry[] entries = new Entry[0];
 
 	/**
 	 * The default source object that will be passed to the event constructor
@@ -31,6 +68,48 @@ public final class ListenerBundle {
 	 */
 	private Object source = null;
 
+	/**
+	 * The operator that delivers events asynchronously or null if events 
+	 * are delivered synchronously.
+	 */
+	private IOperator operator = null;
+	
+	/**
+	 * The events that must be delivered asynchronously. Each event is
+	 * followed by a boolean that indicates whether the listeners must be
+	 * notified in reverse order.
+	 */
+	private Vector queue = new Vector();
+	
+	/**
+	 * A flag that indicates whether an operation is delivering the
+	 * events of the queue.
+	 */
+	private boolean delivering = false;
+	
+	/**
+	 * The operation that delivers the events of the queue.
+	 */
+	private IOperation delivery = new IOperation() {
+		public void perform(IMonitor monitor) {
+			while (true) {
+				Event event = null;
+				boolean reverse = false;
+				synchronized (queue) {
+					if (queue.isEmpty()) {
+						delivering = false;
+						return;
+					}
+					event = (Event)queue.elementAt(0);
+					reverse = ((Boolean)queue.elementAt(1)).booleanValue();
+					queue.removeElementAt(1);
+					queue.removeElementAt(0);
+				}
+				deliver(event, reverse);
+			}
+		}
+	};
+
 	/**
 	 * Creates a new bundle that does not have any registered listeners that
 	 * uses the specified default source to create events.
@@ -43,6 +122,72 @@ public final class ListenerBundle {
 		this.source = source;
 	}
 	
+	/**
+	 * Sets the operator that is used to deliver events asynchronously. If
+	 * the operator is set, events that cannot be undone are queued and 
+	 * delivered by a single operation of the operator in the order in which
+	 * they have been fired. Undoable events are always delivered synchronously
+	 * since their status must be returned. Typically, the operator will be
+	 * the invocation broker.
+	 * 
+	 * @param operator The operator that delivers events asynchronously or 
+	 * 	null to deliver events synchronously.
+	 */
+	public void setOperator(IOperator operator) {
+		synchronized (queue) {
+			this.operator = operator;
+		}
+	}
+	
+	/**
+	 * Returns the operator that is used to deliver events asynchronously.
+	 * 
+	 * @return The operator that delivers events or null if events are 
+	 * 	delivered synchronously.
+	 */
+	public IOperator getOperator() {
+		synchronized (queue) {
+			return operator;
+		}
+	}
+	
+	/**
+	 * Returns the index of the entry of the specified listener.
+	 * 
+	 * @param entries The entries to search.
+	 * @param listener The listener to lookup.
+	 * @return The index of the entry or -1 if the listener is not registered.
+	 */
+	private static int indexOf(Entry[] entries, IListener listener) {
+		for (int i = 0; i < entries.length; i++) {
+			if (entries[i].listener.equals(listener)) return i;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Replaces the entry at the specified index with a new entry for the
+	 * specified types or removes the entry if the types are nothing. This 
+	 * method must be called while holding the lock of the bundle.
+	 * 
+	 * @param index The index of the entry to replace.
+	 * @param types The new types of the entry.
+	 */
+	private void replace(int index, int types) {
+		Entry[] current = entries;
+		Entry[] replaced = null;
+		if (types == Event.EVENT_NOTHING) {
+			replaced = new Entry[current.length - 1];
+			System.arraycopy(current, 0, replaced, 0, index);
+			System.arraycopy(current, index + 1, replaced, index, replaced.length - index);
+		} else {
+			replaced = new Entry[current.length];
+			System.arraycopy(current, 0, replaced, 0, current.length);
+			replaced[index] = new Entry(current[index].listener, types);
+		}
+		entries = replaced;
+	}
+	
 	/**
 	 * Registers a specified listener for the specified types. Note that if the
 	 * listener is already registered for one of the types it will not be registered
@@ -55,15 +200,16 @@ public final class ListenerBundle {
 	public void addListener(int type, IListener listener) throws NullPointerException {
 		if (type == Event.EVENT_NOTHING) return;
 		if (listener != null) {
-			synchronized (listeners) {
-				int index = listeners.indexOf(listener);
+			synchronized (this) {
+				Entry[] current = entries;
+				int index = indexOf(current, listener);
 				if (index != -1) {
-					int registered = ((Integer)types.elementAt(index)).intValue();
-					types.removeElementAt(index);
-					types.addElement(new Integer(registered | type));
+					replace(index, current[index].types | type);
 				} else {
-					listeners.addElement(listener);
-					types.addElement(new Integer(type));
+					Entry[] added = new Entry[current.length + 1];
+					System.arraycopy(current, 0, added, 0, current.length);
+					added[current.length] = new Entry(listener, type);
+					entries = added;
 				}
 			}
 		} else {
@@ -73,7 +219,7 @@ public final class ListenerBundle {
 	
 	/**
 	 * Removes the specified listener from the specified types. If the listener
-	 * is no longer registered after the
+	 * is no longer registered after the removal, it is released completely.
 	 * 
 	 * @param type The types of the events that the listener will receive.
 	 * @param listener The listener that will be removed.
@@ -84,22 +230,17 @@ public final class ListenerBundle {
 	public boolean removeListener(int type, IListener listener) throws NullPointerException {
 		if (type == Event.EVENT_NOTHING) return false;
 		if (listener != null) {
-			int index = listeners.indexOf(listener);
-			if (index != -1) {
-				// invert the types and change registration or unregister
-				int registered = ((Integer)types.elementAt(index)).intValue();
-				int newType = ~type & registered;
-				if (newType == Event.EVENT_NOTHING) {
-					types.removeElementAt(index);
-					listeners.removeElementAt(index);
-					return true;
+			synchronized (this) {
+				Entry[] current = entries;
+				int index = indexOf(current, listener);
+				if (index != -1) {
+					// invert the types and change registration or unregister
+					int newType = ~type & current[index].types;
+					replace(index, newType);
+					return (newType == Event.EVENT_NOTHING);
 				} else {
-					types.removeElementAt(index);
-					types.addElement(new Integer(newType));
 					return false;
 				}
-			} else {
-				return false;
 			}
 		} else {
 			throw new RuntimeException("Listener must not be null.");
@@ -116,13 +257,14 @@ public final class ListenerBundle {
 	 */
 	public boolean removeListener(IListener listener) throws NullPointerException {
 		if (listener != null) {
-			int index = listeners.indexOf(listener);
-			if (index != -1) {
-				listeners.removeElementAt(index);
-				types.removeElementAt(index);
-				return true;
-			} else {
-				return false;
+			synchronized (this) {
+				int index = indexOf(entries, listener);
+				if (index != -1) {
+					replace(index, Event.EVENT_NOTHING);
+					return true;
+				} else {
+					return false;
+				}
 			}
 		} else {
 			throw new RuntimeException("Listener must not be null.");
@@ -139,9 +281,10 @@ public final class ListenerBundle {
 	 */
 	public int getTypes(IListener listener) throws NullPointerException {
 		if (listener != null) {
-			int index = listeners.indexOf(listener);
+			Entry[] current = entries;
+			int index = indexOf(current, listener);
 			if (index != -1) {
-				return ((Integer)types.elementAt(index)).intValue();
+				return current[index].types;
 			} else {
 				return Event.EVENT_NOTHING;
 			}
@@ -161,19 +304,35 @@ public final class ListenerBundle {
 	 */
 	public boolean containsListener(IListener listener) throws NullPointerException {
 		if (listener != null) {
-			return listeners.contains(listener);	
+			return indexOf(entries, listener) != -1;	
 		} else {
 			throw new RuntimeException("Listener must not be null.");
 		}
 	}
 	
+	/**
+	 * Determines whether some listener is registered for the specified
+	 * types. This method neither locks nor allocates, thus, it can be 
+	 * used to avoid the creation of events that will not be delivered.
+	 * 
+	 * @param type The types to check.
+	 * @return True if some listener is registered for all specified types.
+	 */
+	public boolean hasListeners(int type) {
+		if (type == Event.EVENT_NOTHING) return false;
+		Entry[] current = entries;
+		for (int i = 0; i < current.length; i++) {
+			if ((current[i].types & type) == type) return true;
+		}
+		return false;
+	}
+	
 	/**
 	 * Removes all listeners from this bundle.
 	 */
 	public void clearListeners() {
-		synchronized (listeners) {
-			listeners.removeAllElements();
-			types.removeAllElements();			
+		synchronized (this) {
+			entries = new Entry[0];
 		}
 	}
 
@@ -189,18 +348,17 @@ public final class ListenerBundle {
 		if (type == Event.EVENT_NOTHING) {
 			return new IListener[0];
 		} else {
-			Vector temp = new Vector();
-			synchronized (listeners) {
-				for (int i = 0, length = listeners.size(); i < length; i++) {
-					int registered = ((Integer)types.elementAt(i)).intValue();
-					if ((registered & type) == type) {
-						temp.addElement(listeners.elementAt(i));	
-					}
-				}
+			Entry[] current = entries;
+			int count = 0;
+			for (int i = 0; i < current.length; i++) {
+				if ((current[i].types & type) == type) count += 1;
 			}
-			IListener[] result = new IListener[temp.size()];
-			for (int i = 0, length = temp.size(); i < length; i++) {
-				result[i] = (IListener)temp.elementAt(i);
+			IListener[] result = new IListener[count];
+			for (int i = 0, j = 0; j < count; i++) {
+				if ((current[i].types & type) == type) {
+					result[j] = current[i].listener;
+					j += 1;
+				}
 			}
 			return result;
 		}
@@ -214,13 +372,12 @@ public final class ListenerBundle {
 	 * 	at this bundle.
 	 */
 	public IListener[] getListeners() {
-		synchronized (listeners) {
-			IListener[] result = new IListener[listeners.size()];
-			for (int i = 0, length = result.length; i < length; i++) {
-				result[i] = (IListener)listeners.elementAt(i);
-			}
-			return result;
+		Entry[] current = entries;
+		IListener[] result = new IListener[current.length];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = current[i].listener;
 		}
+		return result;
 	}
 	
 	/**
@@ -228,7 +385,9 @@ public final class ListenerBundle {
 	 * the method will return the undo status of the event after the listeners
 	 * have been called. If an undoable operation is aborted by some listener
 	 * all listeners that have already processed the event will receive the
-	 * undo operation. The flag can be used to control the ordering.
+	 * undo operation. The flag can be used to control the ordering. If an
+	 * operator has been set, events that cannot be undone are delivered
+	 * asynchronously and the method returns true.
 	 * 
 	 * @param event The event to send to all listeners.
 	 * @param reverse A flag that indicates whether the listeners should be notified
@@ -242,47 +401,70 @@ public final class ListenerBundle {
 	public boolean fireEvent(Event event, boolean reverse) throws NullPointerException {
 		if (event != null) {
 			if (! event.isUndo()) {
-				int type = event.getType();
-				if (type == Event.EVENT_NOTHING) return true;
-				Vector notify = new Vector(); 
-				synchronized (listeners) {
-					for (int i = 0, length = listeners.size(); i < length; i++) {
-						int registered = ((Integer)types.elementAt(i)).intValue();
-						if ((registered & type) == type) {
-							if (reverse) {
-								notify.insertElementAt(listeners.elementAt(i), 0);
-							} else {
-								notify.addElement(listeners.elementAt(i));	
+				if (event.getType() == Event.EVENT_NOTHING) return true;
+				if (! event.isUndoable()) {
+					synchronized (queue) {
+						if (operator != null) {
+							queue.addElement(event);
+							queue.addElement(reverse ? Boolean.TRUE : Boolean.FALSE);
+							if (! delivering) {
+								delivering = true;
+								operator.performOperation(delivery);
 							}
+							return true;
 						}
 					}
 				}
-				for (int i = 0, length = notify.size(); i < length; i++) {
-					IListener listener = (IListener)notify.elementAt(i);
+				return deliver(event, reverse);
+			} else {
+				// event has been aborted before it has been delivered
+				return false;
+			}
+		} else {
+			throw new RuntimeException("Event must not be null.");
+		}
+	}
+	
+	/**
+	 * Delivers the specified event to all listeners that are registered 
+	 * for its type in the calling thread. If some listener aborts the event, 
+	 * all listeners that have already processed the event will receive the
+	 * undo operation in the opposite order.
+	 * 
+	 * @param event The event to deliver.
+	 * @param reverse True to notify the listeners in reverse order.
+	 * @return True if the event has not been aborted, false otherwise.
+	 */
+	private boolean deliver(Event event, boolean reverse) {
+		int type = event.getType();
+		Entry[] current = entries;
+		int length = current.length;
+		for (int i = 0; i < length; i++) {
+			Entry entry = current[reverse ? length - 1 - i : i];
+			if ((entry.types & type) != type) continue;
+			try {
+				entry.listener.handleEvent(event);
+			} catch (Throwable t) {
+				Logging.error(getClass(), "Exception while delivering event.", t);	
+			}
+			// test whether undo has been called
+			if (event.isUndo()) {
+				// notify all previously notified listeners	
+				for (int j = i - 1; j >= 0; j--) {
+					Entry notified = current[reverse ? length - 1 - j : j];
+					if ((notified.types & type) != type) continue;
 					try {
-						listener.handleEvent(event);
+						notified.listener.handleEvent(event);
 					} catch (Throwable t) {
 						Logging.error(getClass(), "Exception while delivering event.", t);	
 					}
-					// test whether undo has been called
-					if (event.isUndo()) {
-						// notify all previously notified listeners	
-						for (int j = i - 1; j >= 0; j++) {
-							listener.handleEvent(event);
-						}
-						// event has been aborted by some listener
-						return false;
-					}
 				}
-				// event delivered successfully
-				return true;			
-			} else {
-				// event has been aborted before it has been delivered
+				// event has been aborted by some listener
 				return false;
 			}
-		} else {
-			throw new RuntimeException("Event must not be null.");
 		}
+		// event delivered successfully
+		return true;
 	}
 
 	/**
@@ -323,6 +505,7 @@ public final class ListenerBundle {
 	 * 	in the order in which they have been registered or in the reverse order.
 	 */
 	public void fireEvent(int type, boolean reverse) {
+		if (! hasListeners(type)) return;
 		fireEvent(new Event(type, source, null, false), reverse);
 	}
 	
@@ -349,6 +532,7 @@ public final class ListenerBundle {
 	 * 	in the order in which they have been registered or in the reverse order.
 	 */
 	public void fireEvent(int type, Object data, boolean reverse) {
+		if (! hasListeners(type)) return;
 		fireEvent(new Event(type, source, data, false), reverse);
 	}
 
@@ -384,6 +568,7 @@ public final class ListenerBundle {
 	 * 	aborted by some listener.
 	 */
 	public boolean fireUndoableEvent(int type, boolean reverse) {
+		if (! hasListeners(type)) return true;
 		return fireEvent(new Event(type, source, null, true), reverse);
 	}
 	
@@ -420,6 +605,7 @@ public final class ListenerBundle {
 	 * 	aborted by some listener.
 	 */
 	public boolean fireUndoableEvent(int type, Object data, boolean reverse) {
-		return fireEvent(new Event(type, source, data, true), false);
+		if (! hasListeners(type)) return true;
+		return fireEvent(new Event(type, source, data, true), reverse);
 	}
 }
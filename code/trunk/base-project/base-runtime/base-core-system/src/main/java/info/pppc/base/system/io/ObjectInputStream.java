@@ -60,6 +60,34 @@ public final class ObjectInputStream extends InputStream implements IObjectInput
 		return stream.read();
 	}
 
+	/**
+	 * Reads up to length bytes from the underlying DataInputStream
+	 * into the buffer.
+	 * 
+	 * @param buffer The buffer to fill.
+	 * @param offset The offset to start from.
+	 * @param length The maximum number of bytes to read.
+	 * @return The number of bytes read or -1 if the end of the stream
+	 * 	has been reached.
+	 * @throws IOException Thrown if the underlying stream throws an
+	 * 	exception.
+	 */
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		return stream.read(buffer, offset, length);
+	}
+
+	/**
+	 * Returns the number of bytes that can be read from the underlying
+	 * DataInputStream without blocking.
+	 * 
+	 * @return The number of bytes that can be read without blocking.
+	 * @throws IOException Thrown if the underlying stream throws an
+	 * 	exception.
+	 */
+	public int available() throws IOException {
+		return stream.available();
+	}
+
 	/**
 	 * Reads an object from the underlying DataInputStream.
 	 * 
@@ -61,6 +61,19 @@ public final class ObjectOutputStream extends OutputStream implements IObjectOut
 		stream.write(i);
 	}
 
+	/**
+	 * Writes the specified bytes to the underlying output stream.
+	 * 
+	 * @param buffer The buffer that contains the bytes.
+	 * @param offset The offset of the first byte.
+	 * @param length The number of bytes to write.
+	 * @throws IOException Thrown if the underlying stream throws an 
+	 * 	exception.
+	 */
+	public void write(byte[] buffer, int offset, int length) throws IOException {
+		stream.write(buffer, offset, length);
+	}
+
 	/**
 	 * Flushes the underlying stream.
 	 * 
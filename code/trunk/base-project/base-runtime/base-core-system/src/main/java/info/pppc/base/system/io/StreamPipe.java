@@ -0,0 +1,439 @@
+package info.pppc.base.system.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The stream pipe connects an output stream with an input stream
+ * within the same process. In contrast to the stream buffer, the
+ * pipe supports bulk reads and writes that copy whole array regions
+ * at once and it only notifies waiting threads when the state of
+ * the pipe changes between empty, partially filled and full.
+ * Apart from copying data into the ring buffer of the pipe, a writer
+ * may also hand off complete byte arrays using the handoff method of
+ * the output stream. In this case, the array is passed to the reader
+ * without copying it and the writer must not modify the array after
+ * the call returns.
+ *
+ * @author Mac
+ */
+public class StreamPipe {
+
+	/**
+	 * The input stream of the pipe. Apart from the methods of a
+	 * normal input stream, it provides a method to retrieve a
+	 * handed off chunk without copying it.
+	 *
+	 * @author Mac
+	 */
+	public class PipeInputStream extends InputStream {
+
+		/**
+		 * Creates a new input stream for the pipe.
+		 */
+		protected PipeInputStream() { }
+
+		/**
+		 * Reads a single byte from the pipe.
+		 *
+		 * @return The byte or -1 if the pipe has been closed and
+		 * 	all data has been read.
+		 * @throws IOException Thrown if the thread got interrupted.
+		 */
+		public int read() throws IOException {
+			synchronized (StreamPipe.this) {
+				if (! await()) return -1;
+				int result;
+				if (available != 0) {
+					result = buffer[read] & 0xff;
+					read += 1;
+					if (read == buffer.length) read = 0;
+					available -= 1;
+					if (available == buffer.length - 1 || available == 0) {
+						StreamPipe.this.notifyAll();
+					}
+				} else {
+					result = chunk[chunkOffset] & 0xff;
+					consumeChunk(1);
+				}
+				return result;
+			}
+		}
+
+		/**
+		 * Reads up to length bytes from the pipe into the specified
+		 * buffer. The method blocks until at least one byte is available.
+		 *
+		 * @param b The buffer to fill.
+		 * @param off The offset in the buffer.
+		 * @param len The maximum number of bytes to read.
+		 * @return The number of bytes read or -1 if the pipe has been
+		 * 	closed and all data has been read.
+		 * @throws IOException Thrown if the thread got interrupted.
+		 */
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (off < 0 || len < 0 || off + len > b.length)
+				throw new IndexOutOfBoundsException();
+			if (len == 0) return 0;
+			synchronized (StreamPipe.this) {
+				if (! await()) return -1;
+				if (available != 0) {
+					boolean full = (available == buffer.length);
+					int total = 0;
+					while (available != 0 && len != 0) {
+						int copy = Math.min(Math.min(len, available), buffer.length - read);
+						System.arraycopy(buffer, read, b, off, copy);
+						read += copy;
+						if (read == buffer.length) read = 0;
+						available -= copy;
+						off += copy;
+						len -= copy;
+						total += copy;
+					}
+					if (full || available == 0) {
+						StreamPipe.this.notifyAll();
+					}
+					return total;
+				} else {
+					int copy = Math.min(len, chunkLength);
+					System.arraycopy(chunk, chunkOffset, b, off, copy);
+					consumeChunk(copy);
+					return copy;
+				}
+			}
+		}
+
+		/**
+		 * Returns the next chunk of data without copying it. If the
+		 * next data in the pipe has been handed off by the writer, the
+		 * remainder of the handed off array is returned as is. Otherwise,
+		 * the bytes that are currently buffered are returned in a new
+		 * array. The method blocks until data is available.
+		 *
+		 * @return The next chunk of data or null if the pipe has been
+		 * 	closed and all data has been read.
+		 * @throws IOException Thrown if the thread got interrupted.
+		 */
+		public byte[] readChunk() throws IOException {
+			synchronized (StreamPipe.this) {
+				if (! await()) return null;
+				if (available == 0 && chunkOffset == 0 && chunkLength == chunk.length) {
+					byte[] result = chunk;
+					consumeChunk(chunkLength);
+					return result;
+				}
+			}
+			byte[] result = new byte[Math.max(1, available())];
+			int length = read(result, 0, result.length);
+			if (length == -1) return null;
+			if (length == result.length) return result;
+			byte[] copy = new byte[length];
+			System.arraycopy(result, 0, copy, 0, length);
+			return copy;
+		}
+
+		/**
+		 * Returns the number of bytes that can be read without blocking.
+		 *
+		 * @return The number of bytes that can be read without blocking.
+		 */
+		public int available() {
+			synchronized (StreamPipe.this) {
+				return available + chunkLength;
+			}
+		}
+
+		/**
+		 * Closes the pipe.
+		 */
+		public void close() {
+			StreamPipe.this.close();
+		}
+
+	}
+
+	/**
+	 * The output stream of the pipe. Apart from the methods of a
+	 * normal output stream, it provides a method to hand off a
+	 * complete array to the reader without copying it.
+	 *
+	 * @author Mac
+	 */
+	public class PipeOutputStream extends OutputStream {
+
+		/**
+		 * Creates a new output stream for the pipe.
+		 */
+		protected PipeOutputStream() { }
+
+		/**
+		 * Writes a single byte to the pipe.
+		 *
+		 * @param b The byte to write.
+		 * @throws IOException Thrown if the pipe has been closed or
+		 * 	if the thread got interrupted.
+		 */
+		public void write(int b) throws IOException {
+			synchronized (StreamPipe.this) {
+				awaitSpace();
+				buffer[write] = (byte)b;
+				write += 1;
+				if (write == buffer.length) write = 0;
+				available += 1;
+				if (available == 1) {
+					StreamPipe.this.notifyAll();
+				}
+			}
+		}
+
+		/**
+		 * Writes the specified bytes to the pipe. The method blocks
+		 * until all bytes have been copied into the pipe.
+		 *
+		 * @param b The buffer that contains the bytes.
+		 * @param off The offset of the first byte.
+		 * @param len The number of bytes to write.
+		 * @throws IOException Thrown if the pipe has been closed or
+		 * 	if the thread got interrupted.
+		 */
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (off < 0 || len < 0 || off + len > b.length)
+				throw new IndexOutOfBoundsException();
+			synchronized (StreamPipe.this) {
+				while (len > 0) {
+					awaitSpace();
+					boolean empty = (available == 0);
+					while (available != buffer.length && len != 0) {
+						int copy = Math.min(Math.min(len, buffer.length - available), buffer.length - write);
+						System.arraycopy(b, off, buffer, write, copy);
+						write += copy;
+						if (write == buffer.length) write = 0;
+						available += copy;
+						off += copy;
+						len -= copy;
+					}
+					if (empty) {
+						StreamPipe.this.notifyAll();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Hands off the specified region of the array to the reader
+		 * without copying it. The caller must not modify the array
+		 * after this method has been called. The method returns as
+		 * soon as the array has been queued, i.e., it does not wait
+		 * until the reader has consumed the data.
+		 *
+		 * @param b The array to hand off.
+		 * @param off The offset of the first byte.
+		 * @param len The number of bytes to hand off.
+		 * @throws IOException Thrown if the pipe has been closed or
+		 * 	if the thread got interrupted.
+		 */
+		public void handoff(byte[] b, int off, int len) throws IOException {
+			if (off < 0 || len < 0 || off + len > b.length)
+				throw new IndexOutOfBoundsException();
+			if (len == 0) return;
+			synchronized (StreamPipe.this) {
+				while (available != 0 || chunk != null) {
+					if (closed)
+						throw new IOException("Stream pipe closed.");
+					try {
+						StreamPipe.this.wait();
+					} catch (InterruptedException e) {
+						throw new IOException("Thread got interrupted.");
+					}
+				}
+				if (closed)
+					throw new IOException("Stream pipe closed.");
+				chunk = b;
+				chunkOffset = off;
+				chunkLength = len;
+				StreamPipe.this.notifyAll();
+			}
+		}
+
+		/**
+		 * Closes the pipe.
+		 */
+		public void close() {
+			StreamPipe.this.close();
+		}
+
+	}
+
+	/**
+	 * The default capacity of the ring buffer of a pipe.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * The current position for reading.
+	 */
+	private int read = 0;
+
+	/**
+	 * The number of available bytes in the ring buffer.
+	 */
+	private int available = 0;
+
+	/**
+	 * The current position for writing.
+	 */
+	private int write = 0;
+
+	/**
+	 * A flag that indicates whether the pipe is closed.
+	 */
+	private boolean closed = false;
+
+	/**
+	 * The ring buffer that is read and written.
+	 */
+	private byte[] buffer;
+
+	/**
+	 * The chunk that has been handed off by the writer or null
+	 * if there is none.
+	 */
+	private byte[] chunk;
+
+	/**
+	 * The offset of the next unread byte in the chunk.
+	 */
+	private int chunkOffset;
+
+	/**
+	 * The number of unread bytes in the chunk.
+	 */
+	private int chunkLength;
+
+	/**
+	 * The input stream that reads from the pipe.
+	 */
+	private PipeInputStream input = new PipeInputStream();
+
+	/**
+	 * The output stream that writes to the pipe.
+	 */
+	private PipeOutputStream output = new PipeOutputStream();
+
+	/**
+	 * Creates a new stream pipe with the default capacity.
+	 */
+	public StreamPipe() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new stream pipe whose ring buffer has the
+	 * specified capacity.
+	 *
+	 * @param capacity The capacity of the ring buffer in bytes.
+	 */
+	public StreamPipe(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive.");
+		buffer = new byte[capacity];
+	}
+
+	/**
+	 * Waits until there is data to read. Must be called while holding
+	 * the monitor of the pipe.
+	 *
+	 * @return True if there is data, false if the pipe has been closed
+	 * 	and all data has been consumed.
+	 * @throws IOException Thrown if the thread got interrupted.
+	 */
+	private boolean await() throws IOException {
+		while (available == 0 && chunk == null) {
+			if (closed) return false;
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				throw new IOException("Thread got interrupted.");
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Waits until there is space in the ring buffer and no handed off
+	 * chunk is pending. Must be called while holding the monitor of
+	 * the pipe.
+	 *
+	 * @throws IOException Thrown if the pipe has been closed or if the
+	 * 	thread got interrupted.
+	 */
+	private void awaitSpace() throws IOException {
+		while (available == buffer.length || chunk != null) {
+			if (closed)
+				throw new IOException("Stream pipe closed.");
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				throw new IOException("Thread got interrupted.");
+			}
+		}
+		if (closed)
+			throw new IOException("Stream pipe closed.");
+	}
+
+	/**
+	 * Marks the specified number of bytes of the current chunk as read
+	 * and releases the chunk if it has been read completely. Must be
+	 * called while holding the monitor of the pipe.
+	 *
+	 * @param length The number of bytes that have been read.
+	 */
+	private void consumeChunk(int length) {
+		chunkOffset += length;
+		chunkLength -= length;
+		if (chunkLength == 0) {
+			chunk = null;
+			chunkOffset = 0;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Closes the pipe. Subsequent writes will fail, reads will
+	 * return the remaining data and signal the end of the stream
+	 * afterwards.
+	 */
+	public synchronized void close() {
+		closed = true;
+		notifyAll();
+	}
+
+	/**
+	 * Returns the capacity of the ring buffer.
+	 *
+	 * @return The capacity of the ring buffer.
+	 */
+	public int getCapacity() {
+		return buffer.length;
+	}
+
+	/**
+	 * Returns the input stream.
+	 *
+	 * @return The input stream.
+	 */
+	public PipeInputStream getInputStream() {
+		return input;
+	}
+
+	/**
+	 * Returns the output stream.
+	 *
+	 * @return The output stream.
+	 */
+	public PipeOutputStream getOutputStream() {
+		return output;
+	}
+
+}
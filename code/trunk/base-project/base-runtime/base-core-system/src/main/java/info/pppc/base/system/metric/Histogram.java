@@ -0,0 +1,240 @@
+package info.pppc.base.system.metric;
+
+/**
+ * A histogram records the distribution of non-negative values using a
+ * fixed number of buckets. Similar to high dynamic range histograms, the
+ * buckets are logarithmic with a linear subdivision. Values below 8 are
+ * recorded exactly and larger values are recorded with a relative error
+ * of at most 12.5 percent. Values that exceed the range of integers are
+ * recorded in the last bucket. Thus, the memory requirements of the
+ * histogram are constant and recording a value does not allocate any
+ * objects.
+ *
+ * @author Mac
+ */
+public final class Histogram {
+
+	/**
+	 * The number of bits that are used for the linear subdivision.
+	 */
+	private static final int SUB_BITS = 3;
+
+	/**
+	 * The number of linear buckets per power of two.
+	 */
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+
+	/**
+	 * The number of buckets of the histogram.
+	 */
+	private static final int BUCKETS = SUB_COUNT + (31 - SUB_BITS) * SUB_COUNT;
+
+	/**
+	 * The number of values recorded in each bucket.
+	 */
+	private long[] counts = new long[BUCKETS];
+
+	/**
+	 * The number of recorded values.
+	 */
+	private long count = 0;
+
+	/**
+	 * The sum of the recorded values.
+	 */
+	private long sum = 0;
+
+	/**
+	 * The minimum recorded value.
+	 */
+	private long minimum = Long.MAX_VALUE;
+
+	/**
+	 * The maximum recorded value.
+	 */
+	private long maximum = 0;
+
+	/**
+	 * Creates a new empty histogram.
+	 */
+	public Histogram() {
+		super();
+	}
+
+	/**
+	 * Records the specified value. Negative values are recorded as 0.
+	 *
+	 * @param value The value to record.
+	 */
+	public synchronized void record(long value) {
+		if (value < 0) value = 0;
+		counts[index(value)] += 1;
+		count += 1;
+		sum += value;
+		if (value < minimum) minimum = value;
+		if (value > maximum) maximum = value;
+	}
+
+	/**
+	 * Returns the number of recorded values.
+	 *
+	 * @return The number of recorded values.
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the sum of the recorded values.
+	 *
+	 * @return The sum of the recorded values.
+	 */
+	public synchronized long getSum() {
+		return sum;
+	}
+
+	/**
+	 * Returns the minimum recorded value.
+	 *
+	 * @return The minimum value or 0 if no value has been recorded.
+	 */
+	public synchronized long getMinimum() {
+		return (count == 0) ? 0 : minimum;
+	}
+
+	/**
+	 * Returns the maximum recorded value.
+	 *
+	 * @return The maximum value or 0 if no value has been recorded.
+	 */
+	public synchronized long getMaximum() {
+		return maximum;
+	}
+
+	/**
+	 * Returns the mean of the recorded values.
+	 *
+	 * @return The mean or 0 if no value has been recorded.
+	 */
+	public synchronized double getMean() {
+		return (count == 0) ? 0 : (double)sum / count;
+	}
+
+	/**
+	 * Returns the value below which the specified percentage of the
+	 * recorded values lie. The result is the largest value that is
+	 * recorded in the same bucket as the percentile, limited by the
+	 * maximum.
+	 *
+	 * @param percentile The percentile between 0 and 100.
+	 * @return The value at the percentile or 0 if no value has been
+	 * 	recorded.
+	 */
+	public synchronized long getPercentile(double percentile) {
+		if (count == 0) return 0;
+		if (percentile < 0) percentile = 0;
+		if (percentile > 100) percentile = 100;
+		long target = (long)Math.ceil(percentile * count / 100);
+		if (target < 1) target = 1;
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= target) {
+				long upper = (i == BUCKETS - 1) ? maximum : lower(i + 1) - 1;
+				return Math.min(upper, maximum);
+			}
+		}
+		return maximum;
+	}
+
+	/**
+	 * Adds the values of the specified histogram to this histogram.
+	 *
+	 * @param histogram The histogram to add.
+	 */
+	public void add(Histogram histogram) {
+		Histogram copy = histogram.copy();
+		synchronized (this) {
+			for (int i = 0; i < BUCKETS; i++) {
+				counts[i] += copy.counts[i];
+			}
+			if (copy.count != 0) {
+				if (copy.minimum < minimum) minimum = copy.minimum;
+				if (copy.maximum > maximum) maximum = copy.maximum;
+			}
+			count += copy.count;
+			sum += copy.sum;
+		}
+	}
+
+	/**
+	 * Removes all recorded values.
+	 */
+	public synchronized void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = 0;
+		}
+		count = 0;
+		sum = 0;
+		minimum = Long.MAX_VALUE;
+		maximum = 0;
+	}
+
+	/**
+	 * Returns a copy of the histogram.
+	 *
+	 * @return A copy of the histogram.
+	 */
+	public synchronized Histogram copy() {
+		Histogram h = new Histogram();
+		System.arraycopy(counts, 0, h.counts, 0, BUCKETS);
+		h.count = count;
+		h.sum = sum;
+		h.minimum = minimum;
+		h.maximum = maximum;
+		return h;
+	}
+
+	/**
+	 * Returns the index of the bucket of the specified value.
+	 *
+	 * @param value The non-negative value.
+	 * @return The index of the bucket.
+	 */
+	private static int index(long value) {
+		if (value < SUB_COUNT) return (int)value;
+		if (value > Integer.MAX_VALUE) return BUCKETS - 1;
+		int v = (int)value;
+		int exponent = 31;
+		while ((v & (1 << (exponent - 1))) == 0) {
+			exponent -= 1;
+		}
+		// exponent is the number of significant bits
+		int shift = exponent - 1 - SUB_BITS;
+		return SUB_COUNT + shift * SUB_COUNT + ((v >> shift) & (SUB_COUNT - 1));
+	}
+
+	/**
+	 * Returns the smallest value that is recorded in the specified bucket.
+	 *
+	 * @param index The index of the bucket.
+	 * @return The smallest value of the bucket.
+	 */
+	private static long lower(int index) {
+		if (index < SUB_COUNT) return index;
+		int shift = (index - SUB_COUNT) / SUB_COUNT;
+		int sub = (index - SUB_COUNT) % SUB_COUNT;
+		return ((long)(SUB_COUNT + sub)) << shift;
+	}
+
+	/**
+	 * Returns a string representation of the histogram.
+	 *
+	 * @return A string representation.
+	 */
+	public synchronized String toString() {
+		return "count=" + count + " min=" + getMinimum() + " mean=" + (long)getMean()
+			+ " p50=" + getPercentile(50) + " p99=" + getPercentile(99) + " max=" + maximum;
+	}
+
+}
@@ -0,0 +1,249 @@
+package info.pppc.base.system.metric;
+
+import info.pppc.base.system.plugin.IPlugin;
+import info.pppc.base.system.plugin.IStreamConnector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The metered connector is a thin wrapper around a stream connector that
+ * counts the bytes that are read from and written to the streams of the
+ * connector. The counts are added to a metric. All other calls are
+ * forwarded to the wrapped connector.
+ *
+ * @author Mac
+ */
+public final class MeteredConnector implements IStreamConnector {
+
+	/**
+	 * The input stream that counts the bytes that are read.
+	 *
+	 * @author Mac
+	 */
+	private class MeteredInputStream extends InputStream {
+
+		/**
+		 * The stream that is wrapped.
+		 */
+		private InputStream input;
+
+		/**
+		 * Creates a new stream that wraps the specified stream.
+		 *
+		 * @param input The stream to wrap.
+		 */
+		public MeteredInputStream(InputStream input) {
+			this.input = input;
+		}
+
+		/**
+		 * Reads a single byte.
+		 *
+		 * @return The byte or -1 if the end of the stream is reached.
+		 * @throws IOException Thrown by the wrapped stream.
+		 */
+		public int read() throws IOException {
+			int b = input.read();
+			if (b != -1) metric.read(1);
+			return b;
+		}
+
+		/**
+		 * Reads a number of bytes into the buffer.
+		 *
+		 * @param b The buffer to read into.
+		 * @param off The offset to start at.
+		 * @param len The maximum number of bytes to read.
+		 * @return The number of bytes read or -1 if the end of the stream
+		 * 	is reached.
+		 * @throws IOException Thrown by the wrapped stream.
+		 */
+		public int read(byte[] b, int off, int len) throws IOException {
+			int r = input.read(b, off, len);
+			if (r > 0) metric.read(r);
+			return r;
+		}
+
+		/**
+		 * Returns the number of bytes that can be read without blocking.
+		 *
+		 * @return The number of available bytes.
+		 * @throws IOException Thrown by the wrapped stream.
+		 */
+		public int available() throws IOException {
+			return input.available();
+		}
+
+		/**
+		 * Closes the wrapped stream.
+		 *
+		 * @throws IOException Thrown by the wrapped stream.
+		 */
+		public void close() throws IOException {
+			input.close();
+		}
+
+	}
+
+	/**
+	 * The output stream that counts the bytes that are written.
+	 *
+	 * @author Mac
+	 */
+	private class MeteredOutputStream extends OutputStream {
+
+		/**
+		 * The stream that is wrapped.
+		 */
+		private OutputStream output;
+
+		/**
+		 * Creates a new stream that wraps the specified stream.
+		 *
+		 * @param output The stream to wrap.
+		 */
+		public MeteredOutputStream(OutputStream output) {
+			this.output = output;
+		}
+
+		/**
+		 * Writes a single byte.
+		 *
+		 * @param b The byte to write.
+		 * @throws IOException Thrown by the wrapped stream.
+		 */
+		public void write(int b) throws IOException {
+			output.write(b);
+			metric.written(1);
+		}
+
+		/**
+		 * Writes a number of bytes from the buffer.
+		 *
+		 * @param b The buffer to write from.
+		 * @param off The offset to start at.
+		 * @param len The number of bytes to write.
+		 * @throws IOException Thrown by the wrapped stream.
+		 */
+		public void write(byte[] b, int off, int len) throws IOException {
+			output.write(b, off, len);
+			metric.written(len);
+		}
+
+		/**
+		 * Flushes the wrapped stream.
+		 *
+		 * @throws IOException Thrown by the wrapped stream.
+		 */
+		public void flush() throws IOException {
+			output.flush();
+		}
+
+		/**
+		 * Closes the wrapped stream.
+		 *
+		 * @throws IOException Thrown by the wrapped stream.
+		 */
+		public void close() throws IOException {
+			output.close();
+		}
+
+	}
+
+	/**
+	 * The connector that is wrapped.
+	 */
+	private IStreamConnector connector;
+
+	/**
+	 * The metric that receives the counts.
+	 */
+	private Metric metric;
+
+	/**
+	 * The input stream of the connector, created lazily.
+	 */
+	private InputStream input;
+
+	/**
+	 * The output stream of the connector, created lazily.
+	 */
+	private OutputStream output;
+
+	/**
+	 * Creates a new metered connector that wraps the specified connector
+	 * and adds its counts to the specified metric.
+	 *
+	 * @param connector The connector to wrap.
+	 * @param metric The metric that receives the counts.
+	 */
+	public MeteredConnector(IStreamConnector connector, Metric metric) {
+		this.connector = connector;
+		this.metric = metric;
+	}
+
+	/**
+	 * Returns the connector that is wrapped.
+	 *
+	 * @return The wrapped connector.
+	 */
+	public IStreamConnector getConnector() {
+		return connector;
+	}
+
+	/**
+	 * Returns the metric that receives the counts.
+	 *
+	 * @return The metric of the connector.
+	 */
+	public Metric getMetric() {
+		return metric;
+	}
+
+	/**
+	 * Returns a counting input stream that wraps the stream of the
+	 * wrapped connector.
+	 *
+	 * @return The input stream of the connector.
+	 * @throws IOException Thrown by the wrapped connector.
+	 */
+	public synchronized InputStream getInputStream() throws IOException {
+		if (input == null) {
+			input = new MeteredInputStream(connector.getInputStream());
+		}
+		return input;
+	}
+
+	/**
+	 * Returns a counting output stream that wraps the stream of the
+	 * wrapped connector.
+	 *
+	 * @return The output stream of the connector.
+	 * @throws IOException Thrown by the wrapped connector.
+	 */
+	public synchronized OutputStream getOutputStream() throws IOException {
+		if (output == null) {
+			output = new MeteredOutputStream(connector.getOutputStream());
+		}
+		return output;
+	}
+
+	/**
+	 * Releases the wrapped connector.
+	 */
+	public void release() {
+		connector.release();
+	}
+
+	/**
+	 * Returns the plug-in of the wrapped connector.
+	 *
+	 * @return The plug-in of the wrapped connector.
+	 */
+	public IPlugin getPlugin() {
+		return connector.getPlugin();
+	}
+
+}
@@ -0,0 +1,240 @@
+package info.pppc.base.system.metric;
+
+import info.pppc.base.system.SystemID;
+
+/**
+ * A metric records the latency and throughput of a single layer for a
+ * single peer. A layer is identified by the ability of the plug-in or
+ * by one of the pseudo abilities that are defined by the registry. The
+ * metric counts the number of sessions or invocations, the number of
+ * failures and the number of bytes read and written. The latency is
+ * recorded in milliseconds using a histogram.
+ *
+ * @author Mac
+ */
+public final class Metric {
+
+	/**
+	 * The ability of the layer that is measured.
+	 */
+	private short ability;
+
+	/**
+	 * The peer that is measured.
+	 */
+	private SystemID system;
+
+	/**
+	 * The number of sessions or invocations that have been opened.
+	 */
+	private long opened;
+
+	/**
+	 * The number of sessions or invocations that have failed.
+	 */
+	private long failed;
+
+	/**
+	 * The number of bytes that have been read.
+	 */
+	private long read;
+
+	/**
+	 * The number of bytes that have been written.
+	 */
+	private long written;
+
+	/**
+	 * The histogram that records the latency.
+	 */
+	private Histogram latency = new Histogram();
+
+	/**
+	 * Creates a new metric for the specified layer and peer.
+	 *
+	 * @param ability The ability of the layer.
+	 * @param system The system of the peer.
+	 */
+	public Metric(short ability, SystemID system) {
+		this.ability = ability;
+		this.system = system;
+	}
+
+	/**
+	 * Returns the ability of the layer that is measured.
+	 *
+	 * @return The ability of the layer.
+	 */
+	public short getAbility() {
+		return ability;
+	}
+
+	/**
+	 * Returns the system of the peer that is measured.
+	 *
+	 * @return The system of the peer.
+	 */
+	public SystemID getSystem() {
+		return system;
+	}
+
+	/**
+	 * Records a successful session or invocation with the specified
+	 * latency.
+	 *
+	 * @param millis The latency in milliseconds.
+	 */
+	public void record(long millis) {
+		synchronized (this) {
+			opened += 1;
+		}
+		latency.record(millis);
+	}
+
+	/**
+	 * Records a failed session or invocation.
+	 */
+	public synchronized void fail() {
+		opened += 1;
+		failed += 1;
+	}
+
+	/**
+	 * Adds the specified number of bytes to the bytes read.
+	 *
+	 * @param bytes The number of bytes that have been read.
+	 */
+	public synchronized void read(long bytes) {
+		read += bytes;
+	}
+
+	/**
+	 * Adds the specified number of bytes to the bytes written.
+	 *
+	 * @param bytes The number of bytes that have been written.
+	 */
+	public synchronized void written(long bytes) {
+		written += bytes;
+	}
+
+	/**
+	 * Returns the number of sessions or invocations, including the
+	 * failed ones.
+	 *
+	 * @return The number of sessions or invocations.
+	 */
+	public synchronized long getOpened() {
+		return opened;
+	}
+
+	/**
+	 * Returns the number of failed sessions or invocations.
+	 *
+	 * @return The number of failures.
+	 */
+	public synchronized long getFailed() {
+		return failed;
+	}
+
+	/**
+	 * Returns the number of bytes that have been read.
+	 *
+	 * @return The number of bytes read.
+	 */
+	public synchronized long getRead() {
+		return read;
+	}
+
+	/**
+	 * Returns the number of bytes that have been written.
+	 *
+	 * @return The number of bytes written.
+	 */
+	public synchronized long getWritten() {
+		return written;
+	}
+
+	/**
+	 * Returns the histogram that records the latency in milliseconds.
+	 *
+	 * @return The latency histogram.
+	 */
+	public Histogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * Resets all counters and the latency histogram.
+	 */
+	public void reset() {
+		synchronized (this) {
+			opened = 0;
+			failed = 0;
+			read = 0;
+			written = 0;
+		}
+		latency.reset();
+	}
+
+	/**
+	 * Adds the counters and the latencies of the specified metric to
+	 * this metric.
+	 *
+	 * @param metric The metric to add.
+	 */
+	public void add(Metric metric) {
+		Metric copy = metric.copy();
+		synchronized (this) {
+			opened += copy.opened;
+			failed += copy.failed;
+			read += copy.read;
+			written += copy.written;
+		}
+		latency.add(copy.latency);
+	}
+
+	/**
+	 * Returns a copy of the metric that is no longer updated.
+	 *
+	 * @return A copy of the metric.
+	 */
+	public Metric copy() {
+		Metric m = new Metric(ability, system);
+		synchronized (this) {
+			m.opened = opened;
+			m.failed = failed;
+			m.read = read;
+			m.written = written;
+		}
+		m.latency = latency.copy();
+		return m;
+	}
+
+	/**
+	 * Returns a string representation of the metric.
+	 *
+	 * @return A string representation.
+	 */
+	public String toString() {
+		StringBuffer b = new StringBuffer();
+		b.append("ABILITY (");
+		b.append(ability);
+		b.append(") SYSTEM (");
+		b.append(system);
+		synchronized (this) {
+			b.append(") OPENED (");
+			b.append(opened);
+			b.append(") FAILED (");
+			b.append(failed);
+			b.append(") READ (");
+			b.append(read);
+			b.append(") WRITTEN (");
+			b.append(written);
+		}
+		b.append(") LATENCY (");
+		b.append(latency.toString());
+		b.append(")");
+		return b.toString();
+	}
+
+}
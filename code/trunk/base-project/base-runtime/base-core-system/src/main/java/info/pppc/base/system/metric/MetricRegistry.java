@@ -0,0 +1,435 @@
+package info.pppc.base.system.metric;
+
+import info.pppc.base.system.SystemID;
+import info.pppc.base.system.event.IListener;
+import info.pppc.base.system.event.ListenerBundle;
+import info.pppc.base.system.operation.IMonitor;
+import info.pppc.base.system.operation.IOperation;
+import info.pppc.base.system.operation.IOperator;
+import info.pppc.base.system.operation.NullMonitor;
+
+import java.util.Vector;
+
+/**
+ * The metric registry maintains the metrics of the different layers of
+ * the system. For each layer, the registry maintains one metric per peer.
+ * Layers are identified by the ability of the plug-in that implements
+ * them. The invocation broker uses the pseudo abilities defined by this
+ * class to record the latency of outgoing and incoming invocations.
+ * Metrics can be pulled from the registry at any time. Alternatively,
+ * listeners can register for periodic snapshots. A disabled registry
+ * does not create metrics, thus, the overhead of recording is limited
+ * to a single check. The metrics are kept in a hash table with open
+ * addressing that is copied whenever a metric is added or removed. 
+ * Thus, looking up an existing metric neither allocates objects nor 
+ * acquires locks. When a system leaves, its metrics are added to a 
+ * metric of the layer that has no system.
+ *
+ * @author Mac
+ */
+public final class MetricRegistry implements IOperation {
+
+	/**
+	 * The event constant that is used to deliver periodic snapshots. The
+	 * source object will be the registry and the data object will be an
+	 * array of copies of all metrics.
+	 */
+	public static final int EVENT_METRIC_SNAPSHOT = 1;
+
+	/**
+	 * The pseudo ability that denotes the end-to-end latency of outgoing
+	 * invocations. The peer is the target system of the invocation.
+	 */
+	public static final short ABILITY_INVOCATION = -1;
+
+	/**
+	 * The pseudo ability that denotes the latency of dispatching incoming
+	 * invocations to their handler. The peer is the source system of the
+	 * invocation.
+	 */
+	public static final short ABILITY_DISPATCH = -2;
+
+	/**
+	 * The default period between two snapshots in milliseconds.
+	 */
+	public static final long DEFAULT_PERIOD = 10000;
+
+	/**
+	 * The operator that is used to deliver periodic snapshots.
+	 */
+	private IOperator operator;
+
+	/**
+	 * The listeners that receive periodic snapshots.
+	 */
+	private ListenerBundle listeners = new ListenerBundle(this);
+
+	/**
+	 * The initial size of the table of metrics. This must be a power 
+	 * of two.
+	 */
+	private static final int INITIAL_SIZE = 16;
+
+	/**
+	 * The hash table of metrics with open addressing. The table is never
+	 * modified after it has been published, instead, it is replaced by a
+	 * modified copy.
+	 */
+	private volatile Metric[] metrics = new Metric[INITIAL_SIZE];
+
+	/**
+	 * The number of metrics contained in the table.
+	 */
+	private int size = 0;
+
+	/**
+	 * A flag that indicates whether metrics are recorded.
+	 */
+	private volatile boolean enabled = false;
+
+	/**
+	 * The period between two snapshots in milliseconds.
+	 */
+	private long period = DEFAULT_PERIOD;
+
+	/**
+	 * The monitor of the operation that delivers snapshots or null if
+	 * the operation is not running.
+	 */
+	private IMonitor monitor;
+
+	/**
+	 * Creates a new metric registry that uses the specified operator to
+	 * deliver periodic snapshots.
+	 *
+	 * @param operator The operator used to deliver snapshots.
+	 */
+	public MetricRegistry(IOperator operator) {
+		this.operator = operator;
+	}
+
+	/**
+	 * Enables or disables the recording of metrics. Disabling the
+	 * registry does not remove the metrics that have been recorded.
+	 *
+	 * @param enabled True to record metrics, false to stop recording.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Determines whether metrics are recorded.
+	 *
+	 * @return True if metrics are recorded, false otherwise.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets the period between two snapshots.
+	 *
+	 * @param period The period in milliseconds, must be positive.
+	 */
+	public synchronized void setPeriod(long period) {
+		if (period <= 0) throw new IllegalArgumentException("Period must be positive.");
+		this.period = period;
+		notifyAll();
+	}
+
+	/**
+	 * Returns the period between two snapshots.
+	 *
+	 * @return The period in milliseconds.
+	 */
+	public synchronized long getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Returns the metric for the specified layer and peer. If the
+	 * registry is enabled and the metric does not exist, it will be
+	 * created. Looking up an existing metric does not allocate objects
+	 * and it does not acquire any locks.
+	 *
+	 * @param ability The ability of the layer.
+	 * @param system The system of the peer.
+	 * @return The metric for the layer and peer or null if the registry
+	 * 	is disabled.
+	 */
+	public Metric getMetric(short ability, SystemID system) {
+		if (! enabled) return null;
+		Metric metric = find(metrics, ability, system);
+		if (metric != null) return metric;
+		synchronized (this) {
+			metric = find(metrics, ability, system);
+			if (metric == null) {
+				metric = new Metric(ability, system);
+				int length = metrics.length;
+				if ((size + 1) * 2 > length) {
+					length *= 2;
+				}
+				Metric[] table = copy(metrics, length, null);
+				insert(table, metric);
+				size += 1;
+				metrics = table;
+			}
+			return metric;
+		}
+	}
+
+	/**
+	 * Removes the metrics of the specified system. The counters and the
+	 * latencies of the removed metrics are added to the metric of the 
+	 * same layer that has no system. This is called by the invocation 
+	 * broker when a system leaves in order to bound the number of metrics.
+	 *
+	 * @param system The system whose metrics shall be removed.
+	 */
+	public synchronized void removeSystem(SystemID system) {
+		if (system == null) return;
+		Metric[] table = metrics;
+		boolean found = false;
+		for (int i = 0; i < table.length && ! found; i++) {
+			found = (table[i] != null && system.equals(table[i].getSystem()));
+		}
+		if (! found) return;
+		table = copy(table, table.length, system);
+		for (int i = 0; i < metrics.length; i++) {
+			Metric removed = metrics[i];
+			if (removed != null && system.equals(removed.getSystem())) {
+				Metric departed = find(table, removed.getAbility(), null);
+				if (departed == null) {
+					departed = new Metric(removed.getAbility(), null);
+					insert(table, departed);
+				}
+				departed.add(removed);
+			}
+		}
+		size = 0;
+		for (int i = 0; i < table.length; i++) {
+			if (table[i] != null) size += 1;
+		}
+		metrics = table;
+	}
+
+	/**
+	 * Returns the abilities of all layers that have recorded metrics.
+	 *
+	 * @return The abilities of all layers with metrics.
+	 */
+	public short[] getAbilities() {
+		Metric[] table = metrics;
+		short[] abilities = new short[table.length];
+		int count = 0;
+		for (int i = 0; i < table.length; i++) {
+			if (table[i] == null) continue;
+			short ability = table[i].getAbility();
+			boolean found = false;
+			for (int j = 0; j < count && ! found; j++) {
+				found = (abilities[j] == ability);
+			}
+			if (! found) {
+				abilities[count] = ability;
+				count += 1;
+			}
+		}
+		short[] result = new short[count];
+		System.arraycopy(abilities, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	 * Returns the systems of all peers that have recorded metrics for
+	 * the specified layer. The metric of systems that have left is not
+	 * included.
+	 *
+	 * @param ability The ability of the layer.
+	 * @return The systems of the peers of the layer.
+	 */
+	public SystemID[] getSystems(short ability) {
+		Metric[] table = metrics;
+		Vector result = new Vector();
+		for (int i = 0; i < table.length; i++) {
+			Metric metric = table[i];
+			if (metric != null && metric.getAbility() == ability && metric.getSystem() != null) {
+				result.addElement(metric.getSystem());
+			}
+		}
+		SystemID[] systems = new SystemID[result.size()];
+		result.copyInto(systems);
+		return systems;
+	}
+
+	/**
+	 * Returns copies of all metrics that have been recorded. This
+	 * includes the metrics without system that contain the values
+	 * of systems that have left.
+	 *
+	 * @return Copies of all metrics.
+	 */
+	public Metric[] getMetrics() {
+		Metric[] table = metrics;
+		Vector result = new Vector();
+		for (int i = 0; i < table.length; i++) {
+			if (table[i] != null) {
+				result.addElement(table[i].copy());
+			}
+		}
+		Metric[] copies = new Metric[result.size()];
+		result.copyInto(copies);
+		return copies;
+	}
+
+	/**
+	 * Removes all metrics that have been recorded.
+	 */
+	public synchronized void reset() {
+		metrics = new Metric[INITIAL_SIZE];
+		size = 0;
+	}
+
+	/**
+	 * Searches the metric for the specified layer and peer in the table.
+	 *
+	 * @param table The table to search.
+	 * @param ability The ability of the layer.
+	 * @param system The system of the peer, may be null.
+	 * @return The metric or null if the table does not contain it.
+	 */
+	private static Metric find(Metric[] table, short ability, SystemID system) {
+		int mask = table.length - 1;
+		for (int i = hash(ability, system) & mask; table[i] != null; i = (i + 1) & mask) {
+			Metric metric = table[i];
+			if (metric.getAbility() == ability) {
+				SystemID s = metric.getSystem();
+				if (s == null ? system == null : s.equals(system)) {
+					return metric;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Inserts the metric into a table that has at least one free slot
+	 * and that does not contain a metric for the same layer and peer.
+	 *
+	 * @param table The table to modify.
+	 * @param metric The metric to insert.
+	 */
+	private static void insert(Metric[] table, Metric metric) {
+		int mask = table.length - 1;
+		int i = hash(metric.getAbility(), metric.getSystem()) & mask;
+		while (table[i] != null) {
+			i = (i + 1) & mask;
+		}
+		table[i] = metric;
+	}
+
+	/**
+	 * Creates a copy of the table with the specified length.
+	 *
+	 * @param table The table to copy.
+	 * @param length The length of the copy, must be a power of two
+	 * 	that is large enough to hold all metrics.
+	 * @param system The system whose metrics shall not be copied or 
+	 * 	null to copy all metrics.
+	 * @return The copy of the table.
+	 */
+	private static Metric[] copy(Metric[] table, int length, SystemID system) {
+		Metric[] result = new Metric[length];
+		for (int i = 0; i < table.length; i++) {
+			Metric metric = table[i];
+			if (metric != null && (system == null || ! system.equals(metric.getSystem()))) {
+				insert(result, metric);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the hash code of a layer and peer.
+	 *
+	 * @param ability The ability of the layer.
+	 * @param system The system of the peer, may be null.
+	 * @return The hash code.
+	 */
+	private static int hash(short ability, SystemID system) {
+		int h = ability * 31 + ((system == null) ? 0 : system.hashCode());
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Adds a listener that receives periodic snapshots. The snapshots
+	 * are delivered using the operator of the registry as long as at
+	 * least one listener is registered.
+	 *
+	 * @param type The type of events to register for. At the present
+	 * 	time, this must be EVENT_METRIC_SNAPSHOT.
+	 * @param listener The listener to register.
+	 */
+	public synchronized void addMetricListener(int type, IListener listener) {
+		listeners.addListener(type, listener);
+		if (monitor == null && listeners.hasListeners(EVENT_METRIC_SNAPSHOT)) {
+			monitor = new NullMonitor();
+			operator.performOperation(this, monitor);
+		}
+	}
+
+	/**
+	 * Removes a previously registered listener. If there are no more
+	 * listeners, the delivery of snapshots is stopped.
+	 *
+	 * @param type The type of events to unregister.
+	 * @param listener The listener to unregister.
+	 * @return True if the listener has been removed, false otherwise.
+	 */
+	public synchronized boolean removeMetricListener(int type, IListener listener) {
+		boolean removed = listeners.removeListener(type, listener);
+		if (monitor != null && ! listeners.hasListeners(EVENT_METRIC_SNAPSHOT)) {
+			monitor.cancel();
+			monitor = null;
+			notifyAll();
+		}
+		return removed;
+	}
+
+	/**
+	 * Stops the delivery of snapshots and removes all listeners.
+	 */
+	public synchronized void shutdown() {
+		listeners.clearListeners();
+		if (monitor != null) {
+			monitor.cancel();
+			monitor = null;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Delivers snapshots to the registered listeners until the monitor
+	 * is canceled.
+	 *
+	 * @param monitor The monitor that is used to stop the delivery.
+	 * @throws Exception Should not be thrown.
+	 */
+	public void perform(IMonitor monitor) throws Exception {
+		while (true) {
+			synchronized (this) {
+				long end = System.currentTimeMillis() + period;
+				long now = System.currentTimeMillis();
+				while (! monitor.isCanceled() && now < end) {
+					wait(end - now);
+					now = System.currentTimeMillis();
+					// restart the period if it has been shortened
+					end = Math.min(end, now + period);
+				}
+				if (monitor.isCanceled()) return;
+			}
+			listeners.fireEvent(EVENT_METRIC_SNAPSHOT, getMetrics());
+		}
+	}
+
+}
@@ -4,6 +4,7 @@ import info.pppc.base.system.IExtension;
 import info.pppc.base.system.io.IObjectInput;
 import info.pppc.base.system.io.IObjectOutput;
 import info.pppc.base.system.io.ISerializable;
+import info.pppc.base.system.util.Static;
 
 import java.io.IOException;
 import java.util.Enumeration;
@@ -17,6 +18,12 @@ import java.util.Vector;
  * provided for typical compositions. These can be overwritten in 
  * proxies to define specific requirements.
  * 
+ * Copies of a collection share the dimensions of the original until one
+ * of them is modified. The default collections are created once and
+ * each call to the factory method returns such a copy. Thus, creating
+ * and copying requirements does not allocate dimensions unless some
+ * layer actually adds or removes a dimension.
+ * 
  * @author Marcus Handte
  */
 public final class NFCollection implements ISerializable, IExtension {
@@ -58,10 +65,24 @@ public final class NFCollection implements ISerializable, IExtension {
 	 */
 	public static final short TYPE_SYNCHRONOUS = 0;
 
+	/**
+	 * The default collections for all types, with and without gateways.
+	 * The collection for a type and a gateway flag is stored at index 
+	 * type * 2 + (gateway ? 1 : 0). The collections are never modified,
+	 * the factory method returns copies of them.
+	 */
+	private static final NFCollection[] DEFAULTS = new NFCollection[] {
+		createDefault(TYPE_SYNCHRONOUS, false), createDefault(TYPE_SYNCHRONOUS, true),
+		createDefault(TYPE_ASYNCHRONOUS, false), createDefault(TYPE_ASYNCHRONOUS, true),
+		createDefault(TYPE_STREAM, false), createDefault(TYPE_STREAM, true),
+		createDefault(TYPE_EXCHANGE, false), createDefault(TYPE_EXCHANGE, true)
+	};
+	
 	/**
 	 * A factory method that creates the default non-functional 
 	 * collections for invocations delivered with statically generated
-	 * proxies.
+	 * proxies. The collection shares its dimensions with all other
+	 * default collections of the same type until it is modified.
 	 * 
 	 * @param gateway The type that indicates whether routing should
 	 * 	use remote gateways to connect.
@@ -71,34 +92,39 @@ public final class NFCollection implements ISerializable, IExtension {
 	 * 	the specified type.
 	 */
 	public static NFCollection getDefault(short type, boolean gateway) {
-		NFCollection collection = new NFCollection();
-		// state that the semantic is required
- 		NFDimension required = new NFDimension(
-			NFDimension.IDENTIFIER_REQUIRED,
-			new Boolean(true)
-		);
-		collection.addDimension(EXTENSION_SEMANTIC, required);
-		// adjust semantic type according to the type
-		NFDimension typed = null;
 		switch (type) {
 			case TYPE_EXCHANGE:
 			case TYPE_SYNCHRONOUS:
 		 	case TYPE_ASYNCHRONOUS:
 		 	case TYPE_STREAM:
-		 		typed = new NFDimension(NFDimension.IDENTIFIER_TYPE, new Short(type));
-		 		break;
+		 		return DEFAULTS[type * 2 + (gateway ? 1 : 0)].copy(false);
 		 	default:
 				throw new IllegalArgumentException("Illegal collection type.");
 		}
+	}
+	
+	/**
+	 * Creates the default collection for the specified type.
+	 * 
+	 * @param type The type of the collection.
+	 * @param gateway The type that indicates whether routing should
+	 * 	use remote gateways to connect.
+	 * @return The default collection for the type.
+	 */
+	private static NFCollection createDefault(short type, boolean gateway) {
+		NFCollection collection = new NFCollection();
+		// state that the semantic is required
+ 		NFDimension required = new NFDimension(NFDimension.IDENTIFIER_REQUIRED, Static.TRUE);
+		collection.addDimension(EXTENSION_SEMANTIC, required);
+		// adjust semantic type according to the type
+		NFDimension typed = new NFDimension(NFDimension.IDENTIFIER_TYPE, new Short(type));
 		collection.addDimension(EXTENSION_SEMANTIC, typed);
 		// set the remote routing attribute accordingly
-		NFDimension gwd = new NFDimension(NFDimension.IDENTIFIER_GATEWAY, new Boolean(gateway));
+		NFDimension gwd = new NFDimension(NFDimension.IDENTIFIER_GATEWAY, 
+				gateway ? Static.TRUE : Static.FALSE);
 		collection.addDimension(EXTENSION_ROUTING, gwd);
 		return collection;
-		
 	}
-	
-	
 
 	/**
 	 * A hash table that contains vectors for each extension layer. The
@@ -107,6 +133,13 @@ public final class NFCollection implements ISerializable, IExtension {
 	 */
 	private Hashtable extensions = new Hashtable();
 
+	/**
+	 * A flag that indicates whether the hash table of extensions is
+	 * shared with another collection. A shared table is never modified,
+	 * it is copied before the first modification.
+	 */
+	private boolean shared = false;
+
 
 	/**
 	 * Creates a new collection with no properties set.
@@ -115,6 +148,17 @@ public final class NFCollection implements ISerializable, IExtension {
 		super();
 	}
 	
+	/**
+	 * Creates a new collection that shares the specified extensions
+	 * with another collection.
+	 * 
+	 * @param extensions The shared extensions.
+	 */
+	private NFCollection(Hashtable extensions) {
+		this.extensions = extensions;
+		this.shared = true;
+	}
+	
 	/**
 	 * Adds a dimension to the specified extension.
 	 * 
@@ -123,6 +167,7 @@ public final class NFCollection implements ISerializable, IExtension {
 	 * @return The dimension that got replaced if any, else null.
 	 */
 	public synchronized NFDimension addDimension(short extension, NFDimension dimension) {
+		unshare();
 		Vector dims = (Vector)extensions.get(new Short(extension));
 		NFDimension replaced = null;
 		if (dims == null) {
@@ -194,6 +239,10 @@ public final class NFCollection implements ISerializable, IExtension {
 	public synchronized void removeDimension(short extension, short dimension) {
 		Vector dims = (Vector)extensions.get(new Short(extension));
 		if (dims != null) {
+			if (shared) {
+				unshare();
+				dims = (Vector)extensions.get(new Short(extension));
+			}
 			for (int i = dims.size() - 1; i >= 0; i--) {
 				NFDimension dim = (NFDimension)dims.elementAt(i);
 				if (dim.getIdentifier() == dimension) {
@@ -215,6 +264,7 @@ public final class NFCollection implements ISerializable, IExtension {
 	 */
 	public synchronized void readObject(IObjectInput input) throws IOException {
 		extensions = (Hashtable)input.readObject();
+		shared = false;
 	}
 
 	/**
@@ -229,32 +279,43 @@ public final class NFCollection implements ISerializable, IExtension {
 
 	/**
 	 * Creates a copy of this collection of parameters. The flag indicates
-	 * whether the returned copy is deep or shallow. If a deep copy is
-	 * created, all dimensions are copied, too.
+	 * whether the returned copy is deep or shallow. Since dimensions 
+	 * cannot be modified, a deep copy shares the dimensions just like
+	 * a shallow copy. The copy and the original share their extensions
+	 * until one of them is modified.
 	 * 
 	 * @param deep Set to true to create a deep copy, set to false to create
 	 * 	a shallow copy.
 	 * @return A copy of the collection of non-functional parameters.
 	 */
 	public synchronized NFCollection copy(boolean deep) {
-		NFCollection collection = new NFCollection();
+		NFCollection collection = new NFCollection(extensions);
+		shared = true;
+		return collection;
+	}
+
+	/**
+	 * Copies the shared extensions of this collection so that they
+	 * can be modified. If the extensions are not shared, this method
+	 * does nothing.
+	 */
+	private void unshare() {
+		if (! shared) return;
+		Hashtable copy = new Hashtable();
 		Enumeration e = extensions.keys();
 		while (e.hasMoreElements()) {
 			Short ext = (Short)e.nextElement();
 			Vector dims = (Vector)extensions.get(ext);
 			if (dims != null) {
-				Vector copy = new Vector();
+				Vector v = new Vector(dims.size() + 1);
 				for (int i = 0; i < dims.size(); i++) {
-					NFDimension dim = (NFDimension)dims.elementAt(i);
-					if (deep) {
-						dim = dim.copy();
-					}
-					copy.addElement(dim);
+					v.addElement(dims.elementAt(i));
 				}
-				collection.extensions.put(ext, copy);									
+				copy.put(ext, v);
 			}
 		}
-		return collection;
+		extensions = copy;
+		shared = false;
 	}
 
 	/**
@@ -0,0 +1,157 @@
+package info.pppc.base.system.plugin;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * A buffered packet that provides a view on a region of another buffered
+ * packet. Higher level connectors use it to pass the payload of a received
+ * packet without copying it after they have removed their header. Retaining
+ * and releasing the view retains and releases the underlying packet. If the
+ * payload of the view is replaced, the view no longer refers to the buffer
+ * of the underlying packet.
+ *
+ * @author Mac
+ */
+public class BufferedPacket implements IBufferedPacket {
+
+	/**
+	 * The underlying packet or null if the payload has been replaced.
+	 */
+	private IBufferedPacket packet;
+
+	/**
+	 * The buffer that contains the payload.
+	 */
+	private byte[] buffer;
+
+	/**
+	 * The offset of the payload in the buffer.
+	 */
+	private int offset;
+
+	/**
+	 * The length of the payload.
+	 */
+	private int length;
+
+	/**
+	 * The copy of the payload, created lazily.
+	 */
+	private byte[] payload;
+
+	/**
+	 * The maximum packet length.
+	 */
+	private int maximum;
+
+	/**
+	 * Creates a view on the specified region of the payload of the packet.
+	 *
+	 * @param packet The underlying packet.
+	 * @param offset The offset of the region relative to the payload.
+	 * @param length The length of the region.
+	 * @param maximum The maximum packet length.
+	 */
+	public BufferedPacket(IBufferedPacket packet, int offset, int length, int maximum) {
+		this.packet = packet;
+		this.buffer = packet.getBuffer();
+		this.offset = packet.getOffset() + offset;
+		this.length = length;
+		this.maximum = maximum;
+	}
+
+	/**
+	 * Returns a copy of the payload. The copy is created once and it
+	 * remains valid after the packet has been released.
+	 *
+	 * @return A copy of the payload.
+	 */
+	public byte[] getPayload() {
+		if (payload == null) {
+			payload = new byte[length];
+			System.arraycopy(buffer, offset, payload, 0, length);
+		}
+		return payload;
+	}
+
+	/**
+	 * Replaces the payload of the packet. Afterwards, the packet does no
+	 * longer refer to the buffer of the underlying packet.
+	 *
+	 * @param payload The payload of the packet.
+	 * @throws IndexOutOfBoundsException Thrown if the maximum packet
+	 * 	length is exceeded.
+	 */
+	public void setPayload(byte[] payload) {
+		if (payload.length > maximum) {
+			throw new IndexOutOfBoundsException("Maximum packet size exceeded.");
+		}
+		this.packet = null;
+		this.payload = payload;
+		this.buffer = payload;
+		this.offset = 0;
+		this.length = payload.length;
+	}
+
+	/**
+	 * Returns the buffer that contains the payload.
+	 *
+	 * @return The buffer that contains the payload.
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Returns the offset of the payload in the buffer.
+	 *
+	 * @return The offset of the payload.
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Returns the length of the payload.
+	 *
+	 * @return The length of the payload.
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Retains the underlying packet.
+	 */
+	public void retain() {
+		IBufferedPacket p = packet;
+		if (p != null) p.retain();
+	}
+
+	/**
+	 * Releases the underlying packet.
+	 */
+	public void release() {
+		IBufferedPacket p = packet;
+		if (p != null) p.release();
+	}
+
+	/**
+	 * Creates an input stream that reads the payload of the specified
+	 * packet. If the packet is buffered, the stream reads from the
+	 * buffer directly. Thus, the stream must only be used while the
+	 * packet is valid.
+	 *
+	 * @param packet The packet to read.
+	 * @return An input stream that reads the payload.
+	 */
+	public static ByteArrayInputStream getInputStream(IPacket packet) {
+		if (packet instanceof IBufferedPacket) {
+			IBufferedPacket p = (IBufferedPacket)packet;
+			return new ByteArrayInputStream(p.getBuffer(), p.getOffset(), p.getLength());
+		} else {
+			return new ByteArrayInputStream(packet.getPayload());
+		}
+	}
+
+}
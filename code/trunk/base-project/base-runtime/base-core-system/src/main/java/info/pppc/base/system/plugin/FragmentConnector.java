@@ -55,7 +55,7 @@ public class FragmentConnector implements IPacketConnector, IListener {
 		 * @param id The id of the packet.
 		 */
 		public PacketID(short id) {
-			this(SystemID.SYSTEM, id);
+			this(SystemID.getLocal(), id);
 		}
 		
 		/**
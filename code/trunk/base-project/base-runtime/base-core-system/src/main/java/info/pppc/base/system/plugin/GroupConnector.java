@@ -126,6 +126,16 @@ public class GroupConnector implements IPacketConnector, IListener {
 			}
 			case EVENT_PACKET_RECEIVED: {
 				IPacket p = (IPacket)event.getData();
+				if (p instanceof IBufferedPacket) {
+					// pass a view on the buffer to avoid copying the payload
+					IBufferedPacket b = (IBufferedPacket)p;
+					byte[] buffer = b.getBuffer();
+					int offset = b.getOffset();
+					if (b.getLength() >= 2 && (((buffer[offset] & 0xff) << 8) | (buffer[offset + 1] & 0xff)) == group) {
+						listeners.fireEvent(EVENT_PACKET_RECEIVED, new BufferedPacket(b, 2, b.getLength() - 2, length));
+					}
+					break;
+				}
 				byte[] payload = p.getPayload();
 				if (payload.length >= 2 & (((payload[0] & 0xff) << 8) | (payload[1] & 0xff)) == group) {
 					Packet result = new Packet(length);
@@ -0,0 +1,51 @@
+package info.pppc.base.system.plugin;
+
+/**
+ * A buffered packet is a received packet whose payload resides in a buffer
+ * that is reused by the packet connector. Listeners can read the payload
+ * through the buffer, the offset and the length without copying it. The
+ * buffer is only valid while the event that delivers the packet is being
+ * processed. A listener that processes the packet later must retain it
+ * before it returns and it must release it afterwards. The payload that is
+ * returned by the get payload method is a copy that remains valid.
+ *
+ * @author Mac
+ */
+public interface IBufferedPacket extends IPacket {
+
+	/**
+	 * Returns the buffer that contains the payload. The buffer must not
+	 * be modified and it must not be used after the packet has been
+	 * released.
+	 *
+	 * @return The buffer that contains the payload.
+	 */
+	public byte[] getBuffer();
+
+	/**
+	 * Returns the offset of the payload in the buffer.
+	 *
+	 * @return The offset of the first byte of the payload.
+	 */
+	public int getOffset();
+
+	/**
+	 * Returns the length of the payload in the buffer.
+	 *
+	 * @return The number of bytes of the payload.
+	 */
+	public int getLength();
+
+	/**
+	 * Retains the packet. The buffer of a retained packet is not reused
+	 * until the packet has been released.
+	 */
+	public void retain();
+
+	/**
+	 * Releases a packet that has been retained. The buffer must not be
+	 * used afterwards.
+	 */
+	public void release();
+
+}
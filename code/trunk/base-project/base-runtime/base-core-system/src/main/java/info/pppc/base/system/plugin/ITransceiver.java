@@ -27,6 +27,15 @@ public interface ITransceiver extends IPlugin, IStreamer {
 	 * The data object of this event will be null.
 	 */
 	public static final int EVENT_TRANCEIVER_DISABLED = 2;
+
+	/**
+	 * The property name of the host identity. Transceivers that can only
+	 * reach systems on the same host set this property in their plug-in
+	 * description. The default session strategy prefers transceivers
+	 * whose remote description carries the same host identity as the
+	 * local one.
+	 */
+	public static final String PROPERTY_HOST = "HO";
 
 	/**
 	 * Sets the plug-in manager of this plug-in. The plug-in manager enables 
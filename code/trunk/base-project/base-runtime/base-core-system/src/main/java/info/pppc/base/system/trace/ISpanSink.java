@@ -0,0 +1,20 @@
+package info.pppc.base.system.trace;
+
+/**
+ * A span sink receives the spans of sampled traces once they have been
+ * finished. The tracer calls the sink from the thread that finished the
+ * span, thus, implementations should not block.
+ *
+ * @author Mac
+ */
+public interface ISpanSink {
+
+	/**
+	 * Called by the tracer whenever a span of a sampled trace has been
+	 * finished.
+	 *
+	 * @param span The span that has been finished.
+	 */
+	public void record(Span span);
+
+}
@@ -0,0 +1,235 @@
+package info.pppc.base.system.trace;
+
+import info.pppc.base.system.SystemID;
+
+/**
+ * A span describes the timing of a single invocation on a single system.
+ * The system that issues the invocation records a client span and the
+ * system that dispatches the invocation records a server span whose
+ * parent is the client span. Spans that are recorded while a server
+ * span is active become children of the server span. Thus, the spans
+ * of a trace form a tree that connects the timings of all systems that
+ * take part in a call. Spans are created by the tracer.
+ *
+ * @author Mac
+ */
+public final class Span {
+
+	/**
+	 * The kind of spans that are recorded by the issuer of an invocation.
+	 */
+	public static final int KIND_CLIENT = 1;
+
+	/**
+	 * The kind of spans that are recorded by the receiver of an invocation.
+	 */
+	public static final int KIND_SERVER = 2;
+
+	/**
+	 * The context that is propagated to the children of the span.
+	 */
+	private TraceContext context;
+
+	/**
+	 * The identifier of the parent span or 0 if the span is a root.
+	 */
+	private long parent;
+
+	/**
+	 * The kind of the span.
+	 */
+	private int kind;
+
+	/**
+	 * The name of the span, i.e. the signature of the invoked method.
+	 */
+	private String name;
+
+	/**
+	 * The system that communicates with the system of the span.
+	 */
+	private SystemID peer;
+
+	/**
+	 * The start time in milliseconds.
+	 */
+	private long start;
+
+	/**
+	 * The end time in milliseconds or 0 if the span is not finished.
+	 */
+	private long end;
+
+	/**
+	 * A flag that indicates whether the invocation failed.
+	 */
+	private boolean failed;
+
+	/**
+	 * The span that was active on the thread before this span has
+	 * been activated or null if there was none.
+	 */
+	Span previous;
+
+	/**
+	 * Creates a new span. The start time is set to the current time.
+	 *
+	 * @param context The context of the span.
+	 * @param parent The identifier of the parent span or 0.
+	 * @param kind The kind of the span.
+	 * @param name The name of the span.
+	 * @param peer The peer of the span.
+	 */
+	Span(TraceContext context, long parent, int kind, String name, SystemID peer) {
+		this.context = context;
+		this.parent = parent;
+		this.kind = kind;
+		this.name = name;
+		this.peer = peer;
+		this.start = System.currentTimeMillis();
+	}
+
+	/**
+	 * Finishes the span by setting the end time.
+	 *
+	 * @param failed True if the invocation has failed.
+	 */
+	void finish(boolean failed) {
+		this.end = System.currentTimeMillis();
+		this.failed = failed;
+	}
+
+	/**
+	 * Returns the context of the span that is propagated to its children.
+	 *
+	 * @return The context of the span.
+	 */
+	public TraceContext getContext() {
+		return context;
+	}
+
+	/**
+	 * Returns the identifier of the trace.
+	 *
+	 * @return The identifier of the trace.
+	 */
+	public long getTrace() {
+		return context.getTrace();
+	}
+
+	/**
+	 * Returns the identifier of the span.
+	 *
+	 * @return The identifier of the span.
+	 */
+	public long getIdentifier() {
+		return context.getSpan();
+	}
+
+	/**
+	 * Returns the identifier of the parent span.
+	 *
+	 * @return The identifier of the parent or 0 if the span is a root.
+	 */
+	public long getParent() {
+		return parent;
+	}
+
+	/**
+	 * Returns the kind of the span.
+	 *
+	 * @return The kind of the span, either client or server.
+	 */
+	public int getKind() {
+		return kind;
+	}
+
+	/**
+	 * Returns the name of the span.
+	 *
+	 * @return The name of the span.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the system that communicates with the system of the span.
+	 * For client spans, this is the target, for server spans, this is
+	 * the source of the invocation.
+	 *
+	 * @return The peer of the span.
+	 */
+	public SystemID getPeer() {
+		return peer;
+	}
+
+	/**
+	 * Returns the start time of the span.
+	 *
+	 * @return The start time in milliseconds.
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the end time of the span.
+	 *
+	 * @return The end time in milliseconds or 0 if the span has not
+	 * 	been finished.
+	 */
+	public long getEnd() {
+		return end;
+	}
+
+	/**
+	 * Returns the duration of the span.
+	 *
+	 * @return The duration in milliseconds.
+	 */
+	public long getDuration() {
+		return (end == 0) ? 0 : end - start;
+	}
+
+	/**
+	 * Determines whether the invocation of the span has failed.
+	 *
+	 * @return True if the invocation has failed.
+	 */
+	public boolean isFailed() {
+		return failed;
+	}
+
+	/**
+	 * Returns a single line representation of the span.
+	 *
+	 * @return A string representation.
+	 */
+	public String toString() {
+		StringBuffer b = new StringBuffer();
+		b.append("TRACE <");
+		b.append(Long.toString(getTrace(), 16));
+		b.append("> SPAN <");
+		b.append(Long.toString(getIdentifier(), 16));
+		b.append("> PARENT <");
+		b.append(Long.toString(parent, 16));
+		b.append("> KIND <");
+		b.append((kind == KIND_CLIENT) ? "CLIENT" : "SERVER");
+		b.append("> SYSTEM <");
+		b.append(SystemID.getLocal());
+		b.append("> PEER <");
+		b.append(peer);
+		b.append("> NAME <");
+		b.append(name);
+		b.append("> START <");
+		b.append(start);
+		b.append("> DURATION <");
+		b.append(getDuration());
+		b.append("> FAILED <");
+		b.append(failed);
+		b.append(">");
+		return b.toString();
+	}
+
+}
@@ -0,0 +1,107 @@
+package info.pppc.base.system.trace;
+
+import java.util.Vector;
+
+/**
+ * The span collector is a sink that keeps the most recent spans in memory.
+ * The collector has a fixed capacity, if it is exceeded, the oldest spans
+ * are overwritten.
+ *
+ * @author Mac
+ */
+public final class SpanCollector implements ISpanSink {
+
+	/**
+	 * The default number of spans that are kept.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * The ring buffer that contains the spans.
+	 */
+	private Span[] spans;
+
+	/**
+	 * The index of the next span to write.
+	 */
+	private int next = 0;
+
+	/**
+	 * The number of spans in the buffer.
+	 */
+	private int size = 0;
+
+	/**
+	 * Creates a new collector with the default capacity.
+	 */
+	public SpanCollector() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new collector with the specified capacity.
+	 *
+	 * @param capacity The number of spans to keep, must be positive.
+	 */
+	public SpanCollector(int capacity) {
+		if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+		spans = new Span[capacity];
+	}
+
+	/**
+	 * Adds the span to the buffer, possibly overwriting the oldest span.
+	 *
+	 * @param span The span to add.
+	 */
+	public synchronized void record(Span span) {
+		spans[next] = span;
+		next = (next + 1) % spans.length;
+		if (size < spans.length) size += 1;
+	}
+
+	/**
+	 * Returns all spans in the order in which they have been finished.
+	 *
+	 * @return The spans in the buffer.
+	 */
+	public synchronized Span[] getSpans() {
+		Span[] result = new Span[size];
+		int start = (next - size + spans.length) % spans.length;
+		for (int i = 0; i < size; i++) {
+			result[i] = spans[(start + i) % spans.length];
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the spans of the specified trace in the order in which
+	 * they have been finished.
+	 *
+	 * @param trace The identifier of the trace.
+	 * @return The spans of the trace that are in the buffer.
+	 */
+	public Span[] getSpans(long trace) {
+		Span[] all = getSpans();
+		Vector result = new Vector();
+		for (int i = 0; i < all.length; i++) {
+			if (all[i].getTrace() == trace) {
+				result.addElement(all[i]);
+			}
+		}
+		Span[] spans = new Span[result.size()];
+		result.copyInto(spans);
+		return spans;
+	}
+
+	/**
+	 * Removes all spans from the buffer.
+	 */
+	public synchronized void clear() {
+		for (int i = 0; i < spans.length; i++) {
+			spans[i] = null;
+		}
+		next = 0;
+		size = 0;
+	}
+
+}
@@ -0,0 +1,134 @@
+package info.pppc.base.system.trace;
+
+import info.pppc.base.system.SystemID;
+import info.pppc.base.system.util.Logging;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The span exporter is a sink that writes spans to a stream, one line per
+ * span. Typically, the stream is a file output stream. To reduce the
+ * number of writes, the exporter buffers the lines of a configurable
+ * number of spans. The buffered lines are written when the buffer is
+ * full or when the exporter is flushed. If the stream cannot be written,
+ * the exporter logs the error and drops the spans.
+ * <p>
+ * Each line contains the fields of a span separated by tabs: the trace,
+ * the span, the parent (all in hex), the kind, the local system, the peer,
+ * the name, the start time, the duration in milliseconds and the failure
+ * flag.
+ *
+ * @author Mac
+ */
+public final class SpanExporter implements ISpanSink {
+
+	/**
+	 * The default number of spans that are buffered.
+	 */
+	public static final int DEFAULT_BATCH = 64;
+
+	/**
+	 * The stream that receives the spans.
+	 */
+	private OutputStream stream;
+
+	/**
+	 * The number of spans that are buffered before they are written.
+	 */
+	private int batch;
+
+	/**
+	 * The buffer that contains the lines that have not been written.
+	 */
+	private StringBuffer buffer = new StringBuffer();
+
+	/**
+	 * The number of spans in the buffer.
+	 */
+	private int size = 0;
+
+	/**
+	 * Creates a new exporter that writes to the specified stream using
+	 * the default batch size.
+	 *
+	 * @param stream The stream to write to.
+	 */
+	public SpanExporter(OutputStream stream) {
+		this(stream, DEFAULT_BATCH);
+	}
+
+	/**
+	 * Creates a new exporter that writes to the specified stream.
+	 *
+	 * @param stream The stream to write to.
+	 * @param batch The number of spans to buffer, 1 to write every
+	 * 	span immediately.
+	 */
+	public SpanExporter(OutputStream stream, int batch) {
+		if (stream == null) throw new NullPointerException("Stream must not be null.");
+		if (batch <= 0) throw new IllegalArgumentException("Batch must be positive.");
+		this.stream = stream;
+		this.batch = batch;
+	}
+
+	/**
+	 * Adds the span to the buffer and writes the buffer if it is full.
+	 *
+	 * @param span The span to export.
+	 */
+	public synchronized void record(Span span) {
+		buffer.append(Long.toString(span.getTrace(), 16));
+		buffer.append('\t');
+		buffer.append(Long.toString(span.getIdentifier(), 16));
+		buffer.append('\t');
+		buffer.append(Long.toString(span.getParent(), 16));
+		buffer.append('\t');
+		buffer.append((span.getKind() == Span.KIND_CLIENT) ? "CLIENT" : "SERVER");
+		buffer.append('\t');
+		buffer.append(SystemID.getLocal());
+		buffer.append('\t');
+		buffer.append(span.getPeer());
+		buffer.append('\t');
+		buffer.append(span.getName());
+		buffer.append('\t');
+		buffer.append(span.getStart());
+		buffer.append('\t');
+		buffer.append(span.getDuration());
+		buffer.append('\t');
+		buffer.append(span.isFailed());
+		buffer.append('\n');
+		size += 1;
+		if (size >= batch) {
+			flush();
+		}
+	}
+
+	/**
+	 * Writes all buffered spans to the stream.
+	 */
+	public synchronized void flush() {
+		if (size == 0) return;
+		try {
+			stream.write(buffer.toString().getBytes());
+			stream.flush();
+		} catch (IOException e) {
+			Logging.error(getClass(), "Could not export spans.", e);
+		}
+		buffer.setLength(0);
+		size = 0;
+	}
+
+	/**
+	 * Writes all buffered spans and closes the stream.
+	 */
+	public synchronized void close() {
+		flush();
+		try {
+			stream.close();
+		} catch (IOException e) {
+			Logging.error(getClass(), "Could not close stream.", e);
+		}
+	}
+
+}
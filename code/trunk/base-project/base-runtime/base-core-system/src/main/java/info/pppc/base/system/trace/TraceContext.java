@@ -0,0 +1,136 @@
+package info.pppc.base.system.trace;
+
+/**
+ * The trace context is the compact part of a span that is transferred
+ * together with an invocation. It contains the identifier of the trace,
+ * the identifier of the span that issued the invocation and a flag that
+ * indicates whether the trace has been sampled. The sampling decision
+ * is made once by the system that starts the trace and it is honored
+ * by all systems that continue the trace.
+ * <p>
+ * The context is transferred as a dimension of the requirements of the
+ * invocation. The dimension holds the context as a byte array. Thus,
+ * systems that do not trace invocations can still deserialize and
+ * forward it.
+ *
+ * @author Mac
+ */
+public final class TraceContext {
+
+	/**
+	 * The extension of the requirements that contains the context. The
+	 * extension does not denote a plug-in layer, thus, it is ignored by
+	 * the plug-in manager.
+	 */
+	public static final short EXTENSION_TRACE = 128;
+
+	/**
+	 * The identifier of the dimension that contains the context.
+	 */
+	public static final short IDENTIFIER_CONTEXT = 1;
+
+	/**
+	 * The number of bytes of an encoded context.
+	 */
+	private static final int LENGTH = 17;
+
+	/**
+	 * The identifier of the trace.
+	 */
+	private long trace;
+
+	/**
+	 * The identifier of the span that issued the invocation.
+	 */
+	private long span;
+
+	/**
+	 * A flag that indicates whether the trace is sampled.
+	 */
+	private boolean sampled;
+
+	/**
+	 * Creates a new trace context with the specified values.
+	 *
+	 * @param trace The identifier of the trace.
+	 * @param span The identifier of the span.
+	 * @param sampled True if the trace is sampled.
+	 */
+	public TraceContext(long trace, long span, boolean sampled) {
+		this.trace = trace;
+		this.span = span;
+		this.sampled = sampled;
+	}
+
+	/**
+	 * Returns the identifier of the trace.
+	 *
+	 * @return The identifier of the trace.
+	 */
+	public long getTrace() {
+		return trace;
+	}
+
+	/**
+	 * Returns the identifier of the span that issued the invocation.
+	 *
+	 * @return The identifier of the span.
+	 */
+	public long getSpan() {
+		return span;
+	}
+
+	/**
+	 * Determines whether the trace is sampled.
+	 *
+	 * @return True if the spans of the trace are recorded.
+	 */
+	public boolean isSampled() {
+		return sampled;
+	}
+
+	/**
+	 * Encodes the context as byte array that can be stored in the
+	 * requirements of an invocation.
+	 *
+	 * @return The encoded context.
+	 */
+	public byte[] toBytes() {
+		byte[] bytes = new byte[LENGTH];
+		for (int i = 0; i < 8; i++) {
+			bytes[i] = (byte)(trace >>> (56 - i * 8));
+			bytes[i + 8] = (byte)(span >>> (56 - i * 8));
+		}
+		bytes[16] = (byte)(sampled ? 1 : 0);
+		return bytes;
+	}
+
+	/**
+	 * Decodes a context that has been encoded as byte array.
+	 *
+	 * @param value The encoded context.
+	 * @return The context or null if the value is not a valid context.
+	 */
+	public static TraceContext valueOf(Object value) {
+		if (! (value instanceof byte[])) return null;
+		byte[] bytes = (byte[])value;
+		if (bytes.length != LENGTH) return null;
+		long trace = 0;
+		long span = 0;
+		for (int i = 0; i < 8; i++) {
+			trace = (trace << 8) | (bytes[i] & 0xFF);
+			span = (span << 8) | (bytes[i + 8] & 0xFF);
+		}
+		return new TraceContext(trace, span, bytes[16] != 0);
+	}
+
+	/**
+	 * Returns a string representation of the context.
+	 *
+	 * @return A string representation.
+	 */
+	public String toString() {
+		return Long.toString(trace, 16) + "/" + Long.toString(span, 16) + (sampled ? "" : " (UNSAMPLED)");
+	}
+
+}
@@ -0,0 +1,277 @@
+package info.pppc.base.system.trace;
+
+import info.pppc.base.system.Invocation;
+import info.pppc.base.system.ReferenceID;
+import info.pppc.base.system.SystemID;
+import info.pppc.base.system.util.Logging;
+
+import java.util.Hashtable;
+import java.util.Random;
+
+/**
+ * The tracer creates the spans of invocations and propagates their trace
+ * contexts. Proxies start a client span before they issue an invocation
+ * and attach the context of the span to the invocation. Skeletons start
+ * a server span that continues the trace of the invocation and that is
+ * active while the invocation is dispatched. Thus, invocations issued by
+ * the implementation of a service become children of the server span.
+ * Since threads cannot store local values on all platforms, the active
+ * spans are stored in a hash table that is keyed by thread.
+ * <p>
+ * Tracing is disabled as long as no sink has been set. If a sink is set,
+ * the tracer samples one out of rate traces. The decision is made before
+ * anything is allocated. Invocations of traces that are not sampled do
+ * not carry a context and they do not create spans. A skeleton that
+ * receives an invocation without context marks the dispatching thread,
+ * so that the invocations issued during the dispatch are not sampled
+ * either. Thus, all systems honor the decision of the system that
+ * started the trace and only the spans of sampled traces are passed to
+ * the sink.
+ *
+ * @author Mac
+ */
+public final class Tracer {
+
+	/**
+	 * The context of the marker span for threads that dispatch an
+	 * invocation that is not sampled.
+	 */
+	private static final TraceContext UNSAMPLED = new TraceContext(0, 0, false);
+
+	/**
+	 * The sink that receives the spans of sampled traces or null if
+	 * tracing is disabled.
+	 */
+	private volatile ISpanSink sink;
+
+	/**
+	 * The number of traces out of which one trace is sampled. A rate of
+	 * 0 disables the sampling of traces started by this system.
+	 */
+	private int rate = 1;
+
+	/**
+	 * The number of traces that have been started since the last sample.
+	 */
+	private int counter = 0;
+
+	/**
+	 * The random number generator that creates identifiers.
+	 */
+	private Random random = new Random();
+
+	/**
+	 * The hash table that hashes threads to their active server span.
+	 */
+	private Hashtable active = new Hashtable();
+
+	/**
+	 * The marker span that is activated on threads that dispatch an
+	 * invocation that is not sampled. The marker is never finished.
+	 */
+	private final Span unsampled = new Span(UNSAMPLED, 0, Span.KIND_SERVER, null, null);
+
+	/**
+	 * Creates a new tracer without sink.
+	 */
+	public Tracer() {
+		super();
+	}
+
+	/**
+	 * Sets the sink that receives the spans of sampled traces. Setting
+	 * the sink to null disables tracing.
+	 *
+	 * @param sink The sink or null to disable tracing.
+	 */
+	public void setSink(ISpanSink sink) {
+		this.sink = sink;
+	}
+
+	/**
+	 * Returns the sink that receives the spans of sampled traces.
+	 *
+	 * @return The sink or null if tracing is disabled.
+	 */
+	public ISpanSink getSink() {
+		return sink;
+	}
+
+	/**
+	 * Sets the sampling rate for traces that are started by this system.
+	 * With a rate of n, one out of n traces is sampled.
+	 *
+	 * @param rate The rate, 1 to sample all traces and 0 to sample none.
+	 */
+	public synchronized void setRate(int rate) {
+		if (rate < 0) throw new IllegalArgumentException("Rate must not be negative.");
+		this.rate = rate;
+		this.counter = 0;
+	}
+
+	/**
+	 * Returns the sampling rate for traces started by this system.
+	 *
+	 * @return The sampling rate.
+	 */
+	public synchronized int getRate() {
+		return rate;
+	}
+
+	/**
+	 * Returns the server span that is active on the calling thread.
+	 *
+	 * @return The active span or null if there is none.
+	 */
+	public Span getActive() {
+		return (Span)active.get(Thread.currentThread());
+	}
+
+	/**
+	 * Starts a client span for an invocation that is issued by this
+	 * system and attaches its context to the invocation. If a server
+	 * span is active on the calling thread, the client span continues
+	 * its trace, otherwise a new trace is started.
+	 *
+	 * @param invocation The invocation that is issued.
+	 * @return The span that must be finished after the invocation has
+	 * 	returned or null if tracing is disabled or the trace is not
+	 * 	sampled.
+	 */
+	public Span startClient(Invocation invocation) {
+		if (sink == null) return null;
+		Span parent = getActive();
+		TraceContext context = null;
+		if (parent == null) {
+			if (! sample()) return null;
+		} else {
+			context = parent.getContext();
+			if (! context.isSampled()) return null;
+		}
+		ReferenceID target = invocation.getTarget();
+		Span span = create(context, Span.KIND_CLIENT, invocation.getSignature(),
+				(target == null) ? null : target.getSystem());
+		invocation.setTrace(span.getContext());
+		return span;
+	}
+
+	/**
+	 * Starts a server span for an invocation that has been received by
+	 * this system and activates it on the calling thread. If the
+	 * invocation carries a context, the span continues its trace.
+	 * Otherwise, the trace has not been sampled by the issuer and the
+	 * thread is marked, so that nested invocations are not sampled.
+	 *
+	 * @param invocation The invocation that is dispatched.
+	 * @return The span that must be finished after the invocation has
+	 * 	been dispatched or null if tracing is disabled.
+	 */
+	public Span startServer(Invocation invocation) {
+		if (sink == null) return null;
+		TraceContext context = invocation.getTrace();
+		Thread thread = Thread.currentThread();
+		Span previous = (Span)active.get(thread);
+		Span span = null;
+		if (context == null || ! context.isSampled()) {
+			if (previous == null) {
+				active.put(thread, unsampled);
+				return unsampled;
+			} else if (! previous.getContext().isSampled()) {
+				return null;
+			}
+			// nested dispatch within a sampled trace, keep the previous span
+			span = new Span(UNSAMPLED, 0, Span.KIND_SERVER, null, null);
+		} else {
+			ReferenceID source = invocation.getSource();
+			span = create(context, Span.KIND_SERVER, invocation.getSignature(),
+					(source == null) ? null : source.getSystem());
+		}
+		span.previous = previous;
+		active.put(thread, span);
+		return span;
+	}
+
+	/**
+	 * Finishes a span that has been started for the invocation. If the
+	 * span is a server span, the span that was active before is
+	 * reactivated. If the trace is sampled, the span is passed to the
+	 * sink.
+	 *
+	 * @param span The span to finish, may be null.
+	 * @param invocation The invocation of the span.
+	 */
+	public void finish(Span span, Invocation invocation) {
+		if (span == null) return;
+		if (span == unsampled) {
+			active.remove(Thread.currentThread());
+			return;
+		}
+		span.finish(invocation.getException() != null);
+		if (span.getKind() == Span.KIND_SERVER) {
+			Thread thread = Thread.currentThread();
+			if (span.previous == null) {
+				active.remove(thread);
+			} else {
+				active.put(thread, span.previous);
+				span.previous = null;
+			}
+		}
+		if (span.getContext().isSampled()) {
+			ISpanSink s = sink;
+			if (s != null) {
+				try {
+					s.record(span);
+				} catch (RuntimeException e) {
+					Logging.error(getClass(), "Span sink failed.", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decides whether a new trace is sampled.
+	 *
+	 * @return True if the trace is sampled, false otherwise.
+	 */
+	private synchronized boolean sample() {
+		if (rate == 0) return false;
+		counter += 1;
+		if (counter < rate) return false;
+		counter = 0;
+		return true;
+	}
+
+	/**
+	 * Creates a new span that continues the specified sampled context or
+	 * that starts a new sampled trace if the context is null.
+	 *
+	 * @param parent The context of the parent or null.
+	 * @param kind The kind of the span.
+	 * @param name The name of the span.
+	 * @param peer The peer of the span.
+	 * @return The new span.
+	 */
+	private Span create(TraceContext parent, int kind, String name, SystemID peer) {
+		TraceContext context = null;
+		if (parent == null) {
+			context = new TraceContext(identifier(), identifier(), true);
+		} else {
+			context = new TraceContext(parent.getTrace(), identifier(), true);
+		}
+		return new Span(context, (parent == null) ? 0 : parent.getSpan(), kind, name, peer);
+	}
+
+	/**
+	 * Returns a new random positive identifier.
+	 *
+	 * @return A new identifier.
+	 */
+	private long identifier() {
+		long id = 0;
+		while (id == 0) {
+			id = random.nextLong() & Long.MAX_VALUE;
+		}
+		return id;
+	}
+
+}
@@ -8,6 +8,17 @@ import java.io.PrintStream;
  * logging distinguishes between several logging types. The java logging is not
  * used because of the missing classes in J2ME-API.
  * 
+ * By default, messages are formatted and printed by the calling thread. 
+ * If the logging is set to asynchronous mode, messages are stored as 
+ * records in a bounded ring buffer and a single writer thread formats and
+ * prints them. In this mode, callers only hold a lock while the record is
+ * copied into the buffer. If the buffer is full, messages are dropped and
+ * counted. The writer thread terminates when it has been idle for some
+ * time so that it does not keep the virtual machine alive. To avoid the
+ * formatting of messages that will not be logged, callers can check the
+ * level before they create a message or they can pass the variable part of
+ * a message as detail that is only formatted when the message is printed.
+ * 
  * @author Marcus Handte
  */
 public final class Logging {
@@ -104,7 +115,95 @@ public final class Logging {
 	/**
 	 * The output stream used for logging.
 	 */
-	private static PrintStream out = System.out;
+	private static volatile PrintStream out = System.out;
+	
+	/**
+	 * The number of records that can be stored in the ring buffer.
+	 */
+	private static final int BUFFER_SIZE = 512;
+	
+	/**
+	 * The time in milliseconds after which an idle writer thread terminates.
+	 */
+	private static final long WRITER_IDLE = 2000;
+	
+	/**
+	 * The lock that guards the ring buffer and the writer thread.
+	 */
+	private static final Object LOCK = new Object();
+	
+	/**
+	 * The types of the buffered records.
+	 */
+	private static final String[] types = new String[BUFFER_SIZE];
+	
+	/**
+	 * The times of the buffered records.
+	 */
+	private static final long[] times = new long[BUFFER_SIZE];
+	
+	/**
+	 * The locations of the buffered records.
+	 */
+	private static final String[] locations = new String[BUFFER_SIZE];
+	
+	/**
+	 * The messages of the buffered records.
+	 */
+	private static final String[] messages = new String[BUFFER_SIZE];
+	
+	/**
+	 * The details of the buffered records that are appended to the messages
+	 * when the records are printed.
+	 */
+	private static final Object[] details = new Object[BUFFER_SIZE];
+	
+	/**
+	 * The exceptions of the buffered records.
+	 */
+	private static final Throwable[] exceptions = new Throwable[BUFFER_SIZE];
+	
+	/**
+	 * The index of the oldest buffered record.
+	 */
+	private static int head = 0;
+	
+	/**
+	 * The number of buffered records.
+	 */
+	private static int size = 0;
+	
+	/**
+	 * The number of records that have been dropped because the buffer was
+	 * full.
+	 */
+	private static int dropped = 0;
+	
+	/**
+	 * The number of dropped records that have been reported.
+	 */
+	private static int reported = 0;
+	
+	/**
+	 * Determines whether messages are printed asynchronously.
+	 */
+	private static volatile boolean ASYNCHRONOUS = false;
+	
+	/**
+	 * The thread that prints buffered records or null if there is none.
+	 */
+	private static Thread writer = null;
+	
+	/**
+	 * Determines whether the writer thread is printing a record that has
+	 * already been removed from the buffer.
+	 */
+	private static boolean printing = false;
+	
+	/**
+	 * The buffer that is used by the writer thread to format records.
+	 */
+	private static final StringBuffer format = new StringBuffer();
 
 	/**
 	 * Sets the verbosity level of the logger.
@@ -164,6 +263,84 @@ public final class Logging {
 			out = stream;	
     	}
     }
+    
+    /**
+     * Enables or disables the asynchronous mode. If the asynchronous mode is
+     * disabled, this method waits until all buffered messages are printed.
+     * 
+     * @param asynchronous True to print messages asynchronously, false to 
+     * 	print them synchronously.
+     */
+    public static void setAsynchronous(boolean asynchronous) {
+    	ASYNCHRONOUS = asynchronous;
+    	if (! asynchronous) {
+    		flush();
+    	}
+    }
+    
+    /**
+     * Determines whether messages are printed asynchronously.
+     * 
+     * @return True if messages are printed asynchronously.
+     */
+    public static boolean isAsynchronous() {
+    	return ASYNCHRONOUS;
+    }
+    
+    /**
+     * Waits until all buffered messages have been printed.
+     */
+    public static void flush() {
+    	synchronized (LOCK) {
+    		while ((size > 0 || printing) && writer != null) {
+    			try {
+    				LOCK.wait();
+    			} catch (InterruptedException e) {
+    				return;
+    			}
+    		}
+    	}
+    }
+    
+    /**
+     * Returns the number of messages that have been dropped because the
+     * buffer of the asynchronous mode was full.
+     * 
+     * @return The number of dropped messages.
+     */
+    public static int getDropped() {
+    	synchronized (LOCK) {
+    		return dropped;
+    	}
+    }
+    
+    /**
+     * Determines whether log messages are logged.
+     * 
+     * @return True if log messages are logged.
+     */
+    public static boolean isLog() {
+    	return LOG;
+    }
+    
+    /**
+     * Determines whether error messages are logged.
+     * 
+     * @return True if error messages are logged.
+     */
+    public static boolean isError() {
+    	return ERROR;
+    }
+    
+    /**
+     * Determines whether debug messages are logged. This can be used to
+     * avoid the construction of messages that will not be logged.
+     * 
+     * @return True if debug messages are logged.
+     */
+    public static boolean isDebug() {
+    	return DEBUG;
+    }
 
 	/**
 	  * Writes a log message to the specified output. Should be used if messages
@@ -174,7 +351,7 @@ public final class Logging {
 	  */
 	public static void log(String location, String message) {
 		if (!Logging.LOG || !accept(location)) return;
-		print("LOG", location, message, null);
+		print("LOG", location, message, null, null);
 	}
 
 
@@ -188,6 +365,23 @@ public final class Logging {
 	public static void log(Class location, String message){
 		log(((location == null)?null:location.getName()), message);
 	}
+
+	/**
+	 * Writes a log message with a detail to the specified output. The detail
+	 * is converted to a string and appended to the message when the message 
+	 * is printed. Note that the detail must not be modified afterwards, since
+	 * it may be formatted asynchronously.
+	 * 
+	 * @param location The source of the message used for filtering.
+	 * @param message The message to be logged.
+	 * @param detail The detail that is appended to the message.
+	 */
+	public static void log(Class location, String message, Object detail){
+		if (!Logging.LOG) return;
+		String name = (location == null)?null:location.getName();
+		if (!accept(name)) return;
+		print("LOG", name, message, detail, null);
+	}
     
 	/**
 	 * Writes an error message to the specified output. This method should be
@@ -200,7 +394,7 @@ public final class Logging {
 	 */    
     public static void error(String location, String message, Throwable e) {
 		if (!Logging.ERROR) return;
-    	print("ERR", location, message, e);
+    	print("ERR", location, message, null, e);
     }
     
  	/**
@@ -227,7 +421,7 @@ public final class Logging {
 	 */    	
 	public static void debug(String location, String message) {
 		if (!Logging.DEBUG || !accept(location)) return;	
-		print("DBG", location, message, null);	
+		print("DBG", location, message, null, null);	
 	}
 
 
@@ -244,24 +438,149 @@ public final class Logging {
 		debug(((location == null)?null:location.getName()), message);
     }
 
+	/**
+	 * Write a debug message with a detail to the specified output. The 
+	 * detail is converted to a string and appended to the message when the
+	 * message is printed. Thus, the message is not formatted if debug 
+	 * messages are disabled. Note that the detail must not be modified
+	 * afterwards, since it may be formatted asynchronously.
+	 * 
+	 * @param location The source of the message used for filtering.
+	 * @param message The message to be logged.
+	 * @param detail The detail that is appended to the message.
+	 */    
+    public static void debug(Class location, String message, Object detail) {
+		if (!Logging.DEBUG) return;
+		String name = (location == null)?null:location.getName();
+		if (!accept(name)) return;
+		print("DBG", name, message, detail, null);
+    }
+
 	/**
 	 * Prints the message and the stack trace of the exception if the exception
-	 * is not null using Gregor's pretty print format. If the location contains dots,
-	 * only the chars behind the last dot will be printed as location. This will 
-	 * effectively remove package names from locations.
+	 * is not null. In asynchronous mode, the message is stored in the buffer
+	 * and printed by the writer thread, otherwise it is printed directly.
 	 * 
 	 * @param type The message type to print.
 	 * @param location The location of the message to print.
 	 * @param message The message to print. 
+	 * @param detail The detail that is appended to the message or null.
 	 * @param e The exception to print.
 	 */
-    private synchronized static void print(String type, String location, String message, Throwable e){
-    	StringBuffer buffer = new StringBuffer();
+    private static void print(String type, String location, String message, Object detail, Throwable e){
+    	long time = System.currentTimeMillis();
+    	if (ASYNCHRONOUS) {
+    		synchronized (LOCK) {
+    			if (size == BUFFER_SIZE) {
+    				dropped += 1;
+    				return;
+    			}
+    			int index = (head + size) % BUFFER_SIZE;
+    			types[index] = type;
+    			times[index] = time;
+    			locations[index] = location;
+    			messages[index] = message;
+    			details[index] = detail;
+    			exceptions[index] = e;
+    			size += 1;
+    			if (writer == null) {
+    				writer = new Thread() {
+    					public void run() {
+    						write();
+    					}
+    				};
+    				writer.start();
+    			} else if (size == 1) {
+    				LOCK.notifyAll();
+    			}
+    		}
+    	} else {
+    		StringBuffer buffer = new StringBuffer();
+    		format(buffer, type, time, location, message, detail, e);
+    		PrintStream stream = out;
+    		synchronized (stream) {
+    			stream.print(buffer.toString());
+    		}
+    	}
+    }
+    
+    /**
+     * Called by the writer thread to print the buffered records. The method
+     * returns when the buffer has been empty for the idle period.
+     */
+    private static void write() {
+    	while (true) {
+    		String type, location, message;
+    		Object detail;
+    		Throwable e;
+    		long time;
+    		int missed = 0;
+    		synchronized (LOCK) {
+    			printing = false;
+    			if (size == 0) {
+    				LOCK.notifyAll();
+    				try {
+    					LOCK.wait(WRITER_IDLE);
+    				} catch (InterruptedException ex) {
+    					// terminate if the buffer is empty
+    				}
+    				if (size == 0) {
+    					writer = null;
+    					LOCK.notifyAll();
+    					return;
+    				}
+    			}
+    			type = types[head];
+    			time = times[head];
+    			location = locations[head];
+    			message = messages[head];
+    			detail = details[head];
+    			e = exceptions[head];
+    			locations[head] = null;
+    			messages[head] = null;
+    			details[head] = null;
+    			exceptions[head] = null;
+    			head = (head + 1) % BUFFER_SIZE;
+    			size -= 1;
+    			printing = true;
+    			if (reported != dropped) {
+    				missed = dropped - reported;
+    				reported = dropped;
+    			}
+    		}
+    		format.setLength(0);
+    		if (missed != 0) {
+    			format(format, "LOG", time, Logging.class.getName(), "Dropped messages: ", new Integer(missed), null);
+    		}
+    		format(format, type, time, location, message, detail, e);
+    		PrintStream stream = out;
+    		synchronized (stream) {
+    			stream.print(format.toString());
+    		}
+    	}
+    }
+    
+	/**
+	 * Formats the message and prints the stack trace of the exception if the 
+	 * exception is not null using Gregor's pretty print format. If the location 
+	 * contains dots, only the chars behind the last dot will be printed as 
+	 * location. This will effectively remove package names from locations.
+	 * 
+	 * @param buffer The buffer to append the formatted message to.
+	 * @param type The message type to print.
+	 * @param time The time of the message.
+	 * @param location The location of the message to print.
+	 * @param message The message to print. 
+	 * @param detail The detail that is appended to the message or null.
+	 * @param e The exception to print.
+	 */
+    private static void format(StringBuffer buffer, String type, long time, String location, 
+    		String message, Object detail, Throwable e) {
     	buffer.append('[');
 		buffer.append(type);
 		if (TIME != TIME_DISABLED) {
 			buffer.append('|');
-			buffer.append(timestamp(System.currentTimeMillis()));			
+			buffer.append(timestamp(time));			
 		} 
 		buffer.append('|');
 		if (location != null) {
@@ -274,6 +593,9 @@ public final class Logging {
 		}
 		buffer.append("] ");
 		buffer.append(message);
+		if (detail != null) {
+			buffer.append(detail);
+		}
 		if (e != null) {
 			buffer.append(" (");
 			buffer.append(e.getMessage());
@@ -285,7 +607,6 @@ public final class Logging {
 		} else {
 			buffer.append('\n');
 		}
-		out.print(buffer.toString());
     }
     
     /**
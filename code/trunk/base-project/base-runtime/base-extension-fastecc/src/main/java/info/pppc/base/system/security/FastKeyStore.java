@@ -29,9 +29,9 @@ public class FastKeyStore extends KeyStore {
 	 * 	multiple times.
 	 */
 	public static void initialize(ICertificateProvider provider) throws IllegalStateException {
-		if (KeyStore.instance != null) 
+		if (findInstance() != null) 
 			throw new IllegalStateException("Key store has already been initialized.");
-		instance = new FastKeyStore(provider);
+		setInstance(new FastKeyStore(provider));
 		AbstractExchange.registerInstance(AbstractExchange.PERFORM_FAST_ECDH, FastECDHExchange.class);
 	}	
 	
@@ -69,7 +69,7 @@ public final class Lease implements ISerializable {
 	protected static final Lease create(long timeout) {
 		Lease lease = new Lease();
 		lease.identifier = ObjectID.create();
-		lease.creator = SystemID.SYSTEM;
+		lease.creator = SystemID.getLocal();
 		lease.timeout = timeout;
 		return lease;
 	}
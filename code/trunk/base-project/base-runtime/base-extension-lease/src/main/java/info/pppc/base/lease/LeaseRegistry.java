@@ -9,6 +9,7 @@ import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
 
+import info.pppc.base.system.Invocation;
 import info.pppc.base.system.InvocationBroker;
 import info.pppc.base.system.InvocationException;
 import info.pppc.base.system.ReferenceID;
@@ -50,6 +51,13 @@ import info.pppc.base.system.util.Logging;
  * they always maintain DAGs if they use the registry to maintain remote
  * state. 
  * 
+ * All leases are maintained by a single scheduler that expires local
+ * leases and that bundles the refreshes of remote leases that become
+ * due within the same tick into a single update call per system. If
+ * implicit renewal is enabled, the regular invocations that are exchanged
+ * between two systems are treated as refreshes and explicit refreshes are 
+ * only performed if the systems do not communicate otherwise.
+ * 
  * @author Mac
  */
 public class LeaseRegistry implements IOperation, ILeaseRegistry {
@@ -62,6 +70,7 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 		ObjectStreamTranslator.register(Lease.class.getName(), Lease.ABBREVIATION);
 	}
 	
+	
 	/**
 	 * The storage is a storage for a single lease. It maintains
 	 * the listeners for a certain lease.
@@ -79,6 +88,18 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 		 * The lease that is maintained by this storage.
 		 */
 		private Lease lease = null;
+
+		/**
+		 * The point in time at which the scheduler will process the
+		 * storage. This is guarded by the scheduler.
+		 */
+		private long due = 0;
+
+		/**
+		 * The slot of the scheduler that contains the storage or -1 if
+		 * the storage is not scheduled. This is guarded by the scheduler.
+		 */
+		private int slot = -1;
 	
 		/**
 		 * Creates a new lease storage for the specified lease. 
@@ -177,20 +198,17 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 	 * It maintains a list of systems that must be notified if
 	 * the lease is removed.
 	 * 
-	 * @author Mac
+	 * @author Marcus Handte
 	 */
 	private final class LeaseStorage extends Storage {
 	
 		/**
-		 * This vector contains object arrays of length 2. The first
-		 * index denotes the system id of a certain system that has
-		 * sent an update and the second index denotes an integer that
-		 * denotes the last point in time when the system has been
-		 * updated. Each system is inserted exactly once in the vector
-		 * and the vector is ordered by timestamps in an descending
-		 * manner.
+		 * This hashtable hashes the system ids of the systems that
+		 * have sent an update to arrays of length 2 that contain
+		 * the point in time at which the system expires and the
+		 * point in time of the last explicit update.
 		 */
-		private Vector systems = new Vector();
+		private Hashtable systems = new Hashtable();
 	
 		/**
 		 * This is the point in time when the lease bound to the
@@ -227,28 +245,18 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 		 * the expiration date of the whole storage entry.
 		 * 
 		 * @param system The system that should be updated.
+		 * @param now The current system time.
 		 */
-		public void updateSystem(SystemID system) {
-			// calculate the new expiration date
-			long timeout = getLease().getTimeout();
-			long now = System.currentTimeMillis();
-			expiration = now + timeout;
-			// try to find the system in the existing entries
-			for (int i = systems.size() - 1; i >= 0; i--) {
-				Object[] o = (Object[])systems.elementAt(i);
-				SystemID sys = (SystemID)o[0];
-				if (sys.equals(system)) {
-					systems.removeElementAt(i);
-					o[1] = new Long(expiration);
-					systems.insertElementAt(o, 0);
-					return;
-				} 
+		public void updateSystem(SystemID system, long now) {
+			long extended = now + getLease().getTimeout();
+			expiration = Math.max(expiration, extended);
+			long[] expire = (long[])systems.get(system);
+			if (expire == null) {
+				systems.put(system, new long[] { extended, now });
+			} else {
+				expire[0] = Math.max(expire[0], extended);
+				expire[1] = now;
 			}
-			// add the system as it is not part of the queue 
-			Object[] o = new Object[2];
-			o[0] = system;
-			o[1] = new Long(expiration);
-			systems.insertElementAt(o, 0);
 		}
 	
 		/**
@@ -257,15 +265,7 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 		 * @param system The system that should be removed.
 		 */
 		public void removeSystem(SystemID system) {
-			// find the corresponding system and remove it
-			for (int i = systems.size() - 1 ; i >= 0; i--) {
-				Object[] o = (Object[])systems.elementAt(i);
-				SystemID sys = (SystemID)o[0];
-				if (sys.equals(system)) {
-					systems.removeElementAt(i);
-					return;
-				}
-			}
+			systems.remove(system);
 		}
 	
 		/**
@@ -276,27 +276,61 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 		 */
 		public SystemID[] getSystems() {
 			long now = System.currentTimeMillis();
-			// fill in the result vector 
-			Vector result = new Vector();
-			// run through systems and prune 
-			for (int i = systems.size() - 1; i >= 0; i--) {
-				Object[] o = (Object[])systems.elementAt(i);
-				Long exp = (Long)o[1];
-				if (exp.longValue() < now) {
-					// prune expired system
-					systems.removeElementAt(i);	
+			updateContacts();
+			Vector result = new Vector(systems.size());
+			Vector expired = null;
+			Enumeration e = systems.keys();
+			while (e.hasMoreElements()) {
+				SystemID system = (SystemID)e.nextElement();
+				long[] expire = (long[])systems.get(system);
+				if (expire[0] < now) {
+					if (expired == null) expired = new Vector();
+					expired.addElement(system);
 				} else {
-					// add non-expired system
-					result.insertElementAt(o[0], 0);	
+					result.addElement(system);
 				}
 			}
-			// wrap results
-			SystemID[] ids = new SystemID[result.size()];
-			for (int i = result.size() - 1; i >= 0; i--) {
-				ids[i] = (SystemID)result.elementAt(i);
+			// prune expired systems after the enumeration
+			if (expired != null) {
+				for (int i = expired.size() - 1; i >= 0; i--) {
+					systems.remove(expired.elementAt(i));
+				}
 			}
+			SystemID[] ids = new SystemID[result.size()];
+			result.copyInto(ids);
 			return ids;
 		}
+
+		/**
+		 * Extends the expiration dates of the systems that have contacted
+		 * this system since their last update, if implicit renewal is
+		 * enabled. Contacts only extend the expiration date up to the 
+		 * maximum period after the last explicit update. Thus, a system 
+		 * that no longer refreshes the lease explicitly, e.g. because its
+		 * remove call has been lost, expires even if it keeps sending
+		 * invocations. This method will also recalculate the expiration 
+		 * date of the whole storage entry.
+		 */
+		public void updateContacts() {
+			if (! implicit) return;
+			long timeout = getLease().getTimeout();
+			synchronized (contacts) {
+				Enumeration e = systems.keys();
+				while (e.hasMoreElements()) {
+					SystemID system = (SystemID)e.nextElement();
+					long[] contact = (long[])contacts.get(system);
+					if (contact == null) continue;
+					long[] expire = (long[])systems.get(system);
+					long extended = Math.min(contact[0], expire[1] + PERIOD_MAXIMUM) + timeout;
+					if (extended > expire[0]) {
+						expire[0] = extended;
+						if (extended > expiration) {
+							expiration = extended;
+						}
+					}
+				}
+			}
+		}
 	
 	}
 
@@ -304,15 +338,22 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 	 * The observer storage represents a lease on a remote system
 	 * that is observed by this system.
 	 * 
-	 * @author Mac
+	 * @author Marcus Handte
 	 */
 	private final class QueueStorage extends Storage {
 
 		/**
-		 * The time at which the next update should take place.
+		 * The time at which the lease will expire if it is not
+		 * refreshed.
 		 */
 		private long expiration = 0;
 
+		/**
+		 * The time at which the lease has been refreshed explicitly
+		 * for the last time or 0 if it has never been refreshed.
+		 */
+		private long confirmed = 0;
+
 		/**
 		 * Creates a new observer storage for the specified lease
 		 * with the specified initial update length.
@@ -344,234 +385,342 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 		public void setExpiration(long expiration) {
 			this.expiration = expiration;
 		}
-	}
 
+		/**
+		 * Returns the time at which the lease has been refreshed
+		 * explicitly for the last time.
+		 *
+		 * @return The time of the last explicit refresh or 0 if the
+		 * 	lease has never been refreshed explicitly.
+		 */
+		public long getConfirmed() {
+			return confirmed;
+		}
+
+		/**
+		 * Sets the time at which the lease has been refreshed
+		 * explicitly for the last time.
+		 *
+		 * @param confirmed The time of the last explicit refresh.
+		 */
+		public void setConfirmed(long confirmed) {
+			this.confirmed = confirmed;
+		}
 
+		/**
+		 * Returns the point in time at which the lease should be
+		 * refreshed. This is the expiration time minus the refresh
+		 * period. For short leases, at most half of the timeout is
+		 * used for the refresh.
+		 *
+		 * @return The point in time at which the lease should be
+		 * 	refreshed.
+		 */
+		public long getRenewal() {
+			long timeout = getLease().getTimeout();
+			return expiration - Math.min(PERIOD_REFRESH, timeout / 2);
+		}
+	}
 
 	/**
-	 * The lease queue is a queue that is used to refresh the leases
-	 * of a certain system.
+	 * The peer maintains the leases that are observed on a certain
+	 * remote system. The leases of a peer are refreshed by a single
+	 * call and at most one call is performed at any point in time.
+	 * The peer is guarded by the hashtable of remote peers.
 	 * 
-	 * @author Mac
+	 * @author Marcus Handte
 	 */
-	private final class LeaseQueue implements IOperation {
+	private final class Peer {
 	
 		/**
-		 * The monitor used to control the queue's signaling operation.
-		 */
-		private NullMonitor monitor = new NullMonitor();
-	
-		/**
-		 * The system represented by the queue.
+		 * The system represented by the peer.
 		 */
 		private SystemID system;
 	
 		/**
 		 * The registry proxy that points to the remote
-		 * system of the queue.
+		 * system of the peer.
 		 */
 		private ILeaseRegistry registry;
 	
 		/**
-		 * The vector that stores the entries of the queue.
+		 * The queue storages of the peer hashed by lease.
 		 */
-		private Vector queue = new Vector();
+		private Hashtable leases = new Hashtable();
 	
 		/**
-		 * Creates a new lease queue for the specified system.
+		 * A flag that indicates whether a refresh call is performed.
+		 */
+		private boolean busy = false;
+
+		/**
+		 * The time at which a synchronous invocation to the system
+		 * has been completed for the last time.
+		 */
+		private long contact = 0;
+
+		/**
+		 * Creates a new peer for the specified system.
 		 * 
-		 * @param system The system of the queue.
+		 * @param system The system of the peer.
 		 */
-		public LeaseQueue(SystemID system) {
+		public Peer(SystemID system) {
 			this.system = system;
 			LeaseRegistryProxy proxy = new LeaseRegistryProxy();
 			proxy.setTargetID(new ReferenceID(system, ILeaseRegistry.REGISTRY_ID));
-			proxy.setSourceID(new ReferenceID(SystemID.SYSTEM, ILeaseRegistry.REGISTRY_ID));
+			proxy.setSourceID(new ReferenceID(broker.getSystemID(), ILeaseRegistry.REGISTRY_ID));
 			proxy.setGateway(true);
 			registry = proxy; 
 		}
 			
 		/**
-		 * Returns the monitor for the lease queue.
+		 * Returns the system represented by the peer.
 		 * 
-		 * @return The monitor of the queue.
+		 * @return The system of the peer.
 		 */
-		public IMonitor getMonitor() {
-			return monitor;
+		public SystemID getSystem() {
+			return system;
 		}
 			
 		/**
-		 * Inserts a queue storage entry ordered into the queue.
+		 * Returns the registry proxy that points to the remote
+		 * system of the peer.
 		 * 
-		 * @param storage The storage that should be inserted.
+		 * @return The remote registry of the peer.
 		 */
-		public void insert(QueueStorage storage) {
-			synchronized (queue) {
-				long expireNew = storage.getExpiration();
-				for (int i = 0, s = queue.size(); i < s; i++) {
-					QueueStorage store = (QueueStorage)queue.elementAt(i);
-					long expireOld = store.getExpiration();
-					if (expireNew < expireOld) {
-						queue.insertElementAt(storage, i);
-						queue.notify();
-						return;
-					}
-				}
-				queue.addElement(storage);
-				queue.notify();				
+		public ILeaseRegistry getRegistry() {
+			return registry;
+		}
+
+		/**
+		 * Returns the storage for the specified lease.
+		 *
+		 * @param lease The lease to lookup.
+		 * @return The storage of the lease or null if there is none.
+		 */
+		public QueueStorage get(Lease lease) {
+			return (QueueStorage)leases.get(lease);
+		}
+
+		/**
+		 * Adds the specified storage to the peer.
+		 *
+		 * @param storage The storage to add.
+		 */
+		public void put(QueueStorage storage) {
+			leases.put(storage.getLease(), storage);
+		}
+
+		/**
+		 * Removes the storage for a certain lease from the peer.
+		 *
+		 * @param lease The lease whose storage should be removed.
+		 * @return The storage of the lease or null if there is none.
+		 */
+		public QueueStorage remove(Lease lease) {
+			return (QueueStorage)leases.remove(lease);
+		}
+
+		/**
+		 * Returns the storages of the peer.
+		 *
+		 * @return An enumeration of the storages of the peer.
+		 */
+		public Enumeration elements() {
+			return leases.elements();
+		}
+
+		/**
+		 * Determines whether the peer maintains any storages.
+		 *
+		 * @return True if the peer does not contain any storage.
+		 */
+		public boolean isEmpty() {
+			return leases.isEmpty();
+		}
+
+		/**
+		 * Determines whether a refresh call is performed.
+		 *
+		 * @return True if a refresh call is performed.
+		 */
+		public boolean isBusy() {
+			return busy;
+		}
+
+		/**
+		 * Sets the flag that indicates whether a refresh call is performed.
+		 *
+		 * @param busy True if a refresh call is performed.
+		 */
+		public void setBusy(boolean busy) {
+			this.busy = busy;
+		}
+
+		/**
+		 * Returns the time at which a synchronous invocation to the
+		 * system has been completed for the last time.
+		 *
+		 * @return The time of the last completed invocation or 0 if
+		 * 	no invocation has been completed.
+		 */
+		public long getContact() {
+			return contact;
+		}
+
+		/**
+		 * Sets the time at which a synchronous invocation to the
+		 * system has been completed for the last time.
+		 *
+		 * @param contact The time of the last completed invocation.
+		 */
+		public void setContact(long contact) {
+			this.contact = contact;
+		}
+	}
+
+	/**
+	 * The wheel is a hashed timing wheel that schedules the expiration
+	 * of local leases and the refresh of remote leases. The wheel
+	 * consists of a number of slots that span one tick each. A storage
+	 * is hashed to the slot of its due time, storages whose due time
+	 * lies more than one revolution ahead remain in their slot until
+	 * they are due. Scheduling and canceling a storage does not depend
+	 * on the total number of storages.
+	 *
+	 * @author Marcus Handte
+	 */
+	private final class Wheel {
+
+		/**
+		 * The slots of the wheel. Each slot contains the storages that
+		 * are due in the tick of the slot or in some later revolution.
+		 */
+		private Vector[] slots = new Vector[WHEEL_SLOTS];
+
+		/**
+		 * The start of the tick that will be processed next.
+		 */
+		private long cursor = 0;
+
+		/**
+		 * The number of storages that are scheduled.
+		 */
+		private int size = 0;
+
+		/**
+		 * Creates a new empty wheel.
+		 */
+		public Wheel() {
+			for (int i = 0; i < slots.length; i++) {
+				slots[i] = new Vector();
 			}
 		}
 		
 		/**
-		 * Removes the storage for a certain lease from the queue.
-		 * If the lease does not have a storage, the method will
-		 * return null, otherwise it will return the storage.
+		 * Schedules the storage at the specified point in time. If the
+		 * storage is already scheduled, it is rescheduled.
 		 * 
-		 * @param lease The lease whose storage should be looked up.
-		 * @return The queue storage for the lease or null if there
-		 * 	is no such storage.
+		 * @param storage The storage to schedule.
+		 * @param due The point in time at which the storage is due.
 		 */
-		public QueueStorage remove(Lease lease) {
-			synchronized (queue) {
-				for (int i = 0, s = queue.size(); i < s; i++) {
-					QueueStorage store = (QueueStorage)queue.elementAt(i);
-					if (store.getLease().equals(lease)) {
-						queue.removeElementAt(i);
-						return store;	
-					}
-				}
-				return null;				
+		public synchronized void schedule(Storage storage, long due) {
+			if (storage.slot != -1) {
+				slots[storage.slot].removeElement(storage);
+				size -= 1;
 			}
+			if (size == 0) {
+				long now = System.currentTimeMillis();
+				cursor = now - now % PERIOD_TICK;
+			}
+			int slot = (int)((Math.max(due, cursor) / PERIOD_TICK) % WHEEL_SLOTS);
+			storage.due = due;
+			storage.slot = slot;
+			slots[slot].addElement(storage);
+			size += 1;
+			notify();
 		}
 
-	
 		/**
-		 * Performs the event notification and the 
-		 * remote calls for a specific system. 
-		 * 
-		 * @param monitor The monitor that is used to 
-		 * 	cancel the operation.
+		 * Removes the storage from the wheel.
+		 *
+		 * @param storage The storage to remove.
+		 * @return True if the storage has been scheduled, false otherwise.
+		 */
+		public synchronized boolean cancel(Storage storage) {
+			if (storage.slot == -1) return false;
+			slots[storage.slot].removeElement(storage);
+			storage.slot = -1;
+			size -= 1;
+			return true;
+		}
+
+		/**
+		 * Waits until some storages are due and removes them from the
+		 * wheel. A storage is processed at most one tick after it became
+		 * due.
+		 *
+		 * @param monitor The monitor that is used to cancel the wait.
+		 * @return The storages that are due or an empty vector if the
+		 * 	monitor has been canceled.
 		 */
-		public void perform(IMonitor monitor) {
+		public synchronized Vector next(IMonitor monitor) {
+			Vector result = new Vector();
 			while (! monitor.isCanceled()) {
-				// determine whether queue can shutdown
-				synchronized (remote) {
-					if (queue.isEmpty()) {
-						Logging.debug(getClass(), "Stopping empty lease queue for system " + system + ".");
-						remote.remove(system);
-						monitor.cancel();
-						continue;
-					}
-				}
-				// collect storage ids for refresh or wait for next refresh
-				Vector leases = new Vector();				
-				synchronized (queue) {
-					QueueStorage storage = (QueueStorage)queue.elementAt(0);
-					long now = System.currentTimeMillis();
-					long refresh = now + PERIOD_REFRESH;
-					if (storage.getExpiration() > refresh) {
-						try {
-							queue.wait(storage.getExpiration() - refresh);	
-						} catch (InterruptedException e) {
-							Logging.error(getClass(), "Lease refresh got interrupted.", e);
-						}
-						continue;
-					} else {
-						Lease lease = storage.getLease();
-						long period = lease.getTimeout();
-						leases.addElement(lease);
-						for (int i = 1, s = queue.size(); i < s; i++) {
-							storage = (QueueStorage)queue.elementAt(i);
-							lease = storage.getLease();
-							if (storage.getExpiration() <= refresh) {
-								// adjust newly inserted leases
-								if (storage.getExpiration() == 0) {
-									storage.setExpiration(now + lease.getTimeout());								
-								}
-								leases.addElement(lease);
-							} else if (lease.getTimeout() <= period + PERIOD_REFRESH &&
-								lease.getTimeout() >= period - PERIOD_REFRESH) { 
-								leases.addElement(lease);
-							}
-						}
-					}
-				}
 				long now = System.currentTimeMillis();
-				// perform refresh and update storage entries
-				try {
-					//Logging.debug(getClass(), "Performing lease refresh on " + system 
-					//	+ " with " + leases.size() + " leases.");
-					Vector remove = registry.update(SystemID.SYSTEM, leases);
-					// remove storages whose lease has timed out remotely
-					for (int i = remove.size() - 1; i >= 0; i--) {
-						Lease lease = (Lease)remove.elementAt(i);
-						synchronized (queue) {
-							QueueStorage storage = remove(lease);
-							if (storage != null) {
-								Event e = new Event
-									(EVENT_LEASE_EXPIRED, LeaseRegistry.this, 
-										lease, false);
-								storage.notifyListeners(e);								
-							}
-						}
-					}
-					// perform lease refresh on updated leases
-					for (int i = 0, s = leases.size(); i < s; i++) {
-						Lease lease = (Lease)leases.elementAt(i);
-						synchronized (queue) {
-							QueueStorage storage = remove(lease);
-							if (storage != null) {
-								storage.setExpiration(now + lease.getTimeout());
-								insert(storage);
-							}
-						}
-					}
-				} catch (InvocationException e) {
-					//Logging.error(getClass(), "Lease extension failed on " + system + ".", e);
-					Logging.debug(getClass(), "Lease extension failed on " + system + ".");
+				long end = cursor + PERIOD_TICK;
+				if (size == 0 || now < end) {
 					try {
-						synchronized (queue) {
-							queue.wait(PERIOD_WAIT);	
+						if (size == 0) {
+							wait();
+						} else {
+							wait(end - now);
 						}
-					} catch (InterruptedException ix) {
+					} catch (InterruptedException e) {
 						Logging.error(getClass(), "Thread got interrupted.", e);
 					}
-				} catch (Throwable t) {
-					Logging.error(getClass(), "Caught unexpected runtime exception.", t);
+					continue;
 				}
-				// expire expired leases that are not initial (0) but timed out
-				synchronized (queue) {
-					for (int i = 0; i < queue.size(); i++) {
-						QueueStorage storage = (QueueStorage)queue.elementAt(i);
-						long timeout = storage.getExpiration();
-						if (timeout == 0) {
-							continue;
-						} else if (timeout < now) {
-							Lease lease = storage.getLease();
-							queue.removeElementAt(i);
-							i -= 1;
-							Logging.debug(getClass(), "Removing remote lease " + lease 
-								+ " on " + system + " due to timeout.");
-							Event e = new Event(EVENT_LEASE_EXPIRED, 
-									LeaseRegistry.this, lease, false);
-							storage.notifyListeners(e);
-						}
+				// skip revolutions that have been missed completely
+				if (now - end >= PERIOD_TICK * WHEEL_SLOTS) {
+					cursor = now - now % PERIOD_TICK - PERIOD_TICK * WHEEL_SLOTS;
+					end = cursor + PERIOD_TICK;
+				}
+				Vector slot = slots[(int)((cursor / PERIOD_TICK) % WHEEL_SLOTS)];
+				for (int i = slot.size() - 1; i >= 0; i--) {
+					Storage storage = (Storage)slot.elementAt(i);
+					if (storage.due < end) {
+						slot.removeElementAt(i);
+						storage.slot = -1;
+						size -= 1;
+						result.addElement(storage);
 					}
 				}
+				cursor = end;
+				if (! result.isEmpty()) break;
 			}
-			// cleanup on shutdown
-			synchronized (queue) {
-				while (!queue.isEmpty()) {
-					QueueStorage storage = (QueueStorage)queue.elementAt(0);
-					Lease lease = storage.getLease();
-					queue.removeElementAt(0);
-					Logging.debug(getClass(), "Removing remote lease " + lease 
-						+ " on " + system + " due to forced shutdown.");
-					Event e = new Event(EVENT_LEASE_EXPIRED, LeaseRegistry.this,
-						lease, false);
-					storage.notifyListeners(e);
+			return result;
+		}
+
+		/**
+		 * Wakes up the thread that is waiting for due storages.
+		 */
+		public synchronized void wakeup() {
+			notifyAll();
+		}
+	
+		/**
+		 * Removes all storages from the wheel.
+		 */
+		public synchronized void clear() {
+			for (int i = 0; i < slots.length; i++) {
+				Vector slot = slots[i];
+				for (int j = slot.size() - 1; j >= 0; j--) {
+					((Storage)slot.elementAt(j)).slot = -1;
 				}
+				slot.removeAllElements();
 			}
+			size = 0;
 		}
 	}
 	
@@ -617,6 +766,19 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 	 */
 	public static final long PERIOD_WAIT = 1000;
 
+	/**
+	 * The granularity of the scheduler. Leases are expired and refreshed
+	 * at most one tick after they are due and all refreshes that become
+	 * due within the same tick are bundled.
+	 */
+	public static final long PERIOD_TICK = 1000;
+
+	/**
+	 * The number of slots of the scheduler. Together with the tick period
+	 * this should cover the maximum timeout period.
+	 */
+	private static final int WHEEL_SLOTS = 64;
+
 	/**
 	 * This event is fired whenever the lease that is observed by a
 	 * listener is expired. This might either occur if the remove
@@ -630,25 +792,55 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 	public static final int EVENT_LEASE_EXPIRED = 1;
 
 	/**
-	 * The local instance of the lease registry.
+	 * The local instance of the lease registry of the default broker.
 	 */
 	protected static LeaseRegistry instance;
 
+	/**
+	 * The local instances of the lease registry of additional brokers
+	 * hashed by broker.
+	 */
+	private static Hashtable instances = new Hashtable();
+
 	/**
 	 * The invocation broker of the lease registry.
 	 */
 	private InvocationBroker broker;
 
 	/**
-	 * The remote lease queues hashed by system id.
+	 * The remote peers hashed by system id.
 	 */
 	private Hashtable remote = new Hashtable();
 	
 	/**
-	 * The local lease storages ordered by the time they will 
-	 * expire.
+	 * The local lease storages hashed by lease.
+	 */
+	private Hashtable local = new Hashtable();
+
+	/**
+	 * The scheduler that expires local leases and refreshes remote
+	 * leases.
+	 */
+	private Wheel wheel = new Wheel();
+
+	/**
+	 * A flag that indicates whether regular invocations are treated
+	 * as implicit refreshes.
+	 */
+	private boolean implicit = false;
+
+	/**
+	 * The hashtable that hashes the system ids of the systems that have
+	 * exchanged invocations with this system to arrays of length 1 that
+	 * contain the time of the last exchange. This is only maintained if
+	 * implicit renewal is enabled.
 	 */
-	private Vector local = new Vector();
+	private Hashtable contacts = new Hashtable();
+
+	/**
+	 * The time at which outdated contacts have been removed.
+	 */
+	private long pruned = 0;
 
 	/**
 	 * Creates a new lease registry for the specified invocation broker.
@@ -658,22 +850,40 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 	protected LeaseRegistry(InvocationBroker ibroker) {
 		broker = ibroker;
 		final NullMonitor monitor = new NullMonitor();
+		final IListener observer = new IListener() {
+			public void handleEvent(Event event) {
+				if (! implicit) return;
+				Invocation invocation = (Invocation)event.getData();
+				boolean received = (event.getType() == InvocationBroker.EVENT_INVOCATION_RECEIVED);
+				ReferenceID reference = received ? invocation.getSource() : invocation.getTarget();
+				if (reference == null) return;
+				SystemID system = reference.getSystem();
+				if (system == null || system.equals(broker.getSystemID())) return;
+				contact(system, ! received);
+			}
+		};
+		broker.addBrokerListener(InvocationBroker.EVENT_INVOCATION_RECEIVED 
+			| InvocationBroker.EVENT_INVOCATION_CONFIRMED, observer);
 		broker.addBrokerListener
 			(InvocationBroker.EVENT_BROKER_SHUTDOWN, 
 				new IListener() {
 					public void handleEvent(Event event) {
 						Logging.debug(getClass(), "Removing lease registry due to broker shutdown.");
-						synchronized (local) {
-							monitor.cancel();
-							local.notifyAll();
-						}
+						broker.removeBrokerListener(InvocationBroker.EVENT_INVOCATION_RECEIVED 
+							| InvocationBroker.EVENT_INVOCATION_CONFIRMED, observer);
+						monitor.cancel();
+						wheel.wakeup();
 						try {
 							monitor.join();	
 						} catch (InterruptedException e) {
 							Logging.error(getClass(), "Thread got interrupted.", e);	
 						}
 						broker.getObjectRegistry().removeObject(ILeaseRegistry.REGISTRY_ID);
-						instance = null;
+						if (instance == LeaseRegistry.this) {
+							instance = null;
+						} else {
+							instances.remove(broker);
+						}
 					}
 				});
 		LeaseRegistrySkeleton skeleton = new LeaseRegistrySkeleton();
@@ -684,15 +894,58 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 
 	/**
 	 * Creates, registers and returns the local instance of the lease 
-	 * registry.
+	 * registry of the broker of the calling thread.
 	 * 
 	 * @return The instance of the local lease registry.
 	 */
 	public static LeaseRegistry getInstance() {
-		if (instance == null) {
-			instance = new LeaseRegistry(InvocationBroker.getInstance());
+		InvocationBroker context = InvocationBroker.getBinding();
+		if (context == null) {
+			if (instance == null) {
+				instance = new LeaseRegistry(InvocationBroker.getInstance());
+			}
+			return instance;
+		}
+		synchronized (instances) {
+			LeaseRegistry registry = (LeaseRegistry)instances.get(context);
+			if (registry == null) {
+				registry = new LeaseRegistry(context);
+				instances.put(context, registry);
+			}
+			return registry;
 		}
-		return instance;
+	}
+
+	/**
+	 * Enables or disables implicit renewal. If implicit renewal is enabled,
+	 * every invocation received from a system refreshes the local leases
+	 * observed by the system and every synchronous invocation that has been
+	 * completed by a system refreshes the remote leases observed on the
+	 * system. Explicit refreshes are only performed if the systems do not
+	 * exchange invocations within the refresh period and after the maximum
+	 * period. Implicit refreshes never extend a lease beyond the maximum
+	 * period after the last explicit refresh. Implicit renewal should be
+	 * enabled on all systems that share leases. By default, implicit 
+	 * renewal is disabled.
+	 *
+	 * @param implicit True to enable implicit renewal, false to disable it.
+	 */
+	public void setImplicit(boolean implicit) {
+		this.implicit = implicit;
+		if (! implicit) {
+			synchronized (contacts) {
+				contacts.clear();
+			}
+		}
+	}
+
+	/**
+	 * Determines whether implicit renewal is enabled.
+	 *
+	 * @return True if implicit renewal is enabled, false otherwise.
+	 */
+	public boolean isImplicit() {
+		return implicit;
 	}
 
 
@@ -740,20 +993,8 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 			(lease, now + timeout + PERIOD_GRACE);
 		storage.addListener(listener);
 		synchronized (local) {
-			// insert lease and storage at the right place
-			boolean added = false;
-			for (int i = 0, s = local.size(); i < s; i++)  {
-				LeaseStorage store = (LeaseStorage)local.elementAt(i);
-				if (store.getExpiration() > storage.getExpiration()) {
-					local.insertElementAt(storage, i);
-					added = true;
-					break;	
-				}
-			}
-			if (! added) {
-				local.addElement(storage);
-			}
-			local.notify();
+			local.put(lease, storage);
+			wheel.schedule(storage, storage.getExpiration());
 		}
 		return lease;
 	}
@@ -791,42 +1032,34 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 	 */
 	public boolean remove(final Lease lease, boolean notify) {
 		LeaseStorage removed = null;
+		final SystemID[] systems;
 		synchronized (local) {
-			for (int i = 0, s = local.size(); i < s; i++) {
-				LeaseStorage storage = (LeaseStorage)local.elementAt(i);
-				if (storage.getLease().equals(lease)) {
-					local.removeElementAt(i);
-					removed = storage;
-					break;
-				}
-			}
+			removed = (LeaseStorage)local.remove(lease);
+			if (removed == null) return false;
+			wheel.cancel(removed);
+			systems = removed.getSystems();
 		}
-		if (removed != null) {
-			final SystemID[] systems = removed.getSystems();
-			if (notify && systems.length > 0) {
-				for (int i = 0; i < systems.length; i++) {
-					final int id = i; 
-					IOperation notification = new IOperation() {
-						public void perform(IMonitor monitor) {
-							LeaseRegistryProxy proxy = new LeaseRegistryProxy();
-							proxy.setGateway(true);
-							proxy.setSourceID(new ReferenceID(SystemID.SYSTEM, ILeaseRegistry.REGISTRY_ID));
-							proxy.setTargetID(new ReferenceID(systems[id], ILeaseRegistry.REGISTRY_ID));
-							try {
-								proxy.remove(SystemID.SYSTEM, lease);
-							} catch (InvocationException e) {
-								Logging.debug(getClass(), "Lease remove notification failed for " 
-									+ lease + " on system " + systems[id] + ".");
-							}
+		if (notify && systems.length > 0) {
+			for (int i = 0; i < systems.length; i++) {
+				final int id = i;
+				IOperation notification = new IOperation() {
+					public void perform(IMonitor monitor) {
+						LeaseRegistryProxy proxy = new LeaseRegistryProxy();
+						proxy.setGateway(true);
+						proxy.setSourceID(new ReferenceID(broker.getSystemID(), ILeaseRegistry.REGISTRY_ID));
+						proxy.setTargetID(new ReferenceID(systems[id], ILeaseRegistry.REGISTRY_ID));
+						try {
+							proxy.remove(broker.getSystemID(), lease);
+						} catch (InvocationException e) {
+							Logging.debug(getClass(), "Lease remove notification failed for "
+								+ lease + " on system " + systems[id] + ".");
 						}
-					};
-					broker.performOperation(notification);
-				}
+					}
+				};
+				broker.performOperation(notification);
 			}
-			return true;
-		} else {
-			return false;
-		}	
+		}
+		return true;
 	}
 	
 	/**
@@ -845,18 +1078,20 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 	 */
 	public void hook(Lease lease, IListener listener) {
 		synchronized (remote) {
-			LeaseQueue queue = (LeaseQueue)remote.get(lease.getCreator());
-			if (queue == null) {
-				queue = new LeaseQueue(lease.getCreator());
-				remote.put(lease.getCreator(), queue);
-				broker.performOperation(queue, queue.getMonitor());
+			Peer peer = (Peer)remote.get(lease.getCreator());
+			if (peer == null) {
+				peer = new Peer(lease.getCreator());
+				remote.put(lease.getCreator(), peer);
 			}
-			QueueStorage storage = queue.remove(lease);
+			QueueStorage storage = peer.get(lease);
 			if (storage == null) {
-				storage = new QueueStorage(lease, 0);
+				// refresh new leases immediately
+				long now = System.currentTimeMillis();
+				storage = new QueueStorage(lease, now + lease.getTimeout());
+				peer.put(storage);
+				wheel.schedule(storage, now);
 			}
 			storage.addListener(listener);
-			queue.insert(storage);
 		}
 	}
 	
@@ -898,21 +1133,17 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 	 */	
 	public boolean unhook(final Lease lease, IListener listener, boolean notify) {
 		synchronized (remote) {
-			LeaseQueue queue = (LeaseQueue)remote.get(lease.getCreator());
-			if (queue != null) {
-				QueueStorage storage = queue.remove(lease);
-				if (storage != null) {
-					storage.removeListener(listener);
-					if (storage.hasListeners()) {
-						queue.insert(storage);
-						return true;	
-					} 
-					// fall through at else and perform remote notification
-				} else {
-					return false;
-				}
-			} else {
-				return false;
+			Peer peer = (Peer)remote.get(lease.getCreator());
+			if (peer == null) return false;
+			QueueStorage storage = peer.get(lease);
+			if (storage == null) return false;
+			storage.removeListener(listener);
+			if (storage.hasListeners()) return true;
+			// remove the storage and perform remote notification
+			peer.remove(lease);
+			wheel.cancel(storage);
+			if (peer.isEmpty()) {
+				remote.remove(peer.getSystem());
 			}
 		}
 		if (notify) {
@@ -920,11 +1151,11 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 			IOperation notification = new IOperation() {
 				public void perform(IMonitor monitor) {
 					LeaseRegistryProxy proxy = new LeaseRegistryProxy();
-					proxy.setSourceID(new ReferenceID(SystemID.SYSTEM, ILeaseRegistry.REGISTRY_ID));
+					proxy.setSourceID(new ReferenceID(broker.getSystemID(), ILeaseRegistry.REGISTRY_ID));
 					proxy.setTargetID(new ReferenceID(lease.getCreator(), ILeaseRegistry.REGISTRY_ID));
 					proxy.setGateway(true);
 					try {
-						proxy.unhook(SystemID.SYSTEM, lease);
+						proxy.unhook(broker.getSystemID(), lease);
 					} catch (InvocationException e) {
 						Logging.debug(getClass(), "Lease unhook notification failed for " 
 							+ lease + ".");
@@ -936,82 +1167,275 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 		return true;
 	}
 	
-// local operation that removes locally created leases
-	
+// scheduler operation that expires local and refreshes remote leases
 	
 	/**
-	 * This operation checks whether locally created leases are no
-	 * longer of interest to any remote system. If this happens
-	 * it removes the leases and notifies the corresponding listeners.
+	 * This operation runs the scheduler of the registry. It removes
+	 * locally created leases that are no longer of interest to any
+	 * remote system and notifies the corresponding listeners. It also
+	 * bundles the refreshes of remote leases that become due within
+	 * the same tick into a single call per remote system.
 	 * 
 	 * @param monitor The monitor used to stop the operation.
 	 * @throws Exception Should never be thrown.
 	 */
 	public void perform(IMonitor monitor) throws Exception {
-		monitor: while (true) {
-			LeaseStorage removed = null;
-			synchronized (local) {
-				// wait until queue contains entries
-				while (local.isEmpty()) {
-					if (monitor.isCanceled()) break monitor;
-					try {
-						local.wait();
-					} catch (InterruptedException e) {
-						Logging.error(getClass(), "Thread got interrupted.", e);
-					}
-				}
-				// wait upon oldest entry expired
-				LeaseStorage storage = (LeaseStorage)local.elementAt(0);
-				long now = System.currentTimeMillis();
-				if (storage.getExpiration() <= now) {
-					// remove storage entry and schedule signaling
-					local.removeElementAt(0);
-					removed = storage;
+		while (! monitor.isCanceled()) {
+			Vector storages = wheel.next(monitor);
+			long now = System.currentTimeMillis();
+			Hashtable batches = new Hashtable();
+			for (int i = 0, s = storages.size(); i < s; i++) {
+				Object storage = storages.elementAt(i);
+				if (storage instanceof LeaseStorage) {
+					expire((LeaseStorage)storage, now);
 				} else {
-					try {
-						local.wait(storage.getExpiration() - now);
-					} catch (InterruptedException e) {
-						continue monitor;
+					QueueStorage store = (QueueStorage)storage;
+					SystemID system = store.getLease().getCreator();
+					Vector batch = (Vector)batches.get(system);
+					if (batch == null) {
+						batch = new Vector();
+						batches.put(system, batch);
 					}
+					batch.addElement(store);
 				}
 			}
-			if (removed != null) {
-				Lease lease = removed.getLease();
-				Logging.debug(getClass(), "Removing local lease " + lease + " due to timeout.");							
-				// perform local timeout notification
-				Event e = new Event(EVENT_LEASE_EXPIRED, this, lease, false);
-				removed.notifyListeners(e);
+			Enumeration e = batches.keys();
+			while (e.hasMoreElements()) {
+				SystemID system = (SystemID)e.nextElement();
+				refresh(system, (Vector)batches.get(system), now);
+			}
+			if (now - pruned > PERIOD_MAXIMUM) {
+				prune(now);
 			}
 		}
-		// remove all running local queue entries
+		// remove all local and remote storages
+		Vector storages = new Vector();
 		synchronized (local) {
-			for (int i = 0, s = local.size(); i < s; i++) {
-				LeaseStorage storage = (LeaseStorage)local.elementAt(0);
-				Lease lease = storage.getLease();
-				local.removeElementAt(0);
-				// perform local removal notification
-				Event e = new Event(EVENT_LEASE_EXPIRED, this, lease, false);
-				storage.notifyListeners(e);
+			Enumeration e = local.elements();
+			while (e.hasMoreElements()) {
+				storages.addElement(e.nextElement());
+			}
+			local.clear();
+		}
+		synchronized (remote) {
+			Enumeration e = remote.elements();
+			while (e.hasMoreElements()) {
+				Peer peer = (Peer)e.nextElement();
+				Enumeration p = peer.elements();
+				while (p.hasMoreElements()) {
+					storages.addElement(p.nextElement());
+				}
 			}
+			remote.clear();
 		}
-		Vector queues = new Vector();
-		// shutdown all running remote queues
+		wheel.clear();
+		for (int i = 0, s = storages.size(); i < s; i++) {
+			Storage storage = (Storage)storages.elementAt(i);
+			Lease lease = storage.getLease();
+			Logging.debug(getClass(), "Removing lease " + lease + " due to forced shutdown.");
+			Event e = new Event(EVENT_LEASE_EXPIRED, this, lease, false);
+			storage.notifyListeners(e);
+		}
+	}
+
+	/**
+	 * Called by the scheduler when a local lease storage is due. If
+	 * the lease has been refreshed in the meantime, the storage is
+	 * rescheduled, otherwise the lease is removed and its listeners
+	 * are notified.
+	 *
+	 * @param storage The storage that is due.
+	 * @param now The current system time.
+	 */
+	private void expire(LeaseStorage storage, long now) {
+		Lease lease = storage.getLease();
+		synchronized (local) {
+			if (local.get(lease) != storage) return;
+			storage.updateContacts();
+			if (storage.getExpiration() > now) {
+				wheel.schedule(storage, storage.getExpiration());
+				return;
+			}
+			local.remove(lease);
+		}
+		Logging.debug(getClass(), "Removing local lease " + lease + " due to timeout.");
+		// perform local timeout notification
+		Event e = new Event(EVENT_LEASE_EXPIRED, this, lease, false);
+		storage.notifyListeners(e);
+	}
+
+	/**
+	 * Called by the scheduler when the refresh of some remote lease
+	 * storages is due. The storages are extended by the remaining
+	 * storages of the same system that become due within the refresh
+	 * period and they are refreshed using a single call. If a call to
+	 * the system is already performed, the storages are rescheduled.
+	 *
+	 * @param system The system that hosts the leases.
+	 * @param storages The storages that are due.
+	 * @param now The current system time.
+	 */
+	private void refresh(SystemID system, Vector storages, long now) {
+		final Peer peer;
+		final Vector batch = new Vector();
 		synchronized (remote) {
-			Enumeration e = remote.keys();
+			peer = (Peer)remote.get(system);
+			if (peer == null) return;
+			for (int i = 0, s = storages.size(); i < s; i++) {
+				QueueStorage storage = (QueueStorage)storages.elementAt(i);
+				if (peer.get(storage.getLease()) == storage) {
+					batch.addElement(storage);
+				}
+			}
+			if (batch.isEmpty()) return;
+			if (implicit) {
+				// extend storages that have been refreshed implicitly
+				long contact = peer.getContact();
+				for (int i = batch.size() - 1; i >= 0; i--) {
+					QueueStorage storage = (QueueStorage)batch.elementAt(i);
+					long expiration = contact + storage.getLease().getTimeout();
+					if (expiration > storage.getExpiration() 
+							&& now - storage.getConfirmed() < PERIOD_MAXIMUM) {
+						storage.setExpiration(expiration);
+						if (storage.getRenewal() > now) {
+							batch.removeElementAt(i);
+							wheel.schedule(storage, storage.getRenewal());
+						}
+					}
+				}
+				if (batch.isEmpty()) return;
+			}
+			if (peer.isBusy()) {
+				for (int i = batch.size() - 1; i >= 0; i--) {
+					wheel.schedule((QueueStorage)batch.elementAt(i), now + PERIOD_WAIT);
+				}
+				return;
+			}
+			// add storages that will become due shortly
+			long window = now + PERIOD_REFRESH;
+			Enumeration e = peer.elements();
 			while (e.hasMoreElements()) {
-				Object key = e.nextElement();
-				LeaseQueue queue = (LeaseQueue)remote.get(key);
-				IMonitor queueMonitor = queue.getMonitor();
-				queueMonitor.cancel();
-				queues.addElement(queueMonitor);
+				QueueStorage storage = (QueueStorage)e.nextElement();
+				if (storage.getRenewal() <= window && wheel.cancel(storage)) {
+					batch.addElement(storage);
+				}
+			}
+			peer.setBusy(true);
+		}
+		broker.performOperation(new IOperation() {
+			public void perform(IMonitor monitor) {
+				renew(peer, batch);
+			}
+		});
+	}
+
+	/**
+	 * Performs the refresh call for the specified storages and updates
+	 * the storages according to the result. If the call fails, the
+	 * storages are retried after the wait period until they expire.
+	 *
+	 * @param peer The peer that hosts the leases.
+	 * @param batch The storages that should be refreshed.
+	 */
+	private void renew(Peer peer, Vector batch) {
+		Vector leases = new Vector(batch.size());
+		for (int i = 0, s = batch.size(); i < s; i++) {
+			leases.addElement(((QueueStorage)batch.elementAt(i)).getLease());
+		}
+		Vector removed = null;
+		try {
+			removed = peer.getRegistry().update(broker.getSystemID(), leases);
+		} catch (InvocationException e) {
+			Logging.debug(getClass(), "Lease extension failed on " + peer.getSystem() + ".");
+		} catch (Throwable t) {
+			Logging.error(getClass(), "Caught unexpected runtime exception.", t);
+		}
+		long now = System.currentTimeMillis();
+		Vector expired = new Vector();
+		synchronized (remote) {
+			peer.setBusy(false);
+			for (int i = 0, s = batch.size(); i < s; i++) {
+				QueueStorage storage = (QueueStorage)batch.elementAt(i);
+				Lease lease = storage.getLease();
+				if (peer.get(lease) != storage) continue;
+				if (removed != null) {
+					if (removed.contains(lease)) {
+						// remove storages whose lease has timed out remotely
+						peer.remove(lease);
+						expired.addElement(storage);
+					} else {
+						storage.setExpiration(now + lease.getTimeout());
+						storage.setConfirmed(now);
+						wheel.schedule(storage, storage.getRenewal());
+					}
+				} else if (storage.getExpiration() < now) {
+					Logging.debug(getClass(), "Removing remote lease " + lease
+							+ " on " + peer.getSystem() + " due to timeout.");
+					peer.remove(lease);
+					expired.addElement(storage);
+				} else {
+					wheel.schedule(storage, now + PERIOD_WAIT);
+				}
+			}
+			if (peer.isEmpty() && remote.get(peer.getSystem()) == peer) {
+				remote.remove(peer.getSystem());
+			}
+		}
+		for (int i = 0, s = expired.size(); i < s; i++) {
+			QueueStorage storage = (QueueStorage)expired.elementAt(i);
+			Event e = new Event(EVENT_LEASE_EXPIRED, this, storage.getLease(), false);
+			storage.notifyListeners(e);
+		}
+	}
+
+	/**
+	 * Called whenever an invocation has been exchanged with the specified
+	 * system while implicit renewal is enabled.
+	 *
+	 * @param system The system that has exchanged the invocation.
+	 * @param confirmed True if the invocation has been issued by this
+	 * 	system and completed by the specified system, false if it has been
+	 * 	received from the specified system.
+	 */
+	private void contact(SystemID system, boolean confirmed) {
+		long now = System.currentTimeMillis();
+		synchronized (contacts) {
+			long[] contact = (long[])contacts.get(system);
+			if (contact == null) {
+				contacts.put(system, new long[] { now });
+			} else {
+				contact[0] = now;
 			}
 		}
-		for (int i = 0; i < queues.size(); i++) {
-			IMonitor queueMonitor = (IMonitor)queues.elementAt(i);
-			try {
-				queueMonitor.join();
-			} catch (InterruptedException ie) {
-				Logging.error(getClass(), "Queue cleanup interrupted.", ie);
+		if (confirmed) {
+			synchronized (remote) {
+				Peer peer = (Peer)remote.get(system);
+				if (peer != null) {
+					peer.setContact(now);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the contacts that are too old to extend any lease.
+	 *
+	 * @param now The current system time.
+	 */
+	private void prune(long now) {
+		pruned = now;
+		synchronized (contacts) {
+			Vector outdated = new Vector();
+			Enumeration e = contacts.keys();
+			while (e.hasMoreElements()) {
+				Object system = e.nextElement();
+				long[] contact = (long[])contacts.get(system);
+				if (contact[0] + PERIOD_MAXIMUM < now) {
+					outdated.addElement(system);
+				}
+			}
+			for (int i = outdated.size() - 1; i >= 0; i--) {
+				contacts.remove(outdated.elementAt(i));
 			}
 		}
 	}
@@ -1028,23 +1452,19 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 	 * @param lease The lease that is no longer observed.
 	 */
 	public void unhook(SystemID system, Lease lease) {
+		LeaseStorage storage = null;
 		synchronized (local) {
-			// find local lease that has been removed
-			for (int i = 0, s = local.size(); i < s; i++) {
-				LeaseStorage storage = (LeaseStorage)local.elementAt(i);
-				if (storage.getLease().equals(lease)) {
-					// remove system and check whether there are any other systems
-					storage.removeSystem(system);
-					if (storage.getSystems().length == 0) {
-						Event e = new Event(EVENT_LEASE_EXPIRED, this, lease, false);
-						storage.notifyListeners(e);	
-						// if no more systems are available, expire lease immediately
-						local.removeElement(storage);
-					}
-					return;
-				}
-			}
+			storage = (LeaseStorage)local.get(lease);
+			if (storage == null) return;
+			// remove system and check whether there are any other systems
+			storage.removeSystem(system);
+			if (storage.getSystems().length != 0) return;
+			// if no more systems are available, expire lease immediately
+			local.remove(lease);
+			wheel.cancel(storage);
 		}			
+		Event e = new Event(EVENT_LEASE_EXPIRED, this, lease, false);
+		storage.notifyListeners(e);
 	}
 
 	/**
@@ -1057,35 +1477,19 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 	 */
 	public Vector update(SystemID system, Vector leases) {
 		Vector result = new Vector();
-		// update storages and notify listeners
+		long now = System.currentTimeMillis();
+		// update the storages, the scheduler reschedules them lazily
 		synchronized (local) {
-			leases: for (int i = 0, s = leases.size(); i < s; i++) {
+			for (int i = 0, s = leases.size(); i < s; i++) {
 				Lease lease = (Lease)leases.elementAt(i);
-				for (int j = 0, sl = local.size(); j < sl; j++) {
-					LeaseStorage storage = (LeaseStorage)local.elementAt(j);
-					if (storage.getLease().equals(lease)) {
-						local.removeElementAt(j);
-						// perform local refresh notification
-						//Logging.debug(getClass(), "Local lease refreshed for " + lease + ".");
-						// update timeout to new timeout period
-						storage.updateSystem(system);
-						// insert storage ordered by timeout
-						for (int k = local.size() - 1; k >= 0; k--) {
-							LeaseStorage store = (LeaseStorage)local.elementAt(k);							
-							if (store.getExpiration() <= storage.getExpiration()) {
-								local.insertElementAt(storage , k + 1);
-								continue leases;
-							}
-						}
-						// not inserted yet, append as last entry
-						local.insertElementAt(storage, 0);
-						continue leases;
-					}
+				LeaseStorage storage = (LeaseStorage)local.get(lease);
+				if (storage != null) {
+					storage.updateSystem(system, now);
+				} else {
+					Logging.debug(getClass(), "Local lease refresh failed for " + lease + ".");
+					result.addElement(lease);
 				}
-				Logging.debug(getClass(), "Local lease refresh failed for " + lease + ".");
-				result.addElement(lease);
 			}
-			local.notify();
 		}
 		return result;
 	}
@@ -1098,17 +1502,19 @@ public class LeaseRegistry implements IOperation, ILeaseRegistry {
 	 * @param lease The lease that has been removed.
 	 */
 	public void remove(SystemID system, Lease lease) {
-		LeaseQueue queue = null;
+		QueueStorage storage = null;
 		synchronized (remote) {
-			queue = (LeaseQueue)remote.get(system);
-		}
-		if (queue != null) {
-			QueueStorage s = (QueueStorage)queue.remove(lease);
-			if (s != null) {
-				Event e = new Event(EVENT_LEASE_EXPIRED, this, lease, false);
-				s.notifyListeners(e);	
+			Peer peer = (Peer)remote.get(system);
+			if (peer == null) return;
+			storage = peer.remove(lease);
+			if (storage == null) return;
+			wheel.cancel(storage);
+			if (peer.isEmpty()) {
+				remote.remove(system);
 			}
 		}
+		Event e = new Event(EVENT_LEASE_EXPIRED, this, lease, false);
+		storage.notifyListeners(e);
 	}
 
 }
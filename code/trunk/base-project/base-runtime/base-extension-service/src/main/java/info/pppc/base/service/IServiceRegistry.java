@@ -2,6 +2,7 @@ package info.pppc.base.service;
 
 import info.pppc.base.system.InvocationException;
 import info.pppc.base.system.ObjectID;
+import info.pppc.base.system.SystemID;
 
 import java.util.Vector;
 
@@ -42,5 +43,19 @@ public interface IServiceRegistry {
 	 */
 	public Vector lookup(String name, String[] interfaces, ServiceProperties properties, int scope)
 		throws InvocationException;
+	
+	/**
+	 * Notifies the registry that the services exported by the specified
+	 * system have changed. Registries send this notification to all
+	 * systems that have recently performed a lookup, whenever a service 
+	 * is exported or released. The receiving registry uses it to remove 
+	 * the cached lookup results of the system.
+	 * 
+	 * @param system The system whose services have changed.
+	 * @param events The type of change, i.e. the event constants that
+	 * 	denote the addition or removal of services.
+	 * @throws InvocationException Thrown by base if the remote call failed.
+	 */
+	public void changed(SystemID system, int events) throws InvocationException;
 
 }
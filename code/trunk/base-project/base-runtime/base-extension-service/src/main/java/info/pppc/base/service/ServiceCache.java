@@ -0,0 +1,228 @@
+package info.pppc.base.service;
+
+import info.pppc.base.system.SystemID;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * The service cache stores the results of remote lookups. The results
+ * are stored per query and per remote system, so that the results of a
+ * single system can be invalidated without discarding the results of
+ * other systems. Each result is valid for a limited amount of time.
+ * In order to avoid that a lookup that was started before an invalidation
+ * stores an outdated result, the cache maintains a version per system
+ * that is incremented on every invalidation.
+ *
+ * @author Mac
+ */
+final class ServiceCache {
+
+	/**
+	 * The maximum number of queries that are cached. If the number
+	 * is exceeded, expired results are removed and if this does not
+	 * suffice, the cache is cleared.
+	 */
+	private static final int MAXIMUM_QUERIES = 64;
+
+	/**
+	 * The hash table that hashes queries to hash tables which in turn
+	 * hash system ids to object arrays. The first index of the arrays
+	 * contains the vector of descriptors and the second index contains
+	 * the time at which the result expires as long.
+	 */
+	private Hashtable queries = new Hashtable();
+
+	/**
+	 * The hash table that hashes system ids to their version as integer.
+	 */
+	private Hashtable versions = new Hashtable();
+	
+	/**
+	 * The version of the whole cache which is incremented whenever
+	 * the cache is cleared.
+	 */
+	private int epoch = 0;
+
+	/**
+	 * The time to live for cached results in milliseconds.
+	 */
+	private long timeout;
+
+	/**
+	 * Creates a new cache whose results are valid for the specified
+	 * amount of time.
+	 *
+	 * @param timeout The time to live of results in milliseconds. If the
+	 * 	timeout is not positive, no results will be cached.
+	 */
+	public ServiceCache(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Sets the time to live of results that are added afterwards.
+	 * If the timeout is not positive, the cache is cleared and no
+	 * further results are cached.
+	 *
+	 * @param timeout The time to live of results in milliseconds.
+	 */
+	public synchronized void setTimeout(long timeout) {
+		this.timeout = timeout;
+		if (timeout <= 0) {
+			queries.clear();
+		}
+	}
+
+	/**
+	 * Returns the time to live of results.
+	 *
+	 * @return The time to live of results in milliseconds.
+	 */
+	public synchronized long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Returns the current version of the specified system. The version
+	 * must be retrieved before a lookup is started and it must be passed
+	 * to the put method when the result is stored.
+	 *
+	 * @param system The system whose version should be retrieved.
+	 * @return The current version of the system.
+	 */
+	public synchronized int getVersion(SystemID system) {
+		Integer version = (Integer)versions.get(system);
+		if (version == null) {
+			return epoch;
+		} else {
+			return epoch + version.intValue();
+		}
+	}
+
+	/**
+	 * Returns the cached result of the query for the specified system.
+	 *
+	 * @param query The query to lookup.
+	 * @param system The system that has been queried.
+	 * @return The vector of descriptors or null if there is no valid
+	 * 	result. The vector must not be modified.
+	 */
+	public synchronized Vector get(ServiceQuery query, SystemID system) {
+		Hashtable results = (Hashtable)queries.get(query);
+		if (results == null) return null;
+		Object[] entry = (Object[])results.get(system);
+		if (entry == null) return null;
+		if (((Long)entry[1]).longValue() < System.currentTimeMillis()) {
+			results.remove(system);
+			if (results.isEmpty()) {
+				queries.remove(query);
+			}
+			return null;
+		}
+		return (Vector)entry[0];
+	}
+
+	/**
+	 * Stores the result of the query for the specified system, if the
+	 * version of the system has not changed since the lookup has been
+	 * started.
+	 *
+	 * @param query The query that has been performed.
+	 * @param system The system that has been queried.
+	 * @param version The version of the system before the query has
+	 * 	been started.
+	 * @param descriptors The descriptors returned by the system. The
+	 * 	vector must not be modified afterwards.
+	 */
+	public synchronized void put(ServiceQuery query, SystemID system, int version, Vector descriptors) {
+		if (timeout <= 0 || version != getVersion(system)) return;
+		long now = System.currentTimeMillis();
+		Hashtable results = (Hashtable)queries.get(query);
+		if (results == null) {
+			if (queries.size() >= MAXIMUM_QUERIES) {
+				purge(now);
+				if (queries.size() >= MAXIMUM_QUERIES) {
+					queries.clear();
+				}
+			}
+			results = new Hashtable();
+			queries.put(query.copy(), results);
+		}
+		results.put(system, new Object[] { descriptors, new Long(now + timeout) });
+	}
+
+	/**
+	 * Removes all results of the specified system and increments the
+	 * version of the system.
+	 *
+	 * @param system The system whose results should be removed.
+	 */
+	public synchronized void invalidate(SystemID system) {
+		Integer version = (Integer)versions.get(system);
+		if (version == null) {
+			versions.put(system, new Integer(1));
+		} else {
+			versions.put(system, new Integer(version.intValue() + 1));
+		}
+		Vector keys = keys(queries);
+		for (int i = keys.size() - 1; i >= 0; i--) {
+			Object query = keys.elementAt(i);
+			Hashtable results = (Hashtable)queries.get(query);
+			results.remove(system);
+			if (results.isEmpty()) {
+				queries.remove(query);
+			}
+		}
+	}
+
+	/**
+	 * Removes all results from the cache.
+	 */
+	public synchronized void clear() {
+		epoch += 1;
+		queries.clear();
+	}
+
+	/**
+	 * Removes all results that have expired.
+	 *
+	 * @param now The current time.
+	 */
+	private void purge(long now) {
+		Vector keys = keys(queries);
+		for (int i = keys.size() - 1; i >= 0; i--) {
+			Object query = keys.elementAt(i);
+			Hashtable results = (Hashtable)queries.get(query);
+			Vector systems = keys(results);
+			for (int j = systems.size() - 1; j >= 0; j--) {
+				Object system = systems.elementAt(j);
+				Object[] entry = (Object[])results.get(system);
+				if (((Long)entry[1]).longValue() < now) {
+					results.remove(system);
+				}
+			}
+			if (results.isEmpty()) {
+				queries.remove(query);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the keys of the hash table as vector so that the table
+	 * can be modified while the keys are processed.
+	 * 
+	 * @param table The table whose keys should be returned.
+	 * @return A vector that contains the keys of the table.
+	 */
+	private Vector keys(Hashtable table) {
+		Vector result = new Vector(table.size());
+		Enumeration e = table.keys();
+		while (e.hasMoreElements()) {
+			result.addElement(e.nextElement());
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,767 @@
+package info.pppc.base.service;
+
+import info.pppc.base.system.InvocationBroker;
+import info.pppc.base.system.SystemID;
+import info.pppc.base.system.event.Event;
+import info.pppc.base.system.event.IListener;
+import info.pppc.base.system.io.ObjectInputStream;
+import info.pppc.base.system.io.ObjectOutputStream;
+import info.pppc.base.system.operation.IMonitor;
+import info.pppc.base.system.operation.IOperation;
+import info.pppc.base.system.operation.NullMonitor;
+import info.pppc.base.system.plugin.BufferedPacket;
+import info.pppc.base.system.plugin.IPacket;
+import info.pppc.base.system.plugin.IPacketConnector;
+import info.pppc.base.system.util.Logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.Vector;
+
+/**
+ * The service group connects the service registries of devices using a
+ * group connector of the plug-in manager. The group is used for two
+ * purposes. First, it enables registries to perform a lookup with a single
+ * group packet. Registries that export matching services reply after a
+ * random back-off with a group packet. If the lookup requests any matching
+ * service, registries suppress their reply as soon as they overhear the
+ * reply of another registry. Second, if announcements are enabled, each
+ * registry periodically announces a summary of its services to the group
+ * and it announces a new summary whenever its services change. The
+ * summaries received from other devices are used to skip remote lookups
+ * on devices that do not export a matching service. Whenever the summary
+ * of a device changes, the cached lookup results of the device are removed.
+ * The group connector is opened lazily, when the registry starts a lookup,
+ * when it enables announcements or when its services change. Thus, the
+ * registries that do not use the group and that do not export services
+ * do not open it. Delayed replies are sent and the lookups of the registry
+ * are finished at their deadline by a single operation that only runs as
+ * long as there are pending replies or lookups.
+ *
+ * @author Mac
+ */
+final class ServiceGroup implements IListener, IOperation {
+
+	/**
+	 * A reply to a lookup request that is delayed by a back-off.
+	 *
+	 * @author Mac
+	 */
+	private final class Reply {
+
+		/**
+		 * The point in time at which the reply is due.
+		 */
+		private long due;
+
+		/**
+		 * The system that has sent the request.
+		 */
+		private SystemID requester;
+
+		/**
+		 * The id of the request.
+		 */
+		private int id;
+
+		/**
+		 * The matching services.
+		 */
+		private Vector services;
+
+		/**
+		 * A flag that indicates whether the reply must be suppressed.
+		 */
+		private boolean suppressed = false;
+
+		/**
+		 * Creates a new reply.
+		 *
+		 * @param due The point in time at which the reply is due.
+		 * @param requester The system that has sent the request.
+		 * @param id The id of the request.
+		 * @param services The matching services.
+		 */
+		public Reply(long due, SystemID requester, int id, Vector services) {
+			this.due = due;
+			this.requester = requester;
+			this.id = id;
+			this.services = services;
+		}
+
+	}
+
+	/**
+	 * The group id used by service registries.
+	 */
+	private static final short SERVICE_GROUP = 4;
+
+	/**
+	 * The packet type of service summaries.
+	 */
+	private static final byte TYPE_SUMMARY = 0;
+
+	/**
+	 * The packet type of lookup requests.
+	 */
+	private static final byte TYPE_QUERY = 1;
+
+	/**
+	 * The packet type of lookup replies.
+	 */
+	private static final byte TYPE_REPLY = 2;
+
+	/**
+	 * The normal amount of time that lies between two announcements.
+	 */
+	private static final long ANNOUNCE_PERIOD = 10000;
+
+	/**
+	 * The minimum amount of time that lies between two announcements.
+	 */
+	private static final long ANNOUNCE_SLACK = 1000;
+
+	/**
+	 * The amount of time that a received summary stays valid.
+	 */
+	private static final long REMOVAL_PERIOD = 3 * ANNOUNCE_PERIOD + ANNOUNCE_SLACK;
+
+	/**
+	 * The maximum back-off before a reply to a lookup is sent.
+	 */
+	private static final int REPLY_BACKOFF = 250;
+
+	/**
+	 * The random number generator used to compute back-offs.
+	 */
+	private static final Random RANDOM = new Random();
+
+	/**
+	 * The registry whose services are announced.
+	 */
+	private ServiceRegistry registry;
+
+	/**
+	 * The cache of the registry whose results are invalidated.
+	 */
+	private ServiceCache cache;
+
+	/**
+	 * The broker used to open the group connector and to run operations.
+	 */
+	private InvocationBroker broker;
+
+	/**
+	 * The group connector or null if the group has not been opened yet
+	 * or if it has been stopped.
+	 */
+	private IPacketConnector connector;
+
+	/**
+	 * A flag that indicates whether the group has been stopped.
+	 */
+	private boolean stopped = false;
+
+	/**
+	 * The monitor of the announcement operation or null if announcements
+	 * are disabled.
+	 */
+	private IMonitor monitor;
+
+	/**
+	 * The hash table that hashes system ids to object arrays. The first
+	 * index of the arrays contains the summary, the second contains the
+	 * time at which the summary expires as long.
+	 */
+	private Hashtable summaries = new Hashtable();
+
+	/**
+	 * The hash table that hashes the ids of the lookups started by this
+	 * registry to object arrays. The first index of the array contains
+	 * the service lookup, the second contains a boolean that indicates
+	 * whether any matching service is sufficient.
+	 */
+	private Hashtable queries = new Hashtable();
+
+	/**
+	 * The hash table that contains the replies to lookups for any service
+	 * that are currently delayed by a back-off. The keys are strings that
+	 * contain the system id of the requester and the id of the lookup, the
+	 * values are the replies.
+	 */
+	private Hashtable replies = new Hashtable();
+
+	/**
+	 * The replies that are delayed by a back-off ordered by the point in
+	 * time at which they are due.
+	 */
+	private Vector pending = new Vector();
+
+	/**
+	 * The lookups of the registry that must be finished at their deadline
+	 * ordered by their deadline.
+	 */
+	private Vector deadlines = new Vector();
+
+	/**
+	 * A flag that indicates whether the operation that sends the delayed
+	 * replies and that finishes the lookups at their deadline is running.
+	 */
+	private boolean scheduling = false;
+
+	/**
+	 * The id of the next lookup started by this registry.
+	 */
+	private int query = RANDOM.nextInt();
+
+	/**
+	 * The version of the local summary.
+	 */
+	private int version = RANDOM.nextInt();
+
+	/**
+	 * A flag that indicates whether the local services have changed
+	 * since the last announcement.
+	 */
+	private boolean changed = false;
+
+	/**
+	 * Creates a new service group for the specified registry.
+	 *
+	 * @param registry The registry whose services are announced.
+	 * @param cache The cache of the registry.
+	 * @param broker The broker of the registry.
+	 */
+	public ServiceGroup(ServiceRegistry registry, ServiceCache cache, InvocationBroker broker) {
+		this.registry = registry;
+		this.cache = cache;
+		this.broker = broker;
+	}
+
+	/**
+	 * Opens the group connector, if it has not been opened and if the
+	 * group has not been stopped. The caller must hold the lock of the
+	 * group.
+	 *
+	 * @return The group connector or null if the group has been stopped.
+	 */
+	private IPacketConnector open() {
+		if (connector == null && ! stopped) {
+			connector = broker.getPluginManager().openGroup(SERVICE_GROUP);
+			connector.addPacketListener(IPacketConnector.EVENT_PACKET_RECEIVED, this);
+		}
+		return connector;
+	}
+
+	/**
+	 * Stops the announcements, finishes all lookups and releases the
+	 * connector.
+	 */
+	public void stop() {
+		setAnnouncing(false);
+		IPacketConnector c;
+		Vector lookups = new Vector();
+		synchronized (this) {
+			stopped = true;
+			for (int i = deadlines.size() - 1; i >= 0; i--) {
+				lookups.addElement(deadlines.elementAt(i));
+			}
+			deadlines.removeAllElements();
+			notifyAll();
+			if (connector == null) {
+				c = null;
+			} else {
+				c = connector;
+				connector = null;
+				Enumeration e = queries.elements();
+				while (e.hasMoreElements()) {
+					lookups.addElement(((Object[])e.nextElement())[0]);
+				}
+				queries.clear();
+				replies.clear();
+				pending.removeAllElements();
+			}
+		}
+		for (int i = lookups.size() - 1; i >= 0; i--) {
+			((ServiceLookup)lookups.elementAt(i)).finish(false);
+		}
+		if (c != null) {
+			c.removePacketListener(IPacketConnector.EVENT_PACKET_RECEIVED, this);
+			c.release();
+		}
+	}
+
+	/**
+	 * Enables or disables the announcement of summaries. If announcements
+	 * are disabled, received summaries are ignored.
+	 *
+	 * @param enabled True to enable announcements, false to disable them.
+	 */
+	public synchronized void setAnnouncing(boolean enabled) {
+		if (enabled && monitor == null && open() != null) {
+			monitor = new NullMonitor();
+			broker.performOperation(this, monitor);
+		} else if (! enabled && monitor != null) {
+			monitor.cancel();
+			monitor = null;
+			summaries.clear();
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Determines whether summaries are announced.
+	 *
+	 * @return True if summaries are announced.
+	 */
+	public synchronized boolean isAnnouncing() {
+		return monitor != null;
+	}
+
+	/**
+	 * Signals that the local services have changed. This triggers
+	 * an announcement and it opens the group connector in order to
+	 * answer the lookups of other registries.
+	 */
+	public synchronized void changed() {
+		open();
+		version += 1;
+		changed = true;
+		notifyAll();
+	}
+
+	/**
+	 * Determines whether the summary of the specified system proves
+	 * that the system does not export a service that matches the query.
+	 *
+	 * @param query The query to check.
+	 * @param system The system to check.
+	 * @return True if the system does not export a matching service,
+	 * 	false if the system might export one or if there is no valid
+	 * 	summary of the system.
+	 */
+	public synchronized boolean excludes(ServiceQuery query, SystemID system) {
+		Object[] entry = (Object[])summaries.get(system);
+		if (entry == null) return false;
+		if (((Long)entry[1]).longValue() < System.currentTimeMillis()) {
+			summaries.remove(system);
+			return false;
+		}
+		return ((ServiceSummary)entry[0]).excludes(query);
+	}
+
+	/**
+	 * Sends a lookup request to the group and adds the replies to the
+	 * lookup. If any matching service is sufficient, the lookup is
+	 * finished when the first reply is received.
+	 *
+	 * @param query The query to send.
+	 * @param any True if any matching service is sufficient, false if
+	 * 	all devices with matching services shall reply.
+	 * @param lookup The lookup that receives the results.
+	 */
+	public void query(ServiceQuery query, boolean any, final ServiceLookup lookup) {
+		IPacketConnector c;
+		final Integer id;
+		synchronized (this) {
+			c = open();
+			if (c == null) {
+				lookup.finish(false);
+				return;
+			}
+			id = new Integer(this.query);
+			this.query += 1;
+			queries.put(id, new Object[] { lookup, new Boolean(any) });
+		}
+		lookup.addLookupListener(ServiceLookup.EVENT_LOOKUP_FINISHED, new IListener() {
+			public void handleEvent(Event event) {
+				synchronized (ServiceGroup.this) {
+					queries.remove(id);
+				}
+			}
+		});
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new ObjectOutputStream(bos);
+			oos.writeByte(TYPE_QUERY);
+			oos.writeObject(broker.getSystemID());
+			oos.writeInt(id.intValue());
+			oos.writeBoolean(any);
+			oos.writeObject(query.getName());
+			oos.writeObject(query.getInterfaces());
+			oos.writeObject(query.getProperties());
+			oos.close();
+			send(c, bos.toByteArray());
+		} catch (IOException e) {
+			Logging.debug(getClass(), "Could not send lookup request.");
+			lookup.finish(false);
+		}
+	}
+
+	/**
+	 * Finishes the specified lookup at its deadline, even if no thread
+	 * waits for the lookup. The lookup is finished by the operation that
+	 * sends the delayed replies, thus, lookups do not occupy a thread 
+	 * while they are running.
+	 *
+	 * @param lookup The lookup to finish, it must have a deadline.
+	 */
+	public void expire(final ServiceLookup lookup) {
+		long deadline = lookup.getDeadline();
+		synchronized (this) {
+			if (stopped || lookup.isFinished()) return;
+			int index = deadlines.size();
+			while (index > 0 && ((ServiceLookup)deadlines.elementAt(index - 1)).getDeadline() > deadline) {
+				index -= 1;
+			}
+			deadlines.insertElementAt(lookup, index);
+			schedule(index == 0);
+		}
+		lookup.addLookupListener(ServiceLookup.EVENT_LOOKUP_FINISHED, new IListener() {
+			public void handleEvent(Event event) {
+				synchronized (ServiceGroup.this) {
+					deadlines.removeElement(lookup);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Starts the operation that sends delayed replies and that finishes
+	 * lookups at their deadline, if it is not running. The caller must
+	 * hold the lock of the group.
+	 *
+	 * @param wakeup True to wake up the operation if it is running, since
+	 * 	the next point in time at which it must act has changed.
+	 */
+	private void schedule(boolean wakeup) {
+		if (! scheduling) {
+			scheduling = true;
+			broker.performOperation(new IOperation() {
+				public void perform(IMonitor monitor) {
+					dispatch();
+				}
+			});
+		} else if (wakeup) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Sends the delayed replies and finishes the lookups whose deadline
+	 * has passed. The operation terminates when there are no more delayed
+	 * replies or lookups.
+	 */
+	private void dispatch() {
+		while (true) {
+			IPacketConnector c = null;
+			Reply reply = null;
+			ServiceLookup lookup = null;
+			synchronized (this) {
+				if (connector == null) {
+					pending.removeAllElements();
+				}
+				if (pending.isEmpty() && deadlines.isEmpty()) {
+					scheduling = false;
+					return;
+				}
+				long now = System.currentTimeMillis();
+				long next = Long.MAX_VALUE;
+				if (! deadlines.isEmpty()) {
+					lookup = (ServiceLookup)deadlines.elementAt(0);
+					next = lookup.getDeadline();
+					if (next <= now) {
+						deadlines.removeElementAt(0);
+					} else {
+						lookup = null;
+					}
+				}
+				if (lookup == null && ! pending.isEmpty()) {
+					reply = (Reply)pending.elementAt(0);
+					next = Math.min(next, reply.due);
+					if (reply.due <= now) {
+						pending.removeElementAt(0);
+						String key = reply.requester.toString() + ":" + reply.id;
+						if (replies.get(key) == reply) {
+							replies.remove(key);
+						}
+						if (reply.suppressed) continue;
+						c = connector;
+					} else {
+						reply = null;
+					}
+				}
+				if (lookup == null && reply == null) {
+					try {
+						wait(next - now);
+					} catch (InterruptedException e) {
+						Logging.debug(getClass(), "Thread got interrupted.");
+					}
+					continue;
+				}
+			}
+			if (lookup != null) {
+				lookup.finish(false);
+			} else {
+				try {
+					reply(c, reply.requester, reply.id, reply.services);
+				} catch (IOException e) {
+					Logging.debug(getClass(), "Could not send lookup reply.");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Periodically announces the local summary until the monitor is
+	 * canceled.
+	 *
+	 * @param monitor The monitor used to cancel the operation.
+	 */
+	public void perform(IMonitor monitor) {
+		while (! monitor.isCanceled()) {
+			announce();
+			try {
+				synchronized (this) {
+					long last = System.currentTimeMillis();
+					long next = last + ANNOUNCE_PERIOD;
+					while (! monitor.isCanceled()) {
+						long now = System.currentTimeMillis();
+						if (now >= next || changed && now >= last + ANNOUNCE_SLACK) break;
+						if (changed) {
+							wait(last + ANNOUNCE_SLACK - now);
+						} else {
+							wait(next - now);
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				Logging.debug(getClass(), "Thread got interrupted.");
+			}
+		}
+	}
+
+	/**
+	 * Announces the summary of the local services.
+	 */
+	private void announce() {
+		IPacketConnector c;
+		int v;
+		synchronized (this) {
+			c = connector;
+			v = version;
+			changed = false;
+		}
+		if (c == null) return;
+		try {
+			ServiceSummary summary = ServiceSummary.create(broker.getSystemID(), v,
+				registry.lookup(null, null, null, ServiceRegistry.LOOKUP_LOCAL_ONLY));
+			byte[] buffer = encode(summary, true);
+			if (buffer.length > c.getPacketLength()) {
+				Logging.debug(getClass(), "Service summary exceeds maximum packet length.");
+				buffer = encode(summary, false);
+			}
+			send(c, buffer);
+		} catch (IOException e) {
+			Logging.debug(getClass(), "Could not send service summary.");
+		}
+	}
+
+	/**
+	 * Encodes a summary packet.
+	 *
+	 * @param summary The summary to encode.
+	 * @param services True to encode the services, false to encode an
+	 * 	incomplete summary.
+	 * @return The encoded packet.
+	 * @throws IOException Thrown if the summary cannot be encoded.
+	 */
+	private byte[] encode(ServiceSummary summary, boolean services) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bos);
+		oos.writeByte(TYPE_SUMMARY);
+		summary.writeObject(oos, services);
+		oos.close();
+		return bos.toByteArray();
+	}
+
+	/**
+	 * Sends the specified payload using the connector, if it does not
+	 * exceed the maximum packet length.
+	 *
+	 * @param c The connector to use.
+	 * @param payload The payload to send.
+	 * @throws IOException Thrown if the packet cannot be sent.
+	 */
+	private void send(IPacketConnector c, byte[] payload) throws IOException {
+		if (payload.length > c.getPacketLength()) {
+			Logging.debug(getClass(), "Payload exceeds maximum packet length.");
+			return;
+		}
+		IPacket packet = c.createPacket();
+		packet.setPayload(payload);
+		c.sendPacket(packet);
+	}
+
+	/**
+	 * Called whenever a packet is received by the group connector.
+	 *
+	 * @param event The event that signals the received packet.
+	 */
+	public void handleEvent(Event event) {
+		if (event.getType() != IPacketConnector.EVENT_PACKET_RECEIVED) return;
+		try {
+			ObjectInputStream ois = new ObjectInputStream(BufferedPacket.getInputStream((IPacket)event.getData()));
+			switch (ois.readByte()) {
+				case TYPE_SUMMARY:
+					handleSummary(ServiceSummary.readObject(ois));
+					break;
+				case TYPE_QUERY:
+					handleQuery(ois);
+					break;
+				case TYPE_REPLY:
+					handleReply(ois);
+					break;
+				default:
+					// ignore unknown packets
+			}
+		} catch (Throwable t) {
+			Logging.debug(getClass(), "Received malformed service packet.");
+		}
+	}
+
+	/**
+	 * Stores the summary of a remote system and removes the cached results
+	 * of the system if the summary has changed.
+	 *
+	 * @param summary The summary that has been received.
+	 */
+	private void handleSummary(ServiceSummary summary) {
+		SystemID system = summary.getSystem();
+		if (broker.getSystemID().equals(system)) return;
+		boolean invalidate = false;
+		synchronized (this) {
+			if (monitor == null) return;
+			Object[] entry = (Object[])summaries.get(system);
+			invalidate = (entry != null && ((ServiceSummary)entry[0]).getVersion() != summary.getVersion());
+			summaries.put(system, new Object[] { summary,
+				new Long(System.currentTimeMillis() + REMOVAL_PERIOD) });
+		}
+		if (invalidate) {
+			cache.invalidate(system);
+		}
+	}
+
+	/**
+	 * Evaluates a lookup request of a remote system and schedules a reply
+	 * if there are matching services.
+	 *
+	 * @param input The input to read the request from.
+	 * @throws IOException Thrown if the request is malformed.
+	 */
+	private void handleQuery(ObjectInputStream input) throws IOException {
+		SystemID requester = (SystemID)input.readObject();
+		int id = input.readInt();
+		boolean any = input.readBoolean();
+		String name = (String)input.readObject();
+		String[] interfaces = (String[])input.readObject();
+		ServiceProperties properties = (ServiceProperties)input.readObject();
+		if (requester == null || broker.getSystemID().equals(requester)) return;
+		Vector services = registry.lookup(name, interfaces, properties, ServiceRegistry.LOOKUP_LOCAL_ONLY);
+		if (services.isEmpty()) return;
+		long due = System.currentTimeMillis() + (RANDOM.nextInt() & 0x7fffffff) % REPLY_BACKOFF;
+		Reply reply = new Reply(due, requester, id, services);
+		synchronized (this) {
+			if (connector == null) return;
+			if (any) {
+				replies.put(requester.toString() + ":" + id, reply);
+			}
+			// insert the reply ordered by the due time
+			int index = pending.size();
+			while (index > 0 && ((Reply)pending.elementAt(index - 1)).due > due) {
+				index -= 1;
+			}
+			pending.insertElementAt(reply, index);
+			schedule(index == 0);
+		}
+	}
+
+	/**
+	 * Sends a reply that contains as many of the specified services as
+	 * fit into a single packet.
+	 *
+	 * @param c The connector used to send the reply.
+	 * @param requester The system that has sent the request.
+	 * @param id The id of the request.
+	 * @param services The matching services.
+	 * @throws IOException Thrown if the reply cannot be sent.
+	 */
+	private void reply(IPacketConnector c, SystemID requester, int id, Vector services) throws IOException {
+		int count = services.size();
+		while (count > 0) {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new ObjectOutputStream(bos);
+			oos.writeByte(TYPE_REPLY);
+			oos.writeObject(requester);
+			oos.writeInt(id);
+			oos.writeObject(broker.getSystemID());
+			oos.writeInt(count);
+			for (int i = 0; i < count; i++) {
+				oos.writeObject(services.elementAt(i));
+			}
+			oos.close();
+			byte[] buffer = bos.toByteArray();
+			if (buffer.length <= c.getPacketLength()) {
+				send(c, buffer);
+				return;
+			}
+			count = count / 2;
+		}
+		Logging.debug(getClass(), "Service descriptor exceeds maximum packet length.");
+	}
+
+	/**
+	 * Adds the services of a reply to the corresponding lookup, if the
+	 * reply is targeted at this system. Otherwise, suppresses pending
+	 * replies to the same request.
+	 *
+	 * @param input The input to read the reply from.
+	 * @throws IOException Thrown if the reply is malformed.
+	 */
+	private void handleReply(ObjectInputStream input) throws IOException {
+		SystemID requester = (SystemID)input.readObject();
+		int id = input.readInt();
+		SystemID responder = (SystemID)input.readObject();
+		if (broker.getSystemID().equals(responder)) return;
+		if (! broker.getSystemID().equals(requester)) {
+			// overheard reply, suppress own reply
+			String key = requester.toString() + ":" + id;
+			synchronized (this) {
+				Reply reply = (Reply)replies.get(key);
+				if (reply != null) {
+					reply.suppressed = true;
+				}
+			}
+			return;
+		}
+		Object[] entry;
+		synchronized (this) {
+			entry = (Object[])queries.get(new Integer(id));
+		}
+		if (entry == null) return;
+		int count = input.readInt();
+		Vector services = new Vector(count);
+		for (int i = 0; i < count; i++) {
+			services.addElement(input.readObject());
+		}
+		ServiceLookup lookup = (ServiceLookup)entry[0];
+		lookup.addCached(services);
+		if (((Boolean)entry[1]).booleanValue()) {
+			lookup.finish(true);
+		}
+	}
+
+}
@@ -0,0 +1,234 @@
+package info.pppc.base.service;
+
+import info.pppc.base.system.ObjectID;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * The service index stores the descriptors of the locally exported
+ * services together with some arbitrary value. The descriptors are
+ * indexed by name, by interface and by property, so that queries
+ * can be evaluated without scanning all descriptors. To evaluate a
+ * query, the index determines the smallest set of descriptors that
+ * contains one of the requested interfaces or properties and checks
+ * the remaining parameters only for the descriptors in this set.
+ * The index is not synchronized, thus, the caller must synchronize
+ * accesses.
+ *
+ * @author Mac
+ */
+final class ServiceIndex {
+
+	/**
+	 * The hash table that hashes object ids to object arrays. The first
+	 * index of the arrays contains the descriptor, the second contains
+	 * the value.
+	 */
+	private Hashtable entries = new Hashtable();
+
+	/**
+	 * The hash table that hashes service names to object ids.
+	 */
+	private Hashtable names = new Hashtable();
+
+	/**
+	 * The hash table that hashes interface names to hash tables that
+	 * hash object ids to the descriptors providing the interface.
+	 */
+	private Hashtable interfaces = new Hashtable();
+
+	/**
+	 * The hash table that hashes property names to hash tables that
+	 * hash property values to hash tables that hash object ids to the
+	 * descriptors that contain the property with the value.
+	 */
+	private Hashtable properties = new Hashtable();
+
+	/**
+	 * Creates a new empty index.
+	 */
+	public ServiceIndex() {
+		super();
+	}
+
+	/**
+	 * Adds the descriptor together with the specified value. The
+	 * name and the identifier of the descriptor must not be in use.
+	 *
+	 * @param descriptor The descriptor to add.
+	 * @param value The value that is associated with the descriptor.
+	 */
+	public void add(ServiceDescriptor descriptor, Object value) {
+		ObjectID id = descriptor.getIdentifier().getObject();
+		entries.put(id, new Object[] { descriptor, value });
+		names.put(descriptor.getName(), id);
+		String[] is = descriptor.getInterfaces();
+		for (int i = is.length - 1; i >= 0; i--) {
+			Hashtable set = (Hashtable)interfaces.get(is[i]);
+			if (set == null) {
+				set = new Hashtable();
+				interfaces.put(is[i], set);
+			}
+			set.put(id, descriptor);
+		}
+		ServiceProperties ps = descriptor.getProperties();
+		Enumeration e = ps.getProperties();
+		while (e.hasMoreElements()) {
+			String key = (String)e.nextElement();
+			String property = ps.getProperty(key);
+			Hashtable values = (Hashtable)properties.get(key);
+			if (values == null) {
+				values = new Hashtable();
+				properties.put(key, values);
+			}
+			Hashtable set = (Hashtable)values.get(property);
+			if (set == null) {
+				set = new Hashtable();
+				values.put(property, set);
+			}
+			set.put(id, descriptor);
+		}
+	}
+
+	/**
+	 * Removes the descriptor with the specified object id.
+	 *
+	 * @param id The object id of the descriptor.
+	 * @return The value that has been associated with the descriptor
+	 * 	or null if there is no such descriptor.
+	 */
+	public Object remove(ObjectID id) {
+		Object[] entry = (Object[])entries.remove(id);
+		if (entry == null) return null;
+		ServiceDescriptor descriptor = (ServiceDescriptor)entry[0];
+		names.remove(descriptor.getName());
+		String[] is = descriptor.getInterfaces();
+		for (int i = is.length - 1; i >= 0; i--) {
+			Hashtable set = (Hashtable)interfaces.get(is[i]);
+			if (set != null) {
+				set.remove(id);
+				if (set.isEmpty()) {
+					interfaces.remove(is[i]);
+				}
+			}
+		}
+		ServiceProperties ps = descriptor.getProperties();
+		Enumeration e = ps.getProperties();
+		while (e.hasMoreElements()) {
+			String key = (String)e.nextElement();
+			String property = ps.getProperty(key);
+			Hashtable values = (Hashtable)properties.get(key);
+			if (values == null) continue;
+			Hashtable set = (Hashtable)values.get(property);
+			if (set == null) continue;
+			set.remove(id);
+			if (set.isEmpty()) {
+				values.remove(property);
+				if (values.isEmpty()) {
+					properties.remove(key);
+				}
+			}
+		}
+		return entry[1];
+	}
+
+	/**
+	 * Determines whether the name is used by some descriptor.
+	 *
+	 * @param name The name to check.
+	 * @return True if there is a descriptor with the name.
+	 */
+	public boolean contains(String name) {
+		return names.containsKey(name);
+	}
+
+	/**
+	 * Determines whether the index is empty.
+	 *
+	 * @return True if the index does not contain any descriptor.
+	 */
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/**
+	 * Returns the object ids of all descriptors.
+	 *
+	 * @return The object ids of all descriptors.
+	 */
+	public ObjectID[] getIdentifiers() {
+		ObjectID[] result = new ObjectID[entries.size()];
+		Enumeration e = entries.keys();
+		for (int i = 0; i < result.length; i++) {
+			result[i] = (ObjectID)e.nextElement();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the descriptors that match the specified query.
+	 *
+	 * @param query The query to evaluate.
+	 * @return A vector that contains the matching descriptors.
+	 */
+	public Vector lookup(ServiceQuery query) {
+		Vector result = new Vector();
+		// the name is unique, thus, check the named descriptor only
+		String name = query.getName();
+		if (name != null) {
+			ObjectID id = (ObjectID)names.get(name);
+			if (id != null) {
+				ServiceDescriptor d = (ServiceDescriptor)((Object[])entries.get(id))[0];
+				if (query.matches(d)) {
+					result.addElement(d);
+				}
+			}
+			return result;
+		}
+		// determine the smallest set of candidates
+		Hashtable candidates = null;
+		String[] is = query.getInterfaces();
+		if (is != null) {
+			for (int i = is.length - 1; i >= 0; i--) {
+				Hashtable set = (Hashtable)interfaces.get(is[i]);
+				if (set == null) return result;
+				if (candidates == null || set.size() < candidates.size()) {
+					candidates = set;
+				}
+			}
+		}
+		ServiceProperties ps = query.getProperties();
+		if (ps != null) {
+			Enumeration e = ps.getProperties();
+			while (e.hasMoreElements()) {
+				String key = (String)e.nextElement();
+				Hashtable values = (Hashtable)properties.get(key);
+				if (values == null) return result;
+				Hashtable set = (Hashtable)values.get(ps.getProperty(key));
+				if (set == null) return result;
+				if (candidates == null || set.size() < candidates.size()) {
+					candidates = set;
+				}
+			}
+		}
+		// check the remaining parameters for each candidate
+		if (candidates == null) {
+			Enumeration e = entries.elements();
+			while (e.hasMoreElements()) {
+				result.addElement(((Object[])e.nextElement())[0]);
+			}
+		} else {
+			Enumeration e = candidates.elements();
+			while (e.hasMoreElements()) {
+				ServiceDescriptor d = (ServiceDescriptor)e.nextElement();
+				if (query.matches(d)) {
+					result.addElement(d);
+				}
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,330 @@
+package info.pppc.base.service;
+
+import info.pppc.base.system.SystemID;
+import info.pppc.base.system.event.IListener;
+import info.pppc.base.system.event.ListenerBundle;
+
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+import java.util.Vector;
+
+/**
+ * A service lookup represents a lookup that is performed in the background
+ * by the service registry. The lookup delivers the results of each device
+ * as soon as the device has answered. The results can be retrieved either
+ * by means of listeners or by enumerating the service descriptors. If the
+ * lookup has a deadline, the lookup is finished as soon as the deadline has
+ * passed, even if some devices did not answer. In this case, the lookup only
+ * contains the results of the devices that did answer in time.
+ *
+ * @author Mac
+ */
+public class ServiceLookup implements Enumeration {
+
+	/**
+	 * The event constant that denotes that a device has answered. The
+	 * data object of the event will be the vector of service descriptors
+	 * returned by the device and the source object will be the lookup.
+	 */
+	public static final int EVENT_LOOKUP_RESULT = 1;
+
+	/**
+	 * The event constant that denotes that the lookup is finished. The
+	 * data object of the event will be a boolean that is true if all
+	 * devices have answered and false if the deadline has passed or if
+	 * the lookup has been canceled. The source object will be the lookup.
+	 */
+	public static final int EVENT_LOOKUP_FINISHED = 2;
+
+	/**
+	 * The listeners that are registered for events of the lookup.
+	 */
+	private ListenerBundle listeners = new ListenerBundle(this);
+
+	/**
+	 * The service descriptors that have been received so far.
+	 */
+	private Vector results = new Vector();
+
+	/**
+	 * The index of the next descriptor returned by the enumeration.
+	 */
+	private int position = 0;
+
+	/**
+	 * The devices that must be queried by the lookup.
+	 */
+	private SystemID[] devices = new SystemID[0];
+
+	/**
+	 * The index of the next device that must be queried.
+	 */
+	private int next = 0;
+
+	/**
+	 * The number of devices that did not answer so far.
+	 */
+	private int pending = 0;
+
+	/**
+	 * The point in time at which the lookup is finished or 0 if
+	 * the lookup does not have a deadline.
+	 */
+	private long deadline;
+
+	/**
+	 * A flag that indicates whether the lookup is finished.
+	 */
+	private boolean finished = false;
+
+	/**
+	 * A flag that indicates whether all devices have answered.
+	 */
+	private boolean complete = false;
+
+	/**
+	 * Creates a new lookup with the specified timeout.
+	 *
+	 * @param timeout The timeout of the lookup in milliseconds. If the
+	 * 	timeout is not positive, the lookup does not have a deadline.
+	 */
+	protected ServiceLookup(long timeout) {
+		if (timeout > 0) {
+			deadline = System.currentTimeMillis() + timeout;
+		}
+	}
+
+	/**
+	 * Adds a listener for the specified types of events. The supported
+	 * events are EVENT_LOOKUP_RESULT and EVENT_LOOKUP_FINISHED. Note that
+	 * events are fired by the threads that perform the lookup, thus, a
+	 * listener must not block.
+	 *
+	 * @param types The types of events to register for.
+	 * @param listener The listener to register.
+	 */
+	public void addLookupListener(int types, IListener listener) {
+		listeners.addListener(types, listener);
+	}
+
+	/**
+	 * Removes a previously registered listener for the specified types.
+	 *
+	 * @param types The types of events to unregister.
+	 * @param listener The listener to unregister.
+	 * @return True if the listener has been unregistered.
+	 */
+	public boolean removeLookupListener(int types, IListener listener) {
+		return listeners.removeListener(types, listener);
+	}
+
+	/**
+	 * Sets the devices that must be queried by the lookup. This must be
+	 * called before the lookup is started.
+	 *
+	 * @param devices The devices that must be queried.
+	 */
+	protected synchronized void setDevices(SystemID[] devices) {
+		this.devices = devices;
+		this.next = 0;
+		this.pending = devices.length;
+	}
+
+	/**
+	 * Returns the next device that must be queried by the lookup.
+	 *
+	 * @return The next device that must be queried or null, if all
+	 * 	devices have been queried or if the lookup is finished.
+	 */
+	protected synchronized SystemID nextDevice() {
+		if (finished || next == devices.length) return null;
+		SystemID device = devices[next];
+		next += 1;
+		return device;
+	}
+
+	/**
+	 * Adds the results of a device that has been queried. If the device
+	 * could not be contacted, the descriptors are null. If all devices
+	 * have answered, the lookup is finished.
+	 *
+	 * @param descriptors The descriptors of the device or null, if the
+	 * 	device could not be contacted.
+	 */
+	protected void addResult(Vector descriptors) {
+		boolean done = false;
+		synchronized (this) {
+			if (finished) return;
+			if (descriptors != null) {
+				for (int i = descriptors.size() - 1; i >= 0; i--) {
+					results.addElement(descriptors.elementAt(i));
+				}
+			}
+			pending -= 1;
+			done = (pending <= 0);
+			notifyAll();
+		}
+		if (descriptors != null && ! descriptors.isEmpty()) {
+			listeners.fireEvent(EVENT_LOOKUP_RESULT, descriptors);
+		}
+		if (done) {
+			finish(true);
+		}
+	}
+
+	/**
+	 * Adds the results of the local device or the cached results of
+	 * some remote device. In contrast to add result, this does not
+	 * change the number of pending devices.
+	 *
+	 * @param descriptors The descriptors that should be added.
+	 */
+	protected void addCached(Vector descriptors) {
+		synchronized (this) {
+			if (finished) return;
+			for (int i = descriptors.size() - 1; i >= 0; i--) {
+				results.addElement(descriptors.elementAt(i));
+			}
+			notifyAll();
+		}
+		if (! descriptors.isEmpty()) {
+			listeners.fireEvent(EVENT_LOOKUP_RESULT, descriptors);
+		}
+	}
+
+	/**
+	 * Finishes the lookup, if it is not finished already.
+	 *
+	 * @param complete True if all devices have answered, false otherwise.
+	 */
+	protected void finish(boolean complete) {
+		synchronized (this) {
+			if (finished) return;
+			finished = true;
+			this.complete = complete;
+			notifyAll();
+		}
+		listeners.fireEvent(EVENT_LOOKUP_FINISHED, new Boolean(complete));
+	}
+
+	/**
+	 * Waits until the lookup is finished or until its deadline has passed.
+	 * If the deadline has passed, the lookup is finished.
+	 *
+	 * @throws InterruptedException Thrown if the thread got interrupted.
+	 */
+	public void join() throws InterruptedException {
+		synchronized (this) {
+			while (! finished) {
+				if (deadline == 0) {
+					wait();
+				} else {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) break;
+					wait(remaining);
+				}
+			}
+		}
+		finish(false);
+	}
+
+	/**
+	 * Cancels the lookup. Results that are received afterwards will
+	 * be ignored.
+	 */
+	public void cancel() {
+		finish(false);
+	}
+
+	/**
+	 * Determines whether the lookup is finished.
+	 *
+	 * @return True if the lookup is finished, false otherwise.
+	 */
+	public synchronized boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Determines whether all devices have answered the lookup.
+	 *
+	 * @return True if all devices have answered, false if the lookup
+	 * 	is still running, if it has been canceled or if the deadline
+	 * 	has passed before all devices have answered.
+	 */
+	public synchronized boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Returns the deadline of the lookup.
+	 *
+	 * @return The point in time at which the lookup is finished or 0,
+	 * 	if the lookup does not have a deadline.
+	 */
+	public long getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * Returns the service descriptors that have been received so far.
+	 *
+	 * @return A vector that contains the descriptors received so far.
+	 */
+	public synchronized Vector getResults() {
+		Vector result = new Vector(results.size());
+		for (int i = 0, s = results.size(); i < s; i++) {
+			result.addElement(results.elementAt(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Determines whether there are more descriptors. If all received
+	 * descriptors have been enumerated, this method blocks until the
+	 * next device answers or until the lookup is finished.
+	 *
+	 * @return True if there are more descriptors, false if all
+	 * 	descriptors have been enumerated and the lookup is finished.
+	 */
+	public boolean hasMoreElements() {
+		synchronized (this) {
+			while (position == results.size() && ! finished) {
+				try {
+					if (deadline == 0) {
+						wait();
+					} else {
+						long remaining = deadline - System.currentTimeMillis();
+						if (remaining <= 0) break;
+						wait(remaining);
+					}
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+			if (position < results.size()) return true;
+		}
+		finish(false);
+		return false;
+	}
+
+	/**
+	 * Returns the next service descriptor. If all received descriptors
+	 * have been enumerated, this method blocks until the next device
+	 * answers or until the lookup is finished.
+	 *
+	 * @return The next service descriptor.
+	 * @throws NoSuchElementException Thrown if all descriptors have been
+	 * 	enumerated and the lookup is finished.
+	 */
+	public Object nextElement() {
+		if (! hasMoreElements())
+			throw new NoSuchElementException("No more services.");
+		synchronized (this) {
+			Object result = results.elementAt(position);
+			position += 1;
+			return result;
+		}
+	}
+
+}
@@ -0,0 +1,187 @@
+package info.pppc.base.service;
+
+import java.util.Enumeration;
+
+/**
+ * A service query bundles the parameters of a lookup, i.e., the name,
+ * the interfaces and the properties of the services that shall be found.
+ * Each of the parameters may be null, which denotes a wild card. The
+ * query implements equals and hash code so that it can be used as key
+ * for the results of previous lookups.
+ *
+ * @author Mac
+ */
+final class ServiceQuery {
+
+	/**
+	 * The name of the service or null, if any name matches.
+	 */
+	private String name;
+
+	/**
+	 * The interfaces that must be provided by the service or null,
+	 * if any interface matches.
+	 */
+	private String[] interfaces;
+
+	/**
+	 * The properties that must be contained in the properties of the
+	 * service or null, if any properties match.
+	 */
+	private ServiceProperties properties;
+
+	/**
+	 * The hash code of the query, computed on creation.
+	 */
+	private int hash;
+
+	/**
+	 * Creates a new query with the specified parameters. The query
+	 * keeps references to the parameters, thus, they must not be
+	 * modified afterwards.
+	 *
+	 * @param name The name of the service or null.
+	 * @param interfaces The interfaces of the service or null.
+	 * @param properties The properties of the service or null.
+	 */
+	public ServiceQuery(String name, String[] interfaces, ServiceProperties properties) {
+		this.name = name;
+		this.interfaces = interfaces;
+		this.properties = properties;
+		if (name != null) {
+			hash = name.hashCode();
+		}
+		if (interfaces != null) {
+			for (int i = interfaces.length - 1; i >= 0; i--) {
+				if (interfaces[i] != null) {
+					hash = hash * 31 + interfaces[i].hashCode();
+				}
+			}
+		}
+		if (properties != null) {
+			hash = hash * 31 + properties.hashCode();
+		}
+	}
+
+	/**
+	 * Returns the name of the service or null.
+	 *
+	 * @return The name of the service or null.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the interfaces of the service or null.
+	 *
+	 * @return The interfaces of the service or null.
+	 */
+	public String[] getInterfaces() {
+		return interfaces;
+	}
+
+	/**
+	 * Returns the properties of the service or null.
+	 *
+	 * @return The properties of the service or null.
+	 */
+	public ServiceProperties getProperties() {
+		return properties;
+	}
+
+	/**
+	 * Creates a deep copy of the query. This is used to store queries
+	 * that have been passed by the application, since the application
+	 * might modify the interfaces or properties later on.
+	 *
+	 * @return A deep copy of the query.
+	 */
+	public ServiceQuery copy() {
+		String[] is = null;
+		if (interfaces != null) {
+			is = new String[interfaces.length];
+			System.arraycopy(interfaces, 0, is, 0, is.length);
+		}
+		ServiceProperties ps = null;
+		if (properties != null) {
+			ps = new ServiceProperties();
+			Enumeration e = properties.getProperties();
+			while (e.hasMoreElements()) {
+				String key = (String)e.nextElement();
+				ps.setProperty(key, properties.getProperty(key));
+			}
+		}
+		return new ServiceQuery(name, is, ps);
+	}
+
+	/**
+	 * Determines whether the specified descriptor matches the query.
+	 *
+	 * @param d The descriptor to check.
+	 * @return True if the name, interfaces and properties of the
+	 * 	descriptor match the query, false otherwise.
+	 */
+	public boolean matches(ServiceDescriptor d) {
+		// perform name search
+		if (name != null && ! name.equals(d.getName())) {
+			// name does not match
+			return false;
+		}
+		// perform interface search
+		if (interfaces != null) {
+			String[] serviceInterfaces = d.getInterfaces();
+			interfaces: for (int j = interfaces.length - 1; j >= 0; j--) {
+				for (int k = serviceInterfaces.length - 1; k >= 0; k--) {
+					if (interfaces[j].equals(serviceInterfaces[k])) {
+						// interface j found as interface k
+						continue interfaces;
+					}
+				}
+				// interface j not found
+				return false;
+			}
+		}
+		// perform property match
+		if (properties != null) {
+			ServiceProperties p = d.getProperties();
+			if (! p.contains(properties)) {
+				// properties not met by service
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Determines whether the query equals the specified object.
+	 *
+	 * @param o The object to compare to.
+	 * @return True if the object is a query with the same parameters.
+	 */
+	public boolean equals(Object o) {
+		if (o == this) return true;
+		if (o == null || o.getClass() != getClass()) return false;
+		ServiceQuery q = (ServiceQuery)o;
+		if (hash != q.hash) return false;
+		if (name == null ? q.name != null : ! name.equals(q.name)) return false;
+		if (properties == null ? q.properties != null : ! properties.equals(q.properties)) return false;
+		if (interfaces == null || q.interfaces == null) return interfaces == q.interfaces;
+		if (interfaces.length != q.interfaces.length) return false;
+		for (int i = interfaces.length - 1; i >= 0; i--) {
+			if (interfaces[i] == null ? q.interfaces[i] != null 
+					: ! interfaces[i].equals(q.interfaces[i])) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the hash code of the query.
+	 *
+	 * @return The hash code of the query.
+	 */
+	public int hashCode() {
+		return hash;
+	}
+
+}
@@ -1,5 +1,6 @@
 package info.pppc.base.service;
 
+import info.pppc.base.system.DeviceDescription;
 import info.pppc.base.system.DeviceRegistry;
 import info.pppc.base.system.ISession;
 import info.pppc.base.system.Invocation;
@@ -16,9 +17,10 @@ import info.pppc.base.system.event.ListenerBundle;
 import info.pppc.base.system.io.ObjectStreamTranslator;
 import info.pppc.base.system.operation.IMonitor;
 import info.pppc.base.system.operation.IOperation;
-import info.pppc.base.system.operation.NullMonitor;
 import info.pppc.base.system.util.Logging;
 
+import java.util.Enumeration;
+import java.util.Hashtable;
 import java.util.Vector;
 
 /**
@@ -58,6 +60,28 @@ public final class ServiceRegistry implements IServiceRegistry {
 	 * should be performed on both, local and remote devices.
 	 */
 	public static final int LOOKUP_BOTH = 4;
+	
+	/**
+	 * The default time to live of cached remote lookup results in 
+	 * milliseconds. Cached results are removed earlier, if the remote 
+	 * device is removed or if it signals a change of its services.
+	 */
+	public static final long DEFAULT_CACHE_TIMEOUT = 30000;
+	
+	/**
+	 * The default number of remote registries that are queried in parallel
+	 * by a single lookup. Increasing this value might decrease the lookup 
+	 * latency at the cost of a higher memory and thread usage.
+	 */
+	public static final int DEFAULT_PARALLELISM = 4;
+	
+	/**
+	 * The time in milliseconds for which a remote system that has performed
+	 * a lookup is notified about changes to the local services. The time 
+	 * is extended with every lookup. It should be larger than the cache 
+	 * timeout used by remote registries.
+	 */
+	private static final long SUBSCRIPTION_TIMEOUT = 60000;
 
 	/**
 	 * This class is used to store all relevant data of a service
@@ -174,6 +198,54 @@ public final class ServiceRegistry implements IServiceRegistry {
 		}
 	}
 
+	/**
+	 * This interceptor detects incoming lookups from remote systems.
+	 * It remembers the systems that have performed a lookup, so that
+	 * they can be notified whenever the local services change.
+	 * 
+	 * @author Mac
+	 */
+	private class RegistryInterceptor implements IInvocationHandler {
+		
+		/**
+		 * The skeleton that dispatches the calls to the registry.
+		 */
+		private IInvocationHandler handler;
+		
+		/**
+		 * Creates a new interceptor that dispatches the call to 
+		 * the specified handler.
+		 * 
+		 * @param handler The handler that handles the call.
+		 */
+		public RegistryInterceptor(IInvocationHandler handler) {
+			this.handler = handler;
+		}
+		
+		/**
+		 * Called whenever an incoming call should be dispatched. 
+		 * This method registers the source of lookups as subscriber.
+		 * 
+		 * @param invocation The invocation that needs to be 
+		 * 	handled by the invocation handler.
+		 * @param session The session used to receive the invocation.
+		 */
+		public void invoke(Invocation invocation, ISession session) {
+			ReferenceID source = invocation.getSource();
+			String signature = invocation.getSignature();
+			if (source != null && source.getSystem() != null && signature != null
+					&& signature.startsWith(LOOKUP_SIGNATURE)
+					&& ! broker.getSystemID().equals(source.getSystem())) {
+				synchronized (subscribers) {
+					subscribers.put(source.getSystem(), 
+						new Long(System.currentTimeMillis() + SUBSCRIPTION_TIMEOUT));
+				}
+			}
+			handler.invoke(invocation, session);
+		}
+		
+	}
+	
 	/**
 	 * The event constant that denotes that at least one service is
 	 * now activated. The data object will be null and the source
@@ -209,10 +281,21 @@ public final class ServiceRegistry implements IServiceRegistry {
 	private static final String ANNONYMOUS_SERVICE = "ANNONYMOUS";
 
 	/**
-	 * The local instance of the service registry.
+	 * The prefix of the signature of remote lookups.
+	 */
+	private static final String LOOKUP_SIGNATURE = "java.util.Vector lookup(";
+
+	/**
+	 * The local instance of the service registry of the default broker.
 	 */
 	protected static ServiceRegistry instance;
 
+	/**
+	 * The local instances of the service registry of additional brokers
+	 * hashed by broker.
+	 */
+	private static Hashtable instances = new Hashtable();
+
 	/**
 	 * The listener bundle that holds the listeners that are registered
 	 * for event emitted by the registry. At the present time the 
@@ -234,10 +317,16 @@ public final class ServiceRegistry implements IServiceRegistry {
 	private ObjectRegistry objectRegistry;
 	
 	/**
-	 * The vector that contains the service storages for all locally
+	 * The invocation broker of the registry. This is used to start
+	 * the service group.
+	 */
+	private InvocationBroker broker;
+	
+	/**
+	 * The index that contains the service storages for all locally
 	 * registered services.
 	 */
-	private Vector services = new Vector();
+	private ServiceIndex services = new ServiceIndex();
 	
 	/**
 	 * The service listener that listens to state changes within the activation
@@ -274,13 +363,53 @@ public final class ServiceRegistry implements IServiceRegistry {
 	private int[] activeServices = new int[1];
 	
 	/**
-	 * The thread limit for lookup threads. All service lookup requests
-	 * from all clients will use at most the specified limit of threads.
-	 * Increasing this value might decrease the lookup latency at the
-	 * cost of a higher memory and thread usage.
+	 * The cache that stores the results of remote lookups.
 	 */
-	private int[] lookupThreads = new int[] { 4 };
+	private ServiceCache cache = new ServiceCache(DEFAULT_CACHE_TIMEOUT);
 	
+	/**
+	 * The remote systems that have performed a lookup recently. The
+	 * hash table hashes system ids to the time at which the subscription
+	 * expires as long.
+	 */
+	private Hashtable subscribers = new Hashtable();
+	
+	/**
+	 * The service group that exchanges lookups and service summaries
+	 * with the registries of other devices.
+	 */
+	private ServiceGroup group;
+	
+	/**
+	 * The device listener that removes the cached results of devices
+	 * that are no longer available.
+	 */
+	private IListener deviceListener = new IListener() {
+		public void handleEvent(Event event) {
+			Object data = event.getData();
+			if (data instanceof Object[]) {
+				data = ((Object[])data)[0];
+			}
+			if (data instanceof DeviceDescription) {
+				SystemID system = ((DeviceDescription)data).getSystemID();
+				cache.invalidate(system);
+				synchronized (subscribers) {
+					subscribers.remove(system);
+				}
+			}
+		}
+	};
+	
+	/**
+	 * The listener that notifies the subscribers about added and 
+	 * removed services.
+	 */
+	private IListener changeListener = new IListener() {
+		public void handleEvent(Event event) {
+			group.changed();
+			notifySubscribers(event.getType());
+		}
+	};
 	
 	/**
 	 * Creates a new registry and registers the registry at the object
@@ -289,39 +418,109 @@ public final class ServiceRegistry implements IServiceRegistry {
 	 * @param broker The invocation broker instance of the registry.
 	 */
 	protected ServiceRegistry(InvocationBroker broker){
+		this.broker = broker;
 		objectRegistry = broker.getObjectRegistry();
 		deviceRegistry = broker.getDeviceRegistry();
 		ServiceRegistrySkeleton skeleton = new ServiceRegistrySkeleton();
 		skeleton.setImplementation(this);
-		objectRegistry.registerObject(IServiceRegistry.REGISTRY_ID, skeleton, this);
+		objectRegistry.registerObject(IServiceRegistry.REGISTRY_ID, new RegistryInterceptor(skeleton), this);
+		group = new ServiceGroup(this, cache, broker);
+		deviceRegistry.addDeviceListener(DeviceRegistry.EVENT_DEVICE_REMOVED, deviceListener);
+		listeners.addListener(EVENT_SERVICE_ADDED | EVENT_SERVICE_REMOVED, changeListener);
 		broker.addBrokerListener(InvocationBroker.EVENT_BROKER_SHUTDOWN, new IListener() {
 			public void handleEvent(Event event) {
 				Logging.debug(getClass(), "Removing service registry due to broker shutdown.");
+				listeners.removeListener(EVENT_SERVICE_ADDED | EVENT_SERVICE_REMOVED, changeListener);
 				synchronized (services) {
-					while (! services.isEmpty()) {
-						ServiceStorage store = (ServiceStorage)services.elementAt(0);
-						ServiceDescriptor desc = store.getDescriptor();
-						ObjectID id = desc.getIdentifier().getObject();
-						release(id);
+					ObjectID[] ids = services.getIdentifiers();
+					for (int i = ids.length - 1; i >= 0; i--) {
+						release(ids[i]);
 					}
 				}   			
 				objectRegistry.removeObject(IServiceRegistry.REGISTRY_ID);
-				instance = null;
+				deviceRegistry.removeDeviceListener(DeviceRegistry.EVENT_DEVICE_REMOVED, deviceListener);
+				group.stop();
+				cache.clear();
+				synchronized (subscribers) {
+					subscribers.clear();
+				}
+				if (instance == ServiceRegistry.this) {
+					instance = null;
+				} else {
+					instances.remove(ServiceRegistry.this.broker);
+				}
 			}
 		});
 	}
 
 	/**
 	 * Creates, registers and returns the local instance of the service
-	 * registry.
+	 * registry of the broker of the calling thread.
 	 * 
 	 * @return The local instance of the service registry.
 	 */
 	public static ServiceRegistry getInstance() {
-		if (instance == null) {
-			instance = new ServiceRegistry(InvocationBroker.getInstance());
+		InvocationBroker context = InvocationBroker.getBinding();
+		if (context == null) {
+			if (instance == null) {
+				instance = new ServiceRegistry(InvocationBroker.getInstance());
+			}
+			return instance;
 		}
-		return instance;
+		synchronized (instances) {
+			ServiceRegistry registry = (ServiceRegistry)instances.get(context);
+			if (registry == null) {
+				registry = new ServiceRegistry(context);
+				instances.put(context, registry);
+			}
+			return registry;
+		}
+	}
+
+	/**
+	 * Sets the time to live of cached remote lookup results. Cached 
+	 * results are removed earlier if the remote device is removed or
+	 * if it signals a change of its services. A value that is not 
+	 * positive disables the cache.
+	 * 
+	 * @param timeout The time to live of cached results in milliseconds.
+	 */
+	public void setCacheTimeout(long timeout) {
+		cache.setTimeout(timeout);
+	}
+	
+	/**
+	 * Returns the time to live of cached remote lookup results.
+	 * 
+	 * @return The time to live of cached results in milliseconds.
+	 */
+	public long getCacheTimeout() {
+		return cache.getTimeout();
+	}
+	
+	/**
+	 * Enables or disables the exchange of service summaries. If enabled,
+	 * the registry periodically announces a compact summary of its 
+	 * services to other devices and it uses the summaries received from
+	 * other devices to skip remote lookups on devices that do not export
+	 * matching services. Since summaries are transmitted unreliably, a
+	 * service that has been exported recently by a remote device may be
+	 * missed until the next summary of the device has been received.
+	 * By default, summaries are disabled.
+	 * 
+	 * @param enabled True to enable summaries, false to disable them.
+	 */
+	public void setSummaries(boolean enabled) {
+		group.setAnnouncing(enabled);
+	}
+	
+	/**
+	 * Determines whether the exchange of service summaries is enabled.
+	 * 
+	 * @return True if summaries are enabled, false otherwise.
+	 */
+	public boolean isSummaries() {
+		return group.isAnnouncing();
 	}
 
 	/**
@@ -370,7 +569,8 @@ public final class ServiceRegistry implements IServiceRegistry {
 	 * 
 	 * @param serviceName The name of the service.
 	 * @param properties The properties of the service, if null set to an
-	 * 	empty set of properties.
+	 * 	empty set of properties. The properties are copied, thus, later
+	 * 	changes will not affect the exported service.
 	 * @param serviceInterfaces The interfaces exported by the service, if
 	 * 	null replaced by an empty array, null values are removed from the 
 	 * 	array.
@@ -392,9 +592,15 @@ public final class ServiceRegistry implements IServiceRegistry {
 		if (service == null) {
 			throw new NullPointerException("Service implementation must not be null.");
 		}
-		// perform compliance check on service properties
-		if (properties == null) {
-			properties = new ServiceProperties();
+		// perform compliance check on service properties, copy them since 
+		// the index relies on properties that do not change after the export
+		ServiceProperties serviceProperties = new ServiceProperties();
+		if (properties != null) {
+			Enumeration e = properties.getProperties();
+			while (e.hasMoreElements()) {
+				String key = (String)e.nextElement();
+				serviceProperties.setProperty(key, properties.getProperty(key));
+			}
 		}		
 		// perform compliance check on service interfaces
 		Vector interfaces = new Vector();
@@ -411,21 +617,15 @@ public final class ServiceRegistry implements IServiceRegistry {
 		}
 		synchronized (services) {
 			// perform compliance check on service name, generate if neccessary
-			Vector names = new Vector();
-			for (int i = services.size() - 1; i >= 0; i--) {
-				ServiceStorage store = (ServiceStorage)services.elementAt(i);
-				ServiceDescriptor d = (ServiceDescriptor)store.getDescriptor();
-				names.addElement(d.getName());
-			}
 			if (serviceName == null) {
 				long time = System.currentTimeMillis();
 				serviceName = ANNONYMOUS_SERVICE + time;
-				while (names.contains(serviceName)) {
+				while (services.contains(serviceName)) {
 					time += 1;
 					serviceName = ANNONYMOUS_SERVICE + time;
 				}
 			}
-			if (names.contains(serviceName)) {
+			if (services.contains(serviceName)) {
 				throw new ServiceRegistryException("Service name already in use.");
 			}
 			// add service status listener and update registry state
@@ -447,12 +647,12 @@ public final class ServiceRegistry implements IServiceRegistry {
 			ServiceDescriptor desc = new ServiceDescriptor();
 			desc.setName(serviceName);
 			desc.setInterfaces(serviceInterfaces);
-			desc.setProperties(properties);
-			desc.setIdentifier(new ReferenceID(SystemID.SYSTEM, id));
+			desc.setProperties(serviceProperties);
+			desc.setIdentifier(new ReferenceID(broker.getSystemID(), id));
 			ServiceStorage storage = new ServiceStorage();
 			storage.setDescriptor(desc);
 			storage.setService(service);
-			services.addElement(storage);
+			services.add(desc, storage);
 			listeners.fireEvent(EVENT_SERVICE_ADDED, id);
 			return id;
 		}
@@ -503,29 +703,24 @@ public final class ServiceRegistry implements IServiceRegistry {
 	 */
 	public boolean release(ObjectID id) {
 		synchronized (services) {
-			for (int i = services.size() - 1; i >= 0; i--) {
-				ServiceStorage store = (ServiceStorage)services.elementAt(i);
-				ServiceDescriptor d = store.getDescriptor();
-				ObjectID sid = d.getIdentifier().getObject();
-				if (sid.equals(id)) {
-					// found service, unregister it
-					objectRegistry.removeObject(id);
-					services.removeElementAt(i);
-					synchronized (activeServices) {
-						if (store.getService().isActive()) {
-							activeServices[0] -= 1;
-							if (activeServices[0] == 0) {
-								listeners.fireEvent(EVENT_SERVICE_PASSIVATED);
-							}
-						}
-						store.getService().removeServiceListener
-							(Service.EVENT_SERVICE_ACTIVATED | Service.EVENT_SERVICE_PASSIVATED, serviceListener);						
+			ServiceStorage store = (ServiceStorage)services.remove(id);
+			if (store == null) {
+				return false;
+			}
+			// found service, unregister it
+			objectRegistry.removeObject(id);
+			synchronized (activeServices) {
+				if (store.getService().isActive()) {
+					activeServices[0] -= 1;
+					if (activeServices[0] == 0) {
+						listeners.fireEvent(EVENT_SERVICE_PASSIVATED);
 					}
-					listeners.fireEvent(EVENT_SERVICE_REMOVED, id);
-					return true;
 				}
+				store.getService().removeServiceListener
+					(Service.EVENT_SERVICE_ACTIVATED | Service.EVENT_SERVICE_PASSIVATED, serviceListener);						
 			}
-			return false;
+			listeners.fireEvent(EVENT_SERVICE_REMOVED, id);
+			return true;
 		}
 	}
 
@@ -617,99 +812,226 @@ public final class ServiceRegistry implements IServiceRegistry {
 	 * @return A vector that contains all services found within the specified
 	 * 	range.
 	 */
-	public Vector lookup(final String name, final String[] interfaces, final ServiceProperties properties, int range) {
-		final Vector result = new Vector();
+	public Vector lookup(String name, String[] interfaces, ServiceProperties properties, int range) {
+		if (range == LOOKUP_LOCAL_ONLY) {
+			return lookup(new ServiceQuery(name, interfaces, properties));
+		}
+		ServiceLookup lookup = lookup(name, interfaces, properties, range, 0, DEFAULT_PARALLELISM, null);
+		try {
+			lookup.join();
+		} catch (InterruptedException e) {
+			Logging.error(getClass(), "Thread got interrupted.", e);
+			lookup.cancel();
+		}
+		// return result set (never null)
+		return lookup.getResults();
+	}
+	
+	/**
+	 * Starts a lookup for services within the specified range and returns
+	 * without waiting for the remote devices. The results of the local
+	 * device and the cached results of remote devices are available 
+	 * immediately. The results of the other devices are added to the 
+	 * lookup as soon as the devices answer. If the deadline of the lookup
+	 * passes before all devices have answered, the lookup is finished and
+	 * it contains only the results that have been received so far.
+	 * 
+	 * @param name The name of the service, or null if any name should be
+	 * 	returned.
+	 * @param interfaces The interfaces provided by the service, or null if
+	 * 	any interface should be returned.
+	 * @param properties The properties specified by the service, or null if
+	 * 	any property should be returned.
+	 * @param range The range of the lookup, either local, remote or both.
+	 * @param timeout The maximum duration of the lookup in milliseconds. If
+	 * 	the timeout is not positive, the lookup waits for all devices.
+	 * @param parallelism The maximum number of devices that are queried in
+	 * 	parallel. If the value is not positive, the devices are queried
+	 * 	one after another.
+	 * @param listener A listener that is registered for all events of the
+	 * 	lookup before the lookup is started or null, if the results are 
+	 * 	retrieved from the returned lookup.
+	 * @return The lookup that receives the results.
+	 */
+	public ServiceLookup lookup(final String name, final String[] interfaces, final ServiceProperties properties, 
+			int range, long timeout, int parallelism, IListener listener) {
+		final ServiceQuery query = new ServiceQuery(name, interfaces, properties);
+		final ServiceLookup lookup = new ServiceLookup(timeout);
+		if (listener != null) {
+			lookup.addLookupListener(ServiceLookup.EVENT_LOOKUP_RESULT | 
+				ServiceLookup.EVENT_LOOKUP_FINISHED, listener);
+		}
 		// search within local registry
 		if (range == LOOKUP_LOCAL_ONLY || range == LOOKUP_BOTH) {
-			synchronized (services) {
-				descriptors: for (int i = services.size() - 1; i >= 0; i--) {
-					ServiceStorage store = (ServiceStorage)services.elementAt(i);
-					ServiceDescriptor d = store.getDescriptor();
-					// perform name search
-					if (name != null && ! name.equals(d.getName())) {
-						// name does not match
-						continue descriptors;
-					}
-					// perform interface search
-					if (interfaces != null) {
-						String[] serviceInterfaces = d.getInterfaces();
-						interfaces: for (int j = interfaces.length - 1; j >= 0; j--) {
-							for (int k = serviceInterfaces.length - 1; k >= 0; k--) {
-								if (interfaces[j].equals(serviceInterfaces[k])) {
-									// interface j found as interface k
-									continue interfaces;	
-								}					
-							}
-							// interface j not found
-							continue descriptors;
-						}
-					}
-					// perform property match
-					if (properties != null) {
-						ServiceProperties p = d.getProperties();
-						if (! p.contains(properties)) {
-							// properties not met by service
-							continue descriptors;
-						}
-					}
-					// service descriptor matches all query parameters
-					result.addElement(d);				
-				}
-			}			
+			lookup.addCached(lookup(query));
 		}
 		// search within remote registries
+		Vector pending = new Vector();
 		if (range == LOOKUP_REMOTE_ONLY || range == LOOKUP_BOTH) {
-			// perform asynchronous lookup operations
-			final SystemID[] devices = deviceRegistry.getRemoteDevices(IServiceRegistry.REGISTRY_ID);
-			final NullMonitor[] monitors = new NullMonitor[devices.length];
-			for (int i = devices.length - 1; i >= 0; i--) {	
-				final int id = i;
-				IOperation lookup = new IOperation() {
-					public void perform(IMonitor monitor) throws Exception {
-						try {
-							ServiceRegistryProxy registry = new ServiceRegistryProxy();
-							registry.setSourceID(new ReferenceID(SystemID.SYSTEM, IServiceRegistry.REGISTRY_ID));
-							registry.setTargetID(new ReferenceID(devices[id], IServiceRegistry.REGISTRY_ID));
-							Vector services = registry.lookup(name, interfaces, properties, LOOKUP_LOCAL_ONLY);
-							for (int j = services.size() - 1; j >= 0; j--) {
-								result.addElement(services.elementAt(j));
-							}
-						} catch (InvocationException e) {
-							Logging.debug(getClass(), "Could not contact registry on device " + devices[id]);
-						} finally {
-							synchronized (lookupThreads) {
-								lookupThreads[0] += 1;
-								lookupThreads.notifyAll();
-							}
-						}
-					}
-				};
-				monitors[id] = new NullMonitor();
-				// acquire semaphore before executing the thread.
-				synchronized (lookupThreads) {
-					while (lookupThreads[0] <= 0) {
-						try {
-							lookupThreads.wait();	
-						} catch (InterruptedException e) {
-							Logging.error(getClass(), "Lookup thread got interrupted.", e);
-							return new Vector();	
-						}
+			SystemID[] devices = deviceRegistry.getRemoteDevices(IServiceRegistry.REGISTRY_ID);
+			for (int i = 0; i < devices.length; i++) {
+				// skip devices whose summary excludes a match
+				if (group.excludes(query, devices[i])) {
+					continue;
+				}
+				// use cached results, if available
+				Vector cached = cache.get(query, devices[i]);
+				if (cached != null) {
+					lookup.addCached(cached);
+				} else {
+					pending.addElement(devices[i]);
+				}
+			}			
+		}
+		if (pending.isEmpty()) {
+			lookup.finish(true);
+			return lookup;
+		}
+		SystemID[] devices = new SystemID[pending.size()];
+		pending.copyInto(devices);
+		lookup.setDevices(devices);
+		// perform asynchronous lookup operations
+		IOperation operation = new IOperation() {
+			public void perform(IMonitor monitor) throws Exception {
+				SystemID device = lookup.nextDevice();
+				while (device != null) {
+					Vector services = null;
+					try {
+						int version = cache.getVersion(device);
+						ServiceRegistryProxy registry = new ServiceRegistryProxy();
+						registry.setSourceID(new ReferenceID(broker.getSystemID(), IServiceRegistry.REGISTRY_ID));
+						registry.setTargetID(new ReferenceID(device, IServiceRegistry.REGISTRY_ID));
+						services = registry.lookup(name, interfaces, properties, LOOKUP_LOCAL_ONLY);
+						cache.put(query, device, version, services);
+					} catch (InvocationException e) {
+						Logging.debug(getClass(), "Could not contact registry on device " + device);
 					}
-					lookupThreads[0] -= 1;
+					lookup.addResult(services);
+					device = lookup.nextDevice();
 				}
-				InvocationBroker.getInstance().performOperation(lookup, monitors[id]);
 			}
-			// barrier for monitors
-			for (int i = monitors.length - 1; i >= 0; i--) {
-				try {
-					monitors[i].join();	
-				} catch (InterruptedException e) {
-					Logging.error(getClass(), "Thread got interrupted.", e);
+		};
+		int workers = Math.min(Math.max(parallelism, 1), devices.length);
+		for (int i = 0; i < workers; i++) {
+			broker.performOperation(operation);
+		}
+		// finish the lookup at the deadline, even if no one waits for it
+		if (lookup.getDeadline() != 0) {
+			group.expire(lookup);
+		}
+		return lookup;
+	}
+	
+	/**
+	 * Starts a lookup for services on remote devices that sends a single
+	 * group packet instead of contacting each remote registry separately.
+	 * Registries that export matching services reply after a random 
+	 * back-off. If any service is sufficient, registries suppress their 
+	 * reply when they overhear the reply of another registry and the 
+	 * lookup is finished as soon as the first reply is received. Since 
+	 * packets are transmitted unreliably, the lookup may miss services. 
+	 * The lookup only covers devices that can be reached by group packets
+	 * and that run a registry that supports group lookups.
+	 * 
+	 * @param name The name of the service, or null if any name should be
+	 * 	returned.
+	 * @param interfaces The interfaces provided by the service, or null if
+	 * 	any interface should be returned.
+	 * @param properties The properties specified by the service, or null if
+	 * 	any property should be returned.
+	 * @param timeout The maximum duration of the lookup in milliseconds. 
+	 * 	This must be positive.
+	 * @param any True if the lookup should finish with the first reply,
+	 * 	false if it should collect replies until the timeout.
+	 * @param listener A listener that is registered for all events of the
+	 * 	lookup before the lookup is started or null, if the results are 
+	 * 	retrieved from the returned lookup.
+	 * @return The lookup that receives the results.
+	 * @throws IllegalArgumentException Thrown if the timeout is not positive.
+	 */
+	public ServiceLookup lookup(String name, String[] interfaces, ServiceProperties properties, 
+			long timeout, boolean any, IListener listener) {
+		if (timeout <= 0) 
+			throw new IllegalArgumentException("Timeout must be positive.");
+		final ServiceLookup lookup = new ServiceLookup(timeout);
+		if (listener != null) {
+			lookup.addLookupListener(ServiceLookup.EVENT_LOOKUP_RESULT | 
+				ServiceLookup.EVENT_LOOKUP_FINISHED, listener);
+		}
+		group.query(new ServiceQuery(name, interfaces, properties), any, lookup);
+		// finish the lookup at the deadline, even if no one waits for it
+		group.expire(lookup);
+		return lookup;
+	}
+	
+	/**
+	 * Returns the locally exported services that match the query.
+	 * 
+	 * @param query The query to evaluate.
+	 * @return A vector that contains the matching service descriptors.
+	 */
+	private Vector lookup(ServiceQuery query) {
+		synchronized (services) {
+			return services.lookup(query);
+		}
+	}
+	
+	/**
+	 * Called by remote registries whenever their services have changed.
+	 * This removes the cached lookup results of the remote system.
+	 * 
+	 * @param system The system whose services have changed.
+	 * @param events The type of change.
+	 */
+	public void changed(SystemID system, int events) {
+		if (system != null) {
+			cache.invalidate(system);
+		}
+	}
+	
+	/**
+	 * Notifies all remote systems that have performed a lookup recently
+	 * about a change of the local services. The notifications are sent
+	 * asynchronously using a separate operation.
+	 * 
+	 * @param events The type of change.
+	 */
+	private void notifySubscribers(final int events) {
+		final Vector systems = new Vector();
+		synchronized (subscribers) {
+			long now = System.currentTimeMillis();
+			Vector expired = new Vector();
+			Enumeration e = subscribers.keys();
+			while (e.hasMoreElements()) {
+				SystemID system = (SystemID)e.nextElement();
+				Long timeout = (Long)subscribers.get(system);
+				if (timeout.longValue() < now) {
+					expired.addElement(system);
+				} else {
+					systems.addElement(system);
 				}
 			}
+			for (int i = expired.size() - 1; i >= 0; i--) {
+				subscribers.remove(expired.elementAt(i));
+			}
 		}
-		// return result set (never null)
-		return result;
+		if (systems.isEmpty()) return;
+		IOperation notify = new IOperation() {
+			public void perform(IMonitor monitor) throws Exception {
+				for (int i = systems.size() - 1; i >= 0; i--) {
+					SystemID system = (SystemID)systems.elementAt(i);
+					try {
+						ServiceRegistryProxy registry = new ServiceRegistryProxy();
+						registry.setSourceID(new ReferenceID(broker.getSystemID(), IServiceRegistry.REGISTRY_ID));
+						registry.setTargetID(new ReferenceID(system, IServiceRegistry.REGISTRY_ID));
+						registry.changedAsync(broker.getSystemID(), events);
+					} catch (InvocationException e) {
+						Logging.debug(getClass(), "Could not notify registry on device " + system);
+					}
+				}
+			}
+		};
+		broker.performOperation(notify);
 	}
 	
 	/**
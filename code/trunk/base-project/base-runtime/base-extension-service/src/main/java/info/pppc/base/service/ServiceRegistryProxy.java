@@ -43,4 +43,51 @@ public class ServiceRegistryProxy extends info.pppc.base.system.Proxy implements
 		return (java.util.Vector)__result.getValue();
 	}
 	
+	/**
+	 * Proxy method that creates and transfers an invocation for the interface method.
+	 *
+	 * @param system see info.pppc.base.service.IServiceRegistry
+	 * @param events see info.pppc.base.service.IServiceRegistry
+	 * @throws info.pppc.base.system.InvocationException see info.pppc.base.service.IServiceRegistry
+	 * @see info.pppc.base.service.IServiceRegistry
+	 */
+	public void changed(info.pppc.base.system.SystemID system, int events) throws info.pppc.base.system.InvocationException {
+		Object[] __args = new Object[2];
+		__args[0] = system;
+		__args[1] = new Integer(events);
+		String __method = "void changed(info.pppc.base.system.SystemID, int)";
+		info.pppc.base.system.Invocation __invocation = proxyCreateSynchronous(__method, __args);
+		info.pppc.base.system.Result __result = proxyInvokeSynchronous(__invocation);
+		if (__result.hasException()) {
+			if (__result.getException() instanceof info.pppc.base.system.InvocationException) {
+				throw (info.pppc.base.system.InvocationException)__result.getException();
+			}
+			throw (RuntimeException)__result.getException();
+		}
+		return ;
+	}
+	/**
+	 * Proxy method that creates and transfers an asynchronous call.
+	 *
+	 * @param system see info.pppc.base.service.IServiceRegistry
+	 * @param events see info.pppc.base.service.IServiceRegistry
+	 * @throws info.pppc.base.system.InvocationException see info.pppc.base.service.IServiceRegistry
+	 * @see info.pppc.base.service.IServiceRegistry
+	 */
+	public void changedAsync(info.pppc.base.system.SystemID system, int events) throws info.pppc.base.system.InvocationException {
+		Object[] __args = new Object[2];
+		__args[0] = system;
+		__args[1] = new Integer(events);
+		String __method = "void changed(info.pppc.base.system.SystemID, int)";
+		info.pppc.base.system.Invocation __invocation = proxyCreateAsynchronous(__method, __args);
+		info.pppc.base.system.Result __result = proxyInvokeAsynchronous(__invocation);
+		if (__result.hasException()) {
+			if (__result.getException() instanceof info.pppc.base.system.InvocationException) {
+				throw (info.pppc.base.system.InvocationException)__result.getException();
+			}
+			throw (RuntimeException)__result.getException();
+		}
+		return ;
+	}
+	
 }
@@ -27,6 +27,11 @@ public class ServiceRegistrySkeleton extends info.pppc.base.system.Skeleton  {
 			if (method.equals("java.util.Vector lookup(java.lang.String, java.lang.String[], info.pppc.base.service.ServiceProperties, int)")) {
 				Object result = impl.lookup((java.lang.String)args[0], (java.lang.String[])args[1], (info.pppc.base.service.ServiceProperties)args[2], ((Integer)args[3]).intValue());
 				return new info.pppc.base.system.Result(result, null);
+			}
+			else if (method.equals("void changed(info.pppc.base.system.SystemID, int)")) {
+				Object result = null;
+				impl.changed((info.pppc.base.system.SystemID)args[0], ((Integer)args[1]).intValue());
+				return new info.pppc.base.system.Result(result, null);
 			}return new info.pppc.base.system.Result(null, new info.pppc.base.system.InvocationException("Illegal signature."));
 		} catch (Throwable t) {
 			return new info.pppc.base.system.Result(null, t);
@@ -0,0 +1,244 @@
+package info.pppc.base.service;
+
+import info.pppc.base.system.SystemID;
+import info.pppc.base.system.io.IObjectInput;
+import info.pppc.base.system.io.IObjectOutput;
+
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Vector;
+
+/**
+ * A service summary is a compact representation of the services that are
+ * exported by a device. For each service, the summary contains the name,
+ * the hash codes of the interfaces and a 64 bit digest of the properties.
+ * Using the summary, a registry can determine that a remote device does
+ * not export a matching service without contacting the device. Since the
+ * summary contains hash codes, it cannot be used to prove that a device
+ * exports a matching service. If the services do not fit into a single
+ * packet, the summary is marked as incomplete and it does not exclude
+ * any device.
+ *
+ * @author Mac
+ */
+final class ServiceSummary {
+
+	/**
+	 * The system that exports the services.
+	 */
+	private SystemID system;
+
+	/**
+	 * The version of the summary which changes whenever the services
+	 * of the system change.
+	 */
+	private int version;
+
+	/**
+	 * A flag that indicates whether the summary contains all services.
+	 */
+	private boolean complete;
+
+	/**
+	 * The names of the services.
+	 */
+	private String[] names;
+
+	/**
+	 * The hash codes of the interfaces of the services.
+	 */
+	private int[][] interfaces;
+
+	/**
+	 * The digests of the properties of the services.
+	 */
+	private long[] properties;
+
+	/**
+	 * Creates a new summary with the specified contents.
+	 *
+	 * @param system The system that exports the services.
+	 * @param version The version of the summary.
+	 * @param complete True if the summary contains all services.
+	 * @param names The names of the services.
+	 * @param interfaces The interface hash codes of the services.
+	 * @param properties The property digests of the services.
+	 */
+	private ServiceSummary(SystemID system, int version, boolean complete,
+			String[] names, int[][] interfaces, long[] properties) {
+		this.system = system;
+		this.version = version;
+		this.complete = complete;
+		this.names = names;
+		this.interfaces = interfaces;
+		this.properties = properties;
+	}
+
+	/**
+	 * Creates a summary for the specified service descriptors.
+	 *
+	 * @param system The system that exports the services.
+	 * @param version The version of the summary.
+	 * @param descriptors The descriptors of the services.
+	 * @return The summary of the services.
+	 */
+	public static ServiceSummary create(SystemID system, int version, Vector descriptors) {
+		int size = descriptors.size();
+		String[] names = new String[size];
+		int[][] interfaces = new int[size][];
+		long[] properties = new long[size];
+		for (int i = 0; i < size; i++) {
+			ServiceDescriptor d = (ServiceDescriptor)descriptors.elementAt(i);
+			names[i] = d.getName();
+			String[] is = d.getInterfaces();
+			interfaces[i] = new int[is.length];
+			for (int j = 0; j < is.length; j++) {
+				interfaces[i][j] = is[j].hashCode();
+			}
+			properties[i] = digest(d.getProperties());
+		}
+		return new ServiceSummary(system, version, true, names, interfaces, properties);
+	}
+
+	/**
+	 * Computes the digest of the specified properties. The digest is a
+	 * bloom filter that sets two bits for each key value pair. If some
+	 * properties are contained in other properties, the bits of the
+	 * digest of the former are contained in the digest of the latter.
+	 *
+	 * @param ps The properties to digest.
+	 * @return The digest of the properties.
+	 */
+	private static long digest(ServiceProperties ps) {
+		long result = 0;
+		Enumeration e = ps.getProperties();
+		while (e.hasMoreElements()) {
+			String key = (String)e.nextElement();
+			int hash = key.hashCode() * 31 + ps.getProperty(key).hashCode();
+			result |= 1L << (hash & 63);
+			result |= 1L << ((hash >>> 6) & 63);
+		}
+		return result;
+	}
+
+	/**
+	 * Determines whether the summary proves that the system does not
+	 * export a service that matches the query.
+	 *
+	 * @param query The query to check.
+	 * @return True if no service of the system can match the query,
+	 * 	false if some service might match.
+	 */
+	public boolean excludes(ServiceQuery query) {
+		if (! complete) return false;
+		String name = query.getName();
+		String[] is = query.getInterfaces();
+		long digest = 0;
+		if (query.getProperties() != null) {
+			digest = digest(query.getProperties());
+		}
+		services: for (int i = names.length - 1; i >= 0; i--) {
+			if (name != null && ! name.equals(names[i])) continue services;
+			if ((properties[i] & digest) != digest) continue services;
+			if (is != null) {
+				interfaces: for (int j = is.length - 1; j >= 0; j--) {
+					int hash = is[j].hashCode();
+					for (int k = interfaces[i].length - 1; k >= 0; k--) {
+						if (interfaces[i][k] == hash) continue interfaces;
+					}
+					continue services;
+				}
+			}
+			// the service might match the query
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the system that exports the services.
+	 *
+	 * @return The system that exports the services.
+	 */
+	public SystemID getSystem() {
+		return system;
+	}
+
+	/**
+	 * Returns the version of the summary.
+	 *
+	 * @return The version of the summary.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Determines whether the summary contains all services.
+	 *
+	 * @return True if the summary contains all services.
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Writes the summary to the specified output.
+	 *
+	 * @param output The output to write to.
+	 * @param services True to write the services, false to write an
+	 * 	incomplete summary without services.
+	 * @throws IOException Thrown if the summary cannot be written.
+	 */
+	public void writeObject(IObjectOutput output, boolean services) throws IOException {
+		services = services && complete;
+		output.writeObject(system);
+		output.writeInt(version);
+		output.writeBoolean(services);
+		if (services) {
+			output.writeInt(names.length);
+			for (int i = 0; i < names.length; i++) {
+				output.writeUTF(names[i]);
+				output.writeLong(properties[i]);
+				output.writeInt(interfaces[i].length);
+				for (int j = 0; j < interfaces[i].length; j++) {
+					output.writeInt(interfaces[i][j]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a summary that has been written using write object.
+	 *
+	 * @param input The input to read from.
+	 * @return The summary that has been read.
+	 * @throws IOException Thrown if the summary is malformed.
+	 */
+	public static ServiceSummary readObject(IObjectInput input) throws IOException {
+		SystemID system = (SystemID)input.readObject();
+		int version = input.readInt();
+		boolean complete = input.readBoolean();
+		String[] names = new String[0];
+		int[][] interfaces = new int[0][];
+		long[] properties = new long[0];
+		if (complete) {
+			int size = input.readInt();
+			names = new String[size];
+			interfaces = new int[size][];
+			properties = new long[size];
+			for (int i = 0; i < size; i++) {
+				names[i] = input.readUTF();
+				properties[i] = input.readLong();
+				interfaces[i] = new int[input.readInt()];
+				for (int j = 0; j < interfaces[i].length; j++) {
+					interfaces[i][j] = input.readInt();
+				}
+			}
+		}
+		if (system == null)
+			throw new IOException("Summary without system.");
+		return new ServiceSummary(system, version, complete, names, interfaces, properties);
+	}
+
+}
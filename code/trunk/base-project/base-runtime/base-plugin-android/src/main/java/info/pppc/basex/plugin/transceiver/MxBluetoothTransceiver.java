@@ -489,7 +489,7 @@ public class MxBluetoothTransceiver implements ITransceiver, IOperation, IMultip
 		if (description == null) {
 			description = new PluginDescription
 				(PLUGIN_ABILITY, EXTENSION_TRANSCEIVER);
-			description.setProperty(PROPERTY_ID, SystemID.SYSTEM, false);
+			description.setProperty(PROPERTY_ID, SystemID.getLocal(), false);
 		}
 		return description;
 	}
@@ -541,7 +541,7 @@ public class MxBluetoothTransceiver implements ITransceiver, IOperation, IMultip
 				SystemID remote = (SystemID)ois.readObject();
 				String remoteDevice = ois.readUTF().toUpperCase();
 				ObjectOutputStream oos = new ObjectOutputStream(os);
-				oos.writeObject(SystemID.SYSTEM);
+				oos.writeObject(SystemID.getLocal());
 				oos.writeUTF(adapter.getAddress().toUpperCase());
 				if (! remoteDevice.equals(device)) {
 					Logging.debug(getClass(), "Missmatch in local and remote device (" + device + " vs. " + remoteDevice + ").");
@@ -593,7 +593,7 @@ public class MxBluetoothTransceiver implements ITransceiver, IOperation, IMultip
 						InputStream is = bs.getInputStream();
 						OutputStream os = bs.getOutputStream();
 						ObjectOutputStream oos = new ObjectOutputStream(os);
-						oos.writeObject(SystemID.SYSTEM);
+						oos.writeObject(SystemID.getLocal());
 						oos.writeUTF(adapter.getAddress().toUpperCase());
 						ObjectInputStream ois = new ObjectInputStream(is);
 						SystemID remote = (SystemID)ois.readObject();
@@ -455,7 +455,7 @@ public class MxBluetoothTransceiver implements ITransceiver, IOperation, IMultip
 								InputStream is = connection.openInputStream();
 								OutputStream os = connection.openOutputStream();
 								ObjectOutputStream oos = new ObjectOutputStream(os);
-								oos.writeObject(SystemID.SYSTEM);
+								oos.writeObject(SystemID.getLocal());
 								oos.writeUTF(local.getBluetoothAddress().toUpperCase());
 								oos.flush();
 								// cross validation
@@ -845,7 +845,7 @@ public class MxBluetoothTransceiver implements ITransceiver, IOperation, IMultip
 		if (description == null) {
 			description = new PluginDescription
 				(PLUGIN_ABILITY, EXTENSION_TRANSCEIVER);
-			description.setProperty(PROPERTY_ID, SystemID.SYSTEM, false);
+			description.setProperty(PROPERTY_ID, SystemID.getLocal(), false);
 		}
 		return description;
 	}
@@ -896,7 +896,7 @@ public class MxBluetoothTransceiver implements ITransceiver, IOperation, IMultip
 				SystemID remote = (SystemID)ois.readObject();
 				String remoteDevice = ois.readUTF().toUpperCase();
 				ObjectOutputStream oos = new ObjectOutputStream(os);
-				oos.writeObject(SystemID.SYSTEM);
+				oos.writeObject(SystemID.getLocal());
 				oos.writeUTF(device);
 				Logging.debug(getClass(), "Incoming bluetooth connection from system " + remote + ".");
 				synchronized (this) {
@@ -10,6 +10,7 @@ import info.pppc.base.system.io.ObjectOutputStream;
 import info.pppc.base.system.operation.IMonitor;
 import info.pppc.base.system.operation.IOperation;
 import info.pppc.base.system.operation.NullMonitor;
+import info.pppc.base.system.plugin.BufferedPacket;
 import info.pppc.base.system.plugin.IDiscovery;
 import info.pppc.base.system.plugin.IDiscoveryManager;
 import info.pppc.base.system.plugin.IPacket;
@@ -117,7 +118,7 @@ public class ProactiveDiscovery implements IDiscovery, IListener, IOperation {
 			manager.addPluginListener(IDiscoveryManager.EVENT_PLUGIN_ADDED  
 					| IDiscoveryManager.EVENT_PLUGIN_REMOVED, this);
 			// get all descriptions and start discovery for each transceiver
-			PluginDescription[] pds = manager.getPluginDescriptions(SystemID.SYSTEM);
+			PluginDescription[] pds = manager.getPluginDescriptions(SystemID.getLocal());
 			for (int i = 0; i < pds.length; i++) {
 				PluginDescription pd = pds[i];
 				if ((pd.getExtension() == EXTENSION_TRANSCEIVER)) {
@@ -174,10 +175,10 @@ public class ProactiveDiscovery implements IDiscovery, IListener, IOperation {
 					// device description
 					ByteArrayOutputStream bos = new ByteArrayOutputStream();
 					ObjectOutputStream oos = new ObjectOutputStream(bos);
-					oos.writeObject(manager.getDeviceDescription(SystemID.SYSTEM));
+					oos.writeObject(manager.getDeviceDescription(SystemID.getLocal()));
 					// plug-in descriptions
 					Vector announcement = new Vector();
-					PluginDescription[] plugins = manager.getPluginDescriptions(SystemID.SYSTEM);
+					PluginDescription[] plugins = manager.getPluginDescriptions(SystemID.getLocal());
 					for (int i = 0; i < plugins.length; i++) {
 						PluginDescription pd = plugins[i];
 						// only announce non-transceivers and same transceiver					
@@ -306,11 +307,10 @@ public class ProactiveDiscovery implements IDiscovery, IListener, IOperation {
 						try {
 							// process received packet
 							IPacket packet = (IPacket)event.getData();
-							byte[] buffer = packet.getPayload();
-							ByteArrayInputStream bis = new ByteArrayInputStream(buffer);
+							ByteArrayInputStream bis = BufferedPacket.getInputStream(packet);
 							ObjectInputStream ois = new ObjectInputStream(bis);
 							DeviceDescription device = (DeviceDescription)ois.readObject();
-							if (device != null && ! SystemID.SYSTEM.equals(device.getSystemID())) { 
+							if (device != null && ! SystemID.getLocal().equals(device.getSystemID())) { 
 								SystemID id = device.getSystemID();
 								int plugins = ois.readInt();
 								for (int i = 0; i < plugins; i++) {
@@ -10,6 +10,7 @@ import info.pppc.base.system.io.ObjectOutputStream;
 import info.pppc.base.system.operation.IMonitor;
 import info.pppc.base.system.operation.IOperation;
 import info.pppc.base.system.operation.NullMonitor;
+import info.pppc.base.system.plugin.BufferedPacket;
 import info.pppc.base.system.plugin.GroupConnector;
 import info.pppc.base.system.plugin.IDiscovery;
 import info.pppc.base.system.plugin.IDiscoveryManager;
@@ -177,7 +178,7 @@ public class TimedDiscovery implements IDiscovery, IListener, IOperation {
 			manager.addPluginListener(IDiscoveryManager.EVENT_PLUGIN_ADDED  
 					| IDiscoveryManager.EVENT_PLUGIN_REMOVED, this);
 			// get all descriptions and start discovery for each transceiver
-			PluginDescription[] pds = manager.getPluginDescriptions(SystemID.SYSTEM);
+			PluginDescription[] pds = manager.getPluginDescriptions(SystemID.getLocal());
 			for (int i = 0; i < pds.length; i++) {
 				PluginDescription pd = pds[i];
 				if ((pd.getExtension() == EXTENSION_TRANSCEIVER)) {
@@ -215,7 +216,7 @@ public class TimedDiscovery implements IDiscovery, IListener, IOperation {
 	 */
 	public void perform(IMonitor monitor) {
 		Annoucement a = new Annoucement();
-		a.system = SystemID.SYSTEM;
+		a.system = SystemID.getLocal();
 		a.ability = new Short((short)0);
 		Vector keys = new Vector();
 		while (! monitor.isCanceled()) {
@@ -260,14 +261,14 @@ public class TimedDiscovery implements IDiscovery, IListener, IOperation {
 						while (! negatives.isEmpty()) {
 							Short ability = (Short)negatives.elementAt(0);
 							negatives.removeElementAt(0);
-							Logging.debug(getClass(), "Handling negative acknowledge " + ability);
+							Logging.debug(getClass(), "Handling negative acknowledge ", ability);
 							if (ability != null) announce(ability);
 						}
 						// send nacks, if necessary or retransmit bc
 						next = (Annoucement)announcements.elementAt(0);
 						while (next.time <= System.currentTimeMillis()) {
 							announcements.removeElement(next);
-							if (next.system.equals(SystemID.SYSTEM)) {
+							if (next.system.equals(SystemID.getLocal())) {
 								// do a complete announcement
 								break wait;
 							} else {
@@ -296,7 +297,7 @@ public class TimedDiscovery implements IDiscovery, IListener, IOperation {
 	 * @param ability The ability of the plug-in.
 	 */
 	private void announce(Short ability) {
-		Logging.log(getClass(), "Sending annouce " + ability);
+		Logging.log(getClass(), "Sending annouce ", ability);
 		IPacketConnector connector = null;
 		synchronized (this) {
 			connector = (IPacketConnector)connectors.get(ability);
@@ -309,10 +310,10 @@ public class TimedDiscovery implements IDiscovery, IListener, IOperation {
 			// this is an announcement and not a nack
 			oos.writeBoolean(true);
 			// write the device description
-			oos.writeObject(manager.getDeviceDescription(SystemID.SYSTEM));
+			oos.writeObject(manager.getDeviceDescription(SystemID.getLocal()));
 			// plug-in descriptions
 			Vector announcement = new Vector();
-			PluginDescription[] plugins = manager.getPluginDescriptions(SystemID.SYSTEM);
+			PluginDescription[] plugins = manager.getPluginDescriptions(SystemID.getLocal());
 			for (int i = 0; i < plugins.length; i++) {
 				PluginDescription pd = plugins[i];
 				// only announce non-transceivers and same transceiver					
@@ -333,7 +334,7 @@ public class TimedDiscovery implements IDiscovery, IListener, IOperation {
 			synchronized (this) {
 				for (int i = 0; i < announcements.size(); i++) {
 					Annoucement a = (Annoucement)announcements.elementAt(i);
-					if (a.ability.equals(ability) && ! SystemID.SYSTEM.equals(a.system)) {
+					if (a.ability.equals(ability) && ! SystemID.getLocal().equals(a.system)) {
 						systems.addElement(a.system);
 					}
 				}
@@ -365,7 +366,9 @@ public class TimedDiscovery implements IDiscovery, IListener, IOperation {
 	 * @param system The system to target.
 	 */
 	private void acknowledge(Short ability, SystemID system) {
-		Logging.log(getClass(), "Sending negative acknowledge " + ability + " to " + system);
+		if (Logging.isLog()) {
+			Logging.log(getClass(), "Sending negative acknowledge " + ability + " to " + system);
+		}
 		IPacketConnector connector = null;
 		synchronized (this) {
 			connector = (IPacketConnector)connectors.get(ability);
@@ -511,15 +514,14 @@ public class TimedDiscovery implements IDiscovery, IListener, IOperation {
 						try {
 							// process received packet
 							IPacket packet = (IPacket)event.getData();
-							byte[] buffer = packet.getPayload();
-							ByteArrayInputStream bis = new ByteArrayInputStream(buffer);
+							ByteArrayInputStream bis = BufferedPacket.getInputStream(packet);
 							ObjectInputStream ois = new ObjectInputStream(bis);
 							if (ois.readBoolean()) {
 								// simple remote announcement
 								DeviceDescription device = (DeviceDescription)ois.readObject();
-								if (device != null && ! SystemID.SYSTEM.equals(device.getSystemID())) { 
+								if (device != null && ! SystemID.getLocal().equals(device.getSystemID())) { 
 									SystemID id = device.getSystemID();
-									Logging.debug(getClass(), "Received announce from " + id);
+									Logging.debug(getClass(), "Received announce from ", id);
 									int plugins = ois.readInt();
 									for (int i = 0; i < plugins; i++) {
 										PluginDescription plugin = (PluginDescription)ois.readObject();
@@ -530,7 +532,7 @@ public class TimedDiscovery implements IDiscovery, IListener, IOperation {
 									int systems = ois.readInt();
 									for (int i = 0; i < systems; i++) {
 										Object system = ois.readObject();
-										if (SystemID.SYSTEM.equals(system)) { 
+										if (SystemID.getLocal().equals(system)) { 
 											startBurst = false;
 											break;
 										}
@@ -562,7 +564,7 @@ public class TimedDiscovery implements IDiscovery, IListener, IOperation {
 											burst = DISCOVERY_BURST;
 											for (int i = 0; i < announcements.size(); i++) {
 												Annoucement a = (Annoucement)announcements.elementAt(i);
-												if (SystemID.SYSTEM.equals(a.system)) {
+												if (SystemID.getLocal().equals(a.system)) {
 													announcements.removeElementAt(i);
 													a.time = System.currentTimeMillis();
 													announcements.insertElementAt(a, 0);
@@ -580,8 +582,8 @@ public class TimedDiscovery implements IDiscovery, IListener, IOperation {
 							} else {
 								// negative acknowledgement
 								SystemID system = (SystemID)ois.readObject();
-								if (SystemID.SYSTEM.equals(system) && ability != null) {
-									Logging.debug(getClass(), "Received negative acknowledgement over " + ability);
+								if (SystemID.getLocal().equals(system) && ability != null) {
+									Logging.debug(getClass(), "Received negative acknowledgement over ", ability);
 									// received for me, find connector
 									synchronized (this) {
 										if (!negatives.contains(ability)) {
@@ -595,13 +597,17 @@ public class TimedDiscovery implements IDiscovery, IListener, IOperation {
 									}
 								} else {
 									// received for someone else, suppress my nack
-									Logging.debug(getClass(), "Overhearing negative acknowledgement for " + system + " over " + ability);
+									if (Logging.isDebug()) {
+										Logging.debug(getClass(), "Overhearing negative acknowledgement for " + system + " over " + ability);
+									}
 									synchronized (this) {
 										for (int i = 0; i < announcements.size(); i++) {
 											Annoucement a = (Annoucement)announcements.elementAt(i);
 											if (ability.equals(a.ability) && a.system.equals(system)) {
 												if (a.time - System.currentTimeMillis() < DISCOVERY_SLACK) {
-													Logging.debug(getClass(), "Suppressing negative acknowledgement for " + system + " over " + ability);
+													if (Logging.isDebug()) {
+														Logging.debug(getClass(), "Suppressing negative acknowledgement for " + system + " over " + ability);
+													}
 													announcements.removeElementAt(i);
 													a.time += DISCOVERY_SLACK;
 													a.missed += 1;
@@ -176,6 +176,16 @@ public class ProactiveRouting implements IRouting, IListener, IOperation  {
 	 */
 	private IRoutingFilter filter = null;
 	
+	/**
+	 * The number of routes that have been computed.
+	 */
+	private long computations = 0;
+	
+	/**
+	 * The lock that guards the number of computed routes.
+	 */
+	private Object computationLock = new Object();
+	
 	/**
 	 * The plug-in description of the routing plug-in.
 	 */
@@ -203,7 +213,7 @@ public class ProactiveRouting implements IRouting, IListener, IOperation  {
 	 */
 	public ProactiveRouting(boolean retransmit) {
 		this.retransmit = retransmit;
-		description.setProperty(PROPERTY_SYSTEM, SystemID.SYSTEM, false);
+		description.setProperty(PROPERTY_SYSTEM, SystemID.getLocal(), false);
 		description.setProperty(PROPERTY_NEIGHBORS, new Vector(), true);
 		description.setProperty(PROPERTY_GATEWAY, new Boolean(false), true);
 	}
@@ -235,7 +245,7 @@ public class ProactiveRouting implements IRouting, IListener, IOperation  {
 		if (!started) {
 			started = true;
 			// start the connectors on all plug-ins
-			PluginDescription[] descriptions = manager.getPluginDescriptions(SystemID.SYSTEM);
+			PluginDescription[] descriptions = manager.getPluginDescriptions(SystemID.getLocal());
 			for (int i = 0; i < descriptions.length; i++) {
 				if (descriptions[i].getExtension() == IExtension.EXTENSION_TRANSCEIVER) {
 					IPacketConnector connector = manager.openGroup
@@ -387,7 +397,7 @@ public class ProactiveRouting implements IRouting, IListener, IOperation  {
 				// find the nearest gateway
 				for (int i = 0; i < gateways.size(); i++) {
 					SystemID gw = (SystemID)gateways.elementAt(i);
-					if (gw.equals(SystemID.SYSTEM)) {
+					if (gw.equals(SystemID.getLocal())) {
 						route = new Vector();
 					}  else {
 						Vector next = getRoute(gw);
@@ -451,6 +461,19 @@ public class ProactiveRouting implements IRouting, IListener, IOperation  {
 		this.filter = filter;
 	}
 	
+	/**
+	 * Returns the number of routes that have been computed. Since routes
+	 * are computed whenever a session is prepared, this reflects the cost
+	 * of routing under changing topologies.
+	 * 
+	 * @return The number of route computations.
+	 */
+	public long getComputations() {
+		synchronized (computationLock) {
+			return computations;
+		}
+	}
+	
 	/**
 	 * Returns the shortest route using breadth first search. This method
 	 * will simply construct the connectivity graph as a spanning tree and
@@ -460,11 +483,14 @@ public class ProactiveRouting implements IRouting, IListener, IOperation  {
 	 * @return The route or null if none exists.
 	 */
 	protected Vector getRoute(SystemID target) {
+		synchronized (computationLock) {
+			computations += 1;
+		}
 		Vector found = new Vector();
 		Vector nodes = new Vector();
-		found.addElement(SystemID.SYSTEM);
+		found.addElement(SystemID.getLocal());
 		Node root = new Node();
-		root.system = SystemID.SYSTEM;
+		root.system = SystemID.getLocal();
 		nodes.addElement(root);
 		while (! nodes.isEmpty()) {
 			Node node = (Node)nodes.elementAt(0);
@@ -549,7 +575,7 @@ public class ProactiveRouting implements IRouting, IListener, IOperation  {
 						DeviceDescription device = (DeviceDescription)ois.readObject();
 						if (device != null) { 
 							SystemID id = device.getSystemID();
-							if (SystemID.SYSTEM.equals(id)) {
+							if (SystemID.getLocal().equals(id)) {
 								//Logging.log(getClass(), "Reject packet from self.");
 								return;
 							}
@@ -669,10 +695,10 @@ public class ProactiveRouting implements IRouting, IListener, IOperation  {
 				oos.writeByte((byte)(identifier & 0xff));
 				oos.writeByte(MAXIMUM_HOPS);
 				// device description
-				oos.writeObject(manager.getDeviceDescription(SystemID.SYSTEM));
+				oos.writeObject(manager.getDeviceDescription(SystemID.getLocal()));
 				// plug-in descriptions
 				Vector announcement = new Vector();
-				PluginDescription[] plugins = manager.getPluginDescriptions(SystemID.SYSTEM);
+				PluginDescription[] plugins = manager.getPluginDescriptions(SystemID.getLocal());
 				for (int i = 0; i < plugins.length; i++) {
 					PluginDescription pd = plugins[i];
 					// only announce non-transceivers					
@@ -168,7 +168,7 @@ public class RmiSemantic implements ISemantic {
 	 * 	connection.
 	 */
 	public void performOutgoing(final Invocation invocation, final ISession session) {
-		if (SystemID.SYSTEM.equals(invocation.getTarget().getSystem())) {
+		if (SystemID.getLocal().equals(invocation.getTarget().getSystem())) {
 			if (session.getLocal() == Static.TRUE) {
 				// if it is a local, synchronous call, execute it synchronously
 				manager.dispatchSynchronous(invocation, session);	
@@ -223,6 +223,8 @@ public class RmiSemantic implements ISemantic {
 					Invocation result = (Invocation)in.readObject();
 					invocation.setResult(result.getResult());
 					invocation.setException(result.getException());
+					// release the connector to enable its reuse by the transceiver
+					connector.release();
 					break;
 				} catch (IOException e) {
 					// if the failure is caused by the serializer, the connector must be released
@@ -13,7 +13,7 @@ import info.pppc.base.system.io.IObjectInput;
 import info.pppc.base.system.io.IObjectOutput;
 import info.pppc.base.system.io.ObjectInputStream;
 import info.pppc.base.system.io.ObjectOutputStream;
-import info.pppc.base.system.io.StreamBuffer;
+import info.pppc.base.system.io.StreamPipe;
 import info.pppc.base.system.nf.NFCollection;
 import info.pppc.base.system.nf.NFDimension;
 import info.pppc.base.system.operation.IMonitor;
@@ -23,6 +23,7 @@ import info.pppc.base.system.plugin.ISemantic;
 import info.pppc.base.system.plugin.ISemanticManager;
 import info.pppc.base.system.plugin.IStreamConnector;
 import info.pppc.base.system.util.Logging;
+import info.pppc.basex.plugin.util.BufferPool;
 
 /**
  * The stream semantic is a pass-through semantic for stream connectors. It 
@@ -45,14 +46,14 @@ public class StreamSemantic implements ISemantic {
 	public class StreamConnector implements IStreamConnector {
 		
 		/**
-		 * The input buffer.
+		 * The input pipe.
 		 */
-		private StreamBuffer inBuffer;
+		private StreamPipe inPipe;
 		
 		/**
-		 * The output buffer.
+		 * The output pipe.
 		 */
-		private StreamBuffer outBuffer;
+		private StreamPipe outPipe;
 		
 		/**
 		 * The input stream.
@@ -66,40 +67,64 @@ public class StreamSemantic implements ISemantic {
 		
 		/**
 		 * Creates a new stream connector that uses the specified
-		 * input and output buffers as stream providers.
+		 * input and output pipes as stream providers.
 		 * 
-		 * @param input The input stream to read from.
-		 * @param output The output stream to write to.
+		 * @param input The pipe to read from.
+		 * @param output The pipe to write to.
 		 */
-		public StreamConnector(StreamBuffer input, StreamBuffer output) {
-			this.inBuffer = input;
-			this.outBuffer = output;
+		public StreamConnector(StreamPipe input, StreamPipe output) {
+			this.inPipe = input;
+			this.outPipe = output;
 		}
 		
 		/**
-		 * Returns the input stream to the buffer.
+		 * Returns the input stream to the pipe.
 		 * 
-		 * @return The input stream to the buffer.
+		 * @return The input stream to the pipe.
 		 */
 		public InputStream getInputStream() {
 			if (input == null) {
-				input = new ObjectInputStream(inBuffer.getInputStream());
+				input = new ObjectInputStream(inPipe.getInputStream());
 			}
 			return input;
 		}
 		
 		/**
-		 * Returns the output stream to the buffer.
+		 * Returns the output stream to the pipe.
 		 * 
-		 * @return The output stream to the buffer.
+		 * @return The output stream to the pipe.
 		 */
 		public OutputStream getOutputStream() {
 			if (output == null) {
-				output = new ObjectOutputStream(outBuffer.getOutputStream());
+				output = new ObjectOutputStream(outPipe.getOutputStream());
 			}
 			return output;
 		}
 		
+		/**
+		 * Returns the pipe that is read by the input stream. This
+		 * can be used to retrieve handed off chunks without copying
+		 * them. Note that the object input stream does not buffer
+		 * data, thus, it is safe to mix calls to both.
+		 * 
+		 * @return The pipe that is read by the input stream.
+		 */
+		public StreamPipe getInputPipe() {
+			return inPipe;
+		}
+		
+		/**
+		 * Returns the pipe that is written by the output stream. This
+		 * can be used to hand off chunks without copying them. Note
+		 * that the output stream must be flushed before a chunk is
+		 * handed off directly.
+		 * 
+		 * @return The pipe that is written by the output stream.
+		 */
+		public StreamPipe getOutputPipe() {
+			return outPipe;
+		}
+		
 		/**
 		 * Returns the plugin that created the connector.
 		 * 
@@ -111,19 +136,29 @@ public class StreamSemantic implements ISemantic {
 		
 		/**
 		 * Releases the connector by closing the underlying
-		 * input and output buffers.
+		 * input and output pipes.
 		 */
 		public void release() {
-			inBuffer.close();
-			outBuffer.close();
+			inPipe.close();
+			outPipe.close();
 		}
 		
 	}
 	
 	/**
-	 * The buffer size for stream buffers.
+	 * The default capacity of the pipes used for local streams.
+	 */
+	private static final int BUFFER_SIZE = StreamPipe.DEFAULT_CAPACITY;
+	
+	/**
+	 * The size of the buffers used for bulk transfers.
+	 */
+	private static final int TRANSFER_SIZE = 32768;
+	
+	/**
+	 * The pool of buffers that is shared by all bulk transfers.
 	 */
-	private static final int BUFFER_SIZE = 20;
+	private static final BufferPool TRANSFER_POOL = new BufferPool(TRANSFER_SIZE, 4);
 	
 	/**
 	 * The ability of the plug-in. [5][1].
@@ -146,11 +181,31 @@ public class StreamSemantic implements ISemantic {
 	 * The local semantic plug-in manager.
 	 */
 	private ISemanticManager manager;
+	
+	/**
+	 * The capacity of the pipes that connect local streams.
+	 */
+	private int capacity;
 		
 	/**
-	 * Creates a new stream semantic plug-in.
+	 * Creates a new stream semantic plug-in that uses pipes with
+	 * the default capacity for local streams.
 	 */
-	public StreamSemantic() { }
+	public StreamSemantic() {
+		this(BUFFER_SIZE);
+	}
+	
+	/**
+	 * Creates a new stream semantic plug-in that uses pipes with
+	 * the specified capacity for streams between services on the
+	 * same device.
+	 * 
+	 * @param capacity The capacity of the pipes in bytes.
+	 */
+	public StreamSemantic(int capacity) {
+		if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+		this.capacity = capacity;
+	}
 	
 	/**
 	 * Called when a remote device wants to initialize a stream.
@@ -180,9 +235,9 @@ public class StreamSemantic implements ISemantic {
 	 * @param session The session with the remote device.
 	 */
 	public void performOutgoing(Invocation invocation, final ISession session) {
-		if (SystemID.SYSTEM.equals(invocation.getTarget().getSystem())) {
-			final StreamBuffer buffer1 = new StreamBuffer(BUFFER_SIZE);
-			final StreamBuffer buffer2 = new StreamBuffer(BUFFER_SIZE);
+		if (SystemID.getLocal().equals(invocation.getTarget().getSystem())) {
+			final StreamPipe buffer1 = new StreamPipe(capacity);
+			final StreamPipe buffer2 = new StreamPipe(capacity);
 			StreamConnector c1 = new StreamConnector(buffer1, buffer2);
 			StreamConnector c2 = new StreamConnector(buffer2, buffer1);
 			final Invocation invoke = new Invocation();
@@ -224,6 +279,104 @@ public class StreamSemantic implements ISemantic {
 		}
 	}
 
+	/**
+	 * Transfers the specified number of bytes from the input stream to the
+	 * output stream of the connector. If the connector has been created for
+	 * a local stream, the data is handed off to the pipe without copying it 
+	 * a second time. Otherwise, the data is copied through a pooled buffer.
+	 * The output stream of the connector is flushed afterwards.
+	 * 
+	 * @param source The input stream to read from.
+	 * @param connector The connector whose output stream receives the data.
+	 * @param length The number of bytes to transfer or a negative value
+	 * 	to transfer until the end of the input stream is reached.
+	 * @return The number of bytes that have been transferred.
+	 * @throws IOException Thrown if the source cannot be read, if the 
+	 * 	connector cannot be written or if the source ends before the 
+	 * 	specified number of bytes has been transferred.
+	 */
+	public static long transfer(InputStream source, IStreamConnector connector, long length) throws IOException {
+		OutputStream out = connector.getOutputStream();
+		long total = 0;
+		if (connector instanceof StreamConnector) {
+			// flush the object stream and pass chunks directly to the pipe 
+			out.flush();
+			StreamPipe.PipeOutputStream pipe = ((StreamConnector)connector).getOutputPipe().getOutputStream();
+			while (length < 0 || total < length) {
+				int size = (int)((length < 0)? TRANSFER_SIZE : Math.min(TRANSFER_SIZE, length - total));
+				byte[] chunk = new byte[size];
+				int read = source.read(chunk, 0, size);
+				if (read == -1) break;
+				pipe.handoff(chunk, 0, read);
+				total += read;
+			}
+		} else {
+			byte[] buffer = TRANSFER_POOL.acquire();
+			try {
+				while (length < 0 || total < length) {
+					int size = (int)((length < 0)? buffer.length : Math.min(buffer.length, length - total));
+					int read = source.read(buffer, 0, size);
+					if (read == -1) break;
+					out.write(buffer, 0, read);
+					total += read;
+				}
+			} finally {
+				TRANSFER_POOL.release(buffer);
+			}
+		}
+		out.flush();
+		if (length >= 0 && total != length) 
+			throw new IOException("End of stream reached.");
+		return total;
+	}
+	
+	/**
+	 * Transfers the specified number of bytes from the input stream of the
+	 * connector to the output stream. If the connector has been created for
+	 * a local stream and the whole stream shall be transferred, chunks that
+	 * have been handed off by the writer are passed to the output stream 
+	 * without copying. Otherwise, the data is copied through a pooled buffer.
+	 * 
+	 * @param connector The connector whose input stream is read.
+	 * @param sink The output stream to write to.
+	 * @param length The number of bytes to transfer or a negative value to
+	 * 	transfer until the end of the stream of the connector is reached.
+	 * @return The number of bytes that have been transferred.
+	 * @throws IOException Thrown if the connector cannot be read, if the 
+	 * 	sink cannot be written or if the stream ends before the specified 
+	 * 	number of bytes has been transferred.
+	 */
+	public static long transfer(IStreamConnector connector, OutputStream sink, long length) throws IOException {
+		InputStream in = connector.getInputStream();
+		long total = 0;
+		if (length < 0 && connector instanceof StreamConnector) {
+			StreamPipe.PipeInputStream pipe = ((StreamConnector)connector).getInputPipe().getInputStream();
+			byte[] chunk = pipe.readChunk();
+			while (chunk != null) {
+				sink.write(chunk, 0, chunk.length);
+				total += chunk.length;
+				chunk = pipe.readChunk();
+			}
+		} else {
+			byte[] buffer = TRANSFER_POOL.acquire();
+			try {
+				while (length < 0 || total < length) {
+					int size = (int)((length < 0)? buffer.length : Math.min(buffer.length, length - total));
+					int read = in.read(buffer, 0, size);
+					if (read == -1) break;
+					sink.write(buffer, 0, read);
+					total += read;
+				}
+			} finally {
+				TRANSFER_POOL.release(buffer);
+			}
+		}
+		sink.flush();
+		if (length >= 0 && total != length) 
+			throw new IOException("End of stream reached.");
+		return total;
+	}
+
 	/**
 	 * Validates whether the plug-in can open a connection and respond to
 	 * connection requests. This method throws an exception if the current
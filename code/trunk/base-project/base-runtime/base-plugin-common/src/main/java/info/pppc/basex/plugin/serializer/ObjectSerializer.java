@@ -120,6 +120,18 @@ public class ObjectSerializer implements IModifier {
 		public IPlugin getPlugin() {
 			return ObjectSerializer.this;
 		}
+		
+		/**
+		 * Returns the underlying stream connector. Since the object streams
+		 * do not buffer any data, raw bytes may be written to the underlying
+		 * connector directly, as long as the object output stream has been
+		 * flushed before. 
+		 * 
+		 * @return The underlying stream connector.
+		 */
+		public IStreamConnector getConnector() {
+			return connector;
+		}
 	}
 
 	/**
@@ -0,0 +1,404 @@
+package info.pppc.basex.plugin.transceiver;
+
+import info.pppc.base.system.ISession;
+import info.pppc.base.system.PluginDescription;
+import info.pppc.base.system.event.IListener;
+import info.pppc.base.system.event.ListenerBundle;
+import info.pppc.base.system.nf.NFCollection;
+import info.pppc.base.system.plugin.IConnector;
+import info.pppc.base.system.plugin.IPacketConnector;
+import info.pppc.base.system.plugin.IStreamConnector;
+import info.pppc.base.system.plugin.ITransceiver;
+import info.pppc.base.system.plugin.ITransceiverManager;
+import info.pppc.base.system.util.Logging;
+import info.pppc.basex.plugin.transceiver.loopback.ILoopbackPlugin;
+import info.pppc.basex.plugin.transceiver.loopback.LoopbackBuffer;
+import info.pppc.basex.plugin.transceiver.loopback.LoopbackPacketConnector;
+import info.pppc.basex.plugin.transceiver.loopback.LoopbackStreamConnector;
+
+import java.io.IOException;
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.Vector;
+
+/**
+ * The loopback transceiver connects brokers that run in the same virtual
+ * machine without using sockets. Streams are carried by bounded in-memory
+ * buffers and packets are queued at all other loopback transceivers of
+ * the virtual machine, which form a single group. Thus, discovery and
+ * routing plug-ins can use the transceiver like any other transceiver.
+ * Since the plug-in description contains an identifier of the virtual
+ * machine, the transceiver ignores the descriptions of loopback
+ * transceivers that are running in other virtual machines.
+ *
+ * @author Mac
+ */
+public class LoopbackTransceiver implements ILoopbackPlugin, ITransceiver {
+
+	/**
+	 * The ability of the plug-in. [1][9].
+	 */
+	private static final short PLUGIN_ABILITY = 0x0109;
+
+	/**
+	 * The property name of the end point. This is used to determine
+	 * the end point of a remote system through its plug-in description.
+	 */
+	private static final String PROPERTY_ENDPOINT = "EP";
+
+	/**
+	 * The property name of the machine identifier. This is used to
+	 * determine whether a remote system runs in the same virtual machine.
+	 */
+	private static final String PROPERTY_MACHINE = "VM";
+
+	/**
+	 * The maximum packet length of the packet connectors.
+	 */
+	private static final int PACKET_LENGTH = 2048;
+
+	/**
+	 * The capacity of the buffers of stream connectors in bytes. Each
+	 * stream uses one buffer per direction.
+	 */
+	private static final int BUFFER_SIZE = 32768;
+
+	/**
+	 * The identifier of this virtual machine.
+	 */
+	private static final Long MACHINE = new Long(new Random().nextLong());
+
+	/**
+	 * The enabled transceivers of this virtual machine hashed by end point.
+	 */
+	private static Hashtable endpoints = new Hashtable();
+
+	/**
+	 * The packet connectors of all transceivers of this virtual machine.
+	 */
+	private static Vector group = new Vector();
+
+	/**
+	 * The last end point that has been assigned. This is synchronized
+	 * using the end point table.
+	 */
+	private static int lastEndpoint = 0;
+
+	/**
+	 * The transceiver listeners that keep track of changes to the state
+	 * of the transceiver.
+	 */
+	private ListenerBundle listeners = new ListenerBundle(this);
+
+	/**
+	 * A list of connectors that are currently opened. This list is
+	 * maintained by the connectors. It ensures that a disable operation
+	 * closes all connectors.
+	 */
+	private Vector connectors = new Vector();
+
+	/**
+	 * The plug-in manager used to perform operations and to signal
+	 * incoming connections.
+	 */
+	private ITransceiverManager manager = null;
+
+	/**
+	 * A flag that indicates whether the transceiver is enabled.
+	 */
+	private boolean enabled = false;
+
+	/**
+	 * A flag that indicates whether the plug-in has been started already
+	 * or whether it is currently stopped.
+	 */
+	private boolean started = false;
+
+	/**
+	 * The plug-in description of the loopback plug-in.
+	 */
+	private PluginDescription description;
+
+	/**
+	 * The end point of the transceiver while it is enabled.
+	 */
+	private Integer endpoint = null;
+
+	/**
+	 * Creates a new loopback transceiver.
+	 */
+	public LoopbackTransceiver() {
+		super();
+	}
+
+	/**
+	 * Called by the plug-in manager during initialization of the plug-in.
+	 *
+	 * @param manager The manager of the plug-in.
+	 */
+	public void setTransceiverManager(ITransceiverManager manager) {
+		this.manager = manager;
+	}
+
+	/**
+	 * Called in order to prepare a session. The session can be prepared
+	 * if the remote transceiver runs in the same virtual machine and if
+	 * it is enabled.
+	 *
+	 * @param description The description of the remote system.
+	 * @param collection The requirements regarding the communication.
+	 * @param session The session that holds the attributes.
+	 * @return True if the session can be established, false otherwise.
+	 */
+	public boolean prepareSession(PluginDescription description, NFCollection collection, ISession session) {
+		if (description == null) {
+			return false;
+		}
+		if (! MACHINE.equals(description.getProperty(PROPERTY_MACHINE))) {
+			return false;
+		}
+		Integer target = (Integer)description.getProperty(PROPERTY_ENDPOINT);
+		if (target == null || ! endpoints.containsKey(target)) {
+			return false;
+		}
+		session.setLocal(target);
+		return true;
+	}
+
+	/**
+	 * Opens a connection to the transceiver of the specified system and
+	 * hands the other end of the connection to its plug-in manager.
+	 *
+	 * @param session The session data that has been prepared by the
+	 * 	prepare method.
+	 * @return The connector for the session.
+	 * @throws IOException Thrown if the remote transceiver is not enabled.
+	 */
+	public IStreamConnector openSession(ISession session) throws IOException {
+		checkPlugin();
+		LoopbackTransceiver target = (LoopbackTransceiver)endpoints.get(session.getLocal());
+		if (target == null) {
+			throw new IOException("Connection refused.");
+		}
+		LoopbackBuffer forward = new LoopbackBuffer(BUFFER_SIZE);
+		LoopbackBuffer backward = new LoopbackBuffer(BUFFER_SIZE);
+		LoopbackStreamConnector local = new LoopbackStreamConnector(this, backward, forward);
+		LoopbackStreamConnector remote = new LoopbackStreamConnector(target, forward, backward);
+		if (! target.accept(remote)) {
+			throw new IOException("Connection refused.");
+		}
+		synchronized (this) {
+			connectors.addElement(local);
+		}
+		return local;
+	}
+
+	/**
+	 * Opens a connector that exchanges packets with all other loopback
+	 * transceivers of the virtual machine.
+	 *
+	 * @return The connector for the group.
+	 * @throws IOException Thrown if the connector cannot be opened.
+	 */
+	public synchronized IPacketConnector openGroup() throws IOException {
+		checkPlugin();
+		LoopbackPacketConnector connector = new LoopbackPacketConnector(this, PACKET_LENGTH);
+		connectors.addElement(connector);
+		group.addElement(connector);
+		manager.performOperation(connector);
+		return connector;
+	}
+
+	/**
+	 * Queues a copy of the payload at all other packet connectors of the
+	 * virtual machine.
+	 *
+	 * @param source The connector that sends the payload.
+	 * @param payload The payload to distribute.
+	 */
+	public void distribute(LoopbackPacketConnector source, byte[] payload) {
+		Object[] targets;
+		synchronized (group) {
+			targets = new Object[group.size()];
+			group.copyInto(targets);
+		}
+		for (int i = 0; i < targets.length; i++) {
+			if (targets[i] != source) {
+				byte[] copy = new byte[payload.length];
+				System.arraycopy(payload, 0, copy, 0, payload.length);
+				((LoopbackPacketConnector)targets[i]).deliver(copy);
+			}
+		}
+	}
+
+	/**
+	 * Called by the plug-in manager to start the stopped plug-in.
+	 */
+	public void start() {
+		if (! started) {
+			started = true;
+			setEnabled(true);
+		}
+	}
+
+	/**
+	 * Called by the plug-in manager to stop the started plug-in. A call
+	 * to this method will automatically close all connectors and it will
+	 * disable the transceiver.
+	 */
+	public void stop() {
+		if (started) {
+			setEnabled(false);
+			started = false;
+		}
+	}
+
+	/**
+	 * Returns the description of the plug-in.
+	 *
+	 * @return The plugin's description.
+	 */
+	public PluginDescription getPluginDescription() {
+		if (description == null) {
+			description = new PluginDescription
+				(PLUGIN_ABILITY, EXTENSION_TRANSCEIVER);
+			description.setProperty(PROPERTY_MACHINE, MACHINE, false);
+		}
+		return description;
+	}
+
+	/**
+	 * Adds a listener to the bundle of registered transceiver listeners.
+	 *
+	 * @param type The type of event to register for.
+	 * @param listener The listener to register.
+	 * @throws NullPointerException Thrown if the listener is null.
+	 */
+	public void addTransceiverListener(int type, IListener listener)
+			throws NullPointerException {
+		listeners.addListener(type, listener);
+	}
+
+	/**
+	 * Removes a previously registered transceiver listener for a
+	 * certain type of event.
+	 *
+	 * @param type The type to unregister from.
+	 * @param listener The listener to unregister.
+	 * @return True if the listener is no longer registered, false if the
+	 * 	listener has not been registered.
+	 * @throws NullPointerException Thrown if the listener is null.
+	 */
+	public boolean removeTransceiverListener(int type, IListener listener)
+			throws NullPointerException {
+		return listeners.removeListener(type, listener);
+	}
+
+	/**
+	 * Enables or disables the transceiver and notifies all listeners if
+	 * the state has changed.
+	 *
+	 * @param enabled Set true to enable and false to disable.
+	 */
+	public void setEnabled(boolean enabled) {
+		synchronized (this) {
+			if (! started || this.enabled == enabled) {
+				return;
+			} else {
+				this.enabled = enabled;
+			}
+		}
+		if (enabled) {
+			enablePlugin();
+			listeners.fireEvent(EVENT_TRANCEIVER_ENABLED);
+		} else {
+			disablePlugin();
+			listeners.fireEvent(EVENT_TRANCEIVER_DISABLED);
+		}
+	}
+
+	/**
+	 * Determines whether the transceiver is enabled.
+	 *
+	 * @return True if the transceiver is enabled, false otherwise.
+	 */
+	public synchronized boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Releases the specified connector by removing it from the
+	 * list of open connectors.
+	 *
+	 * @param connector The connector to remove.
+	 */
+	public synchronized void release(LoopbackStreamConnector connector) {
+		connectors.removeElement(connector);
+	}
+
+	/**
+	 * Releases the specified connector by removing it from the
+	 * list of open connectors and from the group.
+	 *
+	 * @param connector The connector to remove.
+	 */
+	public synchronized void release(LoopbackPacketConnector connector) {
+		connectors.removeElement(connector);
+		group.removeElement(connector);
+	}
+
+	/**
+	 * Accepts an incoming connection and hands it to the plug-in manager.
+	 *
+	 * @param connector The connector of the incoming connection.
+	 * @return True if the connection has been accepted, false if the
+	 * 	transceiver is not enabled.
+	 */
+	private boolean accept(LoopbackStreamConnector connector) {
+		synchronized (this) {
+			if (! enabled) return false;
+			connectors.addElement(connector);
+		}
+		manager.acceptSession(connector);
+		return true;
+	}
+
+	/**
+	 * Validates whether the plug-in can open a connection. This method
+	 * throws an exception if the current state of the plug-in does not
+	 * allow the initialization of a connector.
+	 */
+	private void checkPlugin() {
+		if (manager == null) throw new RuntimeException("Manager not set.");
+		if (! started) throw new RuntimeException("Plugin not started.");
+		if (! enabled) throw new RuntimeException("Endpoint not enabled.");
+	}
+
+	/**
+	 * Assigns an end point to the transceiver and registers it such
+	 * that other transceivers can connect to it.
+	 */
+	protected void enablePlugin() {
+		synchronized (endpoints) {
+			lastEndpoint += 1;
+			endpoint = new Integer(lastEndpoint);
+			endpoints.put(endpoint, this);
+		}
+		getPluginDescription().setProperty(PROPERTY_ENDPOINT, endpoint, true);
+		Logging.log(getClass(), "Running loopback end point " + endpoint + ".");
+	}
+
+	/**
+	 * Removes the end point of the transceiver and closes all currently
+	 * incoming and outgoing connections.
+	 */
+	protected void disablePlugin() {
+		endpoints.remove(endpoint);
+		// close all opened connectors, removal is automatic
+		for (int i = connectors.size() - 1; i >= 0; i--) {
+			IConnector c = (IConnector)connectors.elementAt(i);
+			c.release();
+		}
+	}
+
+}
@@ -0,0 +1,36 @@
+package info.pppc.basex.plugin.transceiver.loopback;
+
+import info.pppc.base.system.plugin.IPlugin;
+
+/**
+ * The interface of the loopback transceiver that is used by its
+ * connectors to distribute packets and to signal their release.
+ *
+ * @author Mac
+ */
+public interface ILoopbackPlugin extends IPlugin {
+
+	/**
+	 * Distributes the specified payload to all other packet connectors
+	 * of the loopback group.
+	 *
+	 * @param source The connector that sends the payload.
+	 * @param payload The payload to distribute.
+	 */
+	public void distribute(LoopbackPacketConnector source, byte[] payload);
+
+	/**
+	 * Called by a stream connector when it has been released.
+	 *
+	 * @param connector The connector that has been released.
+	 */
+	public void release(LoopbackStreamConnector connector);
+
+	/**
+	 * Called by a packet connector when it has been released.
+	 *
+	 * @param connector The connector that has been released.
+	 */
+	public void release(LoopbackPacketConnector connector);
+
+}
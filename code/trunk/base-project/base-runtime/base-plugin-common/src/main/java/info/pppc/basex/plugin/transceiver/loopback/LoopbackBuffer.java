@@ -0,0 +1,217 @@
+package info.pppc.basex.plugin.transceiver.loopback;
+
+import java.io.IOException;
+
+/**
+ * The loopback buffer is a bounded ring buffer that carries the bytes of
+ * one direction of a loopback stream. Writers block while the buffer is
+ * full and readers block while it is empty. Once the buffer is closed,
+ * readers receive the remaining bytes followed by the end of the stream
+ * and writers receive an exception.
+ *
+ * @author Mac
+ */
+public class LoopbackBuffer {
+
+	/**
+	 * The bytes of the ring buffer.
+	 */
+	private byte[] buffer;
+
+	/**
+	 * The index of the first byte that can be read.
+	 */
+	private int head = 0;
+
+	/**
+	 * The number of bytes that can be read.
+	 */
+	private int size = 0;
+
+	/**
+	 * A flag that indicates whether the buffer has been closed.
+	 */
+	private boolean closed = false;
+
+	/**
+	 * Creates a new buffer with the specified capacity.
+	 *
+	 * @param capacity The capacity of the buffer in bytes.
+	 * @throws IllegalArgumentException Thrown if the capacity is not positive.
+	 */
+	public LoopbackBuffer(int capacity) {
+		if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+		buffer = new byte[capacity];
+	}
+
+	/**
+	 * Reads a single byte from the buffer. This method blocks until
+	 * a byte is available or until the buffer is closed.
+	 *
+	 * @return The byte that has been read or -1 if the buffer has
+	 * 	been closed and there are no more bytes.
+	 * @throws IOException Thrown if the thread is interrupted.
+	 */
+	public synchronized int read() throws IOException {
+		if (! await()) {
+			return -1;
+		}
+		int result = buffer[head] & 0xFF;
+		consume(1);
+		return result;
+	}
+
+	/**
+	 * Reads at least one and at most the specified number of bytes from
+	 * the buffer. This method blocks until a byte is available or until
+	 * the buffer is closed.
+	 *
+	 * @param b The array to read into.
+	 * @param off The offset of the first byte to write to the array.
+	 * @param len The maximum number of bytes to read.
+	 * @return The number of bytes that have been read or -1 if the buffer
+	 * 	has been closed and there are no more bytes.
+	 * @throws IOException Thrown if the thread is interrupted.
+	 */
+	public synchronized int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (! await()) {
+			return -1;
+		}
+		int read = Math.min(len, size);
+		int first = Math.min(read, buffer.length - head);
+		System.arraycopy(buffer, head, b, off, first);
+		if (first < read) {
+			System.arraycopy(buffer, 0, b, off + first, read - first);
+		}
+		consume(read);
+		return read;
+	}
+
+	/**
+	 * Writes a single byte to the buffer. This method blocks until
+	 * there is space in the buffer.
+	 *
+	 * @param b The byte to write.
+	 * @throws IOException Thrown if the buffer has been closed or if
+	 * 	the thread is interrupted.
+	 */
+	public synchronized void write(int b) throws IOException {
+		reserve();
+		buffer[(head + size) % buffer.length] = (byte)b;
+		produce(1);
+	}
+
+	/**
+	 * Writes the specified bytes to the buffer. This method blocks until
+	 * all bytes have been written.
+	 *
+	 * @param b The array that contains the bytes.
+	 * @param off The offset of the first byte to write.
+	 * @param len The number of bytes to write.
+	 * @throws IOException Thrown if the buffer has been closed or if
+	 * 	the thread is interrupted.
+	 */
+	public synchronized void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			reserve();
+			int tail = (head + size) % buffer.length;
+			int write = Math.min(len, buffer.length - size);
+			int first = Math.min(write, buffer.length - tail);
+			System.arraycopy(b, off, buffer, tail, first);
+			if (first < write) {
+				System.arraycopy(b, off + first, buffer, 0, write - first);
+			}
+			produce(write);
+			off += write;
+			len -= write;
+		}
+	}
+
+	/**
+	 * Returns the number of bytes that can be read without blocking.
+	 *
+	 * @return The number of bytes in the buffer.
+	 */
+	public synchronized int available() {
+		return size;
+	}
+
+	/**
+	 * Closes the buffer and wakes up all blocked readers and writers.
+	 */
+	public synchronized void close() {
+		closed = true;
+		notifyAll();
+	}
+
+	/**
+	 * Waits until there is at least one byte to read.
+	 *
+	 * @return True if there is a byte, false if the buffer has been
+	 * 	closed and there are no more bytes.
+	 * @throws IOException Thrown if the thread is interrupted.
+	 */
+	private boolean await() throws IOException {
+		while (size == 0) {
+			if (closed) {
+				return false;
+			}
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				throw new IOException("Thread got interrupted.");
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Waits until there is space for at least one byte.
+	 *
+	 * @throws IOException Thrown if the buffer has been closed or if
+	 * 	the thread is interrupted.
+	 */
+	private void reserve() throws IOException {
+		while (! closed && size == buffer.length) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				throw new IOException("Thread got interrupted.");
+			}
+		}
+		if (closed) {
+			throw new IOException("Connection closed.");
+		}
+	}
+
+	/**
+	 * Removes the specified number of bytes from the head of the buffer
+	 * and wakes up writers if the buffer has been full.
+	 *
+	 * @param length The number of bytes to remove.
+	 */
+	private void consume(int length) {
+		if (size == buffer.length) {
+			notifyAll();
+		}
+		head = (head + length) % buffer.length;
+		size -= length;
+	}
+
+	/**
+	 * Adds the specified number of bytes to the tail of the buffer and
+	 * wakes up readers if the buffer has been empty.
+	 *
+	 * @param length The number of bytes to add.
+	 */
+	private void produce(int length) {
+		if (size == 0) {
+			notifyAll();
+		}
+		size += length;
+	}
+
+}
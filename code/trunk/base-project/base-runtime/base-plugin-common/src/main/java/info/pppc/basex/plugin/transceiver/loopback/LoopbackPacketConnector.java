@@ -0,0 +1,196 @@
+package info.pppc.basex.plugin.transceiver.loopback;
+
+import info.pppc.base.system.event.IListener;
+import info.pppc.base.system.event.ListenerBundle;
+import info.pppc.base.system.operation.IMonitor;
+import info.pppc.base.system.operation.IOperation;
+import info.pppc.base.system.plugin.IPacket;
+import info.pppc.base.system.plugin.IPacketConnector;
+import info.pppc.base.system.plugin.IPlugin;
+import info.pppc.base.system.plugin.Packet;
+
+import java.io.IOException;
+import java.util.Vector;
+
+/**
+ * A packet connector of the loopback group. Packets sent by the connector
+ * are queued at all other connectors of the group. Each connector delivers
+ * its queued packets to its listeners using an operation of its plug-in
+ * manager. Like datagrams, packets are dropped if the queue of a receiver
+ * is full.
+ *
+ * @author Mac
+ */
+public class LoopbackPacketConnector implements IPacketConnector, IOperation {
+
+	/**
+	 * The maximum number of packets that are queued for delivery.
+	 */
+	private static final int QUEUE_LENGTH = 256;
+
+	/**
+	 * The period in milliseconds after which the delivery operation
+	 * checks whether its monitor has been canceled.
+	 */
+	private static final long CANCEL_PERIOD = 1000;
+
+	/**
+	 * The plug-in that owns the connector.
+	 */
+	private ILoopbackPlugin plugin;
+
+	/**
+	 * The maximum packet length.
+	 */
+	private int length;
+
+	/**
+	 * The listeners that receive incoming packets.
+	 */
+	private ListenerBundle listeners = new ListenerBundle(this);
+
+	/**
+	 * The payloads of the packets that have not been delivered yet.
+	 */
+	private Vector queue = new Vector();
+
+	/**
+	 * Flag to indicate whether this connector has been released.
+	 */
+	private boolean released = false;
+
+	/**
+	 * Creates a new packet connector for the specified plug-in.
+	 *
+	 * @param plugin The plug-in that owns the connector.
+	 * @param length The maximum packet length.
+	 */
+	public LoopbackPacketConnector(ILoopbackPlugin plugin, int length) {
+		this.plugin = plugin;
+		this.length = length;
+	}
+
+	/**
+	 * Creates a packet that can be sent using this connector.
+	 *
+	 * @return A new packet.
+	 * @throws IOException Thrown if the connector is released.
+	 */
+	public IPacket createPacket() throws IOException {
+		if (released) {
+			throw new IOException("Connector has been released.");
+		}
+		return new Packet(length);
+	}
+
+	/**
+	 * Sends the packet to all other connectors of the group.
+	 *
+	 * @param packet The packet to send.
+	 * @throws IOException Thrown if the connector is released.
+	 */
+	public void sendPacket(IPacket packet) throws IOException {
+		if (released) {
+			throw new IOException("Connector has been released.");
+		}
+		plugin.distribute(this, packet.getPayload());
+	}
+
+	/**
+	 * Queues the payload of a packet for delivery. If the queue
+	 * is full or if the connector is released, the packet is dropped.
+	 *
+	 * @param payload The payload of the packet.
+	 */
+	public void deliver(byte[] payload) {
+		synchronized (queue) {
+			if (! released && queue.size() < QUEUE_LENGTH) {
+				queue.addElement(payload);
+				queue.notify();
+			}
+		}
+	}
+
+	/**
+	 * Delivers the queued packets to the listeners until the connector
+	 * is released or until the monitor is canceled.
+	 *
+	 * @param monitor The monitor to abort the operation.
+	 */
+	public void perform(IMonitor monitor) {
+		while (! monitor.isCanceled()) {
+			byte[] payload = null;
+			synchronized (queue) {
+				if (queue.isEmpty()) {
+					if (released) return;
+					try {
+						queue.wait(CANCEL_PERIOD);
+					} catch (InterruptedException e) {
+						// check the monitor again
+					}
+					continue;
+				}
+				payload = (byte[])queue.elementAt(0);
+				queue.removeElementAt(0);
+			}
+			Packet packet = new Packet(length);
+			packet.setPayload(payload);
+			listeners.fireEvent(EVENT_PACKET_RECEIVED, packet);
+		}
+	}
+
+	/**
+	 * Adds a listener for the specified events.
+	 *
+	 * @param type The events to listen for.
+	 * @param listener The listener to add.
+	 */
+	public void addPacketListener(int type, IListener listener) {
+		listeners.addListener(type, listener);
+	}
+
+	/**
+	 * Removes the specified listener for the specified events.
+	 *
+	 * @param type The types of events.
+	 * @param listener The listener to remove.
+	 * @return True if removed, false otherwise.
+	 */
+	public boolean removePacketListener(int type, IListener listener) {
+		return listeners.removeListener(type, listener);
+	}
+
+	/**
+	 * Returns the packet length.
+	 *
+	 * @return The maximum packet length.
+	 */
+	public int getPacketLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the loopback transceiver that owns the connector.
+	 *
+	 * @return The loopback transceiver.
+	 */
+	public IPlugin getPlugin() {
+		return plugin;
+	}
+
+	/**
+	 * Releases the connector, drops the queued packets and removes
+	 * the connector from the group.
+	 */
+	public void release() {
+		synchronized (queue) {
+			if (released) return;
+			released = true;
+			queue.removeAllElements();
+			queue.notify();
+		}
+		listeners.fireEvent(EVENT_PACKET_CLOSED);
+		plugin.release(this);
+	}
+
+}
@@ -0,0 +1,132 @@
+package info.pppc.basex.plugin.transceiver.loopback;
+
+import info.pppc.base.system.plugin.IPlugin;
+import info.pppc.base.system.plugin.IStreamConnector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A stream connector that connects two loopback transceivers within the
+ * same virtual machine. The connector reads from one loopback buffer and
+ * writes to another one, the connector at the other end of the stream
+ * uses the same buffers in reverse order.
+ *
+ * @author Mac
+ */
+public class LoopbackStreamConnector implements IStreamConnector {
+
+	/**
+	 * The buffer that contains the incoming bytes.
+	 */
+	private LoopbackBuffer incoming;
+
+	/**
+	 * The buffer that receives the outgoing bytes.
+	 */
+	private LoopbackBuffer outgoing;
+
+	/**
+	 * The plug-in that owns the connector.
+	 */
+	private ILoopbackPlugin plugin;
+
+	/**
+	 * The input stream that reads from the incoming buffer.
+	 */
+	private InputStream input = new InputStream() {
+		public int read() throws IOException {
+			return incoming.read();
+		}
+		public int read(byte[] b, int off, int len) throws IOException {
+			return incoming.read(b, off, len);
+		}
+		public int available() throws IOException {
+			return incoming.available();
+		}
+		public void close() throws IOException {
+			release();
+		}
+	};
+
+	/**
+	 * The output stream that writes to the outgoing buffer.
+	 */
+	private OutputStream output = new OutputStream() {
+		public void write(int b) throws IOException {
+			outgoing.write(b);
+		}
+		public void write(byte[] b, int off, int len) throws IOException {
+			outgoing.write(b, off, len);
+		}
+		public void close() throws IOException {
+			release();
+		}
+	};
+
+	/**
+	 * A flag that indicates whether the connector has been released.
+	 */
+	private boolean released = false;
+
+	/**
+	 * Creates a new connector for the specified plug-in.
+	 *
+	 * @param plugin The plug-in that owns the connector.
+	 * @param incoming The buffer that contains the incoming bytes.
+	 * @param outgoing The buffer that receives the outgoing bytes.
+	 */
+	public LoopbackStreamConnector(ILoopbackPlugin plugin, LoopbackBuffer incoming, LoopbackBuffer outgoing) {
+		this.plugin = plugin;
+		this.incoming = incoming;
+		this.outgoing = outgoing;
+	}
+
+	/**
+	 * Returns the input stream of the connector.
+	 *
+	 * @return The input stream of the connector.
+	 * @throws IOException Thrown if the connector has been released.
+	 */
+	public InputStream getInputStream() throws IOException {
+		if (released) throw new IOException("Connector has been released.");
+		return input;
+	}
+
+	/**
+	 * Returns the output stream of the connector.
+	 *
+	 * @return The output stream of the connector.
+	 * @throws IOException Thrown if the connector has been released.
+	 */
+	public OutputStream getOutputStream() throws IOException {
+		if (released) throw new IOException("Connector has been released.");
+		return output;
+	}
+
+	/**
+	 * Returns the loopback transceiver that owns the connector.
+	 *
+	 * @return The loopback transceiver.
+	 */
+	public IPlugin getPlugin() {
+		return plugin;
+	}
+
+	/**
+	 * Releases the connector. The connector at the other end will
+	 * read the remaining bytes followed by the end of the stream and
+	 * its writes will fail.
+	 */
+	public void release() {
+		synchronized (this) {
+			if (released) return;
+			released = true;
+		}
+		incoming.close();
+		outgoing.close();
+		plugin.release(this);
+	}
+
+}
@@ -0,0 +1,87 @@
+package info.pppc.basex.plugin.util;
+
+import java.util.Vector;
+
+/**
+ * The buffer pool maintains a bounded number of byte arrays with a
+ * fixed size that can be reused for bulk transfers. Arrays are only
+ * allocated on demand, thus, an unused pool does not consume any
+ * memory. Arrays that are released when the pool is full are left
+ * to the garbage collector.
+ *
+ * @author Mac
+ */
+public class BufferPool {
+
+	/**
+	 * The size of the arrays managed by the pool.
+	 */
+	private int size;
+
+	/**
+	 * The maximum number of idle arrays kept by the pool.
+	 */
+	private int count;
+
+	/**
+	 * The idle arrays that can be reused.
+	 */
+	private Vector buffers = new Vector();
+
+	/**
+	 * Creates a new buffer pool for arrays of the specified size
+	 * that keeps at most the specified number of idle arrays.
+	 *
+	 * @param size The size of the arrays in bytes.
+	 * @param count The maximum number of idle arrays.
+	 */
+	public BufferPool(int size, int count) {
+		if (size <= 0) throw new IllegalArgumentException("Size must be positive.");
+		this.size = size;
+		this.count = count;
+	}
+
+	/**
+	 * Returns an array from the pool or creates a new one, if
+	 * the pool is empty.
+	 *
+	 * @return An array with the size of the pool.
+	 */
+	public byte[] acquire() {
+		synchronized (buffers) {
+			int last = buffers.size() - 1;
+			if (last >= 0) {
+				byte[] buffer = (byte[])buffers.elementAt(last);
+				buffers.removeElementAt(last);
+				return buffer;
+			}
+		}
+		return new byte[size];
+	}
+
+	/**
+	 * Returns an array to the pool. Arrays with a different size
+	 * are ignored. The caller must not use the array after it has
+	 * been returned.
+	 *
+	 * @param buffer The array to return.
+	 */
+	public void release(byte[] buffer) {
+		if (buffer == null || buffer.length != size) return;
+		synchronized (buffers) {
+			if (buffers.size() < count) {
+				buffers.addElement(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Returns the size of the arrays managed by the pool.
+	 *
+	 * @return The size of the arrays in bytes.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+}
@@ -415,7 +415,7 @@ public class FloodConnector implements IPacketConnector, IListener {
 		if (data != null) {
 			Header header = null;
 			synchronized (this) {
-				header = new Header(SystemID.SYSTEM, packetID, scope);
+				header = new Header(SystemID.getLocal(), packetID, scope);
 				packetID += 1;
 			}		
 			synchronized (buffer) {
@@ -0,0 +1,464 @@
+package info.pppc.basex.plugin.transceiver;
+
+import info.pppc.base.system.ISession;
+import info.pppc.base.system.PluginDescription;
+import info.pppc.base.system.event.IListener;
+import info.pppc.base.system.event.ListenerBundle;
+import info.pppc.base.system.nf.NFCollection;
+import info.pppc.base.system.plugin.IConnector;
+import info.pppc.base.system.plugin.IPacketConnector;
+import info.pppc.base.system.plugin.IStreamConnector;
+import info.pppc.base.system.plugin.ITransceiver;
+import info.pppc.base.system.plugin.ITransceiverManager;
+import info.pppc.base.system.util.Logging;
+import info.pppc.basex.plugin.transceiver.emulator.EmulatorPacketConnector;
+import info.pppc.basex.plugin.transceiver.emulator.EmulatorStreamConnector;
+import info.pppc.basex.plugin.transceiver.emulator.IEmulatorPlugin;
+import info.pppc.basex.plugin.transceiver.emulator.Link;
+import info.pppc.basex.plugin.transceiver.emulator.Network;
+import info.pppc.basex.plugin.transceiver.emulator.Pipe;
+import info.pppc.basex.plugin.transceiver.emulator.Scheduler;
+import info.pppc.basex.plugin.transceiver.emulator.Transmission;
+
+import java.io.IOException;
+import java.util.Vector;
+
+/**
+ * The emulator transceiver attaches a broker to a device of an in-process
+ * network emulation. In contrast to the ip-based emulator transceiver, all
+ * brokers run in the same virtual machine and the links between devices
+ * are modeled with latency, jitter, bandwidth and loss. Streams can only
+ * be opened to the neighbors of the device and packets are transmitted
+ * to all neighbors, i.e. multi-hop communication requires routing plug-ins
+ * such as on a real ad hoc network.
+ *
+ * @author Mac
+ */
+public class EmulatorTransceiver implements IEmulatorPlugin, ITransceiver {
+
+	/**
+	 * The ability of the plug-in. [1][10].
+	 */
+	private static final short PLUGIN_ABILITY = 0x010a;
+
+	/**
+	 * The property name of the network identifier. This is used to
+	 * determine whether a remote system is attached to the same network.
+	 */
+	private static final String PROPERTY_NETWORK = "NW";
+
+	/**
+	 * The property name of the device. This is used to determine the
+	 * device of a remote system through its plug-in description.
+	 */
+	private static final String PROPERTY_DEVICE = "DV";
+
+	/**
+	 * The maximum packet length of the packet connectors.
+	 */
+	private static final int PACKET_LENGTH = 2048;
+
+	/**
+	 * The network that contains the device.
+	 */
+	private Network network;
+
+	/**
+	 * The name of the device that has been requested or null to use
+	 * the first device that is not used.
+	 */
+	private String request;
+
+	/**
+	 * The name of the device while the transceiver is enabled.
+	 */
+	private String device = null;
+
+	/**
+	 * The transceiver listeners that keep track of changes to the state
+	 * of the transceiver.
+	 */
+	private ListenerBundle listeners = new ListenerBundle(this);
+
+	/**
+	 * A list of connectors that are currently opened. This list is
+	 * maintained by the connectors. It ensures that a disable operation
+	 * closes all connectors.
+	 */
+	private Vector connectors = new Vector();
+
+	/**
+	 * The packet connectors of the transceiver.
+	 */
+	private Vector group = new Vector();
+
+	/**
+	 * The plug-in manager used to perform operations and to signal
+	 * incoming connections.
+	 */
+	private ITransceiverManager manager = null;
+
+	/**
+	 * A flag that indicates whether the transceiver is enabled.
+	 */
+	private boolean enabled = false;
+
+	/**
+	 * A flag that indicates whether the plug-in has been started already
+	 * or whether it is currently stopped.
+	 */
+	private boolean started = false;
+
+	/**
+	 * The plug-in description of the emulator plug-in.
+	 */
+	private PluginDescription description;
+
+	/**
+	 * Creates a new emulator transceiver that uses the first device of
+	 * the network that is not used when it is enabled.
+	 *
+	 * @param network The network that contains the device.
+	 */
+	public EmulatorTransceiver(Network network) {
+		this(network, null);
+	}
+
+	/**
+	 * Creates a new emulator transceiver that uses the specified device.
+	 *
+	 * @param network The network that contains the device.
+	 * @param device The name of the device.
+	 */
+	public EmulatorTransceiver(Network network, String device) {
+		this.network = network;
+		this.request = device;
+	}
+
+	/**
+	 * Returns the name of the device while the transceiver is enabled.
+	 *
+	 * @return The name of the device or null if the transceiver is
+	 * 	not enabled.
+	 */
+	public synchronized String getDevice() {
+		return device;
+	}
+
+	/**
+	 * Called by the plug-in manager during initialization of the plug-in.
+	 *
+	 * @param manager The manager of the plug-in.
+	 */
+	public void setTransceiverManager(ITransceiverManager manager) {
+		this.manager = manager;
+	}
+
+	/**
+	 * Called in order to prepare a session. The session can be prepared
+	 * if the remote transceiver is attached to a neighbor in the same
+	 * network.
+	 *
+	 * @param description The description of the remote system.
+	 * @param collection The requirements regarding the communication.
+	 * @param session The session that holds the attributes.
+	 * @return True if the session can be established, false otherwise.
+	 */
+	public boolean prepareSession(PluginDescription description, NFCollection collection, ISession session) {
+		if (description == null) {
+			return false;
+		}
+		if (! network.getIdentifier().equals(description.getProperty(PROPERTY_NETWORK))) {
+			return false;
+		}
+		String target = (String)description.getProperty(PROPERTY_DEVICE);
+		String source = getDevice();
+		if (target == null || source == null || network.getLink(source, target) == null
+				|| network.getPlugin(target) == null) {
+			return false;
+		}
+		session.setLocal(target);
+		return true;
+	}
+
+	/**
+	 * Opens a connection to the transceiver of the specified device. The
+	 * connection request is transmitted over the link and the other end
+	 * of the connection is handed to the plug-in manager of the remote
+	 * transceiver when the request arrives. If the request is refused,
+	 * the connection is closed.
+	 *
+	 * @param session The session data that has been prepared by the
+	 * 	prepare method.
+	 * @return The connector for the session.
+	 * @throws IOException Thrown if the devices are not connected.
+	 */
+	public IStreamConnector openSession(ISession session) throws IOException {
+		checkPlugin();
+		String source = getDevice();
+		String target = (String)session.getLocal();
+		Link link = network.getLink(source, target);
+		final IEmulatorPlugin plugin = network.getPlugin(target);
+		if (link == null || plugin == null) {
+			throw new IOException("Connection refused.");
+		}
+		Scheduler scheduler = network.getScheduler();
+		Pipe forward = new Pipe(scheduler, link, source);
+		Pipe backward = new Pipe(scheduler, link, target);
+		EmulatorStreamConnector local = new EmulatorStreamConnector(this, backward, forward);
+		final EmulatorStreamConnector remote = new EmulatorStreamConnector(plugin, forward, backward);
+		long time = link.schedule(source, 0, true);
+		if (time < 0) {
+			throw new IOException("Connection refused.");
+		}
+		synchronized (this) {
+			connectors.addElement(local);
+		}
+		scheduler.schedule(new Transmission() {
+			public void arrive() {
+				if (! plugin.accept(remote)) {
+					remote.release();
+				}
+			}
+		}, time);
+		return local;
+	}
+
+	/**
+	 * Opens a connector that exchanges packets with the transceivers of
+	 * all neighbors.
+	 *
+	 * @return The connector for the group.
+	 * @throws IOException Thrown if the connector cannot be opened.
+	 */
+	public synchronized IPacketConnector openGroup() throws IOException {
+		checkPlugin();
+		EmulatorPacketConnector connector = new EmulatorPacketConnector(this, manager, PACKET_LENGTH);
+		connectors.addElement(connector);
+		group.addElement(connector);
+		return connector;
+	}
+
+	/**
+	 * Transmits a copy of the payload to the transceivers of all neighbors.
+	 * Each link computes the arrival time and it may loose the packet.
+	 *
+	 * @param source The connector that sends the payload.
+	 * @param payload The payload to distribute.
+	 */
+	public void distribute(EmulatorPacketConnector source, byte[] payload) {
+		String name = getDevice();
+		if (name == null) return;
+		Link[] links = network.getLinks(name);
+		for (int i = 0; i < links.length; i++) {
+			final IEmulatorPlugin plugin = network.getPlugin(links[i].getPeer(name));
+			if (plugin == null) continue;
+			long time = links[i].schedule(name, payload.length, false);
+			if (time < 0) continue;
+			final byte[] copy = new byte[payload.length];
+			System.arraycopy(payload, 0, copy, 0, payload.length);
+			network.getScheduler().schedule(new Transmission() {
+				public void arrive() {
+					plugin.receive(copy);
+				}
+			}, time);
+		}
+	}
+
+	/**
+	 * Queues the payload of a packet that arrived at all packet
+	 * connectors of the transceiver.
+	 *
+	 * @param payload The payload of the packet.
+	 */
+	public void receive(byte[] payload) {
+		Object[] targets;
+		synchronized (this) {
+			targets = new Object[group.size()];
+			group.copyInto(targets);
+		}
+		for (int i = 0; i < targets.length; i++) {
+			byte[] copy = payload;
+			if (i > 0) {
+				copy = new byte[payload.length];
+				System.arraycopy(payload, 0, copy, 0, payload.length);
+			}
+			((EmulatorPacketConnector)targets[i]).deliver(copy);
+		}
+	}
+
+	/**
+	 * Accepts an incoming connection and hands it to the plug-in manager.
+	 *
+	 * @param connector The connector of the incoming connection.
+	 * @return True if the connection has been accepted, false if the
+	 * 	transceiver is not enabled.
+	 */
+	public boolean accept(EmulatorStreamConnector connector) {
+		synchronized (this) {
+			if (! enabled) return false;
+			connectors.addElement(connector);
+		}
+		manager.acceptSession(connector);
+		return true;
+	}
+
+	/**
+	 * Called by the plug-in manager to start the stopped plug-in.
+	 */
+	public void start() {
+		if (! started) {
+			started = true;
+			setEnabled(true);
+		}
+	}
+
+	/**
+	 * Called by the plug-in manager to stop the started plug-in. A call
+	 * to this method will automatically close all connectors and it will
+	 * disable the transceiver.
+	 */
+	public void stop() {
+		if (started) {
+			setEnabled(false);
+			started = false;
+		}
+	}
+
+	/**
+	 * Returns the description of the plug-in.
+	 *
+	 * @return The plugin's description.
+	 */
+	public PluginDescription getPluginDescription() {
+		if (description == null) {
+			description = new PluginDescription
+				(PLUGIN_ABILITY, EXTENSION_TRANSCEIVER);
+			description.setProperty(PROPERTY_NETWORK, network.getIdentifier(), false);
+		}
+		return description;
+	}
+
+	/**
+	 * Adds a listener to the bundle of registered transceiver listeners.
+	 *
+	 * @param type The type of event to register for.
+	 * @param listener The listener to register.
+	 * @throws NullPointerException Thrown if the listener is null.
+	 */
+	public void addTransceiverListener(int type, IListener listener)
+			throws NullPointerException {
+		listeners.addListener(type, listener);
+	}
+
+	/**
+	 * Removes a previously registered transceiver listener for a
+	 * certain type of event.
+	 *
+	 * @param type The type to unregister from.
+	 * @param listener The listener to unregister.
+	 * @return True if the listener is no longer registered, false if the
+	 * 	listener has not been registered.
+	 * @throws NullPointerException Thrown if the listener is null.
+	 */
+	public boolean removeTransceiverListener(int type, IListener listener)
+			throws NullPointerException {
+		return listeners.removeListener(type, listener);
+	}
+
+	/**
+	 * Enables or disables the transceiver and notifies all listeners if
+	 * the state has changed.
+	 *
+	 * @param enabled Set true to enable and false to disable.
+	 */
+	public void setEnabled(boolean enabled) {
+		synchronized (this) {
+			if (! started || this.enabled == enabled) {
+				return;
+			} else {
+				this.enabled = enabled;
+			}
+		}
+		if (enabled) {
+			enablePlugin();
+			listeners.fireEvent(EVENT_TRANCEIVER_ENABLED);
+		} else {
+			disablePlugin();
+			listeners.fireEvent(EVENT_TRANCEIVER_DISABLED);
+		}
+	}
+
+	/**
+	 * Determines whether the transceiver is enabled.
+	 *
+	 * @return True if the transceiver is enabled, false otherwise.
+	 */
+	public synchronized boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Releases the specified connector by removing it from the
+	 * list of open connectors.
+	 *
+	 * @param connector The connector to remove.
+	 */
+	public synchronized void release(EmulatorStreamConnector connector) {
+		connectors.removeElement(connector);
+	}
+
+	/**
+	 * Releases the specified connector by removing it from the
+	 * list of open connectors and from the group.
+	 *
+	 * @param connector The connector to remove.
+	 */
+	public synchronized void release(EmulatorPacketConnector connector) {
+		connectors.removeElement(connector);
+		group.removeElement(connector);
+	}
+
+	/**
+	 * Validates whether the plug-in can open a connection. This method
+	 * throws an exception if the current state of the plug-in does not
+	 * allow the initialization of a connector.
+	 */
+	private void checkPlugin() {
+		if (manager == null) throw new RuntimeException("Manager not set.");
+		if (! started) throw new RuntimeException("Plugin not started.");
+		if (! enabled) throw new RuntimeException("Endpoint not enabled.");
+	}
+
+	/**
+	 * Attaches the transceiver to its device such that the transceivers
+	 * of the neighbors can connect to it.
+	 */
+	protected void enablePlugin() {
+		String name = network.attach(this, request);
+		synchronized (this) {
+			device = name;
+		}
+		getPluginDescription().setProperty(PROPERTY_DEVICE, name, true);
+		Logging.log(getClass(), "Running emulated device " + name + ".");
+	}
+
+	/**
+	 * Detaches the transceiver from its device and closes all currently
+	 * incoming and outgoing connections.
+	 */
+	protected void disablePlugin() {
+		String name;
+		synchronized (this) {
+			name = device;
+			device = null;
+		}
+		network.detach(name);
+		// close all opened connectors, removal is automatic
+		for (int i = connectors.size() - 1; i >= 0; i--) {
+			IConnector c = (IConnector)connectors.elementAt(i);
+			c.release();
+		}
+	}
+
+}
@@ -328,7 +328,7 @@ public class MxIPEmulatorTransceiver implements ITransceiver, IOperation,
 			InputStream is = connection.getInputStream();
 			OutputStream os = connection.getOutputStream();
 			ObjectOutputStream oos = new ObjectOutputStream(os);
-			oos.writeObject(SystemID.SYSTEM);
+			oos.writeObject(SystemID.getLocal());
 			oos.flush();
 			// cross validation
 			ObjectInputStream vois = new ObjectInputStream(is);
@@ -662,7 +662,7 @@ public class MxIPEmulatorTransceiver implements ITransceiver, IOperation,
 		if (description == null) {
 			description = new PluginDescription(PLUGIN_ABILITY,
 					EXTENSION_TRANSCEIVER);
-			description.setProperty(PROPERTY_ID, SystemID.SYSTEM, false);
+			description.setProperty(PROPERTY_ID, SystemID.getLocal(), false);
 		}
 		return description;
 	}
@@ -702,7 +702,7 @@ public class MxIPEmulatorTransceiver implements ITransceiver, IOperation,
 				ObjectInputStream ois = new ObjectInputStream(is);
 				SystemID remote = (SystemID) ois.readObject();
 				ObjectOutputStream oos = new ObjectOutputStream(os);
-				oos.writeObject(SystemID.SYSTEM);
+				oos.writeObject(SystemID.getLocal());
 				synchronized (this) {
 					if (multiplexers.get(remote) == null) {
 						MultiplexFactory f = new MultiplexFactory(this, is, os,
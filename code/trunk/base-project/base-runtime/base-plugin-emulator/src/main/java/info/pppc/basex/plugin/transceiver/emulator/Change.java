@@ -0,0 +1,44 @@
+package info.pppc.basex.plugin.transceiver.emulator;
+
+/**
+ * A simple data structure that stores the scenario information
+ * about a single change of the topology.
+ * 
+ * @author Mac
+ */
+public class Change {
+
+	/**
+	 * The type of a change that connects two devices.
+	 */
+	public static final int TYPE_CONNECT = 1;
+
+	/**
+	 * The type of a change that disconnects two devices.
+	 */
+	public static final int TYPE_DISCONNECT = 2;
+
+	/**
+	 * The type of a change that updates the link attributes of 
+	 * two connected devices.
+	 */
+	public static final int TYPE_UPDATE = 3;
+
+	/**
+	 * The time of the change in milliseconds after the start
+	 * of the trace.
+	 */
+	public long time;
+
+	/**
+	 * The type of the change.
+	 */
+	public int type;
+
+	/**
+	 * The connection that is changed. For updates, the connection
+	 * contains the new link attributes.
+	 */
+	public Connection connection;
+
+}
@@ -19,4 +19,31 @@ public class Connection {
 	 * references the name field in the device.
 	 */
 	public String target;
+
+	/**
+	 * The latency of the connection in milliseconds. This is
+	 * the minimum time that is needed to transfer data in one
+	 * direction.
+	 */
+	public int latency;
+
+	/**
+	 * The jitter of the connection in milliseconds. The delay
+	 * of each transfer is increased by a random value between
+	 * zero and the jitter.
+	 */
+	public int jitter;
+
+	/**
+	 * The bandwidth of the connection in bytes per second and
+	 * direction. A value of zero denotes an unlimited bandwidth.
+	 */
+	public int bandwidth;
+
+	/**
+	 * The probability with which a transfer is lost. Lost packets
+	 * are dropped, lost parts of streams are retransmitted.
+	 */
+	public double loss;
+
 }
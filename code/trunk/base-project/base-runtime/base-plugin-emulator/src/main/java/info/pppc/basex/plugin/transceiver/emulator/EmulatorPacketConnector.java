@@ -0,0 +1,200 @@
+package info.pppc.basex.plugin.transceiver.emulator;
+
+import info.pppc.base.system.event.IListener;
+import info.pppc.base.system.event.ListenerBundle;
+import info.pppc.base.system.operation.IMonitor;
+import info.pppc.base.system.operation.IOperation;
+import info.pppc.base.system.operation.IOperator;
+import info.pppc.base.system.plugin.IPacket;
+import info.pppc.base.system.plugin.IPacketConnector;
+import info.pppc.base.system.plugin.IPlugin;
+import info.pppc.base.system.plugin.Packet;
+
+import java.io.IOException;
+import java.util.Vector;
+
+/**
+ * A packet connector of an emulator transceiver. Packets sent by the
+ * connector are transmitted to the neighbors of the device. Incoming
+ * packets are queued and delivered to the listeners by an operation that
+ * is only running while the queue is not empty. Thus, an emulated network
+ * with many devices does not need a thread per device. Like datagrams,
+ * packets are dropped if the queue is full.
+ *
+ * @author Mac
+ */
+public class EmulatorPacketConnector implements IPacketConnector, IOperation {
+
+	/**
+	 * The maximum number of packets that are queued for delivery.
+	 */
+	private static final int QUEUE_LENGTH = 256;
+
+	/**
+	 * The plug-in that owns the connector.
+	 */
+	private IEmulatorPlugin plugin;
+
+	/**
+	 * The operator that executes the delivery operation.
+	 */
+	private IOperator operator;
+
+	/**
+	 * The maximum packet length.
+	 */
+	private int length;
+
+	/**
+	 * The listeners that receive incoming packets.
+	 */
+	private ListenerBundle listeners = new ListenerBundle(this);
+
+	/**
+	 * The payloads of the packets that have not been delivered yet.
+	 */
+	private Vector queue = new Vector();
+
+	/**
+	 * A flag that indicates whether the delivery operation is running.
+	 */
+	private boolean delivering = false;
+
+	/**
+	 * Flag to indicate whether this connector has been released.
+	 */
+	private boolean released = false;
+
+	/**
+	 * Creates a new packet connector for the specified plug-in.
+	 *
+	 * @param plugin The plug-in that owns the connector.
+	 * @param operator The operator that executes the delivery operation.
+	 * @param length The maximum packet length.
+	 */
+	public EmulatorPacketConnector(IEmulatorPlugin plugin, IOperator operator, int length) {
+		this.plugin = plugin;
+		this.operator = operator;
+		this.length = length;
+	}
+
+	/**
+	 * Creates a packet that can be sent using this connector.
+	 *
+	 * @return A new packet.
+	 * @throws IOException Thrown if the connector is released.
+	 */
+	public IPacket createPacket() throws IOException {
+		if (released) {
+			throw new IOException("Connector has been released.");
+		}
+		return new Packet(length);
+	}
+
+	/**
+	 * Sends the packet to the neighbors of the device.
+	 *
+	 * @param packet The packet to send.
+	 * @throws IOException Thrown if the connector is released.
+	 */
+	public void sendPacket(IPacket packet) throws IOException {
+		if (released) {
+			throw new IOException("Connector has been released.");
+		}
+		plugin.distribute(this, packet.getPayload());
+	}
+
+	/**
+	 * Queues the payload of a packet for delivery and starts the delivery
+	 * operation if it is not running. If the queue is full or if the
+	 * connector is released, the packet is dropped.
+	 *
+	 * @param payload The payload of the packet.
+	 */
+	public void deliver(byte[] payload) {
+		synchronized (queue) {
+			if (released || queue.size() == QUEUE_LENGTH) return;
+			queue.addElement(payload);
+			if (delivering) return;
+			delivering = true;
+		}
+		operator.performOperation(this);
+	}
+
+	/**
+	 * Delivers the queued packets to the listeners until the queue is
+	 * empty or until the monitor is canceled.
+	 *
+	 * @param monitor The monitor to abort the operation.
+	 */
+	public void perform(IMonitor monitor) {
+		while (true) {
+			byte[] payload = null;
+			synchronized (queue) {
+				if (queue.isEmpty() || monitor.isCanceled()) {
+					queue.removeAllElements();
+					delivering = false;
+					return;
+				}
+				payload = (byte[])queue.elementAt(0);
+				queue.removeElementAt(0);
+			}
+			Packet packet = new Packet(length);
+			packet.setPayload(payload);
+			listeners.fireEvent(EVENT_PACKET_RECEIVED, packet);
+		}
+	}
+
+	/**
+	 * Adds a listener for the specified events.
+	 *
+	 * @param type The events to listen for.
+	 * @param listener The listener to add.
+	 */
+	public void addPacketListener(int type, IListener listener) {
+		listeners.addListener(type, listener);
+	}
+
+	/**
+	 * Removes the specified listener for the specified events.
+	 *
+	 * @param type The types of events.
+	 * @param listener The listener to remove.
+	 * @return True if removed, false otherwise.
+	 */
+	public boolean removePacketListener(int type, IListener listener) {
+		return listeners.removeListener(type, listener);
+	}
+
+	/**
+	 * Returns the packet length.
+	 *
+	 * @return The maximum packet length.
+	 */
+	public int getPacketLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the emulator transceiver that owns the connector.
+	 *
+	 * @return The emulator transceiver.
+	 */
+	public IPlugin getPlugin() {
+		return plugin;
+	}
+
+	/**
+	 * Releases the connector and drops the queued packets.
+	 */
+	public void release() {
+		synchronized (queue) {
+			if (released) return;
+			released = true;
+			queue.removeAllElements();
+		}
+		listeners.fireEvent(EVENT_PACKET_CLOSED);
+		plugin.release(this);
+	}
+
+}
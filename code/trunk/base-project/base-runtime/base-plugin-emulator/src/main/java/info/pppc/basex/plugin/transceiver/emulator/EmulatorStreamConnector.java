@@ -0,0 +1,132 @@
+package info.pppc.basex.plugin.transceiver.emulator;
+
+import info.pppc.base.system.plugin.IPlugin;
+import info.pppc.base.system.plugin.IStreamConnector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A stream connector that connects two emulator transceivers over a link
+ * of the emulated network. The connector reads from one pipe and writes
+ * to another one, the connector at the other end of the stream uses the
+ * same pipes in reverse order.
+ *
+ * @author Mac
+ */
+public class EmulatorStreamConnector implements IStreamConnector {
+
+	/**
+	 * The pipe that carries the incoming bytes.
+	 */
+	private Pipe incoming;
+
+	/**
+	 * The pipe that carries the outgoing bytes.
+	 */
+	private Pipe outgoing;
+
+	/**
+	 * The plug-in that owns the connector.
+	 */
+	private IEmulatorPlugin plugin;
+
+	/**
+	 * The input stream that reads from the incoming pipe.
+	 */
+	private InputStream input = new InputStream() {
+		public int read() throws IOException {
+			return incoming.read();
+		}
+		public int read(byte[] b, int off, int len) throws IOException {
+			return incoming.read(b, off, len);
+		}
+		public int available() throws IOException {
+			return incoming.available();
+		}
+		public void close() throws IOException {
+			release();
+		}
+	};
+
+	/**
+	 * The output stream that writes to the outgoing pipe.
+	 */
+	private OutputStream output = new OutputStream() {
+		public void write(int b) throws IOException {
+			outgoing.write(b);
+		}
+		public void write(byte[] b, int off, int len) throws IOException {
+			outgoing.write(b, off, len);
+		}
+		public void close() throws IOException {
+			release();
+		}
+	};
+
+	/**
+	 * A flag that indicates whether the connector has been released.
+	 */
+	private boolean released = false;
+
+	/**
+	 * Creates a new connector for the specified plug-in.
+	 *
+	 * @param plugin The plug-in that owns the connector.
+	 * @param incoming The pipe that carries the incoming bytes.
+	 * @param outgoing The pipe that carries the outgoing bytes.
+	 */
+	public EmulatorStreamConnector(IEmulatorPlugin plugin, Pipe incoming, Pipe outgoing) {
+		this.plugin = plugin;
+		this.incoming = incoming;
+		this.outgoing = outgoing;
+	}
+
+	/**
+	 * Returns the input stream of the connector.
+	 *
+	 * @return The input stream of the connector.
+	 * @throws IOException Thrown if the connector has been released.
+	 */
+	public InputStream getInputStream() throws IOException {
+		if (released) throw new IOException("Connector has been released.");
+		return input;
+	}
+
+	/**
+	 * Returns the output stream of the connector.
+	 *
+	 * @return The output stream of the connector.
+	 * @throws IOException Thrown if the connector has been released.
+	 */
+	public OutputStream getOutputStream() throws IOException {
+		if (released) throw new IOException("Connector has been released.");
+		return output;
+	}
+
+	/**
+	 * Returns the emulator transceiver that owns the connector.
+	 *
+	 * @return The emulator transceiver.
+	 */
+	public IPlugin getPlugin() {
+		return plugin;
+	}
+
+	/**
+	 * Releases the connector. The connector at the other end will
+	 * read the bytes that are in transit followed by the end of the
+	 * stream and its writes will fail.
+	 */
+	public void release() {
+		synchronized (this) {
+			if (released) return;
+			released = true;
+		}
+		outgoing.finish();
+		incoming.close();
+		plugin.release(this);
+	}
+
+}
@@ -0,0 +1,55 @@
+package info.pppc.basex.plugin.transceiver.emulator;
+
+import info.pppc.base.system.plugin.IPlugin;
+
+/**
+ * The interface of the emulator transceiver that is used by the network
+ * to deliver connections and packets and by the connectors to distribute
+ * packets and to signal their release.
+ *
+ * @author Mac
+ */
+public interface IEmulatorPlugin extends IPlugin {
+
+	/**
+	 * Called by the scheduler when a connection request arrives at the
+	 * device of the transceiver.
+	 *
+	 * @param connector The connector of the incoming connection.
+	 * @return True if the connection has been accepted, false if the
+	 * 	transceiver is not enabled.
+	 */
+	public boolean accept(EmulatorStreamConnector connector);
+
+	/**
+	 * Called by the scheduler when a packet arrives at the device of
+	 * the transceiver.
+	 *
+	 * @param payload The payload of the packet.
+	 */
+	public void receive(byte[] payload);
+
+	/**
+	 * Sends the specified payload to the transceivers of all neighbors
+	 * of the device of the transceiver.
+	 *
+	 * @param source The connector that sends the payload.
+	 * @param payload The payload to distribute.
+	 */
+	public void distribute(EmulatorPacketConnector source, byte[] payload);
+
+	/**
+	 * Called by a stream connector when it has been released.
+	 *
+	 * @param connector The connector that has been released.
+	 */
+	public void release(EmulatorStreamConnector connector);
+
+	/**
+	 * Called by a packet connector when it has been released.
+	 *
+	 * @param connector The connector that has been released.
+	 */
+	public void release(EmulatorPacketConnector connector);
+
+}
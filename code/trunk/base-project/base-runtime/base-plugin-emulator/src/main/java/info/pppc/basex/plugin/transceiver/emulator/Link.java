@@ -0,0 +1,209 @@
+package info.pppc.basex.plugin.transceiver.emulator;
+
+import java.util.Random;
+import java.util.Vector;
+
+/**
+ * A link models a bidirectional connection of the emulated network. It
+ * computes the arrival times of transmissions using the latency, jitter,
+ * bandwidth and loss of its connection. The bandwidth is modeled per
+ * direction, i.e. a transmission starts once the previous transmission
+ * in the same direction has been sent. Unreliable transmissions are lost
+ * with the loss probability, reliable transmissions are retransmitted
+ * instead and they arrive in the order in which they have been sent.
+ *
+ * @author Mac
+ */
+public class Link {
+
+	/**
+	 * The minimum delay of a retransmission in microseconds.
+	 */
+	private static final long MINIMUM_RETRANSMISSION = 1000;
+
+	/**
+	 * The number of retransmissions after which a reliable
+	 * transmission is considered to be lost.
+	 */
+	private static final int MAXIMUM_RETRANSMISSIONS = 16;
+
+	/**
+	 * The connection that defines the attributes of the link.
+	 */
+	private Connection connection;
+
+	/**
+	 * The random number generator used to compute jitter and loss.
+	 */
+	private Random random;
+
+	/**
+	 * The time in microseconds until which each direction is busy.
+	 * The first entry denotes the direction from the source device
+	 * of the connection to the target device.
+	 */
+	private long[] busy = new long[2];
+
+	/**
+	 * The arrival time in microseconds of the last reliable transmission
+	 * in each direction.
+	 */
+	private long[] arrival = new long[2];
+
+	/**
+	 * The pipes of the streams that use the link.
+	 */
+	private Vector pipes = new Vector();
+
+	/**
+	 * A flag that indicates whether the link has been closed.
+	 */
+	private boolean closed = false;
+
+	/**
+	 * Creates a new link for the specified connection. The link uses a
+	 * copy of the connection, thus, changes to the connection do not
+	 * affect the link.
+	 *
+	 * @param connection The connection that defines the link.
+	 * @param random The random number generator of the network.
+	 */
+	public Link(Connection connection, Random random) {
+		this.connection = new Connection();
+		this.connection.source = connection.source;
+		this.connection.target = connection.target;
+		this.random = random;
+		update(connection);
+	}
+
+	/**
+	 * Returns the connection that defines the attributes of the link.
+	 *
+	 * @return The connection of the link.
+	 */
+	public Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Sets the latency, jitter, bandwidth and loss of the link to the
+	 * attributes of the specified connection. The new attributes apply
+	 * to transmissions that are scheduled afterwards.
+	 *
+	 * @param attributes The connection that contains the attributes.
+	 */
+	public synchronized void update(Connection attributes) {
+		connection.latency = attributes.latency;
+		connection.jitter = attributes.jitter;
+		connection.bandwidth = attributes.bandwidth;
+		connection.loss = attributes.loss;
+	}
+
+	/**
+	 * Returns the name of the device at the other end of the link.
+	 *
+	 * @param device The name of a device of the link.
+	 * @return The name of the other device.
+	 */
+	public String getPeer(String device) {
+		if (connection.source.equals(device)) {
+			return connection.target;
+		} else {
+			return connection.source;
+		}
+	}
+
+	/**
+	 * Computes the arrival time of a transmission with the specified length
+	 * that is sent by the specified device now.
+	 *
+	 * @param device The name of the device that sends the transmission.
+	 * @param length The length of the transmission in bytes.
+	 * @param reliable True to retransmit lost transmissions, false to drop
+	 * 	them.
+	 * @return The arrival time in microseconds or -1 if the transmission
+	 * 	is lost or if the link is closed.
+	 */
+	public synchronized long schedule(String device, int length, boolean reliable) {
+		if (closed) return -1;
+		int direction = connection.source.equals(device)?0:1;
+		long time = Math.max(Scheduler.currentTime(), busy[direction]);
+		if (connection.bandwidth > 0) {
+			time += (long)length * 1000000 / connection.bandwidth;
+		}
+		busy[direction] = time;
+		time += connection.latency * 1000L;
+		if (connection.jitter > 0) {
+			time += random.nextInt(connection.jitter * 1000 + 1);
+		}
+		if (connection.loss > 0) {
+			if (! reliable) {
+				if (random.nextDouble() < connection.loss) return -1;
+			} else {
+				long retransmission = Math.max(MINIMUM_RETRANSMISSION,
+					(2L * connection.latency + connection.jitter) * 1000);
+				int retransmissions = 0;
+				while (random.nextDouble() < connection.loss) {
+					if (retransmissions++ == MAXIMUM_RETRANSMISSIONS) return -1;
+					time += retransmission;
+				}
+			}
+		}
+		if (reliable) {
+			time = Math.max(time, arrival[direction]);
+			arrival[direction] = time;
+		}
+		return time;
+	}
+
+	/**
+	 * Adds a pipe that uses the link. The pipe will be closed when
+	 * the link is closed.
+	 *
+	 * @param pipe The pipe to add.
+	 * @return True if the pipe has been added, false if the link is
+	 * 	closed already.
+	 */
+	public synchronized boolean addPipe(Pipe pipe) {
+		if (closed) return false;
+		pipes.addElement(pipe);
+		return true;
+	}
+
+	/**
+	 * Removes a pipe that has been closed.
+	 *
+	 * @param pipe The pipe to remove.
+	 */
+	public synchronized void removePipe(Pipe pipe) {
+		pipes.removeElement(pipe);
+	}
+
+	/**
+	 * Closes the link and all pipes that use it. Subsequent transmissions
+	 * are lost.
+	 */
+	public void close() {
+		Object[] closing;
+		synchronized (this) {
+			if (closed) return;
+			closed = true;
+			closing = new Object[pipes.size()];
+			pipes.copyInto(closing);
+			pipes.removeAllElements();
+		}
+		for (int i = 0; i < closing.length; i++) {
+			((Pipe)closing[i]).close();
+		}
+	}
+
+	/**
+	 * Determines whether the link has been closed.
+	 *
+	 * @return True if the link has been closed, false otherwise.
+	 */
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+}
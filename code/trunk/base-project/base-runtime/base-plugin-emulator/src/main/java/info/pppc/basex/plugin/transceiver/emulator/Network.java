@@ -0,0 +1,294 @@
+package info.pppc.basex.plugin.transceiver.emulator;
+
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.Vector;
+
+/**
+ * The network emulates a topology of devices and links within a single
+ * virtual machine. Each device can be used by one emulator transceiver
+ * at a time. The transmissions of all links are executed by a single
+ * scheduler, thus, the number of threads does not depend on the size of
+ * the topology. The topology can be created from a scenario that has
+ * been parsed and it can be changed at runtime by adding devices, by
+ * connecting and disconnecting them and by updating link attributes.
+ * A replay applies the changes of a trace at their scheduled times.
+ *
+ * @author Mac
+ */
+public class Network {
+
+	/**
+	 * The separator of the device names of link keys.
+	 */
+	private static final char SEPARATOR = ':';
+
+	/**
+	 * The identifier of the network that is used to determine whether
+	 * a plug-in description belongs to a device of this network.
+	 */
+	private Long identifier = new Long(new Random().nextLong());
+
+	/**
+	 * The random number generator that computes jitter and loss.
+	 */
+	private Random random;
+
+	/**
+	 * The scheduler that executes the transmissions.
+	 */
+	private Scheduler scheduler = new Scheduler();
+
+	/**
+	 * The names of the devices in the order in which they have been added.
+	 */
+	private Vector devices = new Vector();
+
+	/**
+	 * The links hashed by the names of both devices in both orders.
+	 */
+	private Hashtable links = new Hashtable();
+
+	/**
+	 * The vectors of links of each device hashed by device name.
+	 */
+	private Hashtable neighbors = new Hashtable();
+
+	/**
+	 * The plug-ins that are attached to devices hashed by device name.
+	 */
+	private Hashtable plugins = new Hashtable();
+
+	/**
+	 * Creates a new network without devices.
+	 */
+	public Network() {
+		this(System.currentTimeMillis());
+	}
+
+	/**
+	 * Creates a new network without devices that uses the specified seed
+	 * to compute jitter and loss.
+	 *
+	 * @param seed The seed of the random number generator.
+	 */
+	public Network(long seed) {
+		random = new Random(seed);
+	}
+
+	/**
+	 * Creates a new network with the devices and connections of the
+	 * specified parser.
+	 *
+	 * @param parser The parser that has parsed the scenario.
+	 */
+	public Network(Parser parser) {
+		this(parser, System.currentTimeMillis());
+	}
+
+	/**
+	 * Creates a new network with the devices and connections of the
+	 * specified parser that uses the specified seed to compute jitter
+	 * and loss.
+	 *
+	 * @param parser The parser that has parsed the scenario.
+	 * @param seed The seed of the random number generator.
+	 */
+	public Network(Parser parser, long seed) {
+		this(seed);
+		Vector ds = parser.getDevices();
+		for (int i = 0; i < ds.size(); i++) {
+			addDevice(((Device)ds.elementAt(i)).name);
+		}
+		Vector cs = parser.getConnections();
+		for (int i = 0; i < cs.size(); i++) {
+			connect((Connection)cs.elementAt(i));
+		}
+	}
+
+	/**
+	 * Returns the identifier of the network.
+	 *
+	 * @return The identifier of the network.
+	 */
+	public Long getIdentifier() {
+		return identifier;
+	}
+
+	/**
+	 * Returns the scheduler that executes the transmissions.
+	 *
+	 * @return The scheduler of the network.
+	 */
+	public Scheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Adds a device with the specified name.
+	 *
+	 * @param name The name of the device.
+	 * @throws IllegalArgumentException Thrown if the device exists already.
+	 */
+	public synchronized void addDevice(String name) {
+		if (neighbors.containsKey(name)) {
+			throw new IllegalArgumentException("Duplicate device " + name + ".");
+		}
+		devices.addElement(name);
+		neighbors.put(name, new Vector());
+	}
+
+	/**
+	 * Returns the names of all devices.
+	 *
+	 * @return The names of the devices.
+	 */
+	public synchronized String[] getDevices() {
+		String[] result = new String[devices.size()];
+		devices.copyInto(result);
+		return result;
+	}
+
+	/**
+	 * Connects the devices of the specified connection using a link with
+	 * the attributes of the connection.
+	 *
+	 * @param connection The connection to add.
+	 * @throws IllegalArgumentException Thrown if a device does not exist
+	 * 	or if the devices are connected already.
+	 */
+	public synchronized void connect(Connection connection) {
+		Vector source = (Vector)neighbors.get(connection.source);
+		Vector target = (Vector)neighbors.get(connection.target);
+		if (source == null || target == null || source == target) {
+			throw new IllegalArgumentException("Illegal connection.");
+		}
+		if (links.containsKey(connection.source + SEPARATOR + connection.target)) {
+			throw new IllegalArgumentException("Duplicate connection.");
+		}
+		Link link = new Link(connection, random);
+		links.put(connection.source + SEPARATOR + connection.target, link);
+		links.put(connection.target + SEPARATOR + connection.source, link);
+		source.addElement(link);
+		target.addElement(link);
+	}
+
+	/**
+	 * Disconnects the specified devices. Streams that use the link between
+	 * the devices are closed and transmissions in transit are lost.
+	 *
+	 * @param source The name of one device.
+	 * @param target The name of the other device.
+	 * @return True if the devices have been disconnected, false if they
+	 * 	have not been connected.
+	 */
+	public boolean disconnect(String source, String target) {
+		Link link;
+		synchronized (this) {
+			link = (Link)links.remove(source + SEPARATOR + target);
+			if (link == null) return false;
+			links.remove(target + SEPARATOR + source);
+			((Vector)neighbors.get(source)).removeElement(link);
+			((Vector)neighbors.get(target)).removeElement(link);
+		}
+		link.close();
+		return true;
+	}
+
+	/**
+	 * Updates the link attributes of the specified connection. The new
+	 * attributes apply to transmissions that are scheduled afterwards.
+	 *
+	 * @param connection The connection with the new attributes.
+	 * @return True if the link has been updated, false if the devices
+	 * 	are not connected.
+	 */
+	public boolean update(Connection connection) {
+		Link link = getLink(connection.source, connection.target);
+		if (link == null) return false;
+		link.update(connection);
+		return true;
+	}
+
+	/**
+	 * Returns the link between the specified devices.
+	 *
+	 * @param source The name of one device.
+	 * @param target The name of the other device.
+	 * @return The link between the devices or null if they are not
+	 * 	connected.
+	 */
+	public synchronized Link getLink(String source, String target) {
+		return (Link)links.get(source + SEPARATOR + target);
+	}
+
+	/**
+	 * Returns the links of the specified device.
+	 *
+	 * @param device The name of the device.
+	 * @return The links of the device.
+	 */
+	public synchronized Link[] getLinks(String device) {
+		Vector vector = (Vector)neighbors.get(device);
+		if (vector == null) return new Link[0];
+		Link[] result = new Link[vector.size()];
+		vector.copyInto(result);
+		return result;
+	}
+
+	/**
+	 * Returns the plug-in that is attached to the specified device.
+	 *
+	 * @param device The name of the device.
+	 * @return The plug-in or null if no plug-in is attached.
+	 */
+	public synchronized IEmulatorPlugin getPlugin(String device) {
+		return (IEmulatorPlugin)plugins.get(device);
+	}
+
+	/**
+	 * Attaches a plug-in to the specified device and starts the scheduler
+	 * if the plug-in is the first one.
+	 *
+	 * @param plugin The plug-in to attach.
+	 * @param device The name of the device or null to attach the plug-in
+	 * 	to the first device that is not used.
+	 * @return The name of the device.
+	 * @throws IllegalStateException Thrown if the device does not exist
+	 * 	or if it is used by another plug-in.
+	 */
+	public synchronized String attach(IEmulatorPlugin plugin, String device) {
+		if (device == null) {
+			for (int i = 0; i < devices.size() && device == null; i++) {
+				String name = (String)devices.elementAt(i);
+				if (! plugins.containsKey(name)) {
+					device = name;
+				}
+			}
+			if (device == null) {
+				throw new IllegalStateException("No free device.");
+			}
+		} else if (! neighbors.containsKey(device)) {
+			throw new IllegalStateException("Unknown device " + device + ".");
+		} else if (plugins.containsKey(device)) {
+			throw new IllegalStateException("Device " + device + " is used.");
+		}
+		plugins.put(device, plugin);
+		scheduler.start();
+		return device;
+	}
+
+	/**
+	 * Detaches the plug-in from the specified device and stops the
+	 * scheduler if no plug-in remains.
+	 *
+	 * @param device The name of the device.
+	 */
+	public synchronized void detach(String device) {
+		plugins.remove(device);
+		if (plugins.isEmpty()) {
+			scheduler.stop();
+		}
+	}
+
+}
@@ -2,6 +2,7 @@ package info.pppc.basex.plugin.transceiver.emulator;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Hashtable;
 import java.util.Vector;
 
 /**
@@ -9,6 +10,18 @@ import java.util.Vector;
  * file. It solely uses CLCD methods, so it implements 
  * its own (maybe buggy) string handling.
  * 
+ * Besides devices and connections, a scenario may contain
+ * link directives that set the latency, jitter, bandwidth 
+ * and loss of all connections that are declared afterwards. 
+ * These attributes are used by the in-process emulator.
+ * 
+ * A scenario may also contain a trace of changes. The time 
+ * directive sets the time in milliseconds of the connect, 
+ * disconnect and update directives that follow it. The update
+ * directive applies the current link attributes to an existing
+ * connection. Connections that are declared before the first
+ * time directive form the initial topology.
+ * 
  * @author Marcus Handte
  */
 public class Parser {
@@ -23,6 +36,39 @@ public class Parser {
 	 */
 	private Vector connections = new Vector();
 	
+	/**
+	 * The devices that have been parsed hashed by name.
+	 */
+	private Hashtable deviceNames = new Hashtable();
+	
+	/**
+	 * The devices that have been parsed hashed by host and port.
+	 */
+	private Hashtable deviceAddresses = new Hashtable();
+	
+	/**
+	 * The connections that have been parsed hashed by both pairs 
+	 * of device names.
+	 */
+	private Hashtable connectionPairs = new Hashtable();
+	
+	/**
+	 * This is the vector of changes that have been parsed.
+	 */
+	private Vector changes = new Vector();
+	
+	/**
+	 * The time of the changes that are parsed or -1 if the time
+	 * directive has not been parsed yet.
+	 */
+	private long time = -1;
+	
+	/**
+	 * The connection whose link attributes are applied to the 
+	 * connections that are parsed.
+	 */
+	private Connection model = new Connection();
+	
 	/**
 	 * The following constants define parts of the language.
 	 */
@@ -38,6 +84,46 @@ public class Parser {
 	 */
 	private String DIRECTIVE_CONNECTION = "connect";
 	
+	/**
+	 * Identifier for the link directive.
+	 */
+	private String DIRECTIVE_LINK = "link.";
+	
+	/**
+	 * Identifier for the time directive.
+	 */
+	private String DIRECTIVE_TIME = "time";
+	
+	/**
+	 * Identifier for the disconnect directive.
+	 */
+	private String DIRECTIVE_DISCONNECTION = "disconnect";
+	
+	/**
+	 * Identifier for the update directive.
+	 */
+	private String DIRECTIVE_UPDATE = "update";
+	
+	/**
+	 * Identifier for the latency attribute of the link directive.
+	 */
+	private String LINK_LATENCY = "latency";
+	
+	/**
+	 * Identifier for the jitter attribute of the link directive.
+	 */
+	private String LINK_JITTER = "jitter";
+	
+	/**
+	 * Identifier for the bandwidth attribute of the link directive.
+	 */
+	private String LINK_BANDWIDTH = "bandwidth";
+	
+	/**
+	 * Identifier for the loss attribute of the link directive.
+	 */
+	private String LINK_LOSS = "loss";
+	
 	/**
 	 * Identifier for the set operator.
 	 */
@@ -84,43 +170,55 @@ public class Parser {
 			if (line.startsWith(DIRECTIVE_COMMENT)) {
 				continue; // ignore comments
 			} else if (line.startsWith(DIRECTIVE_DEVICE)) {
+				if (time >= 0) {
+					throw new IOException("Error at line " + number + ", device after time directive.");
+				}
 				Device d = createDevice(line);
 				if (d.name.length() == 0) {
 					throw new IOException("Error at line " + number + ", illegal device.");
 				}
-				for (int i = 0; i < devices.size(); i++) {
-					Device d2 = (Device)devices.elementAt(i);
-					if (d2.name.equals(d.name)) {
-						throw new IOException("Error at line " + number + ", duplicate device definition.");
-					}
-					if (d2.port == d.port && d2.host.equals(d.host)) {
-						throw new IOException("Error at line " + number + ", duplicate port definition.");
-					}
+				if (deviceNames.containsKey(d.name)) {
+					throw new IOException("Error at line " + number + ", duplicate device definition.");
+				}
+				String address = d.host + DIRECTIVE_SUB + d.port;
+				if (deviceAddresses.containsKey(address)) {
+					throw new IOException("Error at line " + number + ", duplicate port definition.");
 				}
+				deviceNames.put(d.name, d);
+				deviceAddresses.put(address, d);
 				devices.addElement(d);
 			} else if (line.startsWith(DIRECTIVE_CONNECTION)) {
 				Connection c = createConnection(line);
 				if (c.source.equals(c.target) || c.source.length() == 0 | c.target.length() == 0) {
 					throw new IOException("Error at line " + number + ", illegal connection.");
 				}
-				boolean source = false;
-				boolean target = false;
-				for (int i = 0; i < devices.size(); i++) {
-					Device d = (Device)devices.elementAt(i);
-					source = source || d.name.equals(c.source);
-					target = target || d.name.equals(c.target);
-				}
-				if (! source || ! target) {
+				if (! deviceNames.containsKey(c.source) || ! deviceNames.containsKey(c.target)) {
 					throw new IOException("Error at line " + number + ", illegal connection.");
 				}
-				for (int i = 0; i < connections.size(); i++) {
-					Connection c2 = (Connection)connections.elementAt(i);
-					if ((c.source.equals(c2.source) && c.target.equals(c2.target)) ||
-						(c.source.equals(c2.target) && c.target.equals(c2.source))) {
-						throw new IOException("Error at line " + number + ", duplicate connection definition.");
-					}
+				if (connectionPairs.containsKey(c.source + DIRECTIVE_SUB + c.target)) {
+					throw new IOException("Error at line " + number + ", duplicate connection definition.");
+				}
+				connectionPairs.put(c.source + DIRECTIVE_SUB + c.target, c);
+				connectionPairs.put(c.target + DIRECTIVE_SUB + c.source, c);
+				if (time < 0) {
+					connections.addElement(c);
+				} else {
+					addChange(Change.TYPE_CONNECT, c);
 				}
-				connections.addElement(c);
+			} else if (line.startsWith(DIRECTIVE_DISCONNECTION)) {
+				Connection c = createChange(line);
+				connectionPairs.remove(c.source + DIRECTIVE_SUB + c.target);
+				connectionPairs.remove(c.target + DIRECTIVE_SUB + c.source);
+				addChange(Change.TYPE_DISCONNECT, c);
+			} else if (line.startsWith(DIRECTIVE_UPDATE)) {
+				Connection c = createChange(line);
+				connectionPairs.put(c.source + DIRECTIVE_SUB + c.target, c);
+				connectionPairs.put(c.target + DIRECTIVE_SUB + c.source, c);
+				addChange(Change.TYPE_UPDATE, c);
+			} else if (line.startsWith(DIRECTIVE_TIME)) {
+				setTime(line);
+			} else if (line.startsWith(DIRECTIVE_LINK)) {
+				setAttribute(line);
 			} else if (line.length() == 0){
 				continue; // ignore blank lines
 			} else {
@@ -171,9 +269,106 @@ public class Parser {
 		String[] names = splitDirective(directive, DIRECTIVE_SUB);
 		result.source = names[0];
 		result.target = names[1];
+		result.latency = model.latency;
+		result.jitter = model.jitter;
+		result.bandwidth = model.bandwidth;
+		result.loss = model.loss;
 		return result;
 	}
 	
+	/**
+	 * This method creates the connection of a disconnect or update 
+	 * directive. The connection must have been declared before.
+	 * 
+	 * @param directive The directive to parse.
+	 * @return The connection that has been parsed.
+	 * @throws IOException Thrown if the directive contains syntax errors
+	 * 	or if the connection does not exist at the current time.
+	 */
+	private Connection createChange(String directive) throws IOException {
+		if (time < 0) {
+			throw new IOException("Error at line " + number + ", change before time directive.");
+		}
+		Connection c = createConnection(directive);
+		if (! connectionPairs.containsKey(c.source + DIRECTIVE_SUB + c.target)) {
+			throw new IOException("Error at line " + number + ", unknown connection.");
+		}
+		return c;
+	}
+	
+	/**
+	 * This method adds a change at the current time.
+	 * 
+	 * @param type The type of the change.
+	 * @param connection The connection that is changed.
+	 */
+	private void addChange(int type, Connection connection) {
+		Change change = new Change();
+		change.time = time;
+		change.type = type;
+		change.connection = connection;
+		changes.addElement(change);
+	}
+	
+	/**
+	 * This method sets the time of the changes that are parsed 
+	 * afterwards from a time directive. The time must not 
+	 * decrease.
+	 * 
+	 * @param directive The directive to parse.
+	 * @throws IOException Thrown if the directive contains syntax errors.
+	 */
+	private void setTime(String directive) throws IOException {
+		String value = splitDirective(directive, DIRECTIVE_SET)[1];
+		long next;
+		try {
+			next = Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IOException("Syntax error at line " + number + ", expecting number.");
+		}
+		if (next < time || next < 0) {
+			throw new IOException("Error at line " + number + ", time must not decrease.");
+		}
+		time = next;
+	}
+	
+	/**
+	 * This method sets the link attribute of a link directive. The 
+	 * attribute is applied to all connections that are parsed 
+	 * afterwards.
+	 * 
+	 * @param directive The directive to parse.
+	 * @throws IOException Thrown if the directive contains syntax errors.
+	 */
+	private void setAttribute(String directive) throws IOException {
+		String[] split = splitDirective(directive.substring(DIRECTIVE_LINK.length()), DIRECTIVE_SET);
+		try {
+			if (split[0].equals(LINK_LOSS)) {
+				double loss = Double.parseDouble(split[1]);
+				if (loss < 0 || loss > 1) {
+					throw new IOException("Error at line " + number + ", loss must be between 0 and 1.");
+				}
+				model.loss = loss;
+				return;
+			}
+			int value = Integer.parseInt(split[1]);
+			if (value < 0) {
+				throw new IOException("Error at line " + number + ", negative link attribute.");
+			}
+			if (split[0].equals(LINK_LATENCY)) {
+				model.latency = value;
+			} else if (split[0].equals(LINK_JITTER)) {
+				model.jitter = value;
+			} else if (split[0].equals(LINK_BANDWIDTH)) {
+				model.bandwidth = value;
+			} else {
+				throw new IOException("Syntax error at line " + number + ", unknown link attribute.");
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("Syntax error at line " + number + ", expecting number.");
+		}
+	}
+	
 	/**
 	 * This helper method returns two trimmed strings from one string
 	 * that is separated at the first occurrence of a splitter char.
@@ -239,4 +434,13 @@ public class Parser {
 		return connections;
 	}		
 	
+	/**
+	 * Returns the vector of changes ordered by time.
+	 * 
+	 * @return The vector of changes.
+	 */
+	public Vector getChanges() {
+		return changes;
+	}
+	
 }
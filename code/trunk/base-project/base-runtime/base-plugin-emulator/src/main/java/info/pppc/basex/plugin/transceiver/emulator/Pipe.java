@@ -0,0 +1,274 @@
+package info.pppc.basex.plugin.transceiver.emulator;
+
+import java.io.IOException;
+import java.util.Vector;
+
+/**
+ * A pipe carries one direction of an emulated stream over a link. Written
+ * bytes are split into chunks whose arrival is scheduled by the link. The
+ * number of bytes that are in transit or not yet read is limited by a
+ * window, thus, writers block if the reader does not keep up. When the
+ * writer finishes the pipe, the end of the stream is scheduled like any
+ * other chunk. When the pipe is closed, pending chunks are dropped, the
+ * reader receives the end of the stream and writers receive an exception.
+ *
+ * @author Mac
+ */
+public class Pipe {
+
+	/**
+	 * The maximum number of bytes that are in transit or buffered.
+	 */
+	private static final int WINDOW_SIZE = 32768;
+
+	/**
+	 * The maximum number of bytes of a single chunk.
+	 */
+	private static final int CHUNK_SIZE = 8192;
+
+	/**
+	 * The scheduler that delivers the chunks.
+	 */
+	private Scheduler scheduler;
+
+	/**
+	 * The link that carries the chunks.
+	 */
+	private Link link;
+
+	/**
+	 * The name of the device that writes to the pipe.
+	 */
+	private String device;
+
+	/**
+	 * The chunks that have arrived but that have not been read.
+	 */
+	private Vector chunks = new Vector();
+
+	/**
+	 * The offset of the next byte to read in the first chunk.
+	 */
+	private int offset = 0;
+
+	/**
+	 * The number of bytes that have arrived but that have not been read.
+	 */
+	private int buffered = 0;
+
+	/**
+	 * The number of bytes that are in transit.
+	 */
+	private int pending = 0;
+
+	/**
+	 * A flag that indicates whether the writer has finished the pipe.
+	 */
+	private boolean finished = false;
+
+	/**
+	 * A flag that indicates whether the end of the stream has arrived.
+	 */
+	private boolean terminated = false;
+
+	/**
+	 * A flag that indicates whether the pipe has been closed.
+	 */
+	private boolean closed = false;
+
+	/**
+	 * Creates a new pipe for the specified link.
+	 *
+	 * @param scheduler The scheduler that delivers the chunks.
+	 * @param link The link that carries the chunks.
+	 * @param device The name of the device that writes to the pipe.
+	 */
+	public Pipe(Scheduler scheduler, Link link, String device) {
+		this.scheduler = scheduler;
+		this.link = link;
+		this.device = device;
+		if (! link.addPipe(this)) {
+			closed = true;
+		}
+	}
+
+	/**
+	 * Reads a single byte from the pipe. This method blocks until a
+	 * byte is available or until the end of the stream.
+	 *
+	 * @return The byte or -1 if the end of the stream has been reached.
+	 * @throws IOException Thrown if the thread is interrupted.
+	 */
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		if (read(b, 0, 1) == -1) {
+			return -1;
+		}
+		return b[0] & 0xFF;
+	}
+
+	/**
+	 * Reads at least one and at most the specified number of bytes from
+	 * the pipe. This method blocks until a byte is available or until the
+	 * end of the stream.
+	 *
+	 * @param b The array to read into.
+	 * @param off The offset of the first byte to write to the array.
+	 * @param len The maximum number of bytes to read.
+	 * @return The number of bytes that have been read or -1 if the end
+	 * 	of the stream has been reached.
+	 * @throws IOException Thrown if the thread is interrupted.
+	 */
+	public synchronized int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		while (buffered == 0) {
+			if (closed || terminated) {
+				return -1;
+			}
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				throw new IOException("Thread got interrupted.");
+			}
+		}
+		int read = 0;
+		while (read < len && buffered > 0) {
+			byte[] chunk = (byte[])chunks.elementAt(0);
+			int copy = Math.min(len - read, chunk.length - offset);
+			System.arraycopy(chunk, offset, b, off + read, copy);
+			read += copy;
+			offset += copy;
+			buffered -= copy;
+			if (offset == chunk.length) {
+				chunks.removeElementAt(0);
+				offset = 0;
+			}
+		}
+		notifyAll();
+		return read;
+	}
+
+	/**
+	 * Returns the number of bytes that can be read without blocking.
+	 *
+	 * @return The number of bytes that have arrived.
+	 */
+	public synchronized int available() {
+		return buffered;
+	}
+
+	/**
+	 * Writes a single byte to the pipe.
+	 *
+	 * @param b The byte to write.
+	 * @throws IOException Thrown if the pipe has been finished or closed
+	 * 	or if the thread is interrupted.
+	 */
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte)b }, 0, 1);
+	}
+
+	/**
+	 * Writes the specified bytes to the pipe. This method blocks while
+	 * the window is full.
+	 *
+	 * @param b The array that contains the bytes.
+	 * @param off The offset of the first byte to write.
+	 * @param len The number of bytes to write.
+	 * @throws IOException Thrown if the pipe has been finished or closed
+	 * 	or if the thread is interrupted.
+	 */
+	public synchronized void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			while (! closed && ! finished && pending + buffered >= WINDOW_SIZE) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					throw new IOException("Thread got interrupted.");
+				}
+			}
+			if (closed || finished) {
+				throw new IOException("Connection closed.");
+			}
+			int length = Math.min(len, Math.min(CHUNK_SIZE, WINDOW_SIZE - pending - buffered));
+			byte[] chunk = new byte[length];
+			System.arraycopy(b, off, chunk, 0, length);
+			transmit(chunk);
+			if (closed) {
+				throw new IOException("Connection lost.");
+			}
+			off += length;
+			len -= length;
+		}
+	}
+
+	/**
+	 * Finishes the pipe. The reader will receive the remaining bytes
+	 * followed by the end of the stream, subsequent writes will fail.
+	 */
+	public synchronized void finish() {
+		if (closed || finished) return;
+		finished = true;
+		transmit(null);
+		notifyAll();
+	}
+
+	/**
+	 * Closes the pipe and drops all pending bytes. The reader receives
+	 * the end of the stream and subsequent writes will fail.
+	 */
+	public void close() {
+		synchronized (this) {
+			if (closed) return;
+			closed = true;
+			chunks.removeAllElements();
+			buffered = 0;
+			notifyAll();
+		}
+		link.removePipe(this);
+	}
+
+	/**
+	 * Schedules the arrival of the specified chunk. If the link looses
+	 * the chunk, the pipe is closed.
+	 *
+	 * @param chunk The chunk to transmit or null to signal the end
+	 * 	of the stream.
+	 */
+	private void transmit(final byte[] chunk) {
+		int length = (chunk == null)?0:chunk.length;
+		long time = link.schedule(device, length, true);
+		if (time < 0) {
+			close();
+			return;
+		}
+		pending += length;
+		scheduler.schedule(new Transmission() {
+			public void arrive() {
+				receive(chunk);
+			}
+		}, time);
+	}
+
+	/**
+	 * Called by the scheduler when a chunk arrives.
+	 *
+	 * @param chunk The chunk that arrived or null if the end of the
+	 * 	stream arrived.
+	 */
+	private synchronized void receive(byte[] chunk) {
+		if (chunk == null) {
+			terminated = true;
+		} else {
+			pending -= chunk.length;
+			if (! closed) {
+				chunks.addElement(chunk);
+				buffered += chunk.length;
+			}
+		}
+		notifyAll();
+	}
+
+}
@@ -0,0 +1,306 @@
+package info.pppc.basex.plugin.transceiver.emulator;
+
+import info.pppc.base.system.DeviceRegistry;
+import info.pppc.base.system.InvocationBroker;
+import info.pppc.base.system.event.Event;
+import info.pppc.base.system.event.IListener;
+import info.pppc.base.system.metric.Metric;
+import info.pppc.base.system.metric.MetricRegistry;
+import info.pppc.basex.plugin.routing.ProactiveRouting;
+
+import java.util.Vector;
+
+/**
+ * The recorder measures the effects of a replay on a set of brokers. For
+ * each change, it records the discovery convergence time, that is the
+ * time between the change and the last change of a device registry that
+ * happened before the next change. Besides that, it counts the routes
+ * that have been computed by the routing plug-ins and the invocations and
+ * failed invocations of the brokers. Changes that do not cause a change
+ * of a device registry are not included in the convergence times.
+ *
+ * @author Mac
+ */
+public class Recorder implements IListener {
+
+	/**
+	 * The device registries that are observed.
+	 */
+	private Vector devices = new Vector();
+
+	/**
+	 * The metric registries that are observed.
+	 */
+	private Vector metrics = new Vector();
+
+	/**
+	 * The routing plug-ins that are observed.
+	 */
+	private Vector routings = new Vector();
+
+	/**
+	 * The replay that is recorded or null if the recording has not
+	 * been started or if it has been stopped.
+	 */
+	private Replay replay = null;
+
+	/**
+	 * The time of the last change in milliseconds or -1 if no change
+	 * has been applied yet.
+	 */
+	private long changed = -1;
+
+	/**
+	 * The time of the last change of a device registry after the last
+	 * change in milliseconds or -1 if there has been none.
+	 */
+	private long discovered = -1;
+
+	/**
+	 * The number of changes that have been applied.
+	 */
+	private int changes = 0;
+
+	/**
+	 * The number of changes that caused a change of a device registry.
+	 */
+	private int converged = 0;
+
+	/**
+	 * The sum of the convergence times in milliseconds.
+	 */
+	private long totalConvergence = 0;
+
+	/**
+	 * The maximum convergence time in milliseconds.
+	 */
+	private long maximumConvergence = 0;
+
+	/**
+	 * The number of route computations when the recording started.
+	 */
+	private long routes = 0;
+
+	/**
+	 * The number of invocations when the recording started.
+	 */
+	private long invocations = 0;
+
+	/**
+	 * The number of failed invocations when the recording started.
+	 */
+	private long failures = 0;
+
+	/**
+	 * Creates a new recorder without brokers and routing plug-ins.
+	 */
+	public Recorder() {
+		super();
+	}
+
+	/**
+	 * Adds a broker whose device registry and invocations are observed.
+	 * This enables the metric registry of the broker.
+	 *
+	 * @param broker The broker to observe.
+	 */
+	public synchronized void addBroker(InvocationBroker broker) {
+		DeviceRegistry registry = broker.getDeviceRegistry();
+		registry.addDeviceListener(DeviceRegistry.EVENT_DEVICE_ADDED |
+				DeviceRegistry.EVENT_DEVICE_REMOVED, this);
+		devices.addElement(registry);
+		broker.getMetricRegistry().setEnabled(true);
+		metrics.addElement(broker.getMetricRegistry());
+	}
+
+	/**
+	 * Adds a routing plug-in whose route computations are counted.
+	 *
+	 * @param routing The routing plug-in to observe.
+	 */
+	public synchronized void addRouting(ProactiveRouting routing) {
+		routings.addElement(routing);
+	}
+
+	/**
+	 * Starts to record the specified replay. This method must be called
+	 * before the replay is started.
+	 *
+	 * @param replay The replay to record.
+	 */
+	public synchronized void start(Replay replay) {
+		this.replay = replay;
+		routes = countRoutes();
+		invocations = countInvocations(false);
+		failures = countInvocations(true);
+		replay.addReplayListener(Replay.EVENT_REPLAY_CHANGED, this);
+	}
+
+	/**
+	 * Stops the recording and completes the convergence time of the
+	 * last change.
+	 */
+	public synchronized void stop() {
+		if (replay == null) return;
+		replay.removeReplayListener(Replay.EVENT_REPLAY_CHANGED, this);
+		replay = null;
+		for (int i = 0; i < devices.size(); i++) {
+			((DeviceRegistry)devices.elementAt(i)).removeDeviceListener
+				(DeviceRegistry.EVENT_DEVICE_ADDED | DeviceRegistry.EVENT_DEVICE_REMOVED, this);
+		}
+		converge();
+		routes = countRoutes() - routes;
+		invocations = countInvocations(false) - invocations;
+		failures = countInvocations(true) - failures;
+	}
+
+	/**
+	 * Called whenever a change has been applied or whenever a device
+	 * registry has changed.
+	 *
+	 * @param event The event that signals the change.
+	 */
+	public synchronized void handleEvent(Event event) {
+		if (replay == null) return;
+		long now = System.currentTimeMillis();
+		if (event.getSource() == replay) {
+			converge();
+			changes += 1;
+			changed = now;
+			discovered = -1;
+		} else if (changed != -1) {
+			discovered = now;
+		}
+	}
+
+	/**
+	 * Returns the number of changes that have been applied.
+	 *
+	 * @return The number of changes.
+	 */
+	public synchronized int getChanges() {
+		return changes;
+	}
+
+	/**
+	 * Returns the average discovery convergence time of the changes that
+	 * caused a change of a device registry.
+	 *
+	 * @return The average convergence time in milliseconds.
+	 */
+	public synchronized long getAverageConvergence() {
+		if (converged == 0) return 0;
+		return totalConvergence / converged;
+	}
+
+	/**
+	 * Returns the maximum discovery convergence time.
+	 *
+	 * @return The maximum convergence time in milliseconds.
+	 */
+	public synchronized long getMaximumConvergence() {
+		return maximumConvergence;
+	}
+
+	/**
+	 * Returns the number of route computations. While the recording is
+	 * running, this returns the total number of computations, after it
+	 * has been stopped, it returns the computations during the recording.
+	 *
+	 * @return The number of route computations.
+	 */
+	public synchronized long getRoutes() {
+		return (replay == null)?routes:countRoutes();
+	}
+
+	/**
+	 * Returns the number of invocations. While the recording is running,
+	 * this returns the total number of invocations, after it has been
+	 * stopped, it returns the invocations during the recording.
+	 *
+	 * @return The number of invocations.
+	 */
+	public synchronized long getInvocations() {
+		return (replay == null)?invocations:countInvocations(false);
+	}
+
+	/**
+	 * Returns the number of failed invocations. While the recording is
+	 * running, this returns the total number of failures, after it has
+	 * been stopped, it returns the failures during the recording.
+	 *
+	 * @return The number of failed invocations.
+	 */
+	public synchronized long getFailures() {
+		return (replay == null)?failures:countInvocations(true);
+	}
+
+	/**
+	 * Returns the ratio of failed invocations.
+	 *
+	 * @return The ratio of failed invocations between 0 and 1.
+	 */
+	public synchronized double getFailureRate() {
+		long total = getInvocations();
+		if (total == 0) return 0;
+		return (double)getFailures() / total;
+	}
+
+	/**
+	 * Returns a human readable summary of the recording.
+	 *
+	 * @return A human readable summary.
+	 */
+	public synchronized String toString() {
+		return "CHANGES (" + getChanges() + ") CONVERGENCE (" + getAverageConvergence()
+			+ "ms avg, " + getMaximumConvergence() + "ms max) ROUTES (" + getRoutes()
+			+ ") INVOCATIONS (" + getInvocations() + ") FAILURES (" + getFailures() + ")";
+	}
+
+	/**
+	 * Completes the convergence time of the last change.
+	 */
+	private void converge() {
+		if (changed != -1 && discovered != -1) {
+			long convergence = discovered - changed;
+			totalConvergence += convergence;
+			maximumConvergence = Math.max(maximumConvergence, convergence);
+			converged += 1;
+		}
+		discovered = -1;
+	}
+
+	/**
+	 * Sums up the route computations of all routing plug-ins.
+	 *
+	 * @return The number of route computations.
+	 */
+	private long countRoutes() {
+		long result = 0;
+		for (int i = 0; i < routings.size(); i++) {
+			result += ((ProactiveRouting)routings.elementAt(i)).getComputations();
+		}
+		return result;
+	}
+
+	/**
+	 * Sums up the invocations or failed invocations of all brokers.
+	 *
+	 * @param failed True to count failed invocations, false to count
+	 * 	all invocations.
+	 * @return The number of invocations or failed invocations.
+	 */
+	private long countInvocations(boolean failed) {
+		long result = 0;
+		for (int i = 0; i < metrics.size(); i++) {
+			Metric[] ms = ((MetricRegistry)metrics.elementAt(i)).getMetrics();
+			for (int j = 0; j < ms.length; j++) {
+				if (ms[j].getAbility() == MetricRegistry.ABILITY_INVOCATION) {
+					result += failed?ms[j].getFailed():ms[j].getOpened();
+				}
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,172 @@
+package info.pppc.basex.plugin.transceiver.emulator;
+
+import info.pppc.base.system.event.IListener;
+import info.pppc.base.system.event.ListenerBundle;
+import info.pppc.base.system.util.Logging;
+
+import java.util.Vector;
+
+/**
+ * The replay applies the changes of a trace to a network. The changes
+ * are scheduled as transmissions of the network, thus, the replay does
+ * not need a thread of its own. The trace can be replayed in real time
+ * or accelerated by a constant factor. Note that only the times of the
+ * changes are accelerated, the link attributes and the periods of the
+ * plug-ins remain unchanged.
+ *
+ * @author Mac
+ */
+public class Replay {
+
+	/**
+	 * The event that signals that a change has been applied. The source
+	 * object will be the replay and the data object will be the change.
+	 */
+	public static final int EVENT_REPLAY_CHANGED = 1;
+
+	/**
+	 * The event that signals that all changes have been applied. The
+	 * source object will be the replay and the data object will be null.
+	 */
+	public static final int EVENT_REPLAY_FINISHED = 2;
+
+	/**
+	 * The network that is changed.
+	 */
+	private Network network;
+
+	/**
+	 * The changes of the trace ordered by time.
+	 */
+	private Change[] changes;
+
+	/**
+	 * The listeners that are notified about applied changes.
+	 */
+	private ListenerBundle listeners = new ListenerBundle(this);
+
+	/**
+	 * The number of changes that have not been applied yet or -1 if
+	 * the replay has not been started.
+	 */
+	private int remaining = -1;
+
+	/**
+	 * Creates a new replay of the specified changes.
+	 *
+	 * @param network The network that is changed.
+	 * @param changes The changes ordered by time as returned by the parser.
+	 */
+	public Replay(Network network, Vector changes) {
+		this.network = network;
+		this.changes = new Change[changes.size()];
+		changes.copyInto(this.changes);
+	}
+
+	/**
+	 * Adds a listener for the specified events.
+	 *
+	 * @param type The events to listen for.
+	 * @param listener The listener to add.
+	 */
+	public void addReplayListener(int type, IListener listener) {
+		listeners.addListener(type, listener);
+	}
+
+	/**
+	 * Removes the specified listener for the specified events.
+	 *
+	 * @param type The types of events.
+	 * @param listener The listener to remove.
+	 * @return True if removed, false otherwise.
+	 */
+	public boolean removeReplayListener(int type, IListener listener) {
+		return listeners.removeListener(type, listener);
+	}
+
+	/**
+	 * Starts the replay. The time of the trace starts now. Since the
+	 * changes are executed by the scheduler of the network, at least
+	 * one transceiver must be attached to the network. The replay is
+	 * aborted if all transceivers detach.
+	 *
+	 * @param speed The acceleration factor, 1 replays in real time.
+	 * @throws IllegalArgumentException Thrown if the speed is not positive.
+	 * @throws IllegalStateException Thrown if the replay has been started
+	 * 	already or if the scheduler of the network is not running.
+	 */
+	public void start(double speed) {
+		if (speed <= 0) {
+			throw new IllegalArgumentException("Speed must be positive.");
+		}
+		Scheduler scheduler = network.getScheduler();
+		synchronized (this) {
+			if (remaining != -1) {
+				throw new IllegalStateException("Replay has been started.");
+			}
+			if (! scheduler.isRunning()) {
+				throw new IllegalStateException("Network is not running.");
+			}
+			remaining = changes.length;
+		}
+		if (changes.length == 0) {
+			listeners.fireEvent(EVENT_REPLAY_FINISHED);
+			return;
+		}
+		long start = Scheduler.currentTime();
+		for (int i = 0; i < changes.length; i++) {
+			final Change change = changes[i];
+			scheduler.schedule(new Transmission() {
+				public void arrive() {
+					apply(change);
+				}
+			}, start + (long)(change.time * 1000 / speed));
+		}
+	}
+
+	/**
+	 * Determines whether all changes have been applied.
+	 *
+	 * @return True if the replay has finished, false otherwise.
+	 */
+	public synchronized boolean isFinished() {
+		return remaining == 0;
+	}
+
+	/**
+	 * Applies the specified change to the network and notifies the
+	 * listeners.
+	 *
+	 * @param change The change to apply.
+	 */
+	private void apply(Change change) {
+		Connection c = change.connection;
+		try {
+			switch (change.type) {
+				case Change.TYPE_CONNECT:
+					network.connect(c);
+					break;
+				case Change.TYPE_DISCONNECT:
+					network.disconnect(c.source, c.target);
+					break;
+				case Change.TYPE_UPDATE:
+					network.update(c);
+					break;
+				default:
+					Logging.debug(getClass(), "Unknown change type " + change.type + ".");
+			}
+		} catch (IllegalArgumentException e) {
+			Logging.error(getClass(), "Could not apply change to " + c.source + ":" + c.target + ".", e);
+		}
+		listeners.fireEvent(EVENT_REPLAY_CHANGED, change);
+		boolean finished;
+		synchronized (this) {
+			remaining -= 1;
+			finished = (remaining == 0);
+		}
+		if (finished) {
+			listeners.fireEvent(EVENT_REPLAY_FINISHED);
+		}
+	}
+
+}
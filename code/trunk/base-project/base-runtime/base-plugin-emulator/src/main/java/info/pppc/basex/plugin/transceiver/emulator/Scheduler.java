@@ -0,0 +1,195 @@
+package info.pppc.basex.plugin.transceiver.emulator;
+
+import info.pppc.base.system.util.Logging;
+
+/**
+ * The scheduler executes the transmissions of an emulated network in
+ * the order of their arrival times. Regardless of the number of devices
+ * and links, the scheduler uses a single thread and a binary heap. The
+ * arrival times are measured in microseconds of real time, thus, the
+ * scheduler waits until a transmission is due. The thread is started
+ * when the first transceiver attaches to the network and it is stopped
+ * when the last transceiver detaches, pending transmissions are dropped.
+ *
+ * @author Mac
+ */
+public class Scheduler implements Runnable {
+
+	/**
+	 * The initial capacity of the heap.
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * The heap of scheduled transmissions, the first element is
+	 * the transmission that arrives first.
+	 */
+	private Transmission[] heap = new Transmission[INITIAL_CAPACITY];
+
+	/**
+	 * The number of transmissions in the heap.
+	 */
+	private int size = 0;
+
+	/**
+	 * The sequence number of the last scheduled transmission.
+	 */
+	private long sequence = 0;
+
+	/**
+	 * The thread that executes the transmissions or null if the
+	 * scheduler is stopped.
+	 */
+	private Thread thread = null;
+
+	/**
+	 * Creates a new scheduler that is stopped.
+	 */
+	public Scheduler() {
+		super();
+	}
+
+	/**
+	 * Returns the current time of the scheduler in microseconds.
+	 *
+	 * @return The current time in microseconds.
+	 */
+	public static long currentTime() {
+		return System.currentTimeMillis() * 1000;
+	}
+
+	/**
+	 * Schedules the specified transmission for the specified time. If
+	 * the scheduler is stopped, the transmission is dropped.
+	 *
+	 * @param transmission The transmission to schedule.
+	 * @param time The arrival time in microseconds.
+	 */
+	public synchronized void schedule(Transmission transmission, long time) {
+		if (thread == null) return;
+		transmission.time = time;
+		transmission.sequence = sequence++;
+		if (size == heap.length) {
+			Transmission[] grown = new Transmission[heap.length * 2];
+			System.arraycopy(heap, 0, grown, 0, size);
+			heap = grown;
+		}
+		int index = size++;
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (! transmission.precedes(heap[parent])) break;
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = transmission;
+		if (index == 0) {
+			notify();
+		}
+	}
+
+	/**
+	 * Starts the scheduler thread if it is not running already.
+	 */
+	public synchronized void start() {
+		if (thread == null) {
+			thread = new Thread(this, "Emulator Scheduler");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Determines whether the scheduler thread is running.
+	 *
+	 * @return True if the scheduler is running, false otherwise.
+	 */
+	public synchronized boolean isRunning() {
+		return thread != null;
+	}
+
+	/**
+	 * Stops the scheduler thread and drops all pending transmissions.
+	 * The thread terminates after the current transmission has been
+	 * executed.
+	 */
+	public synchronized void stop() {
+		if (thread != null) {
+			thread = null;
+			for (int i = 0; i < size; i++) {
+				heap[i] = null;
+			}
+			size = 0;
+			notify();
+		}
+	}
+
+	/**
+	 * Executes the transmissions once they are due until the scheduler
+	 * is stopped or restarted with a different thread.
+	 */
+	public void run() {
+		Thread current = Thread.currentThread();
+		while (true) {
+			Transmission next = null;
+			synchronized (this) {
+				while (thread == current) {
+					if (size != 0) {
+						long delay = heap[0].time - currentTime();
+						if (delay <= 0) break;
+						waitFor((delay + 999) / 1000);
+					} else {
+						waitFor(0);
+					}
+				}
+				if (thread != current) return;
+				next = removeFirst();
+			}
+			try {
+				next.arrive();
+			} catch (Throwable t) {
+				Logging.error(getClass(), "Exception while executing transmission.", t);
+			}
+		}
+	}
+
+	/**
+	 * Waits on the monitor of the scheduler for the specified number
+	 * of milliseconds, a value of zero waits until a notification.
+	 *
+	 * @param millis The time to wait for.
+	 */
+	private void waitFor(long millis) {
+		try {
+			wait(millis);
+		} catch (InterruptedException e) {
+			Logging.error(getClass(), "Thread got interrupted.", e);
+		}
+	}
+
+	/**
+	 * Removes the transmission that arrives first from the heap.
+	 *
+	 * @return The transmission that arrives first.
+	 */
+	private Transmission removeFirst() {
+		Transmission first = heap[0];
+		Transmission last = heap[--size];
+		heap[size] = null;
+		if (size > 0) {
+			int index = 0;
+			while (true) {
+				int child = 2 * index + 1;
+				if (child >= size) break;
+				if (child + 1 < size && heap[child + 1].precedes(heap[child])) {
+					child += 1;
+				}
+				if (! heap[child].precedes(last)) break;
+				heap[index] = heap[child];
+				index = child;
+			}
+			heap[index] = last;
+		}
+		return first;
+	}
+
+}
@@ -0,0 +1,54 @@
+package info.pppc.basex.plugin.transceiver.emulator;
+
+/**
+ * A transmission is an event of the emulated network that is executed
+ * by the scheduler once its arrival time has been reached. Typical
+ * transmissions deliver a part of a stream, a packet or a connection
+ * request to the transceiver of a device.
+ *
+ * @author Mac
+ */
+public abstract class Transmission {
+
+	/**
+	 * The arrival time of the transmission in microseconds. This
+	 * is set by the scheduler.
+	 */
+	long time;
+
+	/**
+	 * The sequence number that orders transmissions with the same
+	 * arrival time. This is set by the scheduler.
+	 */
+	long sequence;
+
+	/**
+	 * Creates a new transmission.
+	 */
+	public Transmission() {
+		super();
+	}
+
+	/**
+	 * Called by the scheduler thread when the transmission arrives.
+	 * Implementations must not block since all transmissions of a
+	 * network are executed by the same thread.
+	 */
+	public abstract void arrive();
+
+	/**
+	 * Determines whether this transmission arrives before the specified
+	 * transmission.
+	 *
+	 * @param transmission The transmission to compare with.
+	 * @return True if this transmission arrives first, false otherwise.
+	 */
+	boolean precedes(Transmission transmission) {
+		if (time != transmission.time) {
+			return time < transmission.time;
+		} else {
+			return sequence < transmission.sequence;
+		}
+	}
+
+}
@@ -113,7 +113,7 @@ public class ProactiveRoutingGateway extends ProactiveRouting implements
 			throws IOException {
 		Vector announcement = new Vector();
 		PluginDescription[] plugins = manager
-				.getPluginDescriptions(SystemID.SYSTEM);
+				.getPluginDescriptions(SystemID.getLocal());
 		for (int i = 0; i < plugins.length; i++) {
 			PluginDescription pd = plugins[i];
 			// only announce transceivers
@@ -566,7 +566,7 @@ public class ProactiveRoutingGateway extends ProactiveRouting implements
 							.getInputStream());
 					NFCollection reqs = (NFCollection) input.readObject();
 					SystemID next = (SystemID) input.readObject();
-					if (next.equals(SystemID.SYSTEM)) {
+					if (next.equals(SystemID.getLocal())) {
 						manager.acceptSession(connector);
 					} else {
 						Vector route = getRoute(next);
@@ -710,7 +710,7 @@ public class ProactiveRoutingGateway extends ProactiveRouting implements
 								ObjectOutputStream out = new ObjectOutputStream(
 										c.getOutputStream());
 								InputStream in = c.getInputStream();
-								out.writeObject(SystemID.SYSTEM);
+								out.writeObject(SystemID.getLocal());
 								// announce all transceiver plugins to
 								// server
 								// for direct connections
@@ -718,7 +718,7 @@ public class ProactiveRoutingGateway extends ProactiveRouting implements
 
 								// announce connection to this system
 								out.writeObject(Static.TRUE);
-								out.writeObject(SystemID.SYSTEM);
+								out.writeObject(SystemID.getLocal());
 
 								out.flush();
 								routerFactory = f;
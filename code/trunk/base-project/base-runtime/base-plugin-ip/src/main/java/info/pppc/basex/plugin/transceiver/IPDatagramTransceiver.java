@@ -0,0 +1,673 @@
+package info.pppc.basex.plugin.transceiver;
+
+import info.pppc.base.system.ISession;
+import info.pppc.base.system.PluginDescription;
+import info.pppc.base.system.event.IListener;
+import info.pppc.base.system.event.ListenerBundle;
+import info.pppc.base.system.nf.NFCollection;
+import info.pppc.base.system.operation.IMonitor;
+import info.pppc.base.system.operation.IOperation;
+import info.pppc.base.system.operation.NullMonitor;
+import info.pppc.base.system.plugin.IConnector;
+import info.pppc.base.system.plugin.IPacketConnector;
+import info.pppc.base.system.plugin.IStreamConnector;
+import info.pppc.base.system.plugin.ITransceiver;
+import info.pppc.base.system.plugin.ITransceiverManager;
+import info.pppc.base.system.util.Logging;
+import info.pppc.basex.plugin.transceiver.ip.DatagramEndpoint;
+import info.pppc.basex.plugin.transceiver.ip.DatagramStreamConnector;
+import info.pppc.basex.plugin.transceiver.ip.IDatagramPlugin;
+import info.pppc.basex.plugin.transceiver.ip.IPPacketConnector;
+import info.pppc.basex.plugin.transceiver.ip.IPStreamConnector;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.UnknownHostException;
+import java.nio.channels.DatagramChannel;
+import java.util.Vector;
+
+/**
+ * The ip datagram transceiver plug-in delivers a transport end point based
+ * on udp. Unicast channels are reliable streams that are transferred over
+ * a single datagram socket. In contrast to tcp, a session does not require
+ * a handshake and its state is removed without waiting for a close, thus,
+ * a small invocation and its result are transferred in a single round trip.
+ * This makes the plug-in suitable for frequent short-lived sessions.
+ * Broadcast channels are implemented with multicast sockets. The plug-in
+ * requires J2SE.
+ *
+ * @author Mac
+ */
+public class IPDatagramTransceiver implements IDatagramPlugin, ITransceiver, IOperation {
+
+	/**
+	 * The ability of the plug-in. [1][11].
+	 */
+	private static final short PLUGIN_ABILITY = 0x010b;
+
+	/**
+	 * The property name of the ip address. This is used to determine
+	 * the ip address of a remote system through its plug-in description.
+	 */
+	private static final String PROPERTY_ADDRESS = "AD";
+
+	/**
+	 * The property name of the port number. This is used to determine
+	 * the port number of a remote system through its plug-in description.
+	 */
+	private static final String PROPERTY_PORT = "PT";
+
+	/**
+	 * The reconnection period. Whenever the plug-in is enabled, it tries
+	 * to open a datagram socket on the specified network interface and
+	 * port. If the socket cannot be opened, this value indicates the
+	 * sleep time (in milliseconds) between open requests.
+	 */
+	private static final int RECONNECT_PERIOD = 5000;
+
+	/**
+	 * The maximum packet length for datagram packets sent by the
+	 * packet connector.
+	 */
+	private static final int PACKET_LENGTH = 2048;
+
+	/**
+	 * Raw addresses that are never used to open the datagram socket.
+	 * The format is an array of byte arrays that contains addresses
+	 * or address fragments. The filter algorithm will check whether
+	 * the address of the interface matches the complete sequence of
+	 * bytes, ex. 127.0.0.1 will reject the local host interface,
+	 * 129.69 will reject all ips starting with 129.69.
+	 */
+	private static final byte[][] ADDRESS_FILTER = {
+		new byte[]{ 127, 0, 0, 1 },       // do not connect to localhost
+		new byte[]{ (byte)169, (byte)254} // do not connect to autoip
+	};
+
+	/**
+	 * The broadcast address used to create broadcast sockets.
+	 */
+	private static final byte[] BROADCAST_ADDRESS = new byte[] {
+		(byte)224, (byte)12, (byte)0, (byte)4
+	};
+
+	/**
+	 * The port of the broadcast socket. This differs from the port of
+	 * the multicast transceiver such that both plug-ins can be used
+	 * at the same time.
+	 */
+	private static final int BROADCAST_PORT = 2239;
+
+	/**
+	 * The end point listeners that keep track of changes to the state
+	 * of the end point.
+	 */
+	private ListenerBundle listeners = new ListenerBundle(this);
+
+	/**
+	 * A list of connectors that is currently opened. This list is
+	 * maintained by the connectors. It ensures that a disable
+	 * operation is performed completely.
+	 */
+	private Vector connectors = new Vector();
+
+	/**
+	 * The plug-in manager used to perform operations and to signal
+	 * incoming connections.
+	 */
+	private ITransceiverManager manager = null;
+
+	/**
+	 * A flag that indicates whether the end point is enabled.
+	 */
+	private boolean enabled = false;
+
+	/**
+	 * A flag that indicates whether the plug-in has been started already
+	 * or whether it is currently stopped.
+	 */
+	private boolean started = false;
+
+	/**
+	 * The plug-in description of the ip plug-in.
+	 */
+	private PluginDescription description;
+
+	/**
+	 * The address to which this plug-in is bound. If the address is set to
+	 * null, the first interface on the host that is not loop back is used.
+	 * A default address can be enforced using the constructor that receives
+	 * an address.
+	 */
+	private byte[] address = null;
+
+	/**
+	 * The port that is used to receive datagrams. Initially, the port
+	 * is 0 (= any). After the plug-in has been enabled, the port is fixed.
+	 */
+	private int port = 0;
+
+	/**
+	 * The end point that multiplexes the sessions over the datagram
+	 * socket or null if the socket is not open.
+	 */
+	private DatagramEndpoint endpoint = null;
+
+	/**
+	 * The monitor that is used to monitor and cancel the reception operation.
+	 */
+	private NullMonitor monitor = null;
+
+	/**
+	 * The number of received packets that are queued for delivery by
+	 * a separate thread. If the length is 0, packets are delivered by
+	 * the thread that receives them.
+	 */
+	private int queue = 0;
+
+	/**
+	 * Creates a new instance of the plug-in that binds to any ip address
+	 * and port number that is available on the local system.
+	 */
+	public IPDatagramTransceiver() {
+		this(null);
+	}
+
+	/**
+	 * Creates a new instance of the plug-in that binds only to the specified
+	 * ip address. Note that the bytes are interpreted in 2 complement. The
+	 * first byte is the most significant.
+	 *
+	 * @param address The ip address to bind to or null to bind to any address.
+	 * @throws IllegalArgumentException Thrown if the address does not
+	 * 	indicate a valid ip address or if the address is part of the
+	 * 	filter list.
+	 */
+	public IPDatagramTransceiver(byte[] address) {
+		if (address != null) {
+			if (address.length == 4) {
+				filters: for (int i = 0; i < ADDRESS_FILTER.length; i++) {
+					byte[] filter = ADDRESS_FILTER[i];
+					for (int j = 0; j < filter.length; j++) {
+						if (filter[j] != address[j]) continue filters;
+					}
+					throw new IllegalArgumentException("The address matches a filter.");
+				}
+				this.address = address;
+			} else {
+				throw new IllegalArgumentException("The address length must be 4.");
+			}
+		}
+	}
+
+	/**
+	 * Returns the transceiver manager of the transceiver or null
+	 * if none is set.
+	 *
+	 * @return The transceiver manager of the plug-in.
+	 */
+	protected ITransceiverManager getTransceiverManager() {
+		return manager;
+	}
+
+	/**
+	 * Called by the plug-in manager during initialization of the plug-in.
+	 * A call to this method will overwrite the currently stored reference
+	 * to a potentially already initialized manager. This should not be
+	 * a problem except if the same plug-in instance is installed twice.
+	 *
+	 * @param manager The manager of the plug-in used to interface with
+	 * 	other plug-ins and to retrieve connection parameters.
+	 */
+	public void setTransceiverManager(ITransceiverManager manager) {
+		this.manager = manager;
+	}
+
+	/**
+	 * Called when the operation is started. The operation opens a
+	 * datagram socket on an interface and dispatches the incoming
+	 * datagrams to the sessions of the end point. If the socket cannot
+	 * be opened, the operation retries every RECONNECT_PERIOD milliseconds.
+	 * If the monitor is canceled, the operation is finished.
+	 *
+	 * @param monitor The monitor that is used to signal changes.
+	 * @throws Exception Should never happen.
+	 */
+	public void perform(IMonitor monitor) throws Exception {
+		while (! monitor.isCanceled()) {
+			DatagramSocket socket = null;
+			try {
+				socket = getDatagramSocket();
+			} catch (IOException e) {
+				Logging.error(getClass(), "Error while opening socket.", e);
+				synchronized (monitor) {
+					if (! monitor.isCanceled()) {
+						monitor.wait(RECONNECT_PERIOD);
+					}
+				}
+				continue;
+			}
+			DatagramEndpoint e = new DatagramEndpoint(this, manager, socket);
+			synchronized (this) {
+				endpoint = e;
+			}
+			e.start();
+			try {
+				e.receive(monitor);
+			} catch (IOException ex) {
+				Logging.error(getClass(), "Error while receiving datagram.", ex);
+			}
+			synchronized (this) {
+				endpoint = null;
+			}
+			e.close();
+		}
+	}
+
+	/**
+	 * Called in order to prepare a session. Updates the session with local
+	 * attributes regarding the address and port of the remote system.
+	 *
+	 * @param description The description of the remote system.
+	 * @param collection The requirements regarding the communication.
+	 * @param session The session that holds the attributes.
+	 * @return True if the session can be established, false if the port or
+	 * 	the address are not set.
+	 */
+	public boolean prepareSession(PluginDescription description, NFCollection collection, ISession session) {
+		if (description == null) {
+			return false;
+		}
+		byte[] address = (byte[])description.getProperty(PROPERTY_ADDRESS);
+		if (address == null || address.length != 4){
+			return false;
+		}
+		Integer port = (Integer)description.getProperty(PROPERTY_PORT);
+		if (port == null) {
+			return false;
+		}
+		session.setLocal(new Object[] { address, port });
+		return true;
+	}
+
+	/**
+	 * Opens a connection to the specified system. A call to this method
+	 * will first determine whether it is possible to open a connection.
+	 * If it is not possible due to the state of the plug-in (e.g., if it
+	 * is disabled) an exception will be thrown. Since there is no handshake,
+	 * the connector is returned immediately and a remote system that is
+	 * not reachable is detected when the first bytes are transferred.
+	 *
+	 * @param session The session data that has been prepared by the
+	 * 	prepare method.
+	 * @return The connector for the session.
+	 * @throws IOException Thrown if the connector cannot be opened.
+	 */
+	public IStreamConnector openSession(ISession session) throws IOException {
+		checkPlugin();
+		byte[] address = (byte[])((Object[])session.getLocal())[0];
+		Integer port = (Integer)((Object[])session.getLocal())[1];
+		String name = (address[0] & 0xFF) + "." + (address[1] & 0xFF) + "." +
+			(address[2] & 0xFF) + "." + (address[3] & 0xFF);
+		InetAddress ip = InetAddress.getByName(name);
+		synchronized (this) {
+			if (endpoint == null) {
+				throw new IOException("Socket not open.");
+			}
+			DatagramStreamConnector connector = endpoint.connect(ip, port.intValue());
+			connectors.addElement(connector);
+			return connector;
+		}
+	}
+
+	/**
+	 * Opens a connector that connects to the group. A call to this method
+	 * will first determine whether it is possible to open a connection.
+	 * If it is not possible due to the state of the plug-in (e.g., if it
+	 * is disabled) an exception will be thrown.
+	 *
+	 * @return The connector for the group.
+	 * @throws IOException Thrown if the connector cannot be opened.
+	 */
+	public synchronized IPacketConnector openGroup() throws IOException {
+		checkPlugin();
+		String name = (BROADCAST_ADDRESS[0] & 0xFF) + "." + (BROADCAST_ADDRESS[1] & 0xFF) + "." +
+			(BROADCAST_ADDRESS[2] & 0xFF) + "." + (BROADCAST_ADDRESS[3] & 0xFF);
+		InetAddress ip = InetAddress.getByName(name);
+		Logging.debug(getClass(), "Joining group on " + ip.getHostAddress());
+		MulticastSocket socket = getMulticastSocket(ip);
+		IPPacketConnector connector = new IPPacketConnector(this, socket, ip, PACKET_LENGTH, manager, queue);
+		connectors.addElement(connector);
+		manager.performOperation(connector);
+		return connector;
+	}
+
+	/**
+	 * Called by the datagram end point when a remote system has opened
+	 * a new session. The session is accepted if the plug-in is enabled.
+	 *
+	 * @param connector The connector of the incoming session.
+	 * @return True if the session has been accepted, false otherwise.
+	 */
+	public boolean accept(DatagramStreamConnector connector) {
+		synchronized (this) {
+			if (! enabled) return false;
+			connectors.addElement(connector);
+		}
+		manager.acceptSession(connector);
+		return true;
+	}
+
+	/**
+	 * Called by the plug-in manager to start the stopped plug-in. A call to
+	 * this method will enable the end point in such a way that it will
+	 * enable incoming and outgoing connections.
+	 */
+	public void start() {
+		if (! started) {
+			started = true;
+			setEnabled(true);
+		}
+	}
+
+	/**
+	 * Called by the plug-in manager to stop the started plug-in. A call
+	 * to this method will automatically close all incoming and outgoing
+	 * connections and it will disable the end point.
+	 */
+	public void stop() {
+		if (started) {
+			setEnabled(false);
+			started = false;
+		}
+	}
+
+	/**
+	 * Returns the description of the plug-in.
+	 *
+	 * @return The plugin's description.
+	 */
+	public PluginDescription getPluginDescription() {
+		if (description == null) {
+			description = new PluginDescription
+					(PLUGIN_ABILITY, EXTENSION_TRANSCEIVER);
+		}
+		return description;
+	}
+
+	/**
+	 * Adds a listener to the bundle of registered end point listeners. The
+	 * properly registered listeners will be informed if the state of the
+	 * end point changes.
+	 *
+	 * @param type The type of event to register for.
+	 * @param listener The listener to register.
+	 * @throws NullPointerException Thrown if the listener is null.
+	 */
+	public void addTransceiverListener(int type, IListener listener)
+			throws NullPointerException {
+		listeners.addListener(type, listener);
+	}
+
+	/**
+	 * Removes a potentially previously registered end point listener for a
+	 * certain type of event.
+	 *
+	 * @param type The type to unregister from.
+	 * @param listener The listener to unregister.
+	 * @return True if the listener is no longer registered, false if the
+	 * 	listener has not been registered.
+	 * @throws NullPointerException Thrown if the listener is null.
+	 */
+	public boolean removeTransceiverListener(int type, IListener listener)
+			throws NullPointerException {
+		return listeners.removeListener(type, listener);
+	}
+
+	/**
+	 * Enables or disables the end point provided by the plug-in and
+	 * notifies all listeners if the state has changed.
+	 *
+	 * @param enabled Set true to enable and false to disable.
+	 */
+	public void setEnabled(boolean enabled) {
+		synchronized (this) {
+			if (! started || this.enabled == enabled) {
+				return;
+			} else {
+				this.enabled = enabled;
+			}
+		}
+		if (enabled) {
+			enablePlugin();
+			listeners.fireEvent(EVENT_TRANCEIVER_ENABLED);
+		} else {
+			disablePlugin();
+			listeners.fireEvent(EVENT_TRANCEIVER_DISABLED);
+		}
+	}
+
+	/**
+	 * Determines whether the end point provided by the plug-in is enabled.
+	 *
+	 * @return True if the end point provided by the plug-in is enabled,
+	 * 	false otherwise.
+	 */
+	public synchronized boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Returns the address of the datagram socket.
+	 *
+	 * @return The address of the datagram socket.
+	 */
+	public byte[] getAddress() {
+		return address;
+	}
+
+	/**
+	 * Sets the address of the datagram socket.
+	 * This method must not be called while
+	 * the plug-in is enabled.
+	 *
+	 * @param address The new address.
+	 */
+	public void setAddress(byte[] address) {
+		this.address = address;
+	}
+
+	/**
+	 * Returns the port of the datagram socket.
+	 *
+	 * @return The port of the datagram socket.
+	 */
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * Sets the number of received packets that are queued for delivery
+	 * by a separate thread. A queue decouples the reception of packets
+	 * from slow listeners. If the length is 0, packets are delivered by
+	 * the thread that receives them. This method must not be called
+	 * while the plug-in is enabled.
+	 * 
+	 * @param queue The length of the queue or 0 to disable queuing.
+	 */
+	public void setQueueLength(int queue) {
+		this.queue = queue;
+	}
+
+	/**
+	 * Returns the number of received packets that are queued for
+	 * delivery by a separate thread.
+	 * 
+	 * @return The length of the queue or 0 if queuing is disabled.
+	 */
+	public int getQueueLength() {
+		return queue;
+	}
+
+	/**
+	 * Releases the specified connector by removing it from the
+	 * list of open connectors.
+	 *
+	 * @param connector The connector to remove from the list of
+	 * 	connectors.
+	 */
+	public synchronized void release(DatagramStreamConnector connector) {
+		connectors.removeElement(connector);
+	}
+
+	/**
+	 * Releases the specified connector by removing it from the
+	 * list of open connectors. This plug-in does not create such
+	 * connectors.
+	 *
+	 * @param connector The connector to remove from the list of
+	 * 	connectors.
+	 */
+	public synchronized void release(IPStreamConnector connector) {
+		connectors.removeElement(connector);
+	}
+
+	/**
+	 * Releases the specified connector by removing it from the
+	 * list of open connectors.
+	 *
+	 * @param connector The connector to remove from the list of
+	 * 	connectors.
+	 */
+	public synchronized void release(IPPacketConnector connector) {
+		connectors.removeElement(connector);
+	}
+
+	/**
+	 * Validates whether the plug-in can open a connection and respond to
+	 * connection requests. This method throws an exception if the current
+	 * state of the plug-in does not allow the initialization or a
+	 * connector.
+	 */
+	private void checkPlugin() {
+		if (manager == null) throw new RuntimeException("Manager not set.");
+		if (! started) throw new RuntimeException("Plugin not started.");
+		if (! enabled) throw new RuntimeException("Endpoint not enabled.");
+	}
+
+	/**
+	 * Enables the reception of incoming datagrams.
+	 */
+	protected void enablePlugin() {
+		monitor = new NullMonitor();
+		manager.performOperation(this, monitor);
+	}
+
+	/**
+	 * Disables the reception of incoming datagrams and closes all
+	 * currently incoming and outgoing connections.
+	 */
+	protected void disablePlugin() {
+		// close all opened connectors, removal is automatic
+		for (int i = connectors.size() - 1; i >= 0; i--) {
+			IConnector c = (IConnector)connectors.elementAt(i);
+			c.release();
+		}
+		// end reception, this resets the remaining sessions
+		try {
+			monitor.cancel();
+			monitor.join();
+		} catch (InterruptedException e) {
+			Logging.error(getClass(), "Thread got interrupted.", e);
+		}
+	}
+
+	/**
+	 * Retrieves the address of the interface that should be used
+	 * by this receiver.
+	 *
+	 * @return The address that should be used by the receive operation
+	 * 	or null if no such address can be found. This can happen for
+	 * 	instance if a wireless network interface is not able to bootstrap.
+	 * @throws UnknownHostException Thrown if the local host ip address
+	 * 	or interface cannot be opened.
+	 */
+	protected InetAddress getInetAddress() throws UnknownHostException {
+		// initialize with the required interface
+		String hostname = null;
+		if (address != null) {
+			hostname = (address[0] & 0xFF) + "." + (address[1] & 0xFF) + "." +
+				(address[2] & 0xFF) + "." + (address[3] & 0xFF);
+		} else {
+			hostname = InetAddress.getLocalHost().getHostName();
+		}
+		InetAddress[] addresses = InetAddress.getAllByName(hostname);
+		// remove filtered addresses
+		ips: for (int i = 0; i < addresses.length; i++) {
+			byte[] ip = addresses[i].getAddress();
+			filters: for (int j = 0; j < ADDRESS_FILTER.length; j++) {
+				byte[] filter = ADDRESS_FILTER[j];
+				for (int k = 0; k < filter.length; k++) {
+					if (filter[k] != ip[k]) continue filters;
+				}
+				continue ips;
+			}
+			address = ip;
+			return addresses[i];
+		}
+		throw new UnknownHostException("Cannot find valid IP.");
+	}
+
+	/**
+	 * Tries to open a datagram socket on the current port and address
+	 * without using the filtered addresses.
+	 *
+	 * @return A datagram socket that is bound to the current address and port.
+	 * @throws IOException Thrown if the socket cannot be opened.
+	 */
+	private DatagramSocket getDatagramSocket() throws IOException {
+		InetAddress ip = getInetAddress();
+		// the channel is used in blocking mode, its socket is
+		// closed asynchronously when the plug-in is disabled
+		DatagramSocket socket = DatagramChannel.open().socket();
+		try {
+			socket.bind(new InetSocketAddress(ip, port));
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+		port = socket.getLocalPort();
+		PluginDescription d = getPluginDescription();
+		d.setProperty(PROPERTY_PORT, new Integer(port), true);
+		d.setProperty(PROPERTY_ADDRESS, address, true);
+		Logging.log(getClass(), "Running datagram socket on " +
+			(address[0] & 0xFF) + "." + (address[1] & 0xFF) + "." +
+			(address[2] & 0xFF) + "." + (address[3] & 0xFF) + ":" +
+			port + "."
+		);
+		return socket;
+	}
+
+	/**
+	 * Tries to open a multicast socket that is bound to the specified group.
+	 *
+	 * @param target The target group to bind to.
+	 * @return The socket connected to the multicast group.
+	 * @throws IOException Thrown if the socket cannot be opened.
+	 */
+	private MulticastSocket getMulticastSocket(InetAddress target) throws IOException {
+		InetAddress ip = getInetAddress();
+		MulticastSocket socket = new MulticastSocket(BROADCAST_PORT);
+		try {
+			socket.setInterface(ip);
+		} catch (IOException e) {
+			Logging.debug(getClass(), "Could not set multicast interface.");
+		}
+		socket.joinGroup(target);
+		return socket;
+	}
+
+}
@@ -14,16 +14,21 @@ import info.pppc.base.system.plugin.IStreamConnector;
 import info.pppc.base.system.plugin.ITransceiver;
 import info.pppc.base.system.plugin.ITransceiverManager;
 import info.pppc.base.system.util.Logging;
-import info.pppc.basex.plugin.transceiver.ip.IIPPlugin;
+import info.pppc.basex.plugin.transceiver.ip.IPConnectionPool;
 import info.pppc.basex.plugin.transceiver.ip.IPPacketConnector;
+import info.pppc.basex.plugin.transceiver.ip.IPPooledConnector;
 import info.pppc.basex.plugin.transceiver.ip.IPStreamConnector;
+import info.pppc.basex.plugin.transceiver.ip.IPooledPlugin;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.MulticastSocket;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.net.UnknownHostException;
 import java.util.Vector;
 
@@ -35,7 +40,7 @@ import java.util.Vector;
  * 
  * @author Marcus Handte
  */
-public class IPMulticastTransceiver implements IIPPlugin, ITransceiver, IOperation {
+public class IPMulticastTransceiver implements IPooledPlugin, ITransceiver, IOperation {
 
 	/**
 	 * The ability of the plug-in. [1][0].
@@ -53,6 +58,14 @@ public class IPMulticastTransceiver implements IIPPlugin, ITransceiver, IOperati
 	 * the port number of a remote system through its plug-in description.
 	 */
 	private static final String PROPERTY_PORT = "PT";
+
+	/**
+	 * The property name of the port number for pooled connections. This
+	 * is used to determine whether a remote system keeps connections open
+	 * between sessions. Remote systems that do not set this property
+	 * receive one connection per session.
+	 */
+	private static final String PROPERTY_POOL = "PP";
 	
 	/**
 	 * The reconnection period. Whenever the plug-in is enabled, it tries
@@ -161,6 +174,34 @@ public class IPMulticastTransceiver implements IIPPlugin, ITransceiver, IOperati
 	 * The monitor that is used to monitor and cancel the reception operation.
 	 */
 	private NullMonitor monitor = null; 
+
+	/**
+	 * A flag that indicates whether the stream sockets will be created
+	 * from channels. Channels enable zero-copy bulk transfers but the
+	 * streams of channel sockets may serialize concurrent reads and
+	 * writes on some platforms.
+	 */
+	private boolean channels = false;
+
+	/**
+	 * The number of received packets that are queued for delivery by
+	 * a separate thread. If the length is 0, packets are delivered by
+	 * the thread that receives them.
+	 */
+	private int queue = 0;
+
+	/**
+	 * The pool that keeps the connections to remote systems open between
+	 * sessions and that caches the socket addresses of remote systems.
+	 */
+	private IPConnectionPool pool;
+
+	/**
+	 * The address of the interface used by the running server socket. The
+	 * address is resolved whenever the server socket is opened and it is
+	 * reused for outgoing connections.
+	 */
+	private volatile InetAddress local = null;
 	
 	/**
 	 * Creates a new instance of the plug-in that binds to any ip address
@@ -210,6 +251,7 @@ public class IPMulticastTransceiver implements IIPPlugin, ITransceiver, IOperati
 	 */
 	public IPMulticastTransceiver(byte[] address, boolean nodelay) {
 		this.nodelay = nodelay;
+		this.pool = new IPConnectionPool(this, nodelay);
 		if (address != null) {
 			if (address.length == 4) {
 				filters: for (int i = 0; i < ADDRESS_FILTER.length; i++) {
@@ -301,17 +343,21 @@ public class IPMulticastTransceiver implements IIPPlugin, ITransceiver, IOperati
 					Logging.error(getClass(), "Error while closing erronous socket.", ioe);
 				}
 				server = null;
+				pool.close();
 			} 
 		}
 		// finally close the server socket used to accept incoming calls. 
 		if (server != null) {
 			server.close();
 		}
+		pool.close();
 	}
 
 	/**
 	 * Called in order to prepare a session. Updates the session with local
-	 * attributes regarding the address and port of the remote system.
+	 * attributes regarding the address and port of the remote system. If
+	 * the remote system accepts pooled connections, the session also
+	 * contains the port for pooled connections.
 	 * 
 	 * @param description The description of the remote system.
 	 * @param collection The requirements regarding the communication.
@@ -331,7 +377,8 @@ public class IPMulticastTransceiver implements IIPPlugin, ITransceiver, IOperati
 		if (port == null) {
 			return false;
 		}
-		session.setLocal(new Object[] { address, port });
+		Integer reuse = (Integer)description.getProperty(PROPERTY_POOL);
+		session.setLocal(new Object[] { address, port, reuse });
 		return true;
 		
 	}
@@ -341,7 +388,9 @@ public class IPMulticastTransceiver implements IIPPlugin, ITransceiver, IOperati
 	 * Opens a connection to the specified system. A call to this method
 	 * will first determine whether it is possible to open a connection.
 	 * If it is not possible due to the state of the plug-in (e.g., if it
-	 * is disabled) an exception will be thrown.
+	 * is disabled) an exception will be thrown. If the remote system
+	 * accepts pooled connections, the session reuses an idle connection
+	 * of the pool. Otherwise, a new socket is opened for the session.
 	 * 
 	 * @param session The session data that has been prepared by the 
 	 * 	prepare method.
@@ -350,13 +399,17 @@ public class IPMulticastTransceiver implements IIPPlugin, ITransceiver, IOperati
 	 */
 	public IStreamConnector openSession(ISession session) throws IOException {
 		checkPlugin();
-		byte[] address = (byte[])((Object[])session.getLocal())[0];
-		Integer port = (Integer)((Object[])session.getLocal())[1];
-		String name = (address[0] & 0xFF) + "." + (address[1] & 0xFF) + "." +
-			(address[2] & 0xFF) + "." + (address[3] & 0xFF);
-		InetAddress ip = InetAddress.getByName(name);
-		Socket socket = getClientSocket(ip, port.intValue());
-		IPStreamConnector connector = new IPStreamConnector(this, socket);
+		Object[] data = (Object[])session.getLocal();
+		byte[] address = (byte[])data[0];
+		Integer port = (Integer)data[1];
+		Integer reuse = (Integer)data[2];
+		IStreamConnector connector = null;
+		if (reuse != null) {
+			connector = pool.connect(getLocalAddress(), address, reuse.intValue());
+		} else {
+			InetSocketAddress target = pool.getAddress(address, port.intValue());
+			connector = new IPStreamConnector(this, getClientSocket(target));
+		}
 		synchronized (this) {
 			connectors.addElement(connector);	
 		}
@@ -379,7 +432,7 @@ public class IPMulticastTransceiver implements IIPPlugin, ITransceiver, IOperati
 		InetAddress ip = InetAddress.getByName(name);
 		Logging.debug(getClass(), "Joining group on " + ip.getHostAddress());
 		MulticastSocket socket = getMulticastSocket(ip);
-		IPPacketConnector connector = new IPPacketConnector(this, socket, ip, PACKET_LENGTH);
+		IPPacketConnector connector = new IPPacketConnector(this, socket, ip, PACKET_LENGTH, manager, queue);
 		connectors.addElement(connector);
 		manager.performOperation(connector);
 		return connector;
@@ -513,6 +566,52 @@ public class IPMulticastTransceiver implements IIPPlugin, ITransceiver, IOperati
 		return port;
 	}
 
+	/**
+	 * Sets the number of received packets that are queued for delivery
+	 * by a separate thread. A queue decouples the reception of packets
+	 * from slow listeners. If the length is 0, packets are delivered by
+	 * the thread that receives them. This method must not be called
+	 * while the plug-in is enabled.
+	 * 
+	 * @param queue The length of the queue or 0 to disable queuing.
+	 */
+	public void setQueueLength(int queue) {
+		this.queue = queue;
+	}
+
+	/**
+	 * Returns the number of received packets that are queued for
+	 * delivery by a separate thread.
+	 * 
+	 * @return The length of the queue or 0 if queuing is disabled.
+	 */
+	public int getQueueLength() {
+		return queue;
+	}
+
+	/**
+	 * Determines whether the stream sockets will be created from channels
+	 * which enables zero-copy transfers of files and buffers. By default,
+	 * plain sockets are used since the streams of channel sockets may not
+	 * support concurrent reads and writes on some platforms. This method
+	 * must not be called while the plug-in is enabled.
+	 * 
+	 * @param channels True to create sockets from channels, false to use
+	 * 	plain sockets.
+	 */
+	public void setChannels(boolean channels) {
+		this.channels = channels;
+	}
+
+	/**
+	 * Determines whether the stream sockets are created from channels.
+	 * 
+	 * @return True if sockets are created from channels, false otherwise.
+	 */
+	public boolean isChannels() {
+		return channels;
+	}
+
 	/**
 	 * Releases the specified connector by removing it from the 
 	 * list of open connectors.
@@ -535,6 +634,34 @@ public class IPMulticastTransceiver implements IIPPlugin, ITransceiver, IOperati
 		connectors.removeElement(connector);
 	}
 
+	/**
+	 * Called by the connection pool when a remote system has started a
+	 * new session on a pooled connection. The session is accepted if
+	 * the plug-in is enabled.
+	 * 
+	 * @param connector The connector of the incoming session.
+	 * @return True if the session has been accepted, false otherwise.
+	 */
+	public boolean accept(IPPooledConnector connector) {
+		synchronized (this) {
+			if (! enabled) return false;
+			connectors.addElement(connector);
+		}
+		manager.acceptSession(connector);
+		return true;
+	}
+
+	/**
+	 * Releases the specified connector by removing it from the 
+	 * list of open connectors.
+	 * 
+	 * @param connector The connector to remove from the list of
+	 * 	connectors.
+	 */
+	public synchronized void release(IPPooledConnector connector) {
+		connectors.removeElement(connector);
+	}
+
 	/**
 	 * Validates whether the plug-in can open a connection and respond to
 	 * connection requests. This method throws an exception if the current
@@ -612,6 +739,22 @@ public class IPMulticastTransceiver implements IIPPlugin, ITransceiver, IOperati
 		throw new UnknownHostException("Cannot find valid IP.");
 	}
 
+	/**
+	 * Returns the address of the interface used by the server socket. The
+	 * address is only resolved if the server socket is not running.
+	 * 
+	 * @return The address of the local interface.
+	 * @throws UnknownHostException Thrown if the local host ip address
+	 * 	or interface cannot be opened.
+	 */
+	private InetAddress getLocalAddress() throws UnknownHostException {
+		InetAddress ip = local;
+		if (ip == null) {
+			ip = getInetAddress();
+		}
+		return ip;
+	}
+
 	/**
 	 * Tries to open a server socket on the current port and address without
 	 * using the filtered addresses.
@@ -621,12 +764,26 @@ public class IPMulticastTransceiver implements IIPPlugin, ITransceiver, IOperati
 	 */
 	private ServerSocket getServerSocket() throws IOException {
 		InetAddress ip = getInetAddress();
-		ServerSocket server = new ServerSocket(port, 10, ip);
-		server.setSoTimeout(TIMEOUT_PERIOD);
+		// channels enable zero-copy transfers of accepted sockets
+		ServerSocket server = channels ? ServerSocketChannel.open().socket() : new ServerSocket();
+		try {
+			server.bind(new InetSocketAddress(ip, port), 10);
+			server.setSoTimeout(TIMEOUT_PERIOD);
+		} catch (IOException e) {
+			server.close();
+			throw e;
+		}
 		port = server.getLocalPort();
 		PluginDescription d = getPluginDescription();
 		d.setProperty(PROPERTY_PORT, new Integer(port), true);
 		d.setProperty(PROPERTY_ADDRESS, address, true);
+		local = ip;
+		try {
+			d.setProperty(PROPERTY_POOL, new Integer(pool.open(ip, manager)), true);
+		} catch (IOException e) {
+			Logging.error(getClass(), "Error while opening pooled server.", e);
+			d.unsetProperty(PROPERTY_POOL);
+		}
 		Logging.log(getClass(), "Running server on " +
 			(address[0] & 0xFF) + "." + (address[1] & 0xFF) + "." +
 			(address[2] & 0xFF) + "." + (address[3] & 0xFF) + ":" + 
@@ -636,18 +793,25 @@ public class IPMulticastTransceiver implements IIPPlugin, ITransceiver, IOperati
 	}
 
 	/**
-	 * Tries to open a client socket on the current port and address that is
-	 * connected with the specified port and address.
+	 * Tries to open a client socket on the current address that is
+	 * connected with the specified socket address.
 	 * 
-	 * @param target The target system to connect to.
-	 * @param port The target port to connect to.
-	 * @return The socket connected to the port.
+	 * @param target The socket address of the target system.
+	 * @return The socket connected to the target.
 	 * @throws IOException Thrown if the socket cannot be opened.
 	 */
-	private Socket getClientSocket(InetAddress target, int port) throws IOException {
-		InetAddress ip = getInetAddress();
-		Socket socket = new Socket(target, port, ip, 0);
-		socket.setTcpNoDelay(nodelay);
+	private Socket getClientSocket(InetSocketAddress target) throws IOException {
+		InetAddress ip = getLocalAddress();
+		// channels enable zero-copy transfers
+		Socket socket = channels ? SocketChannel.open().socket() : new Socket();
+		try {
+			socket.bind(new InetSocketAddress(ip, 0));
+			socket.connect(target);
+			socket.setTcpNoDelay(nodelay);
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
 		return socket;		 		
 	}
 	
@@ -659,7 +823,7 @@ public class IPMulticastTransceiver implements IIPPlugin, ITransceiver, IOperati
 	 * @throws IOException Thrown if the socket cannot be opened.
 	 */
 	private MulticastSocket getMulticastSocket(InetAddress target) throws IOException {
-		InetAddress ip = getInetAddress();
+		InetAddress ip = getLocalAddress();
 		MulticastSocket socket = new MulticastSocket(BROADCAST_PORT);
 		try {
 			// this method will fail on android 1.5 even 
@@ -0,0 +1,280 @@
+package info.pppc.basex.plugin.transceiver.ip;
+
+import info.pppc.base.system.metric.MeteredConnector;
+import info.pppc.base.system.plugin.IStreamConnector;
+import info.pppc.basex.plugin.semantic.StreamSemantic;
+import info.pppc.basex.plugin.serializer.ObjectSerializer;
+import info.pppc.basex.plugin.util.BufferPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * The channel transfer provides bulk transfers of files and byte buffers
+ * over stream connectors that have been created by the stream semantic.
+ * If the connector stack consists only of the object serializer and a
+ * plain ip transceiver that creates its sockets from channels (see the
+ * set channels method of the transceivers), the data is transferred
+ * directly between the file and the socket channel which enables the
+ * operating system to avoid copies (e.g. by means of sendfile). For all
+ * other stacks, the transfer falls back to the streams of the connector
+ * using large pooled buffers.
+ *
+ * @author Mac
+ */
+public final class ChannelTransfer {
+
+	/**
+	 * An output stream that writes into a byte buffer. This is used to
+	 * fill direct buffers using the pooled transfer of the stream semantic.
+	 *
+	 * @author Mac
+	 */
+	private static class ByteBufferOutputStream extends OutputStream {
+
+		/**
+		 * The buffer to write to.
+		 */
+		private ByteBuffer buffer;
+
+		/**
+		 * Creates a new output stream that writes into the buffer.
+		 *
+		 * @param buffer The buffer to write to.
+		 */
+		public ByteBufferOutputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		/**
+		 * Writes a single byte into the buffer.
+		 *
+		 * @param b The byte to write.
+		 */
+		public void write(int b) {
+			buffer.put((byte)b);
+		}
+
+		/**
+		 * Writes the specified bytes into the buffer.
+		 *
+		 * @param b The array that contains the bytes.
+		 * @param off The offset of the first byte.
+		 * @param len The number of bytes to write.
+		 */
+		public void write(byte[] b, int off, int len) {
+			buffer.put(b, off, len);
+		}
+
+	}
+
+	/**
+	 * The size of the buffers used for fallback transfers.
+	 */
+	private static final int BUFFER_SIZE = 65536;
+
+	/**
+	 * The pool of buffers used for fallback transfers.
+	 */
+	private static final BufferPool BUFFER_POOL = new BufferPool(BUFFER_SIZE, 4);
+
+	/**
+	 * Prevent the instantiation of the utility class.
+	 */
+	private ChannelTransfer() { }
+
+	/**
+	 * Returns the socket channel of the plain ip transceiver that is
+	 * used by the connector, if the stack does not contain any modifiers
+	 * that change the data. If the connector of the transceiver is
+	 * metered, the bytes that are transferred directly on the channel
+	 * are not counted.
+	 *
+	 * @param connector The connector to check.
+	 * @return The socket channel or null if the connector stack does
+	 * 	not allow a direct transfer.
+	 * @throws IOException Thrown if the output stream of the connector
+	 * 	cannot be flushed.
+	 */
+	private static SocketChannel getChannel(IStreamConnector connector) throws IOException {
+		if (connector instanceof ObjectSerializer.StreamConnector) {
+			IStreamConnector raw = ((ObjectSerializer.StreamConnector)connector).getConnector();
+			if (raw instanceof MeteredConnector) {
+				raw = ((MeteredConnector)raw).getConnector();
+			}
+			if (raw instanceof IPStreamConnector) {
+				SocketChannel channel = ((IPStreamConnector)raw).getChannel();
+				if (channel != null && channel.isBlocking()) {
+					connector.getOutputStream().flush();
+					return channel;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Transfers the specified region of the file to the connector.
+	 *
+	 * @param file The file to read from.
+	 * @param position The position of the first byte in the file.
+	 * @param count The number of bytes to transfer.
+	 * @param connector The connector to write to.
+	 * @throws IOException Thrown if the file cannot be read or if the
+	 * 	connector cannot be written.
+	 */
+	public static void transferFrom(FileChannel file, long position, long count, IStreamConnector connector) throws IOException {
+		SocketChannel channel = getChannel(connector);
+		if (channel != null) {
+			while (count > 0) {
+				long sent = file.transferTo(position, count, channel);
+				if (sent <= 0 && position >= file.size())
+					throw new IOException("End of file reached.");
+				position += sent;
+				count -= sent;
+			}
+		} else {
+			OutputStream out = connector.getOutputStream();
+			byte[] buffer = BUFFER_POOL.acquire();
+			try {
+				ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+				while (count > 0) {
+					wrapper.clear();
+					if (count < buffer.length) wrapper.limit((int)count);
+					int read = file.read(wrapper, position);
+					if (read == -1)
+						throw new IOException("End of file reached.");
+					out.write(buffer, 0, read);
+					position += read;
+					count -= read;
+				}
+				out.flush();
+			} finally {
+				BUFFER_POOL.release(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Transfers the specified number of bytes from the connector to the
+	 * specified region of the file.
+	 *
+	 * @param connector The connector to read from.
+	 * @param file The file to write to.
+	 * @param position The position of the first byte in the file.
+	 * @param count The number of bytes to transfer.
+	 * @throws IOException Thrown if the connector cannot be read, if the
+	 * 	stream ends before all bytes have been received or if the file
+	 * 	cannot be written.
+	 */
+	public static void transferTo(IStreamConnector connector, FileChannel file, long position, long count) throws IOException {
+		SocketChannel channel = getChannel(connector);
+		if (channel != null) {
+			ByteBuffer probe = null;
+			while (count > 0) {
+				long received = file.transferFrom(channel, position, count);
+				if (received <= 0) {
+					// distinguish the end of the stream from a short transfer
+					if (probe == null) probe = ByteBuffer.allocate(1);
+					probe.clear();
+					if (channel.read(probe) == -1)
+						throw new IOException("End of stream reached.");
+					probe.flip();
+					file.write(probe, position);
+					received = 1;
+				}
+				position += received;
+				count -= received;
+			}
+		} else {
+			InputStream in = connector.getInputStream();
+			byte[] buffer = BUFFER_POOL.acquire();
+			try {
+				while (count > 0) {
+					int read = in.read(buffer, 0, (int)Math.min(buffer.length, count));
+					if (read == -1)
+						throw new IOException("End of stream reached.");
+					ByteBuffer wrapper = ByteBuffer.wrap(buffer, 0, read);
+					while (wrapper.hasRemaining()) {
+						position += file.write(wrapper, position);
+					}
+					count -= read;
+				}
+			} finally {
+				BUFFER_POOL.release(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Writes the remaining bytes of the buffer to the connector. If the
+	 * buffer is backed by an array, the array is written directly without
+	 * copying it. After the call, the position of the buffer is set to its
+	 * limit.
+	 *
+	 * @param buffer The buffer to write.
+	 * @param connector The connector to write to.
+	 * @throws IOException Thrown if the connector cannot be written.
+	 */
+	public static void write(ByteBuffer buffer, IStreamConnector connector) throws IOException {
+		SocketChannel channel = getChannel(connector);
+		if (channel != null) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} else if (buffer.hasArray()) {
+			OutputStream out = connector.getOutputStream();
+			out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			out.flush();
+			buffer.position(buffer.limit());
+		} else {
+			OutputStream out = connector.getOutputStream();
+			byte[] array = BUFFER_POOL.acquire();
+			try {
+				while (buffer.hasRemaining()) {
+					int length = Math.min(array.length, buffer.remaining());
+					buffer.get(array, 0, length);
+					out.write(array, 0, length);
+				}
+				out.flush();
+			} finally {
+				BUFFER_POOL.release(array);
+			}
+		}
+	}
+
+	/**
+	 * Reads bytes from the connector until the buffer is full. If the
+	 * buffer is backed by an array, the data is read into the array
+	 * directly.
+	 *
+	 * @param connector The connector to read from.
+	 * @param buffer The buffer to fill.
+	 * @throws IOException Thrown if the connector cannot be read or if
+	 * 	the stream ends before the buffer is full.
+	 */
+	public static void read(IStreamConnector connector, ByteBuffer buffer) throws IOException {
+		SocketChannel channel = getChannel(connector);
+		if (channel != null) {
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) == -1)
+					throw new IOException("End of stream reached.");
+			}
+		} else if (buffer.hasArray()) {
+			InputStream in = connector.getInputStream();
+			while (buffer.hasRemaining()) {
+				int read = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+				if (read == -1)
+					throw new IOException("End of stream reached.");
+				buffer.position(buffer.position() + read);
+			}
+		} else {
+			StreamSemantic.transfer(connector, new ByteBufferOutputStream(buffer), buffer.remaining());
+		}
+	}
+
+}
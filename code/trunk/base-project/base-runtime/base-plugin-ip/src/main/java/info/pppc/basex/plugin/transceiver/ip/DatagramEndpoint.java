@@ -0,0 +1,438 @@
+package info.pppc.basex.plugin.transceiver.ip;
+
+import info.pppc.base.system.operation.IMonitor;
+import info.pppc.base.system.operation.IOperation;
+import info.pppc.base.system.operation.IOperator;
+import info.pppc.base.system.operation.NullMonitor;
+import info.pppc.base.system.util.Logging;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.Vector;
+
+/**
+ * The datagram end point multiplexes the sessions of reliable datagram
+ * stream connectors over a single datagram socket. Sessions are identified
+ * by the address and port of the remote end point, a random identifier
+ * chosen by the initiator and the role of the local end point. There is
+ * no handshake, the first data segment of the initiator opens the session
+ * at the remote end point. After a session has been closed, its identifier
+ * is kept for a while in order to acknowledge retransmitted segments and
+ * to prevent that they open a new session.
+ *
+ * @author Mac
+ */
+public class DatagramEndpoint {
+
+	/**
+	 * The type of a segment that carries data.
+	 */
+	static final byte TYPE_DATA = 1;
+
+	/**
+	 * The type of a segment that carries only an acknowledgement.
+	 */
+	static final byte TYPE_ACK = 2;
+
+	/**
+	 * The type of a segment that resets a session.
+	 */
+	static final byte TYPE_RESET = 3;
+
+	/**
+	 * The flag of a data segment that ends the stream.
+	 */
+	static final byte FLAG_FIN = 1;
+
+	/**
+	 * The flag of segments that are sent by the initiator of a session.
+	 */
+	static final byte FLAG_INITIATOR = 2;
+
+	/**
+	 * The length of the segment header. The header consists of the type,
+	 * the flags, the session identifier, the sequence number, the
+	 * cumulative acknowledgement, the selective acknowledgements and
+	 * the receive window.
+	 */
+	static final int HEADER_LENGTH = 20;
+
+	/**
+	 * The maximum length of a datagram.
+	 */
+	static final int DATAGRAM_LENGTH = HEADER_LENGTH + DatagramStreamConnector.SEGMENT_LENGTH;
+
+	/**
+	 * The period in milliseconds for which the identifiers of closed
+	 * sessions are kept.
+	 */
+	private static final long WAIT_PERIOD = 10000;
+
+	/**
+	 * The timeout period of the socket in milliseconds after which
+	 * the receive operation checks its monitor.
+	 */
+	private static final int TIMEOUT_PERIOD = 2000;
+
+	/**
+	 * The plug-in that owns the end point.
+	 */
+	private IDatagramPlugin plugin;
+
+	/**
+	 * The operator used to perform the timer operation.
+	 */
+	private IOperator operator;
+
+	/**
+	 * The socket of the end point.
+	 */
+	private DatagramSocket socket;
+
+	/**
+	 * The open sessions hashed by key.
+	 */
+	private Hashtable sessions = new Hashtable();
+
+	/**
+	 * The closed sessions hashed by key. The value is an array that
+	 * contains the expiration time and the last cumulative
+	 * acknowledgement.
+	 */
+	private Hashtable closed = new Hashtable();
+
+	/**
+	 * The random number generator for session identifiers.
+	 */
+	private Random random = new Random();
+
+	/**
+	 * The monitor of the timer operation.
+	 */
+	private NullMonitor timer = null;
+
+	/**
+	 * The lock that is used by the timer operation to wait for the
+	 * next deadline.
+	 */
+	private Object clock = new Object();
+
+	/**
+	 * A flag that indicates whether a deadline has changed since the
+	 * timer operation has computed the next deadline. This is guarded
+	 * by the clock.
+	 */
+	private boolean changed = false;
+
+	/**
+	 * The datagram used to send acknowledgements and resets for
+	 * unknown sessions. This is guarded by the end point.
+	 */
+	private DatagramPacket control = new DatagramPacket(new byte[HEADER_LENGTH], HEADER_LENGTH);
+
+	/**
+	 * The operation that retransmits segments, sends delayed
+	 * acknowledgements and removes expired identifiers.
+	 */
+	private IOperation operation = new IOperation() {
+		public void perform(IMonitor monitor) throws Exception {
+			while (! monitor.isCanceled()) {
+				synchronized (clock) {
+					changed = false;
+				}
+				long now = System.currentTimeMillis();
+				long next = now + WAIT_PERIOD;
+				Object[] snapshot;
+				synchronized (DatagramEndpoint.this) {
+					snapshot = new Object[sessions.size()];
+					Enumeration e = sessions.elements();
+					for (int i = 0; i < snapshot.length; i++) {
+						snapshot[i] = e.nextElement();
+					}
+					Vector expired = new Vector();
+					e = closed.keys();
+					while (e.hasMoreElements()) {
+						Object key = e.nextElement();
+						if (((Long)((Object[])closed.get(key))[0]).longValue() < now) {
+							expired.addElement(key);
+						}
+					}
+					for (int i = expired.size() - 1; i >= 0; i--) {
+						closed.remove(expired.elementAt(i));
+					}
+				}
+				for (int i = 0; i < snapshot.length; i++) {
+					long deadline = ((DatagramStreamConnector)snapshot[i]).timeout(now);
+					if (deadline != 0 && deadline < next) {
+						next = deadline;
+					}
+				}
+				synchronized (clock) {
+					long delay = next - System.currentTimeMillis();
+					if (delay > 0 && ! changed && ! monitor.isCanceled()) {
+						clock.wait(delay);
+					}
+				}
+			}
+		}
+	};
+
+	/**
+	 * Creates a new end point that uses the specified socket.
+	 *
+	 * @param plugin The plug-in that owns the end point.
+	 * @param operator The operator used to perform the timer operation.
+	 * @param socket The bound socket of the end point.
+	 */
+	public DatagramEndpoint(IDatagramPlugin plugin, IOperator operator, DatagramSocket socket) {
+		this.plugin = plugin;
+		this.operator = operator;
+		this.socket = socket;
+	}
+
+	/**
+	 * Starts the timer operation of the end point.
+	 */
+	public synchronized void start() {
+		if (timer == null) {
+			timer = new NullMonitor();
+			operator.performOperation(operation, timer);
+		}
+	}
+
+	/**
+	 * Opens a new session to the specified remote end point.
+	 *
+	 * @param address The address of the remote end point.
+	 * @param port The port of the remote end point.
+	 * @return The connector of the session.
+	 */
+	public DatagramStreamConnector connect(InetAddress address, int port) {
+		synchronized (this) {
+			while (true) {
+				int id = random.nextInt();
+				String key = getKey(address, port, id, true);
+				if (! sessions.containsKey(key) && ! closed.containsKey(key)) {
+					DatagramStreamConnector connector = new DatagramStreamConnector
+						(plugin, this, address, port, id, true);
+					sessions.put(key, connector);
+					return connector;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Receives datagrams and dispatches them to their sessions until
+	 * the monitor is canceled or until the socket is closed. The
+	 * receive buffer is reused for all datagrams.
+	 *
+	 * @param monitor The monitor to cancel the operation.
+	 * @throws IOException Thrown if the socket fails.
+	 */
+	public void receive(IMonitor monitor) throws IOException {
+		socket.setSoTimeout(TIMEOUT_PERIOD);
+		byte[] buffer = new byte[DATAGRAM_LENGTH];
+		DatagramPacket datagram = new DatagramPacket(buffer, buffer.length);
+		while (! monitor.isCanceled()) {
+			try {
+				datagram.setLength(buffer.length);
+				socket.receive(datagram);
+			} catch (InterruptedIOException e) {
+				continue;
+			}
+			int length = datagram.getLength();
+			if (length < HEADER_LENGTH) continue;
+			byte type = buffer[0];
+			byte flags = buffer[1];
+			int id = readInt(buffer, 2);
+			int sequence = readInt(buffer, 6);
+			int ack = readInt(buffer, 10);
+			int sack = readInt(buffer, 14);
+			int window = ((buffer[18] & 0xFF) << 8) | (buffer[19] & 0xFF);
+			InetAddress address = datagram.getAddress();
+			int port = datagram.getPort();
+			boolean initiator = (flags & FLAG_INITIATOR) == 0;
+			String key = getKey(address, port, id, initiator);
+			DatagramStreamConnector connector = null;
+			boolean accept = false;
+			synchronized (this) {
+				connector = (DatagramStreamConnector)sessions.get(key);
+				if (connector == null) {
+					Object[] state = (Object[])closed.get(key);
+					if (type != TYPE_DATA) {
+						continue;
+					} else if (state != null) {
+						// acknowledge retransmissions of closed sessions
+						send(address, port, TYPE_ACK, id, initiator, ((Integer)state[1]).intValue());
+						continue;
+					} else if (initiator || sequence < 0 || sequence >= DatagramStreamConnector.WINDOW_LENGTH) {
+						send(address, port, TYPE_RESET, id, initiator, 0);
+						continue;
+					} else {
+						connector = new DatagramStreamConnector(plugin, this, address, port, id, false);
+						sessions.put(key, connector);
+						accept = true;
+					}
+				}
+			}
+			connector.receive(type, flags, sequence, ack, sack, window,
+					buffer, HEADER_LENGTH, length - HEADER_LENGTH);
+			if (accept && ! plugin.accept(connector)) {
+				connector.reset();
+			}
+		}
+	}
+
+	/**
+	 * Closes the end point, stops the timer operation and resets all
+	 * open sessions.
+	 */
+	public void close() {
+		Object[] snapshot;
+		synchronized (this) {
+			if (timer != null) {
+				timer.cancel();
+				timer = null;
+				schedule();
+			}
+			snapshot = new Object[sessions.size()];
+			Enumeration e = sessions.elements();
+			for (int i = 0; i < snapshot.length; i++) {
+				snapshot[i] = e.nextElement();
+			}
+		}
+		for (int i = 0; i < snapshot.length; i++) {
+			((DatagramStreamConnector)snapshot[i]).reset();
+		}
+		socket.close();
+	}
+
+	/**
+	 * Sends the specified datagram.
+	 *
+	 * @param datagram The datagram to send.
+	 */
+	void send(DatagramPacket datagram) {
+		try {
+			socket.send(datagram);
+		} catch (IOException e) {
+			Logging.debug(getClass(), "Could not send datagram.");
+		}
+	}
+
+	/**
+	 * Wakes up the timer operation such that it considers a deadline
+	 * that has changed.
+	 */
+	void schedule() {
+		synchronized (clock) {
+			changed = true;
+			clock.notify();
+		}
+	}
+
+	/**
+	 * Removes a session that has been closed and remembers its identifier.
+	 *
+	 * @param connector The connector of the session.
+	 * @param expected The last cumulative acknowledgement of the session.
+	 */
+	synchronized void remove(DatagramStreamConnector connector, int expected) {
+		String key = connector.getKey();
+		if (sessions.get(key) == connector) {
+			sessions.remove(key);
+			closed.put(key, new Object[] {
+				new Long(System.currentTimeMillis() + WAIT_PERIOD), new Integer(expected)
+			});
+		}
+	}
+
+	/**
+	 * Sends a segment without data for a session that is not open.
+	 *
+	 * @param address The remote address.
+	 * @param port The remote port.
+	 * @param type The type of the segment.
+	 * @param id The identifier of the session.
+	 * @param initiator True if the local end point is the initiator.
+	 * @param ack The cumulative acknowledgement.
+	 */
+	private void send(InetAddress address, int port, byte type, int id, boolean initiator, int ack) {
+		byte[] buffer = control.getData();
+		writeHeader(buffer, type, initiator?FLAG_INITIATOR:0, id, 0, ack, 0, DatagramStreamConnector.WINDOW_LENGTH);
+		control.setAddress(address);
+		control.setPort(port);
+		control.setLength(HEADER_LENGTH);
+		send(control);
+	}
+
+	/**
+	 * Returns the key of a session.
+	 *
+	 * @param address The remote address.
+	 * @param port The remote port.
+	 * @param id The identifier of the session.
+	 * @param initiator True if the local end point is the initiator.
+	 * @return The key of the session.
+	 */
+	static String getKey(InetAddress address, int port, int id, boolean initiator) {
+		return address.getHostAddress() + ":" + port + ":" + id + (initiator?"I":"A");
+	}
+
+	/**
+	 * Writes a segment header to the specified buffer.
+	 *
+	 * @param buffer The buffer to write to.
+	 * @param type The type of the segment.
+	 * @param flags The flags of the segment.
+	 * @param id The identifier of the session.
+	 * @param sequence The sequence number.
+	 * @param ack The cumulative acknowledgement.
+	 * @param sack The selective acknowledgements.
+	 * @param window The receive window in segments.
+	 */
+	static void writeHeader(byte[] buffer, byte type, int flags, int id, int sequence, int ack, int sack, int window) {
+		buffer[0] = type;
+		buffer[1] = (byte)flags;
+		writeInt(buffer, 2, id);
+		writeInt(buffer, 6, sequence);
+		writeInt(buffer, 10, ack);
+		writeInt(buffer, 14, sack);
+		buffer[18] = (byte)(window >> 8);
+		buffer[19] = (byte)window;
+	}
+
+	/**
+	 * Writes an integer in network byte order.
+	 *
+	 * @param buffer The buffer to write to.
+	 * @param offset The offset of the first byte.
+	 * @param value The value to write.
+	 */
+	private static void writeInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte)(value >> 24);
+		buffer[offset + 1] = (byte)(value >> 16);
+		buffer[offset + 2] = (byte)(value >> 8);
+		buffer[offset + 3] = (byte)value;
+	}
+
+	/**
+	 * Reads an integer in network byte order.
+	 *
+	 * @param buffer The buffer to read from.
+	 * @param offset The offset of the first byte.
+	 * @return The value that has been read.
+	 */
+	private static int readInt(byte[] buffer, int offset) {
+		return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16)
+			| ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+	}
+
+}
@@ -0,0 +1,907 @@
+package info.pppc.basex.plugin.transceiver.ip;
+
+import info.pppc.base.system.plugin.IPlugin;
+import info.pppc.base.system.plugin.IStreamConnector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * A stream connector that transfers a reliable stream over datagrams of
+ * a datagram end point. Written bytes are split into numbered segments
+ * that are retransmitted until they are acknowledged. Every segment
+ * carries a cumulative acknowledgement, selective acknowledgements for
+ * the following segments and the free receive window. The retransmission
+ * timeout is derived from the measured round trip time. Acknowledgements
+ * are delayed shortly in order to piggyback them on responses, thus,
+ * a small request and its response need a single round trip.
+ * The output stream buffers bytes until a segment is full, until it is
+ * flushed or until a short delay has passed.
+ *
+ * @author Mac
+ */
+public class DatagramStreamConnector implements IStreamConnector {
+
+	/**
+	 * A segment that has been written but that has not been acknowledged.
+	 *
+	 * @author Mac
+	 */
+	private class Segment {
+
+		/**
+		 * The sequence number of the segment.
+		 */
+		private int sequence;
+
+		/**
+		 * The payload of the segment.
+		 */
+		private byte[] data;
+
+		/**
+		 * A flag that indicates whether the segment ends the stream.
+		 */
+		private boolean fin;
+
+		/**
+		 * The time of the last transmission or 0 if the segment
+		 * has not been sent.
+		 */
+		private long sent = 0;
+
+		/**
+		 * A flag that indicates whether the segment has been
+		 * retransmitted.
+		 */
+		private boolean retransmitted = false;
+
+		/**
+		 * A flag that indicates whether the segment has been
+		 * acknowledged selectively.
+		 */
+		private boolean selected = false;
+
+	}
+
+	/**
+	 * The maximum payload length of a segment. This is chosen such
+	 * that datagrams are not fragmented on typical networks.
+	 */
+	static final int SEGMENT_LENGTH = 1400;
+
+	/**
+	 * The maximum number of segments in transit and the maximum number
+	 * of segments that are buffered by the receiver. This is limited by
+	 * the number of selective acknowledgements per segment.
+	 */
+	static final int WINDOW_LENGTH = 32;
+
+	/**
+	 * The maximum number of segments that are buffered by the sender.
+	 */
+	private static final int BUFFER_LENGTH = 64;
+
+	/**
+	 * The retransmission timeout in milliseconds before the round trip
+	 * time has been measured.
+	 */
+	private static final long INITIAL_TIMEOUT = 300;
+
+	/**
+	 * The minimum retransmission timeout in milliseconds.
+	 */
+	private static final long MINIMUM_TIMEOUT = 50;
+
+	/**
+	 * The maximum retransmission timeout in milliseconds.
+	 */
+	private static final long MAXIMUM_TIMEOUT = 8000;
+
+	/**
+	 * The number of retransmissions without a response of the remote
+	 * end point after which the session fails.
+	 */
+	private static final int MAXIMUM_RETRANSMISSIONS = 10;
+
+	/**
+	 * The number of selectively acknowledged segments after which a
+	 * missing segment is retransmitted without waiting for the timeout.
+	 */
+	private static final int FAST_RETRANSMISSION = 3;
+
+	/**
+	 * The delay in milliseconds of acknowledgements of in-order segments.
+	 */
+	private static final long ACK_DELAY = 20;
+
+	/**
+	 * The delay in milliseconds after which buffered bytes are sent
+	 * without a flush.
+	 */
+	private static final long FLUSH_DELAY = 20;
+
+	/**
+	 * The period in milliseconds after a release after which the session
+	 * is removed, even if the remote end point has not finished it.
+	 */
+	private static final long LINGER_PERIOD = 30000;
+
+	/**
+	 * The plug-in that owns the connector.
+	 */
+	private IDatagramPlugin plugin;
+
+	/**
+	 * The end point that transfers the datagrams.
+	 */
+	private DatagramEndpoint endpoint;
+
+	/**
+	 * The address of the remote end point.
+	 */
+	private InetAddress address;
+
+	/**
+	 * The port of the remote end point.
+	 */
+	private int port;
+
+	/**
+	 * The identifier of the session.
+	 */
+	private int id;
+
+	/**
+	 * A flag that indicates whether the local end point has opened
+	 * the session.
+	 */
+	private boolean initiator;
+
+	/**
+	 * The key of the session.
+	 */
+	private String key;
+
+	/**
+	 * The datagram that is used to send segments.
+	 */
+	private DatagramPacket datagram;
+
+	/**
+	 * The sequence number of the next segment that is written.
+	 */
+	private int sequence = 0;
+
+	/**
+	 * The segments that have been written but that have not been
+	 * acknowledged, ordered by sequence number.
+	 */
+	private Vector outgoing = new Vector();
+
+	/**
+	 * The receive window of the remote end point in segments.
+	 */
+	private int window = WINDOW_LENGTH;
+
+	/**
+	 * The bytes that have been written but that have not been
+	 * added to a segment.
+	 */
+	private byte[] buffer = new byte[SEGMENT_LENGTH];
+
+	/**
+	 * The number of bytes in the buffer.
+	 */
+	private int buffered = 0;
+
+	/**
+	 * The smoothed round trip time in milliseconds or -1 if it has
+	 * not been measured.
+	 */
+	private long rtt = -1;
+
+	/**
+	 * The variation of the round trip time in milliseconds.
+	 */
+	private long variation = 0;
+
+	/**
+	 * The current retransmission timeout in milliseconds.
+	 */
+	private long timeout = INITIAL_TIMEOUT;
+
+	/**
+	 * The number of retransmissions since the last response.
+	 */
+	private int retransmissions = 0;
+
+	/**
+	 * The sequence number of the next segment that is expected.
+	 */
+	private int expected = 0;
+
+	/**
+	 * The segments that have been received out of order hashed by
+	 * sequence number.
+	 */
+	private Hashtable reordered = new Hashtable();
+
+	/**
+	 * The payloads that have been received in order but that have
+	 * not been read.
+	 */
+	private Vector incoming = new Vector();
+
+	/**
+	 * The offset of the next byte to read in the first payload.
+	 */
+	private int offset = 0;
+
+	/**
+	 * The number of bytes that can be read.
+	 */
+	private int available = 0;
+
+	/**
+	 * The deadline for the retransmission or 0 if none.
+	 */
+	private long retransmitDeadline = 0;
+
+	/**
+	 * The deadline for a delayed acknowledgement or 0 if none.
+	 */
+	private long ackDeadline = 0;
+
+	/**
+	 * The deadline for sending buffered bytes or 0 if none.
+	 */
+	private long flushDeadline = 0;
+
+	/**
+	 * The deadline for the removal of a released session or 0 if none.
+	 */
+	private long lingerDeadline = 0;
+
+	/**
+	 * A flag that indicates whether the remote end point has ended
+	 * the stream.
+	 */
+	private boolean finished = false;
+
+	/**
+	 * A flag that indicates whether the local end point has ended
+	 * the stream.
+	 */
+	private boolean closed = false;
+
+	/**
+	 * A flag that indicates whether the connector has been released.
+	 */
+	private boolean released = false;
+
+	/**
+	 * The reason of the failure of the session or null if the session
+	 * has not failed.
+	 */
+	private String failure = null;
+
+	/**
+	 * A flag that indicates whether the session has been removed from
+	 * the end point.
+	 */
+	private boolean removed = false;
+
+	/**
+	 * The input stream of the connector.
+	 */
+	private InputStream input = new InputStream() {
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			if (DatagramStreamConnector.this.read(b, 0, 1) == -1) {
+				return -1;
+			}
+			return b[0] & 0xFF;
+		}
+		public int read(byte[] b, int off, int len) throws IOException {
+			return DatagramStreamConnector.this.read(b, off, len);
+		}
+		public int available() throws IOException {
+			synchronized (DatagramStreamConnector.this) {
+				return available;
+			}
+		}
+		public void close() throws IOException {
+			release();
+		}
+	};
+
+	/**
+	 * The output stream of the connector.
+	 */
+	private OutputStream output = new OutputStream() {
+		public void write(int b) throws IOException {
+			DatagramStreamConnector.this.write(new byte[] { (byte)b }, 0, 1);
+		}
+		public void write(byte[] b, int off, int len) throws IOException {
+			DatagramStreamConnector.this.write(b, off, len);
+		}
+		public void flush() throws IOException {
+			DatagramStreamConnector.this.flush();
+		}
+		public void close() throws IOException {
+			release();
+		}
+	};
+
+	/**
+	 * Creates a new connector for a session of the specified end point.
+	 *
+	 * @param plugin The plug-in that owns the connector.
+	 * @param endpoint The end point of the session.
+	 * @param address The address of the remote end point.
+	 * @param port The port of the remote end point.
+	 * @param id The identifier of the session.
+	 * @param initiator True if the local end point opens the session.
+	 */
+	DatagramStreamConnector(IDatagramPlugin plugin, DatagramEndpoint endpoint,
+			InetAddress address, int port, int id, boolean initiator) {
+		this.plugin = plugin;
+		this.endpoint = endpoint;
+		this.address = address;
+		this.port = port;
+		this.id = id;
+		this.initiator = initiator;
+		this.key = DatagramEndpoint.getKey(address, port, id, initiator);
+		byte[] data = new byte[DatagramEndpoint.DATAGRAM_LENGTH];
+		this.datagram = new DatagramPacket(data, data.length, address, port);
+	}
+
+	/**
+	 * Returns the input stream of the connector.
+	 *
+	 * @return The input stream of the connector.
+	 * @throws IOException Thrown if the connector has been released.
+	 */
+	public InputStream getInputStream() throws IOException {
+		if (released) throw new IOException("Connector has been released.");
+		return input;
+	}
+
+	/**
+	 * Returns the output stream of the connector.
+	 *
+	 * @return The output stream of the connector.
+	 * @throws IOException Thrown if the connector has been released.
+	 */
+	public OutputStream getOutputStream() throws IOException {
+		if (released) throw new IOException("Connector has been released.");
+		return output;
+	}
+
+	/**
+	 * Returns a reference to the underlying plug-in.
+	 *
+	 * @return A reference to the underlying plug-in.
+	 */
+	public IPlugin getPlugin() {
+		return plugin;
+	}
+
+	/**
+	 * Returns the address of the remote end point.
+	 *
+	 * @return The address of the remote end point.
+	 */
+	public InetAddress getAddress() {
+		return address;
+	}
+
+	/**
+	 * Returns the port of the remote end point.
+	 *
+	 * @return The port of the remote end point.
+	 */
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * Releases the connector. Buffered bytes are sent, followed by the
+	 * end of the stream. Bytes that arrive afterwards are dropped. The
+	 * session is removed from the end point once the remote end point
+	 * has ended the stream as well.
+	 */
+	public void release() {
+		synchronized (this) {
+			if (released) return;
+			released = true;
+			incoming.removeAllElements();
+			available = 0;
+			offset = 0;
+			if (failure == null) {
+				lingerDeadline = System.currentTimeMillis() + LINGER_PERIOD;
+				if (buffered > 0) {
+					enqueue(false);
+				}
+				enqueue(true);
+				complete();
+			}
+			notifyAll();
+		}
+		endpoint.schedule();
+		plugin.release(this);
+	}
+
+	/**
+	 * Resets the session. Pending bytes are dropped and subsequent reads
+	 * and writes fail. The remote end point is notified.
+	 */
+	void reset() {
+		synchronized (this) {
+			if (failure != null) return;
+			DatagramEndpoint.writeHeader(datagram.getData(), DatagramEndpoint.TYPE_RESET,
+				getFlags(), id, sequence, expected, 0, 0);
+			datagram.setLength(DatagramEndpoint.HEADER_LENGTH);
+			endpoint.send(datagram);
+			fail("Connection reset.");
+		}
+	}
+
+	/**
+	 * Returns the key of the session.
+	 *
+	 * @return The key of the session.
+	 */
+	String getKey() {
+		return key;
+	}
+
+	/**
+	 * Called by the end point when a segment of the session arrives.
+	 *
+	 * @param type The type of the segment.
+	 * @param flags The flags of the segment.
+	 * @param number The sequence number of the segment.
+	 * @param ack The cumulative acknowledgement.
+	 * @param sack The selective acknowledgements.
+	 * @param free The receive window of the remote end point.
+	 * @param data The buffer that contains the payload. The buffer is
+	 * 	reused by the end point.
+	 * @param off The offset of the payload.
+	 * @param len The length of the payload.
+	 */
+	synchronized void receive(byte type, byte flags, int number, int ack, int sack,
+			int free, byte[] data, int off, int len) {
+		if (failure != null) return;
+		if (type == DatagramEndpoint.TYPE_RESET) {
+			fail("Connection reset by peer.");
+			return;
+		}
+		long now = System.currentTimeMillis();
+		retransmissions = 0;
+		window = free;
+		acknowledge(ack, sack, now);
+		if (type == DatagramEndpoint.TYPE_DATA) {
+			boolean fin = (flags & DatagramEndpoint.FLAG_FIN) != 0;
+			if (number - expected < 0 || number - expected >= getWindow()) {
+				// duplicate or outside of the window
+				sendAck();
+			} else if (number == expected) {
+				deliver(data, off, len, fin);
+				expected += 1;
+				Segment next = (Segment)reordered.remove(new Integer(expected));
+				while (next != null) {
+					deliver(next.data, 0, next.data.length, next.fin);
+					expected += 1;
+					next = (Segment)reordered.remove(new Integer(expected));
+				}
+				if (finished || ! reordered.isEmpty()) {
+					sendAck();
+				} else if (ackDeadline == 0) {
+					ackDeadline = now + ACK_DELAY;
+					endpoint.schedule();
+				}
+			} else {
+				Segment segment = new Segment();
+				segment.sequence = number;
+				segment.fin = fin;
+				segment.data = new byte[len];
+				System.arraycopy(data, off, segment.data, 0, len);
+				reordered.put(new Integer(number), segment);
+				sendAck();
+			}
+		}
+		transmit(now);
+		complete();
+		notifyAll();
+	}
+
+	/**
+	 * Called by the timer operation of the end point to perform the
+	 * actions whose deadlines have passed.
+	 *
+	 * @param now The current time.
+	 * @return The next deadline or 0 if there is none.
+	 */
+	synchronized long timeout(long now) {
+		if (removed) return 0;
+		if (flushDeadline != 0 && flushDeadline <= now) {
+			enqueue(false);
+		}
+		if (ackDeadline != 0 && ackDeadline <= now) {
+			sendAck();
+		}
+		if (retransmitDeadline != 0 && retransmitDeadline <= now) {
+			retransmissions += 1;
+			if (retransmissions > MAXIMUM_RETRANSMISSIONS) {
+				fail("Connection timed out.");
+				return 0;
+			}
+			timeout = Math.min(timeout * 2, MAXIMUM_TIMEOUT);
+			for (int i = 0; i < outgoing.size(); i++) {
+				Segment segment = (Segment)outgoing.elementAt(i);
+				if (segment.sent == 0) break;
+				if (! segment.selected) {
+					send(segment, now);
+					segment.retransmitted = true;
+				}
+			}
+			retransmitDeadline = now + timeout;
+		}
+		if (lingerDeadline != 0 && lingerDeadline <= now) {
+			fail("Connection not finished.");
+			return 0;
+		}
+		long next = 0;
+		next = earliest(next, flushDeadline);
+		next = earliest(next, ackDeadline);
+		next = earliest(next, retransmitDeadline);
+		next = earliest(next, lingerDeadline);
+		return next;
+	}
+
+	/**
+	 * Reads at least one and at most the specified number of bytes.
+	 *
+	 * @param b The array to read into.
+	 * @param off The offset of the first byte to write to the array.
+	 * @param len The maximum number of bytes to read.
+	 * @return The number of bytes read or -1 at the end of the stream.
+	 * @throws IOException Thrown if the session has failed or if the
+	 * 	thread is interrupted.
+	 */
+	private synchronized int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) return 0;
+		while (available == 0) {
+			if (released || finished) return -1;
+			if (failure != null) throw new IOException(failure);
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				throw new IOException("Thread got interrupted.");
+			}
+		}
+		int before = getWindow();
+		int read = 0;
+		while (read < len && available > 0) {
+			byte[] payload = (byte[])incoming.elementAt(0);
+			int copy = Math.min(len - read, payload.length - offset);
+			System.arraycopy(payload, offset, b, off + read, copy);
+			read += copy;
+			offset += copy;
+			available -= copy;
+			if (offset == payload.length) {
+				incoming.removeElementAt(0);
+				offset = 0;
+			}
+		}
+		if (before == 0 && getWindow() > 0) {
+			// announce the window that has been opened
+			sendAck();
+		}
+		return read;
+	}
+
+	/**
+	 * Writes the specified bytes. This method blocks while the send
+	 * buffer is full.
+	 *
+	 * @param b The array that contains the bytes.
+	 * @param off The offset of the first byte.
+	 * @param len The number of bytes to write.
+	 * @throws IOException Thrown if the connector has been released,
+	 * 	if the session has failed or if the thread is interrupted.
+	 */
+	private synchronized void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			while (failure == null && ! released && outgoing.size() >= BUFFER_LENGTH) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					throw new IOException("Thread got interrupted.");
+				}
+			}
+			if (released) throw new IOException("Connector has been released.");
+			if (failure != null) throw new IOException(failure);
+			int copy = Math.min(len, SEGMENT_LENGTH - buffered);
+			System.arraycopy(b, off, buffer, buffered, copy);
+			buffered += copy;
+			off += copy;
+			len -= copy;
+			if (buffered == SEGMENT_LENGTH) {
+				enqueue(false);
+			}
+		}
+		if (buffered > 0 && flushDeadline == 0) {
+			flushDeadline = System.currentTimeMillis() + FLUSH_DELAY;
+			endpoint.schedule();
+		}
+	}
+
+	/**
+	 * Sends the buffered bytes without waiting for the flush delay.
+	 *
+	 * @throws IOException Thrown if the connector has been released or
+	 * 	if the session has failed.
+	 */
+	private synchronized void flush() throws IOException {
+		if (released) throw new IOException("Connector has been released.");
+		if (failure != null) throw new IOException(failure);
+		if (buffered > 0) {
+			enqueue(false);
+		}
+	}
+
+	/**
+	 * Creates a segment from the buffered bytes and sends it if the
+	 * window permits.
+	 *
+	 * @param fin True to end the stream with the segment.
+	 */
+	private void enqueue(boolean fin) {
+		Segment segment = new Segment();
+		segment.sequence = sequence++;
+		segment.fin = fin;
+		segment.data = new byte[buffered];
+		System.arraycopy(buffer, 0, segment.data, 0, buffered);
+		buffered = 0;
+		flushDeadline = 0;
+		closed = closed || fin;
+		outgoing.addElement(segment);
+		transmit(System.currentTimeMillis());
+	}
+
+	/**
+	 * Sends the segments that have not been sent as far as the window of
+	 * the remote end point permits. If the window is closed and there are
+	 * no segments in transit, a single segment is sent to probe the window.
+	 *
+	 * @param now The current time.
+	 */
+	private void transmit(long now) {
+		if (outgoing.isEmpty()) return;
+		int base = ((Segment)outgoing.elementAt(0)).sequence;
+		int limit = Math.max(1, Math.min(window, WINDOW_LENGTH));
+		for (int i = 0; i < outgoing.size(); i++) {
+			Segment segment = (Segment)outgoing.elementAt(i);
+			if (segment.sequence - base >= limit) break;
+			if (segment.sent == 0) {
+				send(segment, now);
+				if (retransmitDeadline == 0) {
+					retransmitDeadline = now + timeout;
+					endpoint.schedule();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Processes the acknowledgements of the remote end point. Segments
+	 * that have been acknowledged are removed and the round trip time is
+	 * measured using segments that have not been retransmitted.
+	 *
+	 * @param ack The cumulative acknowledgement.
+	 * @param sack The selective acknowledgements.
+	 * @param now The current time.
+	 */
+	private void acknowledge(int ack, int sack, long now) {
+		boolean progress = false;
+		while (! outgoing.isEmpty()) {
+			Segment segment = (Segment)outgoing.elementAt(0);
+			if (segment.sequence - ack >= 0 || segment.sent == 0) break;
+			outgoing.removeElementAt(0);
+			progress = true;
+			if (segment.sequence == ack - 1 && ! segment.retransmitted) {
+				measure(now - segment.sent);
+			}
+		}
+		int selected = 0;
+		for (int i = 0; i < outgoing.size(); i++) {
+			Segment segment = (Segment)outgoing.elementAt(i);
+			int bit = segment.sequence - ack - 1;
+			if (bit >= 0 && bit < 32 && (sack & (1 << bit)) != 0) {
+				segment.selected = true;
+			}
+			if (segment.selected) {
+				selected += 1;
+			}
+		}
+		if (progress) {
+			if (rtt >= 0) {
+				timeout = Math.max(MINIMUM_TIMEOUT, Math.min(MAXIMUM_TIMEOUT,
+					rtt + 4 * variation + ACK_DELAY));
+			}
+			retransmitDeadline = 0;
+		}
+		if (! outgoing.isEmpty()) {
+			Segment first = (Segment)outgoing.elementAt(0);
+			if (first.sent != 0) {
+				if (selected >= FAST_RETRANSMISSION && ! first.retransmitted) {
+					send(first, now);
+					first.retransmitted = true;
+				}
+				if (retransmitDeadline == 0) {
+					retransmitDeadline = now + timeout;
+					endpoint.schedule();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Updates the round trip time with the specified sample.
+	 *
+	 * @param sample The measured round trip time in milliseconds.
+	 */
+	private void measure(long sample) {
+		if (rtt < 0) {
+			rtt = sample;
+			variation = sample / 2;
+		} else {
+			variation = (3 * variation + Math.abs(rtt - sample)) / 4;
+			rtt = (7 * rtt + sample) / 8;
+		}
+	}
+
+	/**
+	 * Adds a payload that has been received in order to the bytes that
+	 * can be read.
+	 *
+	 * @param data The buffer that contains the payload.
+	 * @param off The offset of the payload.
+	 * @param len The length of the payload.
+	 * @param fin True if the payload ends the stream.
+	 */
+	private void deliver(byte[] data, int off, int len, boolean fin) {
+		if (len > 0 && ! released) {
+			byte[] payload = new byte[len];
+			System.arraycopy(data, off, payload, 0, len);
+			incoming.addElement(payload);
+			available += len;
+		}
+		if (fin) {
+			finished = true;
+		}
+	}
+
+	/**
+	 * Sends the specified segment with the current acknowledgements.
+	 *
+	 * @param segment The segment to send.
+	 * @param now The current time.
+	 */
+	private void send(Segment segment, long now) {
+		byte[] data = datagram.getData();
+		int flags = getFlags();
+		if (segment.fin) {
+			flags |= DatagramEndpoint.FLAG_FIN;
+		}
+		DatagramEndpoint.writeHeader(data, DatagramEndpoint.TYPE_DATA, flags, id,
+			segment.sequence, expected, getSelection(), getWindow());
+		System.arraycopy(segment.data, 0, data, DatagramEndpoint.HEADER_LENGTH, segment.data.length);
+		datagram.setLength(DatagramEndpoint.HEADER_LENGTH + segment.data.length);
+		endpoint.send(datagram);
+		segment.sent = now;
+		ackDeadline = 0;
+	}
+
+	/**
+	 * Sends an acknowledgement without data.
+	 */
+	private void sendAck() {
+		DatagramEndpoint.writeHeader(datagram.getData(), DatagramEndpoint.TYPE_ACK,
+			getFlags(), id, sequence, expected, getSelection(), getWindow());
+		datagram.setLength(DatagramEndpoint.HEADER_LENGTH);
+		endpoint.send(datagram);
+		ackDeadline = 0;
+	}
+
+	/**
+	 * Returns the flags that are set on all segments of the session.
+	 *
+	 * @return The flags of the session.
+	 */
+	private int getFlags() {
+		return initiator?DatagramEndpoint.FLAG_INITIATOR:0;
+	}
+
+	/**
+	 * Returns the selective acknowledgements of the segments that have
+	 * been received out of order.
+	 *
+	 * @return The selective acknowledgements.
+	 */
+	private int getSelection() {
+		int selection = 0;
+		if (! reordered.isEmpty()) {
+			for (int i = 0; i < 32; i++) {
+				if (reordered.containsKey(new Integer(expected + 1 + i))) {
+					selection |= (1 << i);
+				}
+			}
+		}
+		return selection;
+	}
+
+	/**
+	 * Returns the number of segments that can be received.
+	 *
+	 * @return The receive window in segments.
+	 */
+	private int getWindow() {
+		int used = reordered.size() + (available + SEGMENT_LENGTH - 1) / SEGMENT_LENGTH;
+		return Math.max(0, WINDOW_LENGTH - used);
+	}
+
+	/**
+	 * Removes the session from the end point if both end points have
+	 * ended the stream and if all segments have been acknowledged.
+	 */
+	private void complete() {
+		if (! removed && released && closed && finished && outgoing.isEmpty()) {
+			removed = true;
+			endpoint.remove(this, expected);
+		}
+	}
+
+	/**
+	 * Marks the session as failed, drops all segments and removes the
+	 * session from the end point.
+	 *
+	 * @param reason The reason of the failure.
+	 */
+	private void fail(String reason) {
+		failure = reason;
+		outgoing.removeAllElements();
+		reordered.clear();
+		retransmitDeadline = 0;
+		ackDeadline = 0;
+		flushDeadline = 0;
+		lingerDeadline = 0;
+		if (! removed) {
+			removed = true;
+			endpoint.remove(this, expected);
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Returns the earlier of two deadlines where 0 denotes no deadline.
+	 *
+	 * @param first The first deadline.
+	 * @param second The second deadline.
+	 * @return The earlier deadline or 0 if both are 0.
+	 */
+	private static long earliest(long first, long second) {
+		if (first == 0) return second;
+		if (second == 0) return first;
+		return Math.min(first, second);
+	}
+
+}
@@ -0,0 +1,29 @@
+package info.pppc.basex.plugin.transceiver.ip;
+
+/**
+ * The datagram plug-in interface is implemented by ip plug-ins that use
+ * a datagram end point to provide reliable stream connectors.
+ *
+ * @author Mac
+ */
+public interface IDatagramPlugin extends IIPPlugin {
+
+	/**
+	 * Called by the datagram end point when a remote system has opened
+	 * a new session.
+	 *
+	 * @param connector The connector of the incoming session.
+	 * @return True if the session has been accepted, false if it
+	 * 	should be reset.
+	 */
+	public boolean accept(DatagramStreamConnector connector);
+
+	/**
+	 * Called by the stream connector to signal that it has been
+	 * released.
+	 *
+	 * @param connector The released stream connector.
+	 */
+	public void release(DatagramStreamConnector connector);
+
+}
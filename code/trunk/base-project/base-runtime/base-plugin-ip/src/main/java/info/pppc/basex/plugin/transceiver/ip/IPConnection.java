@@ -0,0 +1,485 @@
+package info.pppc.basex.plugin.transceiver.ip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A connection is a tcp connection that carries a sequence of sessions.
+ * Within a session, the data of each direction is split into frames that
+ * start with a two byte length. A frame of length zero ends the data of
+ * one direction. The session is finished as soon as both ends have sent
+ * and received the final frame. Afterwards, the connection can carry the
+ * next session without creating a new socket. The connection is used by
+ * at most one pooled connector at a time. Reading and writing may be
+ * performed concurrently but neither of them may be performed by more
+ * than one thread at a time.
+ *
+ * @author Mac
+ */
+public class IPConnection {
+
+	/**
+	 * The state of a connection whose session has been finished by both
+	 * ends and whose socket is still open.
+	 */
+	public static final int STATE_CLEAN = 0;
+
+	/**
+	 * The state of a connection that waits for the final frame of the
+	 * remote end.
+	 */
+	public static final int STATE_PENDING = 1;
+
+	/**
+	 * The state of a connection that cannot be used anymore.
+	 */
+	public static final int STATE_CLOSED = 2;
+
+	/**
+	 * The number of bytes that are buffered before a frame is sent.
+	 */
+	private static final int FRAME_LENGTH = 8192;
+
+	/**
+	 * The maximum number of bytes in a single frame.
+	 */
+	private static final int MAXIMUM_LENGTH = 65535;
+
+	/**
+	 * The channel of the connection in blocking mode.
+	 */
+	private SocketChannel channel;
+
+	/**
+	 * A flag that indicates whether the local system has opened the
+	 * connection.
+	 */
+	private boolean initiator;
+
+	/**
+	 * The key of the remote end point used by the pool.
+	 */
+	private Object key;
+
+	/**
+	 * The time at which the connection has been returned to the pool.
+	 */
+	private long time;
+
+	/**
+	 * The buffer for the outgoing frame. The first two bytes are reserved
+	 * for the length of the frame.
+	 */
+	private ByteBuffer output = ByteBuffer.allocate(2 + FRAME_LENGTH);
+
+	/**
+	 * The buffer for the length of frames that are written directly.
+	 */
+	private ByteBuffer prefix = ByteBuffer.allocate(2);
+
+	/**
+	 * The buffer that receives the length of the incoming frame. It
+	 * may contain a partial length after a connection has been polled.
+	 */
+	private ByteBuffer header = ByteBuffer.allocate(2);
+
+	/**
+	 * The buffer that receives discarded bytes, created lazily.
+	 */
+	private ByteBuffer scratch = null;
+
+	/**
+	 * The number of bytes that remain in the incoming frame.
+	 */
+	private int remaining = 0;
+
+	/**
+	 * A flag that indicates whether the final frame of the remote
+	 * end has been received. A new connection does not carry a
+	 * session until it has been started.
+	 */
+	private boolean received = true;
+
+	/**
+	 * A flag that indicates whether the final frame of the local
+	 * end has been sent.
+	 */
+	private boolean sent = true;
+
+	/**
+	 * A flag that indicates whether the connection has failed.
+	 */
+	private boolean failed = false;
+
+	/**
+	 * Creates a new connection on the specified channel.
+	 *
+	 * @param channel The connected channel in blocking mode.
+	 * @param initiator True if the local system has opened the
+	 * 	connection, false if it has been accepted.
+	 * @param key The key of the remote end point.
+	 */
+	public IPConnection(SocketChannel channel, boolean initiator, Object key) {
+		this.channel = channel;
+		this.initiator = initiator;
+		this.key = key;
+		output.position(2);
+	}
+
+	/**
+	 * Determines whether the local system has opened the connection.
+	 *
+	 * @return True if the connection has been opened locally.
+	 */
+	public boolean isInitiator() {
+		return initiator;
+	}
+
+	/**
+	 * Returns the key of the remote end point.
+	 *
+	 * @return The key of the remote end point.
+	 */
+	public Object getKey() {
+		return key;
+	}
+
+	/**
+	 * Returns the time at which the connection has been returned
+	 * to the pool.
+	 *
+	 * @return The time of the last release.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Sets the time at which the connection has been returned to the
+	 * pool.
+	 *
+	 * @param time The time of the last release.
+	 */
+	public void setTime(long time) {
+		this.time = time;
+	}
+
+	/**
+	 * Resets the state of the connection for the next session.
+	 */
+	public void begin() {
+		received = false;
+		sent = false;
+		output.clear();
+		output.position(2);
+	}
+
+	/**
+	 * Reads at least one and at most the specified number of bytes of the
+	 * current session. This method blocks until bytes are available.
+	 *
+	 * @param b The array to read into.
+	 * @param off The offset of the first byte.
+	 * @param len The maximum number of bytes.
+	 * @return The number of bytes or -1 if the remote end has finished
+	 * 	the session or closed the connection.
+	 * @throws IOException Thrown if the connection fails.
+	 */
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (received || failed) return -1;
+		if (len == 0) return 0;
+		try {
+			if (remaining == 0 && ! readHeader()) {
+				return -1;
+			}
+			int read = channel.read(ByteBuffer.wrap(b, off, Math.min(len, remaining)));
+			if (read == -1) {
+				failed = true;
+				return -1;
+			}
+			remaining -= read;
+			return read;
+		} catch (IOException e) {
+			failed = true;
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the specified bytes. Small writes are collected until a
+	 * frame is full or until the connection is flushed.
+	 *
+	 * @param b The array that contains the bytes.
+	 * @param off The offset of the first byte.
+	 * @param len The number of bytes.
+	 * @throws IOException Thrown if the connection fails or if the
+	 * 	session has been finished.
+	 */
+	public void write(byte[] b, int off, int len) throws IOException {
+		checkOutput();
+		try {
+			if (len >= FRAME_LENGTH) {
+				flushFrame();
+				while (len > 0) {
+					int n = Math.min(len, MAXIMUM_LENGTH);
+					prefix.clear();
+					prefix.putShort((short)n);
+					prefix.flip();
+					ByteBuffer[] frame = new ByteBuffer[] { prefix, ByteBuffer.wrap(b, off, n) };
+					while (frame[1].hasRemaining()) {
+						channel.write(frame);
+					}
+					off += n;
+					len -= n;
+				}
+			} else {
+				while (len > 0) {
+					int n = Math.min(len, output.remaining());
+					output.put(b, off, n);
+					off += n;
+					len -= n;
+					if (! output.hasRemaining()) {
+						flushFrame();
+					}
+				}
+			}
+		} catch (IOException e) {
+			failed = true;
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes a single byte.
+	 *
+	 * @param b The byte to write.
+	 * @throws IOException Thrown if the connection fails or if the
+	 * 	session has been finished.
+	 */
+	public void write(int b) throws IOException {
+		checkOutput();
+		output.put((byte)b);
+		if (! output.hasRemaining()) {
+			flush();
+		}
+	}
+
+	/**
+	 * Sends the bytes that have been collected.
+	 *
+	 * @throws IOException Thrown if the connection fails or if the
+	 * 	session has been finished.
+	 */
+	public void flush() throws IOException {
+		checkOutput();
+		try {
+			flushFrame();
+		} catch (IOException e) {
+			failed = true;
+			throw e;
+		}
+	}
+
+	/**
+	 * Sends the remaining bytes and the final frame of the local end,
+	 * if this has not been done before.
+	 *
+	 * @throws IOException Thrown if the connection fails.
+	 */
+	public void finish() throws IOException {
+		if (failed) throw new IOException("Connection failed.");
+		if (sent) return;
+		try {
+			flushFrame();
+			output.clear();
+			output.putShort((short)0);
+			output.flip();
+			while (output.hasRemaining()) {
+				channel.write(output);
+			}
+			output.clear();
+			output.position(2);
+			sent = true;
+		} catch (IOException e) {
+			failed = true;
+			throw e;
+		}
+	}
+
+	/**
+	 * Discards incoming bytes until the remote end has finished the
+	 * session. This method blocks until the final frame is received.
+	 *
+	 * @return True if the final frame has been received, false if the
+	 * 	connection has been closed.
+	 */
+	public boolean drain() {
+		try {
+			while (! received && ! failed) {
+				if (remaining == 0) {
+					readHeader();
+				} else {
+					ByteBuffer buffer = getScratch();
+					buffer.limit(Math.min(remaining, buffer.capacity()));
+					int read = channel.read(buffer);
+					if (read == -1) {
+						failed = true;
+					} else {
+						remaining -= read;
+					}
+				}
+			}
+		} catch (IOException e) {
+			failed = true;
+		}
+		return ! failed;
+	}
+
+	/**
+	 * Waits until the remote end starts the next session. This method
+	 * blocks until the first frame of the session is received.
+	 *
+	 * @return True if the session has been started, false if the
+	 * 	connection has been closed.
+	 */
+	public boolean await() {
+		begin();
+		try {
+			readHeader();
+		} catch (IOException e) {
+			failed = true;
+		}
+		return ! failed;
+	}
+
+	/**
+	 * Discards the bytes that can be read without blocking and checks
+	 * whether the connection can carry the next session. A connection
+	 * is clean if the remote end has finished the session and if the
+	 * remote end has not closed the socket.
+	 *
+	 * @return The state of the connection.
+	 */
+	public int poll() {
+		if (failed || ! sent) return STATE_CLOSED;
+		try {
+			channel.configureBlocking(false);
+			try {
+				while (! received) {
+					if (remaining == 0) {
+						if (channel.read(header) == -1) return STATE_CLOSED;
+						if (header.hasRemaining()) return STATE_PENDING;
+						remaining = header.getShort(0) & 0xFFFF;
+						header.clear();
+						received = (remaining == 0);
+					} else {
+						ByteBuffer buffer = getScratch();
+						buffer.limit(Math.min(remaining, buffer.capacity()));
+						int read = channel.read(buffer);
+						if (read == -1) return STATE_CLOSED;
+						if (read == 0) return STATE_PENDING;
+						remaining -= read;
+					}
+				}
+				// the remote end must not send before a session is started
+				ByteBuffer buffer = getScratch();
+				buffer.limit(1);
+				if (channel.read(buffer) != 0) return STATE_CLOSED;
+				return STATE_CLEAN;
+			} finally {
+				channel.configureBlocking(true);
+			}
+		} catch (IOException e) {
+			failed = true;
+			return STATE_CLOSED;
+		}
+	}
+
+	/**
+	 * Determines whether the connection can still be used.
+	 *
+	 * @return True if the connection has not failed.
+	 */
+	public boolean isValid() {
+		return ! failed;
+	}
+
+	/**
+	 * Closes the socket of the connection.
+	 */
+	public void close() {
+		failed = true;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// nothing to be done
+		}
+	}
+
+	/**
+	 * Reads the length of the next incoming frame in blocking mode.
+	 *
+	 * @return True if the length has been read, false if the socket
+	 * 	has been closed or if the remote end has finished the session.
+	 * @throws IOException Thrown if the connection fails.
+	 */
+	private boolean readHeader() throws IOException {
+		while (header.hasRemaining()) {
+			if (channel.read(header) == -1) {
+				failed = true;
+				return false;
+			}
+		}
+		remaining = header.getShort(0) & 0xFFFF;
+		header.clear();
+		if (remaining == 0) {
+			received = true;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Sends the collected bytes as a frame, if there are any.
+	 *
+	 * @throws IOException Thrown if the socket fails.
+	 */
+	private void flushFrame() throws IOException {
+		int length = output.position() - 2;
+		if (length > 0) {
+			output.putShort(0, (short)length);
+			output.flip();
+			while (output.hasRemaining()) {
+				channel.write(output);
+			}
+			output.clear();
+			output.position(2);
+		}
+	}
+
+	/**
+	 * Ensures that the local end may write to the connection.
+	 *
+	 * @throws IOException Thrown if the connection has failed or if
+	 * 	the session has been finished.
+	 */
+	private void checkOutput() throws IOException {
+		if (failed) throw new IOException("Connection failed.");
+		if (sent) throw new IOException("Stream closed.");
+	}
+
+	/**
+	 * Returns the cleared buffer used to discard incoming bytes.
+	 *
+	 * @return The cleared scratch buffer.
+	 */
+	private ByteBuffer getScratch() {
+		if (scratch == null) {
+			scratch = ByteBuffer.allocate(FRAME_LENGTH);
+		}
+		scratch.clear();
+		return scratch;
+	}
+
+}
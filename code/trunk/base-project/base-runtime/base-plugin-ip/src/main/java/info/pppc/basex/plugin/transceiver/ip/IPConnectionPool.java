@@ -0,0 +1,441 @@
+package info.pppc.basex.plugin.transceiver.ip;
+
+import info.pppc.base.system.operation.IMonitor;
+import info.pppc.base.system.operation.IOperation;
+import info.pppc.base.system.operation.IOperator;
+import info.pppc.base.system.operation.NullMonitor;
+import info.pppc.base.system.util.Logging;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * The connection pool keeps the tcp connections of an ip plug-in open
+ * between sessions. Outgoing connections are kept per remote end point
+ * and they are checked before they are reused. Connections that have
+ * been idle for too long are closed. Incoming connections are accepted
+ * on a separate server socket since remote systems that do not use
+ * the pool expect that each connection carries exactly one session.
+ * An accepted connection waits for the next session as long as the
+ * remote system keeps it open. Besides the connections, the pool caches
+ * the resolved socket addresses of the remote end points.
+ *
+ * @author Mac
+ */
+public class IPConnectionPool implements IOperation {
+
+	/**
+	 * The period in milliseconds after which an idle outgoing connection
+	 * is closed.
+	 */
+	private static final long IDLE_PERIOD = 10000;
+
+	/**
+	 * The maximum number of idle connections per remote end point.
+	 */
+	private static final int MAXIMUM_IDLE = 4;
+
+	/**
+	 * The maximum number of cached socket addresses. If the cache grows
+	 * beyond this size, it is cleared.
+	 */
+	private static final int MAXIMUM_ADDRESSES = 256;
+
+	/**
+	 * The timeout period for incoming connections in milliseconds.
+	 */
+	private static final int TIMEOUT_PERIOD = 2000;
+
+	/**
+	 * The plug-in that uses the pool.
+	 */
+	private IPooledPlugin plugin;
+
+	/**
+	 * A flag that indicates whether the tcp no delay option is set.
+	 */
+	private boolean nodelay;
+
+	/**
+	 * The resolved socket addresses hashed by the key of the remote
+	 * end point.
+	 */
+	private Hashtable addresses = new Hashtable();
+
+	/**
+	 * The vectors of idle outgoing connections hashed by the key of
+	 * the remote end point.
+	 */
+	private Hashtable idle = new Hashtable();
+
+	/**
+	 * The incoming connections that wait for the next session.
+	 */
+	private Vector incoming = new Vector();
+
+	/**
+	 * The time of the last removal of expired connections.
+	 */
+	private long sweep = 0;
+
+	/**
+	 * The operator used to wait for incoming sessions.
+	 */
+	private IOperator operator = null;
+
+	/**
+	 * The server socket that accepts pooled connections.
+	 */
+	private ServerSocket server = null;
+
+	/**
+	 * The monitor of the operation that accepts connections.
+	 */
+	private NullMonitor monitor = null;
+
+	/**
+	 * A flag that indicates whether the pool has been closed.
+	 */
+	private boolean closed = true;
+
+	/**
+	 * Creates a new connection pool for the specified plug-in.
+	 *
+	 * @param plugin The plug-in that uses the pool.
+	 * @param nodelay A flag that indicates whether the tcp no delay
+	 * 	option is set.
+	 */
+	public IPConnectionPool(IPooledPlugin plugin, boolean nodelay) {
+		this.plugin = plugin;
+		this.nodelay = nodelay;
+	}
+
+	/**
+	 * Opens the server socket that accepts pooled connections on the
+	 * specified address and starts to accept connections.
+	 *
+	 * @param ip The local address of the server socket.
+	 * @param operator The operator used to perform operations.
+	 * @return The port of the server socket.
+	 * @throws IOException Thrown if the socket cannot be opened.
+	 */
+	public int open(InetAddress ip, IOperator operator) throws IOException {
+		close();
+		ServerSocket socket = ServerSocketChannel.open().socket();
+		try {
+			socket.bind(new InetSocketAddress(ip, 0), 10);
+			socket.setSoTimeout(TIMEOUT_PERIOD);
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+		NullMonitor m = new NullMonitor();
+		synchronized (this) {
+			this.operator = operator;
+			server = socket;
+			monitor = m;
+			closed = false;
+		}
+		operator.performOperation(this, m);
+		return socket.getLocalPort();
+	}
+
+	/**
+	 * Stops to accept connections and closes all connections that are
+	 * not used by a session. Connections that are released afterwards
+	 * are closed as well.
+	 */
+	public void close() {
+		NullMonitor m;
+		ServerSocket socket;
+		Vector connections = new Vector();
+		synchronized (this) {
+			closed = true;
+			m = monitor;
+			socket = server;
+			monitor = null;
+			server = null;
+			for (int i = 0; i < incoming.size(); i++) {
+				connections.addElement(incoming.elementAt(i));
+			}
+			incoming.removeAllElements();
+			Enumeration e = idle.elements();
+			while (e.hasMoreElements()) {
+				Vector v = (Vector)e.nextElement();
+				for (int i = 0; i < v.size(); i++) {
+					connections.addElement(v.elementAt(i));
+				}
+			}
+			idle.clear();
+		}
+		if (m != null) {
+			m.cancel();
+			try {
+				socket.close();
+			} catch (IOException e) {
+				Logging.error(getClass(), "Could not close server socket.", e);
+			}
+			try {
+				m.join();
+			} catch (InterruptedException e) {
+				Logging.error(getClass(), "Thread got interrupted.", e);
+			}
+		}
+		for (int i = 0; i < connections.size(); i++) {
+			((IPConnection)connections.elementAt(i)).close();
+		}
+	}
+
+	/**
+	 * Returns the socket address of the specified remote end point. The
+	 * address is created without a name lookup and it is cached.
+	 *
+	 * @param address The ip address of the remote end point.
+	 * @param port The port of the remote end point.
+	 * @return The socket address of the remote end point.
+	 * @throws UnknownHostException Thrown if the address is invalid.
+	 */
+	public InetSocketAddress getAddress(byte[] address, int port) throws UnknownHostException {
+		return getAddress(getKey(address, port), address, port);
+	}
+
+	/**
+	 * Opens a session to the specified remote end point. The session
+	 * uses an idle connection if one is available and clean, otherwise
+	 * a new connection is opened.
+	 *
+	 * @param local The local address to bind new sockets to.
+	 * @param address The ip address of the remote end point.
+	 * @param port The pooled port of the remote end point.
+	 * @return The connector of the session.
+	 * @throws IOException Thrown if the connection cannot be opened.
+	 */
+	public IPPooledConnector connect(InetAddress local, byte[] address, int port) throws IOException {
+		Long key = getKey(address, port);
+		IPConnection connection = null;
+		synchronized (this) {
+			Vector connections = (Vector)idle.get(key);
+			if (connections != null) {
+				long now = System.currentTimeMillis();
+				for (int i = connections.size() - 1; i >= 0; i--) {
+					IPConnection c = (IPConnection)connections.elementAt(i);
+					int state = (now - c.getTime() > IDLE_PERIOD) ?
+						IPConnection.STATE_CLOSED : c.poll();
+					if (state == IPConnection.STATE_CLEAN) {
+						connections.removeElementAt(i);
+						connection = c;
+						break;
+					} else if (state == IPConnection.STATE_CLOSED) {
+						connections.removeElementAt(i);
+						c.close();
+					}
+				}
+				if (connections.isEmpty()) {
+					idle.remove(key);
+				}
+			}
+		}
+		if (connection == null) {
+			SocketChannel channel = SocketChannel.open();
+			try {
+				Socket socket = channel.socket();
+				socket.bind(new InetSocketAddress(local, 0));
+				socket.connect(getAddress(key, address, port));
+				socket.setTcpNoDelay(nodelay);
+				socket.setKeepAlive(true);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+			connection = new IPConnection(channel, true, key);
+		}
+		connection.begin();
+		return new IPPooledConnector(plugin, this, connection);
+	}
+
+	/**
+	 * Called by a pooled connector when its session is released. If the
+	 * connection can be reused, the local end finishes the session. An
+	 * outgoing connection is returned to the idle connections, an
+	 * incoming connection waits for the next session.
+	 *
+	 * @param connection The connection of the released session.
+	 * @param reuse True if the connection may be reused, false if it
+	 * 	must be closed.
+	 */
+	void release(IPConnection connection, boolean reuse) {
+		if (reuse) {
+			try {
+				connection.finish();
+			} catch (IOException e) {
+				reuse = false;
+			}
+		}
+		if (! reuse) {
+			connection.close();
+		} else if (connection.isInitiator()) {
+			Vector expired = new Vector();
+			synchronized (this) {
+				long now = System.currentTimeMillis();
+				if (now - sweep > IDLE_PERIOD / 2) {
+					sweep = now;
+					expire(now, expired);
+				}
+				Vector connections = (Vector)idle.get(connection.getKey());
+				if (closed || (connections != null && connections.size() >= MAXIMUM_IDLE)) {
+					expired.addElement(connection);
+				} else {
+					if (connections == null) {
+						connections = new Vector();
+						idle.put(connection.getKey(), connections);
+					}
+					connection.setTime(now);
+					connections.addElement(connection);
+				}
+			}
+			for (int i = 0; i < expired.size(); i++) {
+				((IPConnection)expired.elementAt(i)).close();
+			}
+		} else {
+			receive(connection);
+		}
+	}
+
+	/**
+	 * Accepts pooled connections until the monitor is canceled or
+	 * until the server socket is closed.
+	 *
+	 * @param monitor The monitor used to cancel the operation.
+	 * @throws Exception Should never happen.
+	 */
+	public void perform(IMonitor monitor) throws Exception {
+		ServerSocket socket;
+		synchronized (this) {
+			socket = server;
+		}
+		while (socket != null && ! monitor.isCanceled()) {
+			try {
+				Socket client = socket.accept();
+				client.setTcpNoDelay(nodelay);
+				client.setKeepAlive(true);
+				receive(new IPConnection(client.getChannel(), false, null));
+			} catch (InterruptedIOException e) {
+				// nothing to be done
+			} catch (IOException e) {
+				if (! monitor.isCanceled()) {
+					Logging.error(getClass(), "Error while accepting pooled connection.", e);
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Waits in a separate operation until the remote end of an incoming
+	 * connection has finished the previous session and started the next
+	 * one. The session is then passed to the plug-in.
+	 *
+	 * @param connection The incoming connection.
+	 */
+	private void receive(final IPConnection connection) {
+		IOperator o;
+		synchronized (this) {
+			if (closed) {
+				connection.close();
+				return;
+			}
+			incoming.addElement(connection);
+			o = operator;
+		}
+		o.performOperation(new IOperation() {
+			public void perform(IMonitor monitor) throws Exception {
+				boolean ready = connection.drain() && connection.await();
+				synchronized (IPConnectionPool.this) {
+					ready = incoming.removeElement(connection) && ready;
+				}
+				if (! ready || ! plugin.accept
+						(new IPPooledConnector(plugin, IPConnectionPool.this, connection))) {
+					connection.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Removes the idle connections that have expired. The caller must
+	 * close them after it has released the lock of the pool.
+	 *
+	 * @param now The current time.
+	 * @param expired The vector that receives the expired connections.
+	 */
+	private void expire(long now, Vector expired) {
+		Vector keys = new Vector();
+		Enumeration e = idle.keys();
+		while (e.hasMoreElements()) {
+			Object key = e.nextElement();
+			Vector connections = (Vector)idle.get(key);
+			for (int i = connections.size() - 1; i >= 0; i--) {
+				IPConnection c = (IPConnection)connections.elementAt(i);
+				if (now - c.getTime() > IDLE_PERIOD) {
+					connections.removeElementAt(i);
+					expired.addElement(c);
+				}
+			}
+			if (connections.isEmpty()) {
+				keys.addElement(key);
+			}
+		}
+		for (int i = 0; i < keys.size(); i++) {
+			idle.remove(keys.elementAt(i));
+		}
+	}
+
+	/**
+	 * Returns the cached socket address of the specified remote end point.
+	 *
+	 * @param key The key of the remote end point.
+	 * @param address The ip address of the remote end point.
+	 * @param port The port of the remote end point.
+	 * @return The socket address of the remote end point.
+	 * @throws UnknownHostException Thrown if the address is invalid.
+	 */
+	private InetSocketAddress getAddress(Long key, byte[] address, int port) throws UnknownHostException {
+		synchronized (addresses) {
+			InetSocketAddress result = (InetSocketAddress)addresses.get(key);
+			if (result == null) {
+				if (addresses.size() >= MAXIMUM_ADDRESSES) {
+					addresses.clear();
+				}
+				result = new InetSocketAddress(InetAddress.getByAddress(address), port);
+				addresses.put(key, result);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Returns the key of the specified remote end point.
+	 *
+	 * @param address The ip address of the remote end point.
+	 * @param port The port of the remote end point.
+	 * @return The key of the remote end point.
+	 */
+	private static Long getKey(byte[] address, int port) {
+		long key = 0;
+		for (int i = 0; i < address.length; i++) {
+			key = (key << 8) | (address[i] & 0xFF);
+		}
+		return new Long((key << 16) | (port & 0xFFFF));
+	}
+
+}
@@ -1,16 +1,19 @@
 package info.pppc.basex.plugin.transceiver.ip;
 
-import info.pppc.base.system.plugin.IPacket;
+import info.pppc.base.system.plugin.IBufferedPacket;
 
 import java.net.DatagramPacket;
 import java.net.InetAddress;
 
 /**
  * The ip packet is a packet that wraps the underlying datagram packet.
+ * Packets that are used to receive data are owned by a packet connector
+ * that reuses them together with their buffer. Such a packet is returned
+ * to the connector when its last reference has been released.
  * 
  * @author Marcus Handte
  */
-public class IPPacket implements IPacket {
+public class IPPacket implements IBufferedPacket {
 
 	/**
 	 * The maximum packet length supported by the packet.
@@ -22,6 +25,28 @@ public class IPPacket implements IPacket {
 	 */
 	private DatagramPacket packet;
 
+	/**
+	 * The connector that owns the packet or null if the packet is not
+	 * used to receive data.
+	 */
+	private IPPacketConnector connector;
+
+	/**
+	 * The buffer that is used to receive data or null if the packet is
+	 * not used to receive data.
+	 */
+	private byte[] buffer;
+
+	/**
+	 * The copy of the received payload, created lazily.
+	 */
+	private byte[] payload;
+
+	/**
+	 * The number of references to a packet that is used to receive data.
+	 */
+	private int references = 0;
+
 	/**
 	 * Creates a new packet with the specified length.
 	 * 
@@ -35,12 +60,37 @@ public class IPPacket implements IPacket {
 	}
 
 	/**
-	 * Returns the payload of the packet.
+	 * Creates a new packet that is used by the specified connector to
+	 * receive data.
+	 *
+	 * @param connector The connector that owns the packet.
+	 * @param maximum The maximum length of the data packet.
+	 */
+	protected IPPacket(IPPacketConnector connector, int maximum) {
+		this.connector = connector;
+		length = maximum;
+		buffer = new byte[maximum];
+		packet = new DatagramPacket(buffer, maximum);
+	}
+
+	/**
+	 * Returns the payload of the packet. For received packets, this is
+	 * a copy of the received data that remains valid after the packet
+	 * has been released.
 	 * 
 	 * @return The payload that is currently stored in the packet.
 	 */
 	public byte[] getPayload() {
-		return packet.getData();
+		if (connector == null) {
+			return packet.getData();
+		}
+		synchronized (this) {
+			if (payload == null) {
+				payload = new byte[packet.getLength()];
+				System.arraycopy(packet.getData(), packet.getOffset(), payload, 0, payload.length);
+			}
+			return payload;
+		}
 	}
 
 	/**
@@ -55,8 +105,72 @@ public class IPPacket implements IPacket {
 		if (payload.length > length) {
 			throw new IndexOutOfBoundsException("Payload to large.");
 		} 
-		packet.setData(payload);
-		packet.setLength(payload.length);
+		synchronized (this) {
+			if (connector != null) {
+				this.payload = payload;
+			}
+			packet.setData(payload);
+			packet.setLength(payload.length);
+		}
+	}
+
+	/**
+	 * Returns the buffer that contains the payload.
+	 *
+	 * @return The buffer that contains the payload.
+	 */
+	public byte[] getBuffer() {
+		return packet.getData();
+	}
+
+	/**
+	 * Returns the offset of the payload in the buffer.
+	 *
+	 * @return The offset of the payload.
+	 */
+	public int getOffset() {
+		return packet.getOffset();
+	}
+
+	/**
+	 * Returns the length of the payload.
+	 *
+	 * @return The length of the payload.
+	 */
+	public int getLength() {
+		return packet.getLength();
+	}
+
+	/**
+	 * Retains a received packet so that its buffer is not reused.
+	 */
+	public synchronized void retain() {
+		if (connector != null) {
+			references += 1;
+		}
+	}
+
+	/**
+	 * Releases a reference to a received packet. If the last reference
+	 * has been released, the packet is returned to the connector.
+	 */
+	public void release() {
+		synchronized (this) {
+			if (connector == null || references == 0) return;
+			references -= 1;
+			if (references != 0) return;
+		}
+		connector.recycle(this);
+	}
+
+	/**
+	 * Prepares a packet that is owned by a connector for the next
+	 * datagram. Afterwards, the connector holds the only reference.
+	 */
+	protected synchronized void prepare() {
+		references = 1;
+		payload = null;
+		packet.setData(buffer, 0, length);
 	}
 
 	/**
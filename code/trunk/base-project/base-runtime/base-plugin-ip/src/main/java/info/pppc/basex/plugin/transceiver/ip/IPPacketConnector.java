@@ -4,6 +4,7 @@ import info.pppc.base.system.event.IListener;
 import info.pppc.base.system.event.ListenerBundle;
 import info.pppc.base.system.operation.IMonitor;
 import info.pppc.base.system.operation.IOperation;
+import info.pppc.base.system.operation.IOperator;
 import info.pppc.base.system.plugin.IPacket;
 import info.pppc.base.system.plugin.IPacketConnector;
 import info.pppc.base.system.plugin.IPlugin;
@@ -14,12 +15,20 @@ import java.io.InterruptedIOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.util.Vector;
 
 /**
  * A connector that encapsulates a datagram socket. The ip transceiver 
  * plug-ins use datagram sockets to provide packet-based communication
  * groups.
  * 
+ * The connector reuses the packets that receive data. The listeners
+ * receive a buffered packet that is only valid while the event is
+ * processed unless it is retained. If the connector has a queue, the
+ * receiving thread only receives datagrams and a second thread delivers
+ * them in batches. Thus, slow listeners do not delay the socket. If the
+ * queue is full, further datagrams are dropped.
+ * 
  * @author Marcus Handte
  */
 public class IPPacketConnector implements IPacketConnector, IOperation {
@@ -59,6 +68,39 @@ public class IPPacketConnector implements IPacketConnector, IOperation {
 	 */
 	private boolean released = false;
 	
+	/**
+	 * The maximum number of unused packets that are kept in addition
+	 * to the length of the queue.
+	 */
+	private static final int MAXIMUM_PACKETS = 4;
+	
+	/**
+	 * The unused packets that can receive data.
+	 */
+	private Vector packets = new Vector();
+	
+	/**
+	 * The operator that executes the delivery of queued packets or null
+	 * if the packets are delivered by the receiving thread.
+	 */
+	private IOperator operator;
+	
+	/**
+	 * The ring buffer of received packets that have not been delivered
+	 * or null if the connector does not queue packets.
+	 */
+	private IPPacket[] queue;
+	
+	/**
+	 * The index of the first queued packet.
+	 */
+	private int queueHead = 0;
+	
+	/**
+	 * The number of queued packets.
+	 */
+	private int queueSize = 0;
+	
 	/**
 	 * Creates a new packet connector that broadcasts messages
 	 * using the specified datagram socket.
@@ -69,11 +111,33 @@ public class IPPacketConnector implements IPacketConnector, IOperation {
 	 * @param group The group id.
 	 */
 	public IPPacketConnector(IIPPlugin plugin, DatagramSocket socket, InetAddress group, int length) {
+		this(plugin, socket, group, length, null, 0);
+	}
+
+	/**
+	 * Creates a new packet connector that broadcasts messages using
+	 * the specified datagram socket. If the queue length is larger
+	 * than zero, received packets are queued and delivered by an
+	 * operation that is executed by the operator.
+	 * 
+	 * @param socket The socket used to broadcast messages.
+	 * @param length The maximum packet length.
+	 * @param plugin The creating plug-in.
+	 * @param group The group id.
+	 * @param operator The operator that delivers queued packets.
+	 * @param queue The maximum number of queued packets or 0 to
+	 * 	deliver packets with the receiving thread.
+	 */
+	public IPPacketConnector(IIPPlugin plugin, DatagramSocket socket, InetAddress group, int length, IOperator operator, int queue) {
 		this.socket = socket;
 		this.socketPort = socket.getLocalPort();
 		this.length = length;
 		this.plugin = plugin;
 		this.group = group;
+		if (queue > 0 && operator != null) {
+			this.operator = operator;
+			this.queue = new IPPacket[queue];
+		}
 	}
 
 	/**
@@ -149,20 +213,41 @@ public class IPPacketConnector implements IPacketConnector, IOperation {
 	 * @param monitor The monitor to abort the operation.
 	 */
 	public void perform(IMonitor monitor) {
+		if (queue != null) {
+			operator.performOperation(new IOperation() {
+				public void perform(IMonitor monitor) throws Exception {
+					deliver(monitor);
+				}
+			});
+		}
+		IPPacket packet = null;
 		try {
 			while (!monitor.isCanceled()) {
+				if (packet == null) {
+					packet = obtain();
+				} else {
+					packet.prepare();
+				}
 				try {
-					DatagramPacket datagram = new DatagramPacket(new byte[length], length);
-					socket.receive(datagram);
-					int paylength = datagram.getLength();
-					byte[] buffer = new byte[paylength];
-					System.arraycopy(datagram.getData(), 0, buffer, 0, paylength);
-					IPPacket packet = new IPPacket(length, group, socketPort);
-					packet.setPayload(buffer);
-					listeners.fireEvent(EVENT_PACKET_RECEIVED, packet);
+					socket.receive(packet.getPacket());
 				} catch (InterruptedIOException e) {
 					// nothing to be done
+					continue;
 				} 
+				if (queue == null) {
+					listeners.fireEvent(EVENT_PACKET_RECEIVED, packet);
+					packet.release();
+					packet = null;
+				} else {
+					synchronized (queue) {
+						if (queueSize < queue.length) {
+							queue[(queueHead + queueSize) % queue.length] = packet;
+							queueSize += 1;
+							queue.notify();
+							packet = null;
+						}
+					}
+				}
 			}
 		} catch (IOException e) {
 			Logging.debug(getClass(), "Exception while receiving packets.");
@@ -170,15 +255,97 @@ public class IPPacketConnector implements IPacketConnector, IOperation {
 		}
 	}
 	
+	/**
+	 * Delivers the queued packets until the connector is released.
+	 * All packets that are queued when the operation wakes up are
+	 * removed at once and delivered as a batch.
+	 * 
+	 * @param monitor The monitor to abort the operation.
+	 */
+	private void deliver(IMonitor monitor) {
+		IPPacket[] batch = new IPPacket[queue.length];
+		while (! monitor.isCanceled()) {
+			int size = 0;
+			synchronized (queue) {
+				while (queueSize == 0) {
+					if (released) return;
+					try {
+						queue.wait();
+					} catch (InterruptedException e) {
+						Logging.error(getClass(), "Thread got interrupted.", e);
+					}
+				}
+				while (queueSize > 0) {
+					batch[size] = queue[queueHead];
+					queue[queueHead] = null;
+					queueHead = (queueHead + 1) % queue.length;
+					queueSize -= 1;
+					size += 1;
+				}
+			}
+			for (int i = 0; i < size; i++) {
+				if (! released) {
+					listeners.fireEvent(EVENT_PACKET_RECEIVED, batch[i]);
+				}
+				batch[i].release();
+				batch[i] = null;
+			}
+		}
+	}
+	
+	/**
+	 * Returns an unused packet that is prepared to receive data.
+	 * 
+	 * @return A packet that is prepared to receive data.
+	 */
+	private IPPacket obtain() {
+		IPPacket packet = null;
+		synchronized (packets) {
+			int size = packets.size();
+			if (size != 0) {
+				packet = (IPPacket)packets.elementAt(size - 1);
+				packets.removeElementAt(size - 1);
+			}
+		}
+		if (packet == null) {
+			packet = new IPPacket(this, length);
+		}
+		packet.prepare();
+		return packet;
+	}
+	
+	/**
+	 * Called by a received packet when its last reference has been
+	 * released. The packet is kept for the next datagram unless there
+	 * are enough unused packets already.
+	 * 
+	 * @param packet The packet that has been released.
+	 */
+	protected void recycle(IPPacket packet) {
+		int maximum = MAXIMUM_PACKETS + ((queue == null) ? 0 : queue.length);
+		synchronized (packets) {
+			if (packets.size() < maximum) {
+				packets.addElement(packet);
+			}
+		}
+	}
+	
 	/**
 	 * Releases the socket and removes the connector from the
 	 * list of connectors.
 	 */
 	public void release() {
-		if (! released) {
-			socket.close();
-			listeners.fireEvent(EVENT_PACKET_CLOSED);
-			plugin.release(this);
+		synchronized (this) {
+			if (released) return;
+			released = true;
+		}
+		socket.close();
+		if (queue != null) {
+			synchronized (queue) {
+				queue.notify();
+			}
 		}
+		listeners.fireEvent(EVENT_PACKET_CLOSED);
+		plugin.release(this);
 	}
 }
\ No newline at end of file
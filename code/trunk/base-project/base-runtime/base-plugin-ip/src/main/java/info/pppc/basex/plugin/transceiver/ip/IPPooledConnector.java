@@ -0,0 +1,170 @@
+package info.pppc.basex.plugin.transceiver.ip;
+
+import info.pppc.base.system.plugin.IPlugin;
+import info.pppc.base.system.plugin.IStreamConnector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The pooled connector is a stream connector for a single session that
+ * is carried by a connection of a connection pool. Releasing the connector
+ * finishes the session and returns the connection to the pool instead of
+ * closing the socket. If the connector is released while another thread
+ * still reads or writes, the connection is closed since it is no longer
+ * possible to determine where the session ends.
+ *
+ * @author Mac
+ */
+public class IPPooledConnector implements IStreamConnector {
+
+	/**
+	 * The plug-in that uses the connector.
+	 */
+	private IPooledPlugin plugin;
+
+	/**
+	 * The pool that owns the connection.
+	 */
+	private IPConnectionPool pool;
+
+	/**
+	 * The connection that carries the session.
+	 */
+	private IPConnection connection;
+
+	/**
+	 * The number of threads that currently read or write.
+	 */
+	private int active = 0;
+
+	/**
+	 * A flag that indicates whether the connector has been released.
+	 */
+	private boolean released = false;
+
+	/**
+	 * The input stream of the session.
+	 */
+	private InputStream input = new InputStream() {
+		private byte[] single = new byte[1];
+		public synchronized int read() throws IOException {
+			int read = read(single, 0, 1);
+			return (read == -1) ? -1 : single[0] & 0xFF;
+		}
+		public synchronized int read(byte[] b, int off, int len) throws IOException {
+			enter();
+			try {
+				return connection.read(b, off, len);
+			} finally {
+				exit();
+			}
+		}
+	};
+
+	/**
+	 * The output stream of the session.
+	 */
+	private OutputStream output = new OutputStream() {
+		public synchronized void write(int b) throws IOException {
+			enter();
+			try {
+				connection.write(b);
+			} finally {
+				exit();
+			}
+		}
+		public synchronized void write(byte[] b, int off, int len) throws IOException {
+			enter();
+			try {
+				connection.write(b, off, len);
+			} finally {
+				exit();
+			}
+		}
+		public synchronized void flush() throws IOException {
+			enter();
+			try {
+				connection.flush();
+			} finally {
+				exit();
+			}
+		}
+	};
+
+	/**
+	 * Creates a new connector for the next session of the connection.
+	 *
+	 * @param plugin The plug-in that uses the connector.
+	 * @param pool The pool that owns the connection.
+	 * @param connection The connection that carries the session.
+	 */
+	public IPPooledConnector(IPooledPlugin plugin, IPConnectionPool pool, IPConnection connection) {
+		this.plugin = plugin;
+		this.pool = pool;
+		this.connection = connection;
+	}
+
+	/**
+	 * Returns the input stream of the session.
+	 *
+	 * @return The input stream of the session.
+	 * @throws IOException Thrown if the connector has been released.
+	 */
+	public InputStream getInputStream() throws IOException {
+		return input;
+	}
+
+	/**
+	 * Returns the output stream of the session. Bytes are sent when
+	 * the stream is flushed or when a frame is full.
+	 *
+	 * @return The output stream of the session.
+	 * @throws IOException Thrown if the connector has been released.
+	 */
+	public OutputStream getOutputStream() throws IOException {
+		return output;
+	}
+
+	/**
+	 * Finishes the session and returns the connection to the pool.
+	 */
+	public void release() {
+		boolean reuse;
+		synchronized (this) {
+			if (released) return;
+			released = true;
+			reuse = (active == 0);
+		}
+		pool.release(connection, reuse);
+		plugin.release(this);
+	}
+
+	/**
+	 * Returns a reference to the underlying plug-in.
+	 *
+	 * @return A reference to the underlying plug-in.
+	 */
+	public IPlugin getPlugin() {
+		return plugin;
+	}
+
+	/**
+	 * Registers a thread that reads or writes.
+	 *
+	 * @throws IOException Thrown if the connector has been released.
+	 */
+	private synchronized void enter() throws IOException {
+		if (released) throw new IOException("Connector released.");
+		active += 1;
+	}
+
+	/**
+	 * Unregisters a thread that reads or writes.
+	 */
+	private synchronized void exit() {
+		active -= 1;
+	}
+
+}
@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 
 /**
  * The stream connector transforms an incoming or outgoing socket into a
@@ -105,6 +106,19 @@ public class IPStreamConnector implements IStreamConnector {
 		plugin.release(this);
 	}
 
+	/**
+	 * Returns the channel of the underlying socket. The channel can be 
+	 * used to transfer data without copying it into the streams of the
+	 * connector. However, the channel must not be switched into the 
+	 * non-blocking mode.
+	 * 
+	 * @return The channel of the socket or null if the socket has not
+	 * 	been created by a channel.
+	 */
+	public SocketChannel getChannel() {
+		return socket.getChannel();
+	}
+
 	/**
 	 * Returns a reference to the underlying plug-in.
 	 * 
@@ -0,0 +1,29 @@
+package info.pppc.basex.plugin.transceiver.ip;
+
+/**
+ * The pooled plug-in interface is implemented by ip plug-ins that use
+ * a connection pool to carry several sessions over one tcp connection.
+ *
+ * @author Mac
+ */
+public interface IPooledPlugin extends IIPPlugin {
+
+	/**
+	 * Called by the connection pool when a remote system has started
+	 * a new session on a pooled connection.
+	 *
+	 * @param connector The connector of the incoming session.
+	 * @return True if the session has been accepted, false if the
+	 * 	connection should be closed.
+	 */
+	public boolean accept(IPPooledConnector connector);
+
+	/**
+	 * Called by the pooled connector to signal that it has been
+	 * released.
+	 *
+	 * @param connector The released stream connector.
+	 */
+	public void release(IPPooledConnector connector);
+
+}
@@ -265,7 +265,7 @@ public class MxIRTransceiver implements ITransceiver, IOperation, IMultiplexPlug
 								try {
 									OutputStream os = socket.getOutputStream();
 									ObjectOutputStream oos = new ObjectOutputStream(os);
-									oos.writeObject(SystemID.SYSTEM);
+									oos.writeObject(SystemID.getLocal());
 									InputStream is = socket.getInputStream();
 									ObjectInputStream ois = new ObjectInputStream(is);
 									SystemID remote = (SystemID)ois.readObject();
@@ -571,7 +571,7 @@ public class MxIRTransceiver implements ITransceiver, IOperation, IMultiplexPlug
 		if (description == null) {
 			description = new PluginDescription
 				(PLUGIN_ABILITY, EXTENSION_TRANSCEIVER);
-			description.setProperty(PROPERTY_ID, SystemID.SYSTEM, false);
+			description.setProperty(PROPERTY_ID, SystemID.getLocal(), false);
 		}
 		return description;
 	}
@@ -606,7 +606,7 @@ public class MxIRTransceiver implements ITransceiver, IOperation, IMultiplexPlug
 				Logging.debug(getClass(), "Incoming device identified as " + remote + ".");
 				OutputStream os = connection.getOutputStream();
 				ObjectOutputStream oos = new ObjectOutputStream(os);
-				oos.writeObject(SystemID.SYSTEM);
+				oos.writeObject(SystemID.getLocal());
 				// test whether incoming connection is new
 				if (multiplexers.get(remote) == null) {
 					// add incoming connection
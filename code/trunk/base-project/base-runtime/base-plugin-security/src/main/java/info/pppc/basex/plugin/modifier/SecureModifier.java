@@ -183,7 +183,7 @@ public class SecureModifier implements IModifier {
 	 * Creates a new secure modifier.
 	 */
 	public SecureModifier() {
-		description.setProperty(PROPERTY_SYSTEM, SystemID.SYSTEM, false);
+		description.setProperty(PROPERTY_SYSTEM, SystemID.getLocal(), false);
 	}
 
 	/**
@@ -274,7 +274,7 @@ public class SecureModifier implements IModifier {
 			AESSymmetricKey enc = (AESSymmetricKey)setup[2];
 			HMACSymmetricKey sig = (HMACSymmetricKey)setup[3];
 			ObjectOutputStream o = new ObjectOutputStream(connector.getOutputStream());
-			o.writeObject(SystemID.SYSTEM);
+			o.writeObject(SystemID.getLocal());
 			o.writeLong(ts);
 			o.flush();
 			ObjectInputStream i = new ObjectInputStream(connector.getInputStream());
@@ -82,7 +82,7 @@ public class ExchangeSemantic implements ISemantic {
 	 */
 	public ExchangeSemantic() {
 		PluginDescription pd=new PluginDescription(PLUGIN_ABILITY,EXTENSION_SEMANTIC);
-		AbstractCertificate cert=store.getCertificate(SystemID.SYSTEM);
+		AbstractCertificate cert=store.getCertificate(SystemID.getLocal());
 		if(cert instanceof ECCCertificate)
 		{
 			ECCCertificate ecc=(ECCCertificate)cert;
@@ -159,7 +159,7 @@ public class ExchangeSemantic implements ISemantic {
 			bos.write(nonce);
 			
 			SystemID mySystem=(SystemID)in.readObject();
-			if(!SystemID.SYSTEM.equals(mySystem))
+			if(!SystemID.getLocal().equals(mySystem))
 			{
 				Logging.debug(getClass(), "Wrong target device in request.");
 				throw new IOException( "Wrong target device in request.");
@@ -218,8 +218,8 @@ public class ExchangeSemantic implements ISemantic {
 			}
 			bos.reset();
 			
-			out.writeObject(SystemID.SYSTEM);
-			bos.write(SystemID.SYSTEM.getBytes());
+			out.writeObject(SystemID.getLocal());
+			bos.write(SystemID.getLocal().getBytes());
 			out.writeObject(nonce);
 			bos.write(nonce);
 			out.writeObject(system);
@@ -227,7 +227,7 @@ public class ExchangeSemantic implements ISemantic {
 			out.writeObject(local);
 			bos.write(local);
 			
-			AbstractCertificate cert=store.getCertificate(SystemID.SYSTEM);
+			AbstractCertificate cert=store.getCertificate(SystemID.getLocal());
 			out.writeObject(cert.sign(bos.toByteArray()));
 			Vector certificateVector=new Vector();
 			while(cert!=null)
@@ -277,8 +277,8 @@ public class ExchangeSemantic implements ISemantic {
 				ObjectOutputStream out = new ObjectOutputStream(c.getOutputStream());
 				ByteArrayOutputStream bos=new ByteArrayOutputStream(2*SystemID.LENGTH+String.valueOf(Long.MIN_VALUE).getBytes().length+local.length);
 				ObjectInputStream in = new ObjectInputStream(c.getInputStream());
-				bos.write(SystemID.SYSTEM.getBytes()); //My SystemID
-				out.writeObject(SystemID.SYSTEM);
+				bos.write(SystemID.getLocal().getBytes()); //My SystemID
+				out.writeObject(SystemID.getLocal());
 				
 				byte[] nonce=new byte[NONCE_SIZE];
 				StaticSecurity.getSecureRandom().nextBytes(nonce);
@@ -295,7 +295,7 @@ public class ExchangeSemantic implements ISemantic {
 				bos.write(local); //DHMessage
 				out.writeObject(local);
 				
-				AbstractCertificate cert=store.getCertificate(SystemID.SYSTEM);
+				AbstractCertificate cert=store.getCertificate(SystemID.getLocal());
 				bos.close();
 				out.writeObject(cert.sign(bos.toByteArray())); //Write the signature
 				Vector certificateVector=new Vector();
@@ -335,7 +335,7 @@ public class ExchangeSemantic implements ISemantic {
 				}
 				SystemID mySystem=(SystemID)in.readObject();
 				bos.write(mySystem.getBytes());
-				if(!mySystem.equals(SystemID.SYSTEM))
+				if(!mySystem.equals(SystemID.getLocal()))
 				{
 					Logging.debug(getClass(), "Message was not sent to this system.");
 					throw new IOException("Message was not sent to this system.");
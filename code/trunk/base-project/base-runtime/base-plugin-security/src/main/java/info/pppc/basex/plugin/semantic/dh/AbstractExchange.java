@@ -120,7 +120,7 @@ public abstract class AbstractExchange {
 		try
 		{
 			KeyStore ks=KeyStore.getInstance(); 
-			AbstractCertificate cert = ks.getCertificate(SystemID.SYSTEM);
+			AbstractCertificate cert = ks.getCertificate(SystemID.getLocal());
 			Class clazz = (Class)exchanges.get(new Short(exchangeSemanticType));
 			Object o = clazz.newInstance();
 			AbstractExchange ae = (AbstractExchange)o;
@@ -0,0 +1,367 @@
+package info.pppc.basex.plugin.transceiver;
+
+import info.pppc.base.system.ISession;
+import info.pppc.base.system.PluginDescription;
+import info.pppc.base.system.nf.NFCollection;
+import info.pppc.base.system.nf.NFDimension;
+import info.pppc.base.system.plugin.IStreamConnector;
+import info.pppc.base.system.util.Logging;
+import info.pppc.basex.plugin.transceiver.unix.Doorbell;
+import info.pppc.basex.plugin.transceiver.unix.ISharedMemoryPlugin;
+import info.pppc.basex.plugin.transceiver.unix.SharedMemoryConnector;
+import info.pppc.basex.plugin.transceiver.unix.SharedMemoryRing;
+import info.pppc.basex.plugin.transceiver.unix.UnixStreamConnector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+
+/**
+ * The shared memory transceiver is a unix transceiver that transfers the
+ * data of sessions through memory mapped files. When a session is opened,
+ * the initiator creates a file in the shared memory directory that contains
+ * a single-producer single-consumer ring for each direction and it sends
+ * the path of the file over the unix domain socket. The acceptor maps the
+ * file and removes it, thus, the memory is released as soon as both
+ * processes have closed the session. The unix domain socket remains open
+ * and it is used as a doorbell that wakes up a process that waits for
+ * data or for space. As long as data flows continuously, the processes
+ * do not perform any system call. Since every session maps a file of the
+ * size of two rings, the shared memory is only used for sessions of the
+ * stream semantic. All other sessions use the unix domain socket like the
+ * unix transceiver. Group communication is inherited from the unix
+ * transceiver.
+ *
+ * @author Mac
+ */
+public class SharedMemoryTransceiver extends UnixTransceiver implements ISharedMemoryPlugin {
+
+	/**
+	 * The ability of the plug-in [1][14].
+	 */
+	private static final short PLUGIN_ABILITY = 0x010e;
+
+	/**
+	 * The default capacity of the ring of each direction in bytes.
+	 */
+	private static final int DEFAULT_CAPACITY = 1 << 20;
+
+	/**
+	 * The directory that is backed by shared memory on linux.
+	 */
+	private static final File SHARED_DIRECTORY = new File("/dev/shm");
+
+	/**
+	 * The prefix of the names of the files that contain the rings. The
+	 * prefix is followed by the process identifier and a counter.
+	 */
+	private static final String FILE_PREFIX = "base-";
+
+	/**
+	 * The number of files that have been created in this virtual
+	 * machine. This is used to create unique file names.
+	 */
+	private static int count = 0;
+
+	/**
+	 * The plug-in description.
+	 */
+	private PluginDescription description;
+
+	/**
+	 * The capacity of the rings of outgoing sessions in bytes.
+	 */
+	private int capacity;
+
+	/**
+	 * The directory that contains the memory mapped files.
+	 */
+	private File memory;
+
+	/**
+	 * Creates a transceiver that uses the default socket directory and
+	 * rings with a capacity of 1 MB.
+	 */
+	public SharedMemoryTransceiver() {
+		super();
+		init(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a transceiver that uses the specified socket directory and
+	 * rings with the specified capacity.
+	 *
+	 * @param directory The socket directory.
+	 * @param capacity The capacity of the ring of each direction in bytes,
+	 * 	a power of two.
+	 * @throws IllegalArgumentException Thrown if the capacity is not a
+	 * 	power of two.
+	 */
+	public SharedMemoryTransceiver(File directory, int capacity) {
+		super(directory);
+		init(capacity);
+	}
+
+	/**
+	 * Returns the plug-in description of the transceiver.
+	 *
+	 * @return The plug-in description of the transceiver.
+	 */
+	public PluginDescription getPluginDescription() {
+		if (description == null) {
+			description = new PluginDescription(PLUGIN_ABILITY, EXTENSION_TRANSCEIVER);
+			description.setProperty(PROPERTY_HOST, HOST, false);
+		}
+		return description;
+	}
+
+	/**
+	 * Prepares a session with the specified system. Sessions of the
+	 * stream semantic are marked so that they use shared memory.
+	 *
+	 * @param description The plug-in description of the remote plug-in.
+	 * @param collection The requirements of the session.
+	 * @param session The session that is prepared.
+	 * @return True if the session can be opened, false otherwise.
+	 */
+	public boolean prepareSession(PluginDescription description, NFCollection collection, ISession session) {
+		if (! super.prepareSession(description, collection, session)) {
+			return false;
+		}
+		NFDimension type = collection.getDimension(EXTENSION_SEMANTIC, NFDimension.IDENTIFIER_TYPE);
+		if (type != null && type.getHardValue() instanceof Short
+				&& ((Short)type.getHardValue()).shortValue() == NFCollection.TYPE_STREAM) {
+			session.setLocal(new Object[] { session.getLocal() });
+		}
+		return true;
+	}
+
+	/**
+	 * Opens a session to the specified system. For sessions of the stream
+	 * semantic, this creates and maps the file that contains the rings and
+	 * waits until the remote system has mapped it as well. Other sessions
+	 * use the unix domain socket.
+	 *
+	 * @param session The session that contains the path of the server
+	 * 	socket of the remote system.
+	 * @return The stream connector for the session.
+	 * @throws IOException Thrown if the connector could not be created.
+	 */
+	public IStreamConnector openSession(ISession session) throws IOException {
+		Object local = session.getLocal();
+		if (local instanceof String) {
+			SocketChannel channel = openChannel((String)local);
+			try {
+				ByteBuffer request = ByteBuffer.allocate(2);
+				while (request.hasRemaining()) {
+					channel.write(request);
+				}
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+			UnixStreamConnector connector = new UnixStreamConnector(this, channel);
+			addConnector(connector);
+			return connector;
+		}
+		SocketChannel channel = openChannel((String)((Object[])local)[0]);
+		File file = null;
+		try {
+			synchronized (SharedMemoryTransceiver.class) {
+				count += 1;
+				file = new File(memory, FILE_PREFIX + ProcessHandle.current().pid() + "-" + count);
+			}
+			int length = 2 * (SharedMemoryRing.HEADER_LENGTH + capacity);
+			MappedByteBuffer buffer = map(file, length);
+			byte[] name = file.getPath().getBytes(StandardCharsets.UTF_8);
+			ByteBuffer request = ByteBuffer.allocate(2 + name.length);
+			request.putShort((short)name.length);
+			request.put(name);
+			request.flip();
+			while (request.hasRemaining()) {
+				channel.write(request);
+			}
+			ByteBuffer response = ByteBuffer.allocate(1);
+			if (channel.read(response) != 1) {
+				throw new IOException("Connection refused.");
+			}
+			SharedMemoryConnector connector = createConnector(channel, buffer, capacity, true);
+			addConnector(connector);
+			return connector;
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		} finally {
+			if (file != null) file.delete();
+		}
+	}
+
+	/**
+	 * Called whenever a channel that carries a session has been accepted.
+	 * This reads the path of the file that contains the rings, maps the
+	 * file and signals the initiator that the session can be used. If
+	 * the path is empty, the session uses the unix domain socket.
+	 *
+	 * @param channel The accepted channel.
+	 * @throws IOException Thrown if the file cannot be mapped.
+	 */
+	protected void acceptChannel(SocketChannel channel) throws IOException {
+		ByteBuffer length = ByteBuffer.allocate(2);
+		read(channel, length);
+		if (length.getShort(0) == 0) {
+			super.acceptChannel(channel);
+			return;
+		}
+		ByteBuffer name = ByteBuffer.allocate(length.getShort(0) & 0xFFFF);
+		read(channel, name);
+		File file = new File(new String(name.array(), StandardCharsets.UTF_8));
+		if (! isRing(file)) {
+			throw new IOException("Invalid file.");
+		}
+		MappedByteBuffer buffer = map(file, -1);
+		file.delete();
+		int capacity = buffer.capacity() / 2 - SharedMemoryRing.HEADER_LENGTH;
+		if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+			throw new IOException("Invalid capacity.");
+		}
+		SharedMemoryConnector connector = createConnector(channel, buffer, capacity, false);
+		ByteBuffer response = ByteBuffer.allocate(1);
+		response.put((byte)1);
+		response.flip();
+		channel.write(response);
+		addConnector(connector);
+		getTransceiverManager().acceptSession(connector);
+	}
+
+	/**
+	 * Releases the specified connector by removing it from the
+	 * list of open connectors.
+	 *
+	 * @param connector The connector to remove from the list of
+	 * 	connectors.
+	 */
+	public void release(SharedMemoryConnector connector) {
+		removeConnector(connector);
+	}
+
+	/**
+	 * Initializes the capacity and the shared memory directory.
+	 *
+	 * @param capacity The capacity of the rings.
+	 * @throws IllegalArgumentException Thrown if the capacity is not a
+	 * 	power of two.
+	 */
+	private void init(int capacity) {
+		if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+			throw new IllegalArgumentException("Capacity must be a power of two.");
+		}
+		this.capacity = capacity;
+		if (SHARED_DIRECTORY.isDirectory()) {
+			memory = SHARED_DIRECTORY;
+		} else {
+			Logging.debug(getClass(), "Shared memory directory not found, using temporary directory.");
+			memory = new File(System.getProperty("java.io.tmpdir")).getAbsoluteFile();
+		}
+	}
+
+	/**
+	 * Creates a connector for the rings in the specified buffer.
+	 *
+	 * @param channel The channel of the session.
+	 * @param buffer The buffer that contains the rings.
+	 * @param capacity The capacity of each ring.
+	 * @param initiator True if the local process has opened the session.
+	 * @return The connector for the session.
+	 */
+	private SharedMemoryConnector createConnector(SocketChannel channel,
+			MappedByteBuffer buffer, int capacity, boolean initiator) {
+		Doorbell doorbell = new Doorbell(channel);
+		int offset = SharedMemoryRing.HEADER_LENGTH + capacity;
+		SharedMemoryRing first = new SharedMemoryRing(buffer, 0, capacity, doorbell);
+		SharedMemoryRing second = new SharedMemoryRing(buffer, offset, capacity, doorbell);
+		if (initiator) {
+			return new SharedMemoryConnector(this, channel, second, first);
+		} else {
+			return new SharedMemoryConnector(this, channel, first, second);
+		}
+	}
+
+	/**
+	 * Determines whether the specified file has been created by a shared
+	 * memory transceiver. Such a file resides directly in the shared
+	 * memory directory, its name consists of the prefix, the process
+	 * identifier and the counter and it is a regular file.
+	 *
+	 * @param file The file to check.
+	 * @return True if the file contains rings, false otherwise.
+	 */
+	private boolean isRing(File file) {
+		if (! memory.equals(file.getParentFile())) {
+			return false;
+		}
+		String name = file.getName();
+		if (! name.startsWith(FILE_PREFIX)) {
+			return false;
+		}
+		int separators = 0;
+		for (int i = FILE_PREFIX.length(); i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c == '-') {
+				separators += 1;
+				if (i == FILE_PREFIX.length() || name.charAt(i - 1) == '-') {
+					return false;
+				}
+			} else if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		if (separators != 1 || name.endsWith("-")) {
+			return false;
+		}
+		return Files.isRegularFile(file.toPath(), LinkOption.NOFOLLOW_LINKS);
+	}
+
+	/**
+	 * Maps the specified file into memory.
+	 *
+	 * @param file The file to map.
+	 * @param length The length of a new file or -1 to map an existing file.
+	 * @return The buffer that contains the file.
+	 * @throws IOException Thrown if the file cannot be mapped.
+	 */
+	private MappedByteBuffer map(File file, int length) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			if (length != -1) {
+				raf.setLength(length);
+			}
+			FileChannel fc = raf.getChannel();
+			return fc.map(FileChannel.MapMode.READ_WRITE, 0, fc.size());
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads from the channel until the buffer is full.
+	 *
+	 * @param channel The channel to read from.
+	 * @param buffer The buffer to fill.
+	 * @throws IOException Thrown if the stream ends before the buffer is full.
+	 */
+	private void read(SocketChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) == -1) {
+				throw new IOException("Unexpected end of stream.");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,710 @@
+package info.pppc.basex.plugin.transceiver;
+
+import info.pppc.base.system.ISession;
+import info.pppc.base.system.PluginDescription;
+import info.pppc.base.system.event.IListener;
+import info.pppc.base.system.event.ListenerBundle;
+import info.pppc.base.system.nf.NFCollection;
+import info.pppc.base.system.operation.IMonitor;
+import info.pppc.base.system.operation.IOperation;
+import info.pppc.base.system.operation.NullMonitor;
+import info.pppc.base.system.plugin.IConnector;
+import info.pppc.base.system.plugin.IPacketConnector;
+import info.pppc.base.system.plugin.IStreamConnector;
+import info.pppc.base.system.plugin.ITransceiver;
+import info.pppc.base.system.plugin.ITransceiverManager;
+import info.pppc.base.system.util.Logging;
+import info.pppc.basex.plugin.transceiver.unix.IUnixPlugin;
+import info.pppc.basex.plugin.transceiver.unix.UnixPacketConnector;
+import info.pppc.basex.plugin.transceiver.unix.UnixStreamConnector;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Vector;
+
+/**
+ * The unix transceiver plug-in delivers a transport end point for processes
+ * on the same host based on unix domain sockets. Since the data does not
+ * pass the ip stack, there is no checksum computation and no loop back
+ * processing. The plug-in description carries the identity of the host and
+ * the path of the server socket. Sessions are only prepared for descriptions
+ * with the same host identity, thus, the description is useless for remote
+ * systems and the default session strategy prefers the plug-in whenever
+ * the target runs on the same host. Broadcast channels are implemented by
+ * sending packets to all server sockets in a shared socket directory. The
+ * plug-in requires J2SE 16 or later.
+ *
+ * @author Mac
+ */
+public class UnixTransceiver implements IUnixPlugin, ITransceiver, IOperation {
+
+	/**
+	 * The ability of the plug-in. [1][12].
+	 */
+	private static final short PLUGIN_ABILITY = 0x010c;
+
+	/**
+	 * The property name of the socket path. This is used to determine
+	 * the server socket of a local process through its plug-in description.
+	 */
+	private static final String PROPERTY_PATH = "PA";
+
+	/**
+	 * The reconnection period. Whenever the plug-in is enabled, it tries
+	 * to open a server socket in the socket directory. If the server socket
+	 * cannot be opened, this value indicates the sleep time (in milliseconds)
+	 * between open requests.
+	 */
+	private static final int RECONNECT_PERIOD = 5000;
+
+	/**
+	 * The maximum packet length for packets sent by the packet connector.
+	 */
+	private static final int PACKET_LENGTH = 2048;
+
+	/**
+	 * The first byte of a connection that carries a session.
+	 */
+	private static final byte TYPE_SESSION = 0;
+
+	/**
+	 * The first byte of a connection that carries a group packet.
+	 */
+	private static final byte TYPE_PACKET = 1;
+
+	/**
+	 * The file name suffix of server sockets in the socket directory.
+	 */
+	private static final String SOCKET_SUFFIX = ".sock";
+
+	/**
+	 * The identity of the host. This is the machine id, if it is
+	 * available, and the host name otherwise.
+	 */
+	protected static final String HOST = getHost();
+
+	/**
+	 * The number of transceivers that have been created in this virtual
+	 * machine. This is used to create unique socket names.
+	 */
+	private static int count = 0;
+
+	/**
+	 * The end point listeners that keep track of changes to the state
+	 * of the end point.
+	 */
+	private ListenerBundle listeners = new ListenerBundle(this);
+
+	/**
+	 * A list of connectors that is currently opened. This list is
+	 * maintained by the connectors. It ensures that a disable
+	 * operation is performed completely.
+	 */
+	private Vector connectors = new Vector();
+
+	/**
+	 * The packet connectors that receive group packets.
+	 */
+	private Vector packets = new Vector();
+
+	/**
+	 * The plug-in manager used to perform operations and to signal
+	 * incoming connections.
+	 */
+	private ITransceiverManager manager = null;
+
+	/**
+	 * A flag that indicates whether the end point is enabled.
+	 */
+	private boolean enabled = false;
+
+	/**
+	 * A flag that indicates whether the plug-in has been started already
+	 * or whether it is currently stopped.
+	 */
+	private boolean started = false;
+
+	/**
+	 * The plug-in description of the unix plug-in.
+	 */
+	private PluginDescription description;
+
+	/**
+	 * The directory that contains the server sockets of all unix
+	 * transceivers that form a group.
+	 */
+	private File directory;
+
+	/**
+	 * The path of the server socket of this transceiver.
+	 */
+	private Path path;
+
+	/**
+	 * The server socket channel or null if it is not open.
+	 */
+	private ServerSocketChannel server = null;
+
+	/**
+	 * The monitor that is used to monitor and cancel the reception operation.
+	 */
+	private NullMonitor monitor = null;
+
+	/**
+	 * Creates a new instance of the plug-in that places its server socket
+	 * in the directory base-unix within the temporary directory.
+	 */
+	public UnixTransceiver() {
+		this(new File(System.getProperty("java.io.tmpdir"), "base-unix"));
+	}
+
+	/**
+	 * Creates a new instance of the plug-in that places its server socket
+	 * in the specified directory. Only transceivers that use the same
+	 * directory receive the group packets of each other.
+	 *
+	 * @param directory The socket directory.
+	 */
+	public UnixTransceiver(File directory) {
+		this.directory = directory.getAbsoluteFile();
+		synchronized (UnixTransceiver.class) {
+			count += 1;
+			path = new File(this.directory, ProcessHandle.current().pid()
+				+ "-" + count + SOCKET_SUFFIX).toPath();
+		}
+	}
+
+	/**
+	 * Returns the transceiver manager of the transceiver or null
+	 * if none is set.
+	 *
+	 * @return The transceiver manager of the plug-in.
+	 */
+	protected ITransceiverManager getTransceiverManager() {
+		return manager;
+	}
+
+	/**
+	 * Called by the plug-in manager during initialization of the plug-in.
+	 * A call to this method will overwrite the currently stored reference
+	 * to a potentially already initialized manager. This should not be
+	 * a problem except if the same plug-in instance is installed twice.
+	 *
+	 * @param manager The manager of the plug-in used to interface with
+	 * 	other plug-ins and to retrieve connection parameters.
+	 */
+	public void setTransceiverManager(ITransceiverManager manager) {
+		this.manager = manager;
+	}
+
+	/**
+	 * Called when the operation is started. The operation opens a
+	 * server socket in the socket directory and continuously accepts
+	 * incoming connections. Connections that carry a session are
+	 * dispatched to the plug-in manager, connections that carry a
+	 * packet are delivered to the packet connectors. The operation is
+	 * finished when the monitor is canceled and the server is closed.
+	 *
+	 * @param monitor The monitor that is used to signal changes.
+	 * @throws Exception Should never happen.
+	 */
+	public void perform(IMonitor monitor) throws Exception {
+		while (! monitor.isCanceled()) {
+			ServerSocketChannel s = null;
+			try {
+				s = getServerChannel();
+			} catch (IOException e) {
+				Logging.error(getClass(), "Error while opening server.", e);
+				synchronized (monitor) {
+					if (! monitor.isCanceled()) {
+						monitor.wait(RECONNECT_PERIOD);
+					}
+				}
+				continue;
+			}
+			synchronized (this) {
+				server = s;
+			}
+			try {
+				while (! monitor.isCanceled()) {
+					SocketChannel client = s.accept();
+					try {
+						dispatch(client);
+					} catch (IOException e) {
+						Logging.debug(getClass(), "Could not dispatch incoming connection.");
+						client.close();
+					}
+				}
+			} catch (IOException e) {
+				if (! monitor.isCanceled()) {
+					Logging.error(getClass(), "Error while accepting connection.", e);
+				}
+			}
+			synchronized (this) {
+				server = null;
+			}
+			s.close();
+			Files.deleteIfExists(path);
+		}
+	}
+
+	/**
+	 * Called in order to prepare a session. Updates the session with the
+	 * path of the server socket of the remote system. Sessions are only
+	 * prepared for systems on the same host.
+	 *
+	 * @param description The description of the remote system.
+	 * @param collection The requirements regarding the communication.
+	 * @param session The session that holds the attributes.
+	 * @return True if the session can be established, false if the remote
+	 * 	system runs on another host or if its socket does not exist.
+	 */
+	public boolean prepareSession(PluginDescription description, NFCollection collection, ISession session) {
+		if (description == null) {
+			return false;
+		}
+		if (! HOST.equals(description.getProperty(PROPERTY_HOST))) {
+			return false;
+		}
+		String target = (String)description.getProperty(PROPERTY_PATH);
+		if (target == null || ! new File(target).exists()) {
+			return false;
+		}
+		session.setLocal(target);
+		return true;
+	}
+
+	/**
+	 * Opens a connection to the specified system. A call to this method
+	 * will first determine whether it is possible to open a connection.
+	 * If it is not possible due to the state of the plug-in (e.g., if it
+	 * is disabled) an exception will be thrown.
+	 *
+	 * @param session The session data that has been prepared by the
+	 * 	prepare method.
+	 * @return The connector for the session.
+	 * @throws IOException Thrown if the connector cannot be opened.
+	 */
+	public IStreamConnector openSession(ISession session) throws IOException {
+		SocketChannel channel = openChannel((String)session.getLocal());
+		UnixStreamConnector connector = new UnixStreamConnector(this, channel);
+		addConnector(connector);
+		return connector;
+	}
+
+	/**
+	 * Opens a connector that connects to the group. A call to this method
+	 * will first determine whether it is possible to open a connection.
+	 * If it is not possible due to the state of the plug-in (e.g., if it
+	 * is disabled) an exception will be thrown.
+	 *
+	 * @return The connector for the group.
+	 * @throws IOException Thrown if the connector cannot be opened.
+	 */
+	public synchronized IPacketConnector openGroup() throws IOException {
+		checkPlugin();
+		UnixPacketConnector connector = new UnixPacketConnector(this, PACKET_LENGTH);
+		connectors.addElement(connector);
+		packets.addElement(connector);
+		manager.performOperation(connector);
+		return connector;
+	}
+
+	/**
+	 * Sends the payload of a packet to all other transceivers whose server
+	 * sockets are in the socket directory. Sockets that refuse connections
+	 * have been left behind by terminated processes and they are removed.
+	 *
+	 * @param source The connector that sends the packet.
+	 * @param payload The payload of the packet.
+	 */
+	public void distribute(UnixPacketConnector source, byte[] payload) {
+		File[] files = directory.listFiles();
+		if (files == null) return;
+		File own = path.toFile();
+		for (int i = 0; i < files.length; i++) {
+			File file = files[i];
+			if (! file.getName().endsWith(SOCKET_SUFFIX) || file.equals(own)) continue;
+			SocketChannel channel = null;
+			try {
+				channel = getClientChannel(file.getPath(), TYPE_PACKET);
+				ByteBuffer buffer = ByteBuffer.allocate(2 + payload.length);
+				buffer.putShort((short)payload.length);
+				buffer.put(payload);
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			} catch (ConnectException e) {
+				Logging.debug(getClass(), "Removing stale socket " + file.getName() + ".");
+				file.delete();
+			} catch (IOException e) {
+				Logging.debug(getClass(), "Could not send packet to " + file.getName() + ".");
+			} finally {
+				if (channel != null) {
+					try {
+						channel.close();
+					} catch (IOException e) {
+						Logging.debug(getClass(), "Could not close packet channel.");
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called by the plug-in manager to start the stopped plug-in. A call to
+	 * this method will enable the end point in such a way that it will
+	 * enable incoming and outgoing connections.
+	 */
+	public void start() {
+		if (! started) {
+			started = true;
+			setEnabled(true);
+		}
+	}
+
+	/**
+	 * Called by the plug-in manager to stop the started plug-in. A call
+	 * to this method will automatically close all incoming and outgoing
+	 * connections and it will disable the end point.
+	 */
+	public void stop() {
+		if (started) {
+			setEnabled(false);
+			started = false;
+		}
+	}
+
+	/**
+	 * Returns the description of the plug-in.
+	 *
+	 * @return The plugin's description.
+	 */
+	public PluginDescription getPluginDescription() {
+		if (description == null) {
+			description = new PluginDescription
+					(PLUGIN_ABILITY, EXTENSION_TRANSCEIVER);
+			description.setProperty(PROPERTY_HOST, HOST, false);
+		}
+		return description;
+	}
+
+	/**
+	 * Adds a listener to the bundle of registered end point listeners. The
+	 * properly registered listeners will be informed if the state of the
+	 * end point changes.
+	 *
+	 * @param type The type of event to register for.
+	 * @param listener The listener to register.
+	 * @throws NullPointerException Thrown if the listener is null.
+	 */
+	public void addTransceiverListener(int type, IListener listener)
+			throws NullPointerException {
+		listeners.addListener(type, listener);
+	}
+
+	/**
+	 * Removes a potentially previously registered end point listener for a
+	 * certain type of event.
+	 *
+	 * @param type The type to unregister from.
+	 * @param listener The listener to unregister.
+	 * @return True if the listener is no longer registered, false if the
+	 * 	listener has not been registered.
+	 * @throws NullPointerException Thrown if the listener is null.
+	 */
+	public boolean removeTransceiverListener(int type, IListener listener)
+			throws NullPointerException {
+		return listeners.removeListener(type, listener);
+	}
+
+	/**
+	 * Enables or disables the end point provided by the plug-in and
+	 * notifies all listeners if the state has changed.
+	 *
+	 * @param enabled Set true to enable and false to disable.
+	 */
+	public void setEnabled(boolean enabled) {
+		synchronized (this) {
+			if (! started || this.enabled == enabled) {
+				return;
+			} else {
+				this.enabled = enabled;
+			}
+		}
+		if (enabled) {
+			enablePlugin();
+			listeners.fireEvent(EVENT_TRANCEIVER_ENABLED);
+		} else {
+			disablePlugin();
+			listeners.fireEvent(EVENT_TRANCEIVER_DISABLED);
+		}
+	}
+
+	/**
+	 * Determines whether the end point provided by the plug-in is enabled.
+	 *
+	 * @return True if the end point provided by the plug-in is enabled,
+	 * 	false otherwise.
+	 */
+	public synchronized boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Returns the path of the server socket.
+	 *
+	 * @return The path of the server socket.
+	 */
+	public String getPath() {
+		return path.toString();
+	}
+
+	/**
+	 * Releases the specified connector by removing it from the
+	 * list of open connectors.
+	 *
+	 * @param connector The connector to remove from the list of
+	 * 	connectors.
+	 */
+	public synchronized void release(UnixStreamConnector connector) {
+		connectors.removeElement(connector);
+	}
+
+	/**
+	 * Releases the specified connector by removing it from the
+	 * list of open connectors.
+	 *
+	 * @param connector The connector to remove from the list of
+	 * 	connectors.
+	 */
+	public synchronized void release(UnixPacketConnector connector) {
+		connectors.removeElement(connector);
+		packets.removeElement(connector);
+	}
+
+	/**
+	 * Opens a channel that carries a session to the server socket at the
+	 * specified path. A call to this method will first determine whether
+	 * it is possible to open a connection.
+	 *
+	 * @param target The path of the server socket.
+	 * @return The connected channel.
+	 * @throws IOException Thrown if the channel cannot be opened.
+	 */
+	protected SocketChannel openChannel(String target) throws IOException {
+		checkPlugin();
+		return getClientChannel(target, TYPE_SESSION);
+	}
+
+	/**
+	 * Called whenever a channel that carries a session has been accepted.
+	 * This creates a stream connector for the channel and dispatches it
+	 * to the plug-in manager.
+	 *
+	 * @param channel The accepted channel.
+	 * @throws IOException Thrown if the channel fails.
+	 */
+	protected void acceptChannel(SocketChannel channel) throws IOException {
+		UnixStreamConnector connector = new UnixStreamConnector(this, channel);
+		addConnector(connector);
+		manager.acceptSession(connector);
+	}
+
+	/**
+	 * Adds the specified connector to the list of open connectors. The
+	 * connectors in the list are released when the plug-in is disabled.
+	 *
+	 * @param connector The connector to add.
+	 */
+	protected synchronized void addConnector(IConnector connector) {
+		connectors.addElement(connector);
+	}
+
+	/**
+	 * Removes the specified connector from the list of open connectors.
+	 *
+	 * @param connector The connector to remove.
+	 */
+	protected synchronized void removeConnector(IConnector connector) {
+		connectors.removeElement(connector);
+	}
+
+	/**
+	 * Validates whether the plug-in can open a connection and respond to
+	 * connection requests. This method throws an exception if the current
+	 * state of the plug-in does not allow the initialization or a
+	 * connector.
+	 */
+	private void checkPlugin() {
+		if (manager == null) throw new RuntimeException("Manager not set.");
+		if (! started) throw new RuntimeException("Plugin not started.");
+		if (! enabled) throw new RuntimeException("Endpoint not enabled.");
+	}
+
+	/**
+	 * Enables the reception of incoming connections.
+	 */
+	protected void enablePlugin() {
+		monitor = new NullMonitor();
+		manager.performOperation(this, monitor);
+	}
+
+	/**
+	 * Disables the reception of incoming connections and closes all
+	 * currently incoming and outgoing connections.
+	 */
+	protected void disablePlugin() {
+		// end reception, closing the server aborts a pending accept
+		monitor.cancel();
+		synchronized (this) {
+			if (server != null) {
+				try {
+					server.close();
+				} catch (IOException e) {
+					Logging.error(getClass(), "Cannot close server.", e);
+				}
+			}
+		}
+		synchronized (monitor) {
+			monitor.notify();
+		}
+		try {
+			monitor.join();
+		} catch (InterruptedException e) {
+			Logging.error(getClass(), "Thread got interrupted.", e);
+		}
+		// close all opened connectors, removal is automatic
+		for (int i = connectors.size() - 1; i >= 0; i--) {
+			IConnector c = (IConnector)connectors.elementAt(i);
+			c.release();
+		}
+	}
+
+	/**
+	 * Reads the type of an incoming connection and dispatches it either
+	 * to the plug-in manager or to the packet connectors.
+	 *
+	 * @param client The incoming connection.
+	 * @throws IOException Thrown if the connection fails.
+	 */
+	private void dispatch(SocketChannel client) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(1);
+		read(client, header);
+		if (header.get(0) == TYPE_SESSION) {
+			acceptChannel(client);
+		} else {
+			ByteBuffer length = ByteBuffer.allocate(2);
+			read(client, length);
+			byte[] payload = new byte[length.getShort(0) & 0xFFFF];
+			read(client, ByteBuffer.wrap(payload));
+			client.close();
+			Object[] receivers;
+			synchronized (this) {
+				receivers = new Object[packets.size()];
+				packets.copyInto(receivers);
+			}
+			for (int i = 0; i < receivers.length; i++) {
+				((UnixPacketConnector)receivers[i]).deliver(payload);
+			}
+		}
+	}
+
+	/**
+	 * Reads from the channel until the buffer is full.
+	 *
+	 * @param channel The channel to read from.
+	 * @param buffer The buffer to fill.
+	 * @throws IOException Thrown if the channel fails or if the stream
+	 * 	ends before the buffer is full.
+	 */
+	private void read(SocketChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) == -1) {
+				throw new IOException("Unexpected end of stream.");
+			}
+		}
+	}
+
+	/**
+	 * Tries to open a server socket channel at the path of the transceiver
+	 * and publishes the path in the plug-in description.
+	 *
+	 * @return A server socket channel that is bound to the path.
+	 * @throws IOException Thrown if the channel cannot be opened.
+	 */
+	private ServerSocketChannel getServerChannel() throws IOException {
+		Files.createDirectories(directory.toPath());
+		// the name contains the process id, thus, an existing
+		// file has been left behind by a terminated process
+		Files.deleteIfExists(path);
+		ServerSocketChannel s = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			s.bind(UnixDomainSocketAddress.of(path), 10);
+		} catch (IOException e) {
+			s.close();
+			throw e;
+		}
+		getPluginDescription().setProperty(PROPERTY_PATH, path.toString(), true);
+		Logging.log(getClass(), "Running server on " + path + ".");
+		return s;
+	}
+
+	/**
+	 * Opens a channel to the server socket at the specified path and
+	 * writes the type of the connection.
+	 *
+	 * @param target The path of the server socket.
+	 * @param type The type of the connection.
+	 * @return The connected channel.
+	 * @throws IOException Thrown if the channel cannot be opened.
+	 */
+	private SocketChannel getClientChannel(String target, byte type) throws IOException {
+		SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			channel.connect(UnixDomainSocketAddress.of(target));
+			ByteBuffer header = ByteBuffer.allocate(1);
+			header.put(type);
+			header.flip();
+			channel.write(header);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		return channel;
+	}
+
+	/**
+	 * Determines the identity of the host. On linux, this is the machine
+	 * id which remains stable across host name changes. Otherwise, it is
+	 * the host name.
+	 *
+	 * @return The identity of the host.
+	 */
+	private static String getHost() {
+		try {
+			String id = Files.readString(new File("/etc/machine-id").toPath()).trim();
+			if (id.length() > 0) {
+				return id;
+			}
+		} catch (IOException e) {
+			// fall back to the host name
+		}
+		try {
+			return InetAddress.getLocalHost().getHostName();
+		} catch (IOException e) {
+			return "localhost";
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+package info.pppc.basex.plugin.transceiver.unix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * The doorbell wakes up threads that wait for a shared memory ring of a
+ * remote process. The doorbell uses the unix domain socket of a session.
+ * A remote process rings by writing a byte to the socket, a local thread
+ * waits by reading from it. Since the reader and the writer of a session
+ * may wait at the same time, only one thread reads from the socket and
+ * wakes up the others when it has received a byte. Waking up is cheap
+ * but it is not free, thus, the rings signal only waiting threads.
+ *
+ * @author Mac
+ */
+public class Doorbell {
+
+	/**
+	 * The socket channel that transfers the signals.
+	 */
+	private SocketChannel channel;
+
+	/**
+	 * The buffer that receives signals. This is used by the thread
+	 * that reads from the channel.
+	 */
+	private ByteBuffer incoming = ByteBuffer.allocate(64);
+
+	/**
+	 * The buffer that contains the signal that is sent.
+	 */
+	private ByteBuffer outgoing = ByteBuffer.allocate(1);
+
+	/**
+	 * A flag that indicates whether a thread is reading from the channel.
+	 */
+	private boolean reading = false;
+
+	/**
+	 * The number of times that the reading thread has returned. This
+	 * is used by the other threads to detect that they should return.
+	 */
+	private long generation = 0;
+
+	/**
+	 * A flag that indicates whether the remote process has closed the
+	 * channel or whether the channel has failed.
+	 */
+	private boolean closed = false;
+
+	/**
+	 * Creates a new doorbell on the specified channel.
+	 *
+	 * @param channel The channel in blocking mode.
+	 */
+	public Doorbell(SocketChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * Returns the number of signals that have been received. A caller
+	 * must retrieve this before it announces that it is waiting.
+	 *
+	 * @return The current generation of the doorbell.
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Waits until the remote process rings or until the channel is closed.
+	 * The caller must announce that it is waiting before it calls this
+	 * method and it must check its condition again afterwards, since the
+	 * signal may have been sent for another thread. If a signal has been
+	 * received by another thread since the specified generation, this
+	 * method returns immediately, since the signal may have been sent
+	 * for the caller.
+	 *
+	 * @param current The generation before the caller announced that
+	 * 	it is waiting.
+	 * @return True if a signal has been received, false if the channel
+	 * 	has been closed.
+	 */
+	public boolean await(long current) {
+		synchronized (this) {
+			if (closed) return false;
+			if (generation != current) return true;
+			if (reading) {
+				while (reading && generation == current) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return ! closed;
+					}
+				}
+				return ! closed;
+			}
+			reading = true;
+		}
+		boolean received = false;
+		try {
+			incoming.clear();
+			received = channel.read(incoming) > 0;
+		} catch (IOException e) {
+			received = false;
+		}
+		synchronized (this) {
+			reading = false;
+			generation += 1;
+			closed = closed || ! received;
+			notifyAll();
+			return ! closed;
+		}
+	}
+
+	/**
+	 * Sends a signal to the remote process. Failures are ignored since
+	 * they are detected by the waiting threads.
+	 */
+	public void ring() {
+		synchronized (outgoing) {
+			try {
+				outgoing.clear();
+				outgoing.put((byte)1);
+				outgoing.flip();
+				channel.write(outgoing);
+			} catch (IOException e) {
+				// detected by the reading thread
+			}
+		}
+	}
+
+	/**
+	 * Determines whether the remote process has closed the channel.
+	 *
+	 * @return True if the channel has been closed, false otherwise.
+	 */
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+}
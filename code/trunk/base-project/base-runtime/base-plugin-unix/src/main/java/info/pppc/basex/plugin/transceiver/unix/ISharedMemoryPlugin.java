@@ -0,0 +1,19 @@
+package info.pppc.basex.plugin.transceiver.unix;
+
+/**
+ * The shared memory plug-in interface is implemented by unix plug-ins
+ * that transfer the data of sessions through shared memory rings.
+ *
+ * @author Mac
+ */
+public interface ISharedMemoryPlugin extends IUnixPlugin {
+
+	/**
+	 * Called by the shared memory connector to signal that it has been
+	 * released.
+	 *
+	 * @param connector The released shared memory connector.
+	 */
+	public void release(SharedMemoryConnector connector);
+
+}
@@ -0,0 +1,39 @@
+package info.pppc.basex.plugin.transceiver.unix;
+
+import info.pppc.base.system.plugin.IPlugin;
+
+/**
+ * The unix plug-in interface is implemented by plug-ins that use unix
+ * domain sockets. It is used by the connectors to signal that they
+ * have been released and to distribute packets to the group.
+ *
+ * @author Mac
+ */
+public interface IUnixPlugin extends IPlugin {
+
+	/**
+	 * Called by the stream connector to signal that it has been
+	 * released.
+	 *
+	 * @param connector The released stream connector.
+	 */
+	public void release(UnixStreamConnector connector);
+
+	/**
+	 * Called by the packet connector to signal that it has been
+	 * released.
+	 *
+	 * @param connector The released packet connector.
+	 */
+	public void release(UnixPacketConnector connector);
+
+	/**
+	 * Called by the packet connector to send a packet to the other
+	 * plug-ins on the same host.
+	 *
+	 * @param source The connector that sends the packet.
+	 * @param payload The payload of the packet.
+	 */
+	public void distribute(UnixPacketConnector source, byte[] payload);
+
+}
@@ -0,0 +1,213 @@
+package info.pppc.basex.plugin.transceiver.unix;
+
+import info.pppc.base.system.plugin.IPlugin;
+import info.pppc.base.system.plugin.IStreamConnector;
+import info.pppc.base.system.util.Logging;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.SocketChannel;
+
+/**
+ * The shared memory connector transfers the data of a session through
+ * two shared memory rings, one for each direction. The unix domain socket
+ * that has been used to set up the session remains open as doorbell and
+ * it is used to detect that the remote process is gone.
+ *
+ * @author Mac
+ */
+public class SharedMemoryConnector implements IStreamConnector {
+
+	/**
+	 * The input stream of the connector.
+	 *
+	 * @author Mac
+	 */
+	private class RingInputStream extends InputStream {
+
+		/**
+		 * Reads a single byte from the ring.
+		 *
+		 * @return The byte or -1 at the end of the stream.
+		 * @throws IOException Thrown if the connector has been released.
+		 */
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			if (input.read(b, 0, 1) == -1) {
+				return -1;
+			}
+			return b[0] & 0xFF;
+		}
+
+		/**
+		 * Reads at least one and at most the specified number of bytes.
+		 *
+		 * @param b The array to read into.
+		 * @param off The offset of the first byte.
+		 * @param len The maximum number of bytes.
+		 * @return The number of bytes read or -1 at the end of the stream.
+		 * @throws IOException Thrown if the connector has been released.
+		 */
+		public int read(byte[] b, int off, int len) throws IOException {
+			return input.read(b, off, len);
+		}
+
+		/**
+		 * Returns the number of bytes that can be read without blocking.
+		 *
+		 * @return The number of bytes that can be read.
+		 */
+		public int available() {
+			return input.available();
+		}
+
+		/**
+		 * Closes the connector.
+		 */
+		public void close() {
+			release();
+		}
+
+	}
+
+	/**
+	 * The output stream of the connector.
+	 *
+	 * @author Mac
+	 */
+	private class RingOutputStream extends OutputStream {
+
+		/**
+		 * Writes a single byte into the ring.
+		 *
+		 * @param b The byte to write.
+		 * @throws IOException Thrown if the connector has been released.
+		 */
+		public void write(int b) throws IOException {
+			output.write(new byte[] { (byte)b }, 0, 1);
+		}
+
+		/**
+		 * Writes the specified bytes into the ring.
+		 *
+		 * @param b The array that contains the bytes.
+		 * @param off The offset of the first byte.
+		 * @param len The number of bytes.
+		 * @throws IOException Thrown if the connector has been released.
+		 */
+		public void write(byte[] b, int off, int len) throws IOException {
+			output.write(b, off, len);
+		}
+
+		/**
+		 * Closes the connector.
+		 */
+		public void close() {
+			release();
+		}
+
+	}
+
+	/**
+	 * The plug-in that uses this connector.
+	 */
+	private ISharedMemoryPlugin plugin;
+
+	/**
+	 * The unix domain socket channel that is used as doorbell.
+	 */
+	private SocketChannel channel;
+
+	/**
+	 * The ring that contains the incoming data.
+	 */
+	private SharedMemoryRing input;
+
+	/**
+	 * The ring that contains the outgoing data.
+	 */
+	private SharedMemoryRing output;
+
+	/**
+	 * The input stream of the connector.
+	 */
+	private InputStream in = new RingInputStream();
+
+	/**
+	 * The output stream of the connector.
+	 */
+	private OutputStream out = new RingOutputStream();
+
+	/**
+	 * A flag that indicates whether the connector has been released.
+	 */
+	private boolean released = false;
+
+	/**
+	 * Creates a new connector that uses the specified rings.
+	 *
+	 * @param plugin The responsible plug-in.
+	 * @param channel The channel that is used as doorbell.
+	 * @param input The ring that contains the incoming data.
+	 * @param output The ring that contains the outgoing data.
+	 */
+	public SharedMemoryConnector(ISharedMemoryPlugin plugin, SocketChannel channel,
+			SharedMemoryRing input, SharedMemoryRing output) {
+		this.plugin = plugin;
+		this.channel = channel;
+		this.input = input;
+		this.output = output;
+	}
+
+	/**
+	 * Returns the input stream of the connector.
+	 *
+	 * @return The input stream of the connector.
+	 * @throws IOException Thrown if the connector has been released.
+	 */
+	public InputStream getInputStream() throws IOException {
+		if (released) throw new IOException("Connector has been released.");
+		return in;
+	}
+
+	/**
+	 * Returns the output stream of the connector.
+	 *
+	 * @return The output stream of the connector.
+	 * @throws IOException Thrown if the connector has been released.
+	 */
+	public OutputStream getOutputStream() throws IOException {
+		if (released) throw new IOException("Connector has been released.");
+		return out;
+	}
+
+	/**
+	 * Releases the connector. The remote process reads the bytes that
+	 * have been written before and the end of the stream afterwards.
+	 */
+	public void release() {
+		synchronized (this) {
+			if (released) return;
+			released = true;
+		}
+		output.closeWriter();
+		input.closeReader();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			Logging.error(getClass(), "Cannot close channel.", e);
+		}
+		plugin.release(this);
+	}
+
+	/**
+	 * Returns a reference to the underlying plug-in.
+	 *
+	 * @return A reference to the underlying plug-in.
+	 */
+	public IPlugin getPlugin() {
+		return plugin;
+	}
+
+}
@@ -0,0 +1,335 @@
+package info.pppc.basex.plugin.transceiver.unix;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A single-producer single-consumer ring buffer in shared memory. The ring
+ * consists of a header and a data area whose capacity is a power of two.
+ * The header contains the number of bytes that have been written and read,
+ * flags that indicate whether the writer or the reader waits and flags that
+ * indicate whether the writer or the reader has closed the ring. Each of
+ * them resides on a cache line of its own. The writer and the reader spin
+ * for a short while before they announce that they are waiting and block
+ * on the doorbell. The other side rings the doorbell only if the flag has
+ * been set, thus, a continuous stream of data does not cause any system
+ * calls. Concurrent writers and concurrent readers are serialized.
+ *
+ * @author Mac
+ */
+public class SharedMemoryRing {
+
+	/**
+	 * The length of the header in bytes.
+	 */
+	public static final int HEADER_LENGTH = 512;
+
+	/**
+	 * The offset of the number of bytes written.
+	 */
+	private static final int OFFSET_TAIL = 0;
+
+	/**
+	 * The offset of the number of bytes read.
+	 */
+	private static final int OFFSET_HEAD = 64;
+
+	/**
+	 * The offset of the flag that indicates that the reader waits.
+	 */
+	private static final int OFFSET_READER_WAITING = 128;
+
+	/**
+	 * The offset of the flag that indicates that the writer waits.
+	 */
+	private static final int OFFSET_WRITER_WAITING = 192;
+
+	/**
+	 * The offset of the flag that indicates that the writer has closed
+	 * the ring.
+	 */
+	private static final int OFFSET_WRITER_CLOSED = 256;
+
+	/**
+	 * The offset of the flag that indicates that the reader has closed
+	 * the ring.
+	 */
+	private static final int OFFSET_READER_CLOSED = 320;
+
+	/**
+	 * The number of times a thread checks the ring before it blocks.
+	 */
+	private static final int SPIN_COUNT = 2000;
+
+	/**
+	 * The handle that accesses the header with memory ordering guarantees.
+	 */
+	private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle
+		(long[].class, ByteOrder.nativeOrder());
+
+	/**
+	 * The buffer that is used to access the header.
+	 */
+	private ByteBuffer header;
+
+	/**
+	 * The buffer that is used by the writer to access the data.
+	 */
+	private ByteBuffer output;
+
+	/**
+	 * The buffer that is used by the reader to access the data.
+	 */
+	private ByteBuffer input;
+
+	/**
+	 * The capacity of the data area in bytes.
+	 */
+	private int capacity;
+
+	/**
+	 * The doorbell used to wait for the remote process and to wake it up.
+	 */
+	private Doorbell doorbell;
+
+	/**
+	 * The lock that serializes writers.
+	 */
+	private Object writeLock = new Object();
+
+	/**
+	 * The lock that serializes readers.
+	 */
+	private Object readLock = new Object();
+
+	/**
+	 * Creates a ring in the specified region of a shared memory buffer.
+	 *
+	 * @param memory The direct buffer that contains the region.
+	 * @param offset The offset of the region, a multiple of 64.
+	 * @param capacity The capacity of the data area, a power of two.
+	 * @param doorbell The doorbell of the session.
+	 * @throws IllegalArgumentException Thrown if the capacity is not
+	 * 	a power of two or if the offset is not aligned.
+	 */
+	public SharedMemoryRing(ByteBuffer memory, int offset, int capacity, Doorbell doorbell) {
+		if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+			throw new IllegalArgumentException("Capacity must be a power of two.");
+		}
+		if (offset % 64 != 0) {
+			throw new IllegalArgumentException("Offset must be aligned.");
+		}
+		this.capacity = capacity;
+		this.doorbell = doorbell;
+		this.header = slice(memory, offset, HEADER_LENGTH);
+		this.output = slice(memory, offset + HEADER_LENGTH, capacity);
+		this.input = output.duplicate();
+	}
+
+	/**
+	 * Returns the number of bytes that can be read without blocking.
+	 *
+	 * @return The number of bytes that can be read.
+	 */
+	public int available() {
+		return (int)(get(OFFSET_TAIL) - get(OFFSET_HEAD));
+	}
+
+	/**
+	 * Writes the specified bytes into the ring. This method blocks while
+	 * the ring is full.
+	 *
+	 * @param b The array that contains the bytes.
+	 * @param off The offset of the first byte.
+	 * @param len The number of bytes.
+	 * @throws IOException Thrown if the ring has been closed or if the
+	 * 	remote process is gone.
+	 */
+	public void write(byte[] b, int off, int len) throws IOException {
+		synchronized (writeLock) {
+			long tail = get(OFFSET_TAIL);
+			while (len > 0) {
+				if (get(OFFSET_WRITER_CLOSED) != 0 || get(OFFSET_READER_CLOSED) != 0) {
+					throw new IOException("Connection closed.");
+				}
+				int free = capacity - (int)(tail - get(OFFSET_HEAD));
+				if (free == 0) {
+					awaitSpace(tail);
+					continue;
+				}
+				int n = Math.min(free, len);
+				int index = (int)tail & (capacity - 1);
+				int first = Math.min(n, capacity - index);
+				output.put(index, b, off, first);
+				if (first < n) {
+					output.put(0, b, off + first, n - first);
+				}
+				tail += n;
+				off += n;
+				len -= n;
+				set(OFFSET_TAIL, tail);
+				signal(OFFSET_READER_WAITING);
+			}
+		}
+	}
+
+	/**
+	 * Reads at least one and at most the specified number of bytes.
+	 * This method blocks while the ring is empty.
+	 *
+	 * @param b The array to read into.
+	 * @param off The offset of the first byte.
+	 * @param len The maximum number of bytes.
+	 * @return The number of bytes read or -1 if the writer has closed
+	 * 	the ring or if the remote process is gone.
+	 * @throws IOException Thrown if the reader has closed the ring.
+	 */
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) return 0;
+		synchronized (readLock) {
+			long head = get(OFFSET_HEAD);
+			while (true) {
+				if (get(OFFSET_READER_CLOSED) != 0) {
+					throw new IOException("Connection closed.");
+				}
+				int ready = (int)(get(OFFSET_TAIL) - head);
+				if (ready == 0) {
+					if (! awaitData(head)) return -1;
+					continue;
+				}
+				int n = Math.min(ready, len);
+				int index = (int)head & (capacity - 1);
+				int first = Math.min(n, capacity - index);
+				input.get(index, b, off, first);
+				if (first < n) {
+					input.get(0, b, off + first, n - first);
+				}
+				set(OFFSET_HEAD, head + n);
+				signal(OFFSET_WRITER_WAITING);
+				return n;
+			}
+		}
+	}
+
+	/**
+	 * Closes the ring for the writer. The reader receives the bytes that
+	 * have been written before and reads the end of the stream afterwards.
+	 */
+	public void closeWriter() {
+		set(OFFSET_WRITER_CLOSED, 1);
+		doorbell.ring();
+	}
+
+	/**
+	 * Closes the ring for the reader. Subsequent writes fail.
+	 */
+	public void closeReader() {
+		set(OFFSET_READER_CLOSED, 1);
+		doorbell.ring();
+	}
+
+	/**
+	 * Waits until the reader has consumed bytes.
+	 *
+	 * @param tail The number of bytes written.
+	 * @throws IOException Thrown if the remote process is gone.
+	 */
+	private void awaitSpace(long tail) throws IOException {
+		for (int i = 0; i < SPIN_COUNT; i++) {
+			if (tail - get(OFFSET_HEAD) < capacity) return;
+			Thread.onSpinWait();
+		}
+		long generation = doorbell.getGeneration();
+		set(OFFSET_WRITER_WAITING, 1);
+		if (tail - get(OFFSET_HEAD) < capacity || get(OFFSET_READER_CLOSED) != 0) {
+			set(OFFSET_WRITER_WAITING, 0);
+			return;
+		}
+		if (! doorbell.await(generation)) {
+			throw new IOException("Connection reset.");
+		}
+	}
+
+	/**
+	 * Waits until the writer has written bytes or until it has closed
+	 * the ring.
+	 *
+	 * @param head The number of bytes read.
+	 * @return True if there are bytes to read, false if the ring has
+	 * 	been closed by the writer or if the remote process is gone.
+	 */
+	private boolean awaitData(long head) {
+		for (int i = 0; i < SPIN_COUNT; i++) {
+			if (get(OFFSET_TAIL) != head) return true;
+			if (get(OFFSET_WRITER_CLOSED) != 0) break;
+			Thread.onSpinWait();
+		}
+		while (true) {
+			long generation = doorbell.getGeneration();
+			set(OFFSET_READER_WAITING, 1);
+			// the tail is written before the closed flag, thus,
+			// it is read afterwards in order to get remaining bytes
+			boolean closed = get(OFFSET_WRITER_CLOSED) != 0;
+			if (get(OFFSET_TAIL) != head) {
+				set(OFFSET_READER_WAITING, 0);
+				return true;
+			}
+			if (closed || get(OFFSET_READER_CLOSED) != 0) {
+				set(OFFSET_READER_WAITING, 0);
+				return false;
+			}
+			if (! doorbell.await(generation)) {
+				return get(OFFSET_TAIL) != head;
+			}
+			if (get(OFFSET_TAIL) != head) return true;
+		}
+	}
+
+	/**
+	 * Wakes up the remote process if the specified flag indicates that
+	 * it is waiting.
+	 *
+	 * @param offset The offset of the waiting flag.
+	 */
+	private void signal(int offset) {
+		if (get(offset) != 0 && LONG.compareAndSet(header, offset, 1L, 0L)) {
+			doorbell.ring();
+		}
+	}
+
+	/**
+	 * Reads a header field with volatile semantics.
+	 *
+	 * @param offset The offset of the field.
+	 * @return The value of the field.
+	 */
+	private long get(int offset) {
+		return (long)LONG.getVolatile(header, offset);
+	}
+
+	/**
+	 * Writes a header field with volatile semantics.
+	 *
+	 * @param offset The offset of the field.
+	 * @param value The value of the field.
+	 */
+	private void set(int offset, long value) {
+		LONG.setVolatile(header, offset, value);
+	}
+
+	/**
+	 * Creates a buffer for a region of the specified buffer.
+	 *
+	 * @param memory The buffer that contains the region.
+	 * @param offset The offset of the region.
+	 * @param length The length of the region.
+	 * @return A buffer whose index 0 is the start of the region.
+	 */
+	private static ByteBuffer slice(ByteBuffer memory, int offset, int length) {
+		return memory.slice(offset, length).order(ByteOrder.nativeOrder());
+	}
+
+}
@@ -0,0 +1,195 @@
+package info.pppc.basex.plugin.transceiver.unix;
+
+import info.pppc.base.system.plugin.IPlugin;
+import info.pppc.base.system.plugin.IStreamConnector;
+import info.pppc.base.system.util.Logging;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * The stream connector transforms a unix domain socket channel into a
+ * stream connector that can be used by base. The streams of the connector
+ * read from and write to the channel directly. In contrast to the streams
+ * created by the channels utility class, reads and writes do not share a
+ * lock, thus, a blocked read does not block a concurrent write.
+ *
+ * @author Mac
+ */
+public class UnixStreamConnector implements IStreamConnector {
+
+	/**
+	 * The input stream that reads from the channel.
+	 *
+	 * @author Mac
+	 */
+	private class ChannelInputStream extends InputStream {
+
+		/**
+		 * Reads a single byte from the channel.
+		 *
+		 * @return The byte or -1 at the end of the stream.
+		 * @throws IOException Thrown if the channel fails.
+		 */
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			if (read(b, 0, 1) == -1) {
+				return -1;
+			}
+			return b[0] & 0xFF;
+		}
+
+		/**
+		 * Reads at least one and at most the specified number of bytes.
+		 *
+		 * @param b The array to read into.
+		 * @param off The offset of the first byte.
+		 * @param len The maximum number of bytes.
+		 * @return The number of bytes read or -1 at the end of the stream.
+		 * @throws IOException Thrown if the channel fails.
+		 */
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) return 0;
+			return channel.read(ByteBuffer.wrap(b, off, len));
+		}
+
+		/**
+		 * Closes the connector.
+		 */
+		public void close() {
+			release();
+		}
+
+	}
+
+	/**
+	 * The output stream that writes to the channel.
+	 *
+	 * @author Mac
+	 */
+	private class ChannelOutputStream extends OutputStream {
+
+		/**
+		 * Writes a single byte to the channel.
+		 *
+		 * @param b The byte to write.
+		 * @throws IOException Thrown if the channel fails.
+		 */
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte)b }, 0, 1);
+		}
+
+		/**
+		 * Writes the specified bytes to the channel.
+		 *
+		 * @param b The array that contains the bytes.
+		 * @param off The offset of the first byte.
+		 * @param len The number of bytes to write.
+		 * @throws IOException Thrown if the channel fails.
+		 */
+		public void write(byte[] b, int off, int len) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+
+		/**
+		 * Closes the connector.
+		 */
+		public void close() {
+			release();
+		}
+
+	}
+
+	/**
+	 * The channel that is used to communicate with a local process.
+	 */
+	private SocketChannel channel;
+
+	/**
+	 * The plug-in that uses this stream connector.
+	 */
+	private IUnixPlugin plugin;
+
+	/**
+	 * The input stream of the connector.
+	 */
+	private InputStream in = new ChannelInputStream();
+
+	/**
+	 * The output stream of the connector.
+	 */
+	private OutputStream out = new ChannelOutputStream();
+
+	/**
+	 * Creates a new stream connector that uses the specified
+	 * channel to communicate.
+	 *
+	 * @param plugin The responsible plug-in.
+	 * @param channel The connected channel in blocking mode.
+	 */
+	public UnixStreamConnector(IUnixPlugin plugin, SocketChannel channel) {
+		this.plugin = plugin;
+		this.channel = channel;
+	}
+
+	/**
+	 * Returns the input stream of the connector.
+	 *
+	 * @return The input stream of the connector.
+	 * @throws IOException Thrown if the channel has been closed.
+	 */
+	public InputStream getInputStream() throws IOException {
+		if (! channel.isOpen()) throw new IOException("Connector has been released.");
+		return in;
+	}
+
+	/**
+	 * Returns the output stream of the connector.
+	 *
+	 * @return The output stream of the connector.
+	 * @throws IOException Thrown if the channel has been closed.
+	 */
+	public OutputStream getOutputStream() throws IOException {
+		if (! channel.isOpen()) throw new IOException("Connector has been released.");
+		return out;
+	}
+
+	/**
+	 * Closes the channel bound to the connector, thereby canceling the
+	 * input and output streams.
+	 */
+	public void release() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			Logging.error(getClass(), "Cannot close channel.", e);
+		}
+		plugin.release(this);
+	}
+
+	/**
+	 * Returns the channel of the connector. The channel must not be
+	 * switched into the non-blocking mode.
+	 *
+	 * @return The channel of the connector.
+	 */
+	public SocketChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * Returns a reference to the underlying plug-in.
+	 *
+	 * @return A reference to the underlying plug-in.
+	 */
+	public IPlugin getPlugin() {
+		return plugin;
+	}
+
+}
@@ -0,0 +1,26 @@
+package info.pppc.base.load;
+
+import info.pppc.base.system.IStreamHandler;
+import info.pppc.base.system.InvocationException;
+
+/**
+ * The interface of the benchmark service that is exported by the load
+ * servers. The echo method is used to measure synchronous, asynchronous
+ * and deferred synchronous calls. The connect method inherited from the
+ * stream handler is used to measure streams. The service echoes all
+ * bytes written to a stream until the stream is closed.
+ *
+ * @author Mac
+ */
+public interface ILoad extends IStreamHandler {
+
+	/**
+	 * Returns the specified payload.
+	 *
+	 * @param payload The payload to return.
+	 * @return The payload that has been passed.
+	 * @throws InvocationException Thrown by base if the call fails.
+	 */
+	public byte[] echo(byte[] payload) throws InvocationException;
+
+}
@@ -0,0 +1,444 @@
+package info.pppc.base.load;
+
+import info.pppc.base.system.InvocationBroker;
+import info.pppc.base.system.PluginManager;
+import info.pppc.base.system.security.FileCertificateProvider;
+import info.pppc.base.system.security.KeyStore;
+import info.pppc.basex.plugin.discovery.ProactiveDiscovery;
+import info.pppc.basex.plugin.modifier.GZIPCompressor;
+import info.pppc.basex.plugin.modifier.SecureModifier;
+import info.pppc.basex.plugin.routing.ProactiveRouting;
+import info.pppc.basex.plugin.semantic.ExchangeSemantic;
+import info.pppc.basex.plugin.semantic.RmiSemantic;
+import info.pppc.basex.plugin.semantic.StreamSemantic;
+import info.pppc.basex.plugin.serializer.ObjectSerializer;
+import info.pppc.basex.plugin.transceiver.IPMulticastTransceiver;
+import info.pppc.basex.plugin.transceiver.MxIPMulticastTransceiver;
+
+import java.util.StringTokenizer;
+import java.util.Vector;
+
+/**
+ * The load configuration contains the parameters of a load test. It
+ * defines the plug-ins that are installed on the brokers and the work
+ * load that is generated by the client. The configuration is parsed
+ * from the command line and the plug-in options are passed on to the
+ * server processes.
+ *
+ * @author Mac
+ */
+public class LoadConfiguration {
+
+	/**
+	 * The name of the synchronous semantic.
+	 */
+	public static final String SEMANTIC_SYNCHRONOUS = "sync";
+
+	/**
+	 * The name of the asynchronous semantic.
+	 */
+	public static final String SEMANTIC_ASYNCHRONOUS = "async";
+
+	/**
+	 * The name of the deferred synchronous semantic.
+	 */
+	public static final String SEMANTIC_DEFERRED = "deferred";
+
+	/**
+	 * The name of the stream semantic.
+	 */
+	public static final String SEMANTIC_STREAM = "stream";
+
+	/**
+	 * The name of the ip transceiver with one connection per call.
+	 */
+	public static final String TRANSCEIVER_IP = "ip";
+
+	/**
+	 * The name of the multiplexing ip transceiver.
+	 */
+	public static final String TRANSCEIVER_MXIP = "mxip";
+
+	/**
+	 * The number of server brokers.
+	 */
+	private int brokers = 1;
+
+	/**
+	 * The name of the transceiver.
+	 */
+	private String transceiver = TRANSCEIVER_MXIP;
+
+	/**
+	 * The address to which the transceiver is bound or null to
+	 * select an address automatically.
+	 */
+	private byte[] address = null;
+
+	/**
+	 * A flag that indicates whether calls are compressed.
+	 */
+	private boolean compression = false;
+
+	/**
+	 * The folder that contains the certificates or null if calls
+	 * are not encrypted.
+	 */
+	private String security = null;
+
+	/**
+	 * A flag that indicates whether the routing plug-in is installed.
+	 */
+	private boolean routing = false;
+
+	/**
+	 * The number of client threads.
+	 */
+	private int threads = 4;
+
+	/**
+	 * The payload sizes in bytes.
+	 */
+	private int[] sizes = new int[] { 64, 1024, 16384 };
+
+	/**
+	 * The semantics that are measured.
+	 */
+	private String[] semantics = new String[] {
+		SEMANTIC_SYNCHRONOUS, SEMANTIC_ASYNCHRONOUS, SEMANTIC_DEFERRED, SEMANTIC_STREAM
+	};
+
+	/**
+	 * The warm up period of each run in milliseconds.
+	 */
+	private long warmup = 2000;
+
+	/**
+	 * The measurement period of each run in milliseconds.
+	 */
+	private long duration = 10000;
+
+	/**
+	 * The maximum time to wait for the discovery of the servers
+	 * in milliseconds.
+	 */
+	private long discovery = 30000;
+
+	/**
+	 * A flag that indicates whether the log output is shown.
+	 */
+	private boolean verbose = false;
+
+	/**
+	 * Creates a new configuration with default values.
+	 */
+	public LoadConfiguration() {
+		super();
+	}
+
+	/**
+	 * Parses the specified command line arguments. Arguments that are
+	 * not specified retain their default values.
+	 *
+	 * @param args The command line arguments.
+	 * @return The configuration.
+	 * @throws IllegalArgumentException Thrown if an argument is unknown
+	 * 	or malformed.
+	 */
+	public static LoadConfiguration parse(String[] args) throws IllegalArgumentException {
+		LoadConfiguration c = new LoadConfiguration();
+		for (int i = 0; i < args.length; i++) {
+			String a = args[i];
+			if (a.equals("-compression")) {
+				c.compression = true;
+			} else if (a.equals("-routing")) {
+				c.routing = true;
+			} else if (a.equals("-verbose")) {
+				c.verbose = true;
+			} else if (! a.startsWith("-") || i + 1 == args.length) {
+				throw new IllegalArgumentException("Unknown or incomplete argument " + a + ".");
+			} else {
+				String v = args[++i];
+				if (a.equals("-brokers")) {
+					c.brokers = parseInt(a, v, 1);
+				} else if (a.equals("-transceiver")) {
+					if (! v.equals(TRANSCEIVER_IP) && ! v.equals(TRANSCEIVER_MXIP)) {
+						throw new IllegalArgumentException("Unknown transceiver " + v + ".");
+					}
+					c.transceiver = v;
+				} else if (a.equals("-address")) {
+					String[] s = split(v, ".");
+					if (s.length != 4) {
+						throw new IllegalArgumentException("Malformed address " + v + ".");
+					}
+					c.address = new byte[4];
+					for (int j = 0; j < 4; j++) {
+						c.address[j] = (byte)parseInt(a, s[j], 0);
+					}
+				} else if (a.equals("-security")) {
+					c.security = v;
+				} else if (a.equals("-threads")) {
+					c.threads = parseInt(a, v, 1);
+				} else if (a.equals("-sizes")) {
+					String[] s = split(v, ",");
+					c.sizes = new int[s.length];
+					for (int j = 0; j < s.length; j++) {
+						c.sizes[j] = parseInt(a, s[j], 0);
+					}
+				} else if (a.equals("-semantics")) {
+					String[] s = split(v, ",");
+					for (int j = 0; j < s.length; j++) {
+						if (! s[j].equals(SEMANTIC_SYNCHRONOUS) && ! s[j].equals(SEMANTIC_ASYNCHRONOUS)
+								&& ! s[j].equals(SEMANTIC_DEFERRED) && ! s[j].equals(SEMANTIC_STREAM)) {
+							throw new IllegalArgumentException("Unknown semantic " + s[j] + ".");
+						}
+					}
+					c.semantics = s;
+				} else if (a.equals("-warmup")) {
+					c.warmup = parseInt(a, v, 0);
+				} else if (a.equals("-duration")) {
+					c.duration = parseInt(a, v, 1);
+				} else if (a.equals("-discovery")) {
+					c.discovery = parseInt(a, v, 1);
+				} else {
+					throw new IllegalArgumentException("Unknown argument " + a + ".");
+				}
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Returns the usage of the command line arguments.
+	 *
+	 * @return The usage description.
+	 */
+	public static String getUsage() {
+		return "Options:\n"
+			+ "  -brokers <n>            Number of server brokers (default 1).\n"
+			+ "  -transceiver <ip|mxip>  Transceiver plug-in (default mxip).\n"
+			+ "  -address <a.b.c.d>      Address of the transceiver (default automatic).\n"
+			+ "  -compression            Compress all calls.\n"
+			+ "  -security <folder>      Encrypt all calls, certificates are loaded from the\n"
+			+ "                          folder, device0 for the client, deviceN for server N.\n"
+			+ "  -routing                Install the routing plug-in.\n"
+			+ "  -threads <n>            Number of client threads (default 4).\n"
+			+ "  -sizes <n,...>          Payload sizes in bytes (default 64,1024,16384).\n"
+			+ "  -semantics <s,...>      Any of sync,async,deferred,stream (default all).\n"
+			+ "  -warmup <ms>            Warm up period per run (default 2000).\n"
+			+ "  -duration <ms>          Measurement period per run (default 10000).\n"
+			+ "  -discovery <ms>         Timeout for server discovery (default 30000).\n"
+			+ "  -verbose                Show the log output of all brokers.";
+	}
+
+	/**
+	 * Returns the arguments that configure the plug-ins of a server with
+	 * the same plug-ins as this configuration.
+	 *
+	 * @return The arguments for the server processes.
+	 */
+	public String[] getServerArguments() {
+		Vector args = new Vector();
+		args.addElement("-transceiver");
+		args.addElement(transceiver);
+		if (address != null) {
+			args.addElement("-address");
+			args.addElement((address[0] & 0xff) + "." + (address[1] & 0xff) + "."
+				+ (address[2] & 0xff) + "." + (address[3] & 0xff));
+		}
+		if (compression) {
+			args.addElement("-compression");
+		}
+		if (security != null) {
+			args.addElement("-security");
+			args.addElement(security);
+		}
+		if (routing) {
+			args.addElement("-routing");
+		}
+		if (verbose) {
+			args.addElement("-verbose");
+		}
+		String[] result = new String[args.size()];
+		args.copyInto(result);
+		return result;
+	}
+
+	/**
+	 * Starts the broker of this process and installs the configured
+	 * plug-ins. The index distinguishes the brokers of a test, 0 is the
+	 * client and the servers are numbered starting from 1.
+	 *
+	 * @param index The index of the broker.
+	 * @return The broker that has been started.
+	 */
+	public InvocationBroker startBroker(int index) {
+		System.setProperty(InvocationBroker.PROPERTY_DEVICE_NAME, "load" + index);
+		if (security != null) {
+			KeyStore.initialize(new FileCertificateProvider(security, "device" + index));
+		}
+		InvocationBroker b = InvocationBroker.getInstance();
+		PluginManager m = b.getPluginManager();
+		if (transceiver.equals(TRANSCEIVER_IP)) {
+			m.addPlugin(new IPMulticastTransceiver(address));
+		} else {
+			m.addPlugin(new MxIPMulticastTransceiver(address));
+		}
+		m.addPlugin(new ProactiveDiscovery());
+		m.addPlugin(new RmiSemantic());
+		m.addPlugin(new StreamSemantic());
+		m.addPlugin(new ObjectSerializer());
+		if (compression) {
+			m.addPlugin(new GZIPCompressor());
+		}
+		if (security != null) {
+			m.addPlugin(new SecureModifier());
+			m.addPlugin(new ExchangeSemantic());
+		}
+		if (routing) {
+			m.addPlugin(new ProactiveRouting());
+		}
+		return b;
+	}
+
+	/**
+	 * Creates a proxy that adds the configured requirements to all calls.
+	 *
+	 * @return A new proxy.
+	 */
+	public LoadProxy createProxy() {
+		LoadProxy proxy = new LoadRequirementProxy(compression, security != null);
+		proxy.setGateway(routing);
+		return proxy;
+	}
+
+	/**
+	 * Returns the number of server brokers.
+	 *
+	 * @return The number of server brokers.
+	 */
+	public int getBrokers() {
+		return brokers;
+	}
+
+	/**
+	 * Returns the number of client threads.
+	 *
+	 * @return The number of client threads.
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Returns the payload sizes in bytes.
+	 *
+	 * @return The payload sizes.
+	 */
+	public int[] getSizes() {
+		return sizes;
+	}
+
+	/**
+	 * Returns the semantics that are measured.
+	 *
+	 * @return The semantics.
+	 */
+	public String[] getSemantics() {
+		return semantics;
+	}
+
+	/**
+	 * Returns the warm up period of each run in milliseconds.
+	 *
+	 * @return The warm up period.
+	 */
+	public long getWarmup() {
+		return warmup;
+	}
+
+	/**
+	 * Returns the measurement period of each run in milliseconds.
+	 *
+	 * @return The measurement period.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Returns the maximum time to wait for the servers in milliseconds.
+	 *
+	 * @return The discovery timeout.
+	 */
+	public long getDiscovery() {
+		return discovery;
+	}
+
+	/**
+	 * Determines whether the log output is shown.
+	 *
+	 * @return True if the log output is shown.
+	 */
+	public boolean isVerbose() {
+		return verbose;
+	}
+
+	/**
+	 * Returns a string representation of the plug-in set and work load.
+	 *
+	 * @return A string representation.
+	 */
+	public String toString() {
+		StringBuffer b = new StringBuffer();
+		b.append("brokers=").append(brokers);
+		b.append(" transceiver=").append(transceiver);
+		b.append(" compression=").append(compression);
+		b.append(" security=").append(security != null);
+		b.append(" routing=").append(routing);
+		b.append(" threads=").append(threads);
+		b.append(" warmup=").append(warmup);
+		b.append(" duration=").append(duration);
+		return b.toString();
+	}
+
+	/**
+	 * Parses an integer argument.
+	 *
+	 * @param name The name of the argument.
+	 * @param value The value to parse.
+	 * @param minimum The minimum value.
+	 * @return The parsed value.
+	 * @throws IllegalArgumentException Thrown if the value is malformed
+	 * 	or smaller than the minimum.
+	 */
+	private static int parseInt(String name, String value, int minimum) throws IllegalArgumentException {
+		int result;
+		try {
+			result = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Malformed value for " + name + ".");
+		}
+		if (result < minimum) {
+			throw new IllegalArgumentException("Value for " + name + " must be at least " + minimum + ".");
+		}
+		return result;
+	}
+
+	/**
+	 * Splits a separated list.
+	 *
+	 * @param value The list to split.
+	 * @param separator The separator of the elements.
+	 * @return The elements of the list.
+	 */
+	private static String[] split(String value, String separator) {
+		StringTokenizer t = new StringTokenizer(value, separator);
+		String[] result = new String[t.countTokens()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = t.nextToken().trim();
+		}
+		return result;
+	}
+
+}
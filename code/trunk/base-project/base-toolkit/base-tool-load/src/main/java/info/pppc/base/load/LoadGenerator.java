@@ -0,0 +1,304 @@
+package info.pppc.base.load;
+
+import info.pppc.base.system.FutureResult;
+import info.pppc.base.system.InvocationException;
+import info.pppc.base.system.ReferenceID;
+import info.pppc.base.system.Result;
+import info.pppc.base.system.StreamDescriptor;
+import info.pppc.base.system.SystemID;
+import info.pppc.base.system.metric.Histogram;
+import info.pppc.base.system.plugin.IStreamConnector;
+import info.pppc.base.system.util.Logging;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The load generator drives the benchmark services of a set of servers.
+ * A run uses a fixed number of client threads that call the services in
+ * a closed loop, i.e. each thread issues its next call as soon as the
+ * previous one has completed. The threads spread their calls round robin
+ * over the servers. Each run starts with a warm up period that is not
+ * measured.
+ *
+ * @author Mac
+ */
+public class LoadGenerator {
+
+	/**
+	 * The phase in which calls are not measured.
+	 */
+	private static final int PHASE_WARMUP = 0;
+
+	/**
+	 * The phase in which calls are measured.
+	 */
+	private static final int PHASE_MEASURE = 1;
+
+	/**
+	 * The phase in which the threads terminate.
+	 */
+	private static final int PHASE_DONE = 2;
+
+	/**
+	 * The time in milliseconds that the generator waits for calls that
+	 * are still pending when a run is done. Threads whose calls do not
+	 * complete within this period are counted as failed calls.
+	 */
+	private static final long PERIOD_DRAIN = 5000;
+
+	/**
+	 * A client thread that issues calls until the run is done.
+	 *
+	 * @author Mac
+	 */
+	private class Worker extends Thread {
+
+		/**
+		 * The semantic of the calls.
+		 */
+		private String semantic;
+
+		/**
+		 * The payload of the calls.
+		 */
+		private byte[] payload;
+
+		/**
+		 * The buffer that receives echoed streams.
+		 */
+		private byte[] buffer;
+
+		/**
+		 * The proxy used to issue the calls.
+		 */
+		private LoadProxy proxy;
+
+		/**
+		 * The stream connectors to the servers, if the semantic is
+		 * the stream semantic.
+		 */
+		private IStreamConnector[] connectors;
+
+		/**
+		 * The latencies of the successful calls in microseconds.
+		 */
+		private Histogram latency = new Histogram();
+
+		/**
+		 * The number of failed calls.
+		 */
+		private long errors = 0;
+
+		/**
+		 * The index of the next target.
+		 */
+		private int next;
+
+		/**
+		 * Creates a new worker.
+		 *
+		 * @param semantic The semantic of the calls.
+		 * @param size The payload size of the calls.
+		 * @param index The index of the worker.
+		 */
+		public Worker(String semantic, int size, int index) {
+			super("LoadWorker-" + index);
+			setDaemon(true);
+			this.semantic = semantic;
+			this.payload = new byte[size];
+			this.buffer = new byte[size];
+			this.next = index % targets.length;
+			for (int i = 0; i < size; i++) {
+				payload[i] = (byte)i;
+			}
+			proxy = configuration.createProxy();
+			proxy.setSourceID(new ReferenceID(SystemID.SYSTEM));
+		}
+
+		/**
+		 * Opens the stream connectors if the semantic is the stream
+		 * semantic.
+		 *
+		 * @throws InvocationException Thrown if a connector cannot be opened.
+		 */
+		public void open() throws InvocationException {
+			if (! semantic.equals(LoadConfiguration.SEMANTIC_STREAM)) return;
+			connectors = new IStreamConnector[targets.length];
+			for (int i = 0; i < targets.length; i++) {
+				proxy.setTargetID(targets[i]);
+				StreamDescriptor descriptor = new StreamDescriptor();
+				proxy.connect(descriptor);
+				connectors[i] = descriptor.getConnector();
+			}
+		}
+
+		/**
+		 * Releases the stream connectors, if any.
+		 */
+		public void close() {
+			if (connectors == null) return;
+			for (int i = 0; i < connectors.length; i++) {
+				if (connectors[i] != null) {
+					connectors[i].release();
+				}
+			}
+		}
+
+		/**
+		 * Issues calls until the run is done.
+		 */
+		public void run() {
+			while (phase != PHASE_DONE) {
+				int target = next;
+				next = (next + 1) % targets.length;
+				boolean measured = (phase == PHASE_MEASURE);
+				long start = System.nanoTime();
+				boolean success;
+				try {
+					success = call(target);
+				} catch (Throwable t) {
+					Logging.debug(getClass(), "Call failed: " + t.getMessage());
+					success = false;
+				}
+				long end = System.nanoTime();
+				if (measured) {
+					if (success) {
+						latency.record((end - start) / 1000);
+					} else {
+						errors += 1;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Issues a single call to the specified target.
+		 *
+		 * @param target The index of the target.
+		 * @return True if the call succeeded, false otherwise.
+		 * @throws Exception Thrown if the call fails.
+		 */
+		private boolean call(int target) throws Exception {
+			if (semantic.equals(LoadConfiguration.SEMANTIC_STREAM)) {
+				OutputStream output = connectors[target].getOutputStream();
+				InputStream input = connectors[target].getInputStream();
+				output.write(payload);
+				output.flush();
+				int read = 0;
+				while (read < buffer.length) {
+					int r = input.read(buffer, read, buffer.length - read);
+					if (r == -1) throw new EOFException("Stream closed.");
+					read += r;
+				}
+				return true;
+			}
+			proxy.setTargetID(targets[target]);
+			if (semantic.equals(LoadConfiguration.SEMANTIC_SYNCHRONOUS)) {
+				byte[] result = proxy.echo(payload);
+				return result != null && result.length == payload.length;
+			} else if (semantic.equals(LoadConfiguration.SEMANTIC_ASYNCHRONOUS)) {
+				proxy.echoAsync(payload);
+				return true;
+			} else {
+				FutureResult future = proxy.echoDef(payload);
+				Result result = future.getResult();
+				return ! result.hasException();
+			}
+		}
+
+	}
+
+	/**
+	 * The configuration of the load test.
+	 */
+	private LoadConfiguration configuration;
+
+	/**
+	 * The benchmark services that are called.
+	 */
+	private ReferenceID[] targets;
+
+	/**
+	 * The current phase of the run.
+	 */
+	private volatile int phase = PHASE_DONE;
+
+	/**
+	 * Creates a new load generator.
+	 *
+	 * @param configuration The configuration of the load test.
+	 * @param targets The benchmark services that are called.
+	 */
+	public LoadGenerator(LoadConfiguration configuration, ReferenceID[] targets) {
+		this.configuration = configuration;
+		this.targets = targets;
+	}
+
+	/**
+	 * Performs a run with the specified semantic and payload size.
+	 *
+	 * @param semantic The semantic of the calls.
+	 * @param size The payload size of the calls.
+	 * @return The result of the run.
+	 * @throws IOException Thrown if the streams cannot be opened.
+	 */
+	public LoadResult run(String semantic, int size) throws IOException {
+		Worker[] workers = new Worker[configuration.getThreads()];
+		try {
+			for (int i = 0; i < workers.length; i++) {
+				workers[i] = new Worker(semantic, size, i);
+				workers[i].open();
+			}
+		} catch (InvocationException e) {
+			for (int i = 0; i < workers.length; i++) {
+				if (workers[i] != null) workers[i].close();
+			}
+			throw new IOException("Could not open stream: " + e.getMessage());
+		}
+		phase = PHASE_WARMUP;
+		for (int i = 0; i < workers.length; i++) {
+			workers[i].start();
+		}
+		sleep(configuration.getWarmup());
+		long start = System.nanoTime();
+		phase = PHASE_MEASURE;
+		sleep(configuration.getDuration());
+		phase = PHASE_DONE;
+		long elapsed = System.nanoTime() - start;
+		long drain = System.currentTimeMillis() + PERIOD_DRAIN;
+		Histogram latency = new Histogram();
+		long errors = 0;
+		for (int i = 0; i < workers.length; i++) {
+			try {
+				workers[i].join(Math.max(1, drain - System.currentTimeMillis()));
+			} catch (InterruptedException e) {
+				Logging.error(getClass(), "Thread got interrupted.", e);
+			}
+			if (workers[i].isAlive()) {
+				Logging.debug(getClass(), "Call of " + workers[i].getName() + " did not complete.");
+				errors += 1;
+			}
+			workers[i].close();
+			latency.add(workers[i].latency);
+			errors += workers[i].errors;
+		}
+		return new LoadResult(semantic, size, latency, errors, elapsed);
+	}
+
+	/**
+	 * Sleeps for the specified time.
+	 *
+	 * @param time The time in milliseconds.
+	 */
+	private void sleep(long time) {
+		try {
+			Thread.sleep(time);
+		} catch (InterruptedException e) {
+			Logging.error(getClass(), "Thread got interrupted.", e);
+		}
+	}
+
+}
@@ -0,0 +1,233 @@
+package info.pppc.base.load;
+
+import info.pppc.base.service.ServiceDescriptor;
+import info.pppc.base.service.ServiceRegistry;
+import info.pppc.base.system.InvocationBroker;
+import info.pppc.base.system.ReferenceID;
+import info.pppc.base.system.util.Logging;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The launcher class for load tests. The launcher starts the configured
+ * number of server brokers as separate processes on the local host, using
+ * the class path of this process. Then it starts a client broker with the
+ * same plug-ins, waits until the benchmark services of all servers have
+ * been discovered and performs one run for each combination of semantic
+ * and payload size. The results are printed as a table to the standard
+ * output, log output is written to the standard error.
+ *
+ * @author Mac
+ */
+public class LoadMain {
+
+	/**
+	 * The period in which the client looks for the servers.
+	 */
+	private static final long PERIOD_LOOKUP = 1000;
+
+	/**
+	 * A server process started by the launcher. The server reads the
+	 * output of the process to detect the ready line, forwarding the
+	 * output if the configuration is verbose.
+	 *
+	 * @author Mac
+	 */
+	private static class Server extends Thread {
+
+		/**
+		 * The process of the server.
+		 */
+		private Process process;
+
+		/**
+		 * A flag that indicates whether the output is forwarded.
+		 */
+		private boolean verbose;
+
+		/**
+		 * A flag that indicates whether the server is ready.
+		 */
+		private boolean ready = false;
+
+		/**
+		 * Starts a new server process.
+		 *
+		 * @param index The index of the server.
+		 * @param configuration The configuration of the load test.
+		 * @throws IOException Thrown if the process cannot be started.
+		 */
+		public Server(int index, LoadConfiguration configuration) throws IOException {
+			super("LoadServer-" + index);
+			setDaemon(true);
+			verbose = configuration.isVerbose();
+			List<String> command = new ArrayList<String>();
+			command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(LoadServer.class.getName());
+			command.add(String.valueOf(index));
+			String[] options = configuration.getServerArguments();
+			for (int i = 0; i < options.length; i++) {
+				command.add(options[i]);
+			}
+			ProcessBuilder builder = new ProcessBuilder(command);
+			builder.redirectErrorStream(true);
+			process = builder.start();
+			start();
+		}
+
+		/**
+		 * Reads the output of the process until it terminates.
+		 */
+		public void run() {
+			try {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.startsWith(LoadServer.READY)) {
+						synchronized (this) {
+							ready = true;
+							notifyAll();
+						}
+					}
+					if (verbose) {
+						System.err.println("[" + getName() + "] " + line);
+					}
+				}
+			} catch (IOException e) {
+				Logging.debug(getClass(), "Server output closed.");
+			}
+			synchronized (this) {
+				notifyAll();
+			}
+		}
+
+		/**
+		 * Waits until the server is ready or the timeout expires.
+		 *
+		 * @param timeout The timeout in milliseconds.
+		 * @return True if the server is ready, false otherwise.
+		 * @throws InterruptedException Thrown if the thread is interrupted.
+		 */
+		public synchronized boolean await(long timeout) throws InterruptedException {
+			long end = System.currentTimeMillis() + timeout;
+			while (! ready && isAlive()) {
+				long remaining = end - System.currentTimeMillis();
+				if (remaining <= 0) break;
+				wait(remaining);
+			}
+			return ready;
+		}
+
+		/**
+		 * Terminates the server process.
+		 */
+		public void terminate() {
+			try {
+				process.getOutputStream().close();
+			} catch (IOException e) {
+				Logging.debug(getClass(), "Could not close server input.");
+			}
+			process.destroy();
+		}
+
+	}
+
+	/**
+	 * Runs a load test as specified by the command line arguments.
+	 *
+	 * @param args The command line arguments.
+	 */
+	public static void main(String[] args) {
+		LoadConfiguration configuration = null;
+		try {
+			configuration = LoadConfiguration.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			System.out.println("Usage: LoadMain [options]");
+			System.out.println(LoadConfiguration.getUsage());
+			System.exit(1);
+			return;
+		}
+		Logging.setOutput(System.err);
+		if (! configuration.isVerbose()) {
+			Logging.setVerbosity(Logging.MINIMUM_VERBOSITY);
+		}
+		final Server[] servers = new Server[configuration.getBrokers()];
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				for (int i = 0; i < servers.length; i++) {
+					if (servers[i] != null) servers[i].terminate();
+				}
+			}
+		});
+		int status = 0;
+		try {
+			for (int i = 0; i < servers.length; i++) {
+				servers[i] = new Server(i + 1, configuration);
+			}
+			for (int i = 0; i < servers.length; i++) {
+				if (! servers[i].await(configuration.getDiscovery())) {
+					throw new IOException("Server " + (i + 1) + " did not start.");
+				}
+			}
+			InvocationBroker broker = configuration.startBroker(0);
+			ReferenceID[] targets = discover(configuration);
+			System.out.println(configuration);
+			System.out.println(LoadResult.getHeader());
+			LoadGenerator generator = new LoadGenerator(configuration, targets);
+			String[] semantics = configuration.getSemantics();
+			int[] sizes = configuration.getSizes();
+			for (int i = 0; i < semantics.length; i++) {
+				for (int j = 0; j < sizes.length; j++) {
+					System.out.println(generator.run(semantics[i], sizes[j]));
+				}
+			}
+			broker.shutdown();
+		} catch (Exception e) {
+			System.out.println("Load test failed: " + e.getMessage());
+			status = 1;
+		} finally {
+			for (int i = 0; i < servers.length; i++) {
+				if (servers[i] != null) servers[i].terminate();
+			}
+		}
+		System.exit(status);
+	}
+
+	/**
+	 * Waits until the benchmark services of all servers have been found.
+	 *
+	 * @param configuration The configuration of the load test.
+	 * @return The references of the benchmark services.
+	 * @throws IOException Thrown if the services are not found before
+	 * 	the discovery timeout expires.
+	 * @throws InterruptedException Thrown if the thread is interrupted.
+	 */
+	private static ReferenceID[] discover(LoadConfiguration configuration) throws IOException, InterruptedException {
+		ServiceRegistry registry = ServiceRegistry.getInstance();
+		String[] interfaces = new String[] { ILoad.class.getName() };
+		long end = System.currentTimeMillis() + configuration.getDiscovery();
+		ServiceDescriptor[] descriptors = new ServiceDescriptor[0];
+		while (System.currentTimeMillis() < end) {
+			descriptors = registry.lookup(interfaces, ServiceRegistry.LOOKUP_REMOTE_ONLY);
+			if (descriptors.length >= configuration.getBrokers()) {
+				ReferenceID[] targets = new ReferenceID[descriptors.length];
+				for (int i = 0; i < descriptors.length; i++) {
+					targets[i] = descriptors[i].getIdentifier();
+				}
+				return targets;
+			}
+			Thread.sleep(PERIOD_LOOKUP);
+		}
+		throw new IOException("Found " + descriptors.length + " of "
+			+ configuration.getBrokers() + " servers.");
+	}
+
+}
@@ -0,0 +1,94 @@
+package info.pppc.base.load;
+
+/**
+ * Do not modify this file. This class has been generated.
+ * Use inheritance or composition to add functionality.
+ *
+ * @author 3PC Base Tools
+ */
+public class LoadProxy extends info.pppc.base.system.Proxy implements info.pppc.base.load.ILoad {
+
+	/**
+	 * Default constructor to create a new object.
+	 */
+	public LoadProxy() { }
+
+	/**
+	 * Proxy method that creates and transfers an invocation for the interface method.
+	 *
+	 * @param payload see info.pppc.base.load.ILoad
+	 * @return see info.pppc.base.load.ILoad
+	 * @throws info.pppc.base.system.InvocationException see info.pppc.base.load.ILoad
+	 * @see info.pppc.base.load.ILoad
+	 */
+	public byte[] echo(byte[] payload) throws info.pppc.base.system.InvocationException {
+		Object[] __args = new Object[1];
+		__args[0] = payload;
+		String __method = "byte[] echo(byte[])";
+		info.pppc.base.system.Invocation __invocation = proxyCreateSynchronous(__method, __args);
+		info.pppc.base.system.Result __result = proxyInvokeSynchronous(__invocation);
+		if (__result.hasException()) {
+			if (__result.getException() instanceof info.pppc.base.system.InvocationException) {
+				throw (info.pppc.base.system.InvocationException)__result.getException();
+			}
+			throw (RuntimeException)__result.getException();
+		}
+		return (byte[])__result.getValue();
+	}
+	/**
+	 * Proxy method that creates and transfers a deferred synchronous invocation.
+	 *
+	 * @param payload see info.pppc.base.load.ILoad
+	 * @return A future result that delivers the return value and exceptions. * @see info.pppc.base.load.ILoad
+	 */
+	public info.pppc.base.system.FutureResult echoDef(byte[] payload)  {
+		Object[] __args = new Object[1];
+		__args[0] = payload;
+		String __method = "byte[] echo(byte[])";
+		info.pppc.base.system.Invocation __invocation = proxyCreateSynchronous(__method, __args);
+		return proxyInvokeDeferred(__invocation);
+	}
+	/**
+	 * Proxy method that creates and transfers an asynchronous call.
+	 *
+	 * @param payload see info.pppc.base.load.ILoad
+	 * @throws info.pppc.base.system.InvocationException see info.pppc.base.load.ILoad
+	 * @see info.pppc.base.load.ILoad
+	 */
+	public void echoAsync(byte[] payload) throws info.pppc.base.system.InvocationException {
+		Object[] __args = new Object[1];
+		__args[0] = payload;
+		String __method = "byte[] echo(byte[])";
+		info.pppc.base.system.Invocation __invocation = proxyCreateAsynchronous(__method, __args);
+		info.pppc.base.system.Result __result = proxyInvokeAsynchronous(__invocation);
+		if (__result.hasException()) {
+			if (__result.getException() instanceof info.pppc.base.system.InvocationException) {
+				throw (info.pppc.base.system.InvocationException)__result.getException();
+			}
+			throw (RuntimeException)__result.getException();
+		}
+		return ;
+	}
+	/**
+	 * Proxy method that creates an invocation to open a stream.
+	 *
+	 * @param descriptor see info.pppc.base.system.IStreamHandler
+	 * @throws info.pppc.base.system.InvocationException see info.pppc.base.system.IStreamHandler
+	 * @see info.pppc.base.system.IStreamHandler
+	 */
+	public void connect(info.pppc.base.system.StreamDescriptor descriptor) throws info.pppc.base.system.InvocationException {
+		Object[] __args = new Object[1];
+		__args[0] = descriptor.getData();
+		String __method = "void connect(info.pppc.base.system.StreamDescriptor)";
+		info.pppc.base.system.Invocation __invocation = proxyCreateStream(__method, __args);
+		info.pppc.base.system.Result __result = proxyInvokeSynchronous(__invocation);
+		if (__result.hasException()) {
+			if (__result.getException() instanceof info.pppc.base.system.InvocationException) {
+				throw (info.pppc.base.system.InvocationException)__result.getException();
+			}
+			throw (RuntimeException)__result.getException();
+		}
+		descriptor.setConnector( (info.pppc.base.system.plugin.IStreamConnector)__result.getValue());
+	}
+
+}
@@ -0,0 +1,102 @@
+package info.pppc.base.load;
+
+import info.pppc.base.system.IExtension;
+import info.pppc.base.system.Invocation;
+import info.pppc.base.system.nf.NFDimension;
+import info.pppc.base.system.util.Static;
+
+/**
+ * The requirement proxy extends the generated proxy with the non-functional
+ * requirements of the load configuration. Depending on the configuration,
+ * it requests compression and encryption for all calls, similar to the
+ * secure proxy of the security core.
+ *
+ * @author Mac
+ */
+public class LoadRequirementProxy extends LoadProxy {
+
+	/**
+	 * A flag that indicates whether calls must be compressed.
+	 */
+	private boolean compression;
+
+	/**
+	 * A flag that indicates whether calls must be encrypted.
+	 */
+	private boolean encryption;
+
+	/**
+	 * Creates a new proxy with the specified requirements.
+	 *
+	 * @param compression True to require compression.
+	 * @param encryption True to require encryption.
+	 */
+	public LoadRequirementProxy(boolean compression, boolean encryption) {
+		this.compression = compression;
+		this.encryption = encryption;
+	}
+
+	/**
+	 * Creates an invocation for an asynchronous call.
+	 *
+	 * @param method The method name.
+	 * @param params The method parameters.
+	 * @return The invocation with the requirements.
+	 */
+	protected Invocation proxyCreateAsynchronous(String method, Object[] params) {
+		return proxyCreateRequirements(super.proxyCreateAsynchronous(method, params));
+	}
+
+	/**
+	 * Creates an invocation for a deferred synchronous call.
+	 *
+	 * @param method The method name.
+	 * @param params The method parameters.
+	 * @return The invocation with the requirements.
+	 */
+	protected Invocation proxyCreateDeferred(String method, Object[] params) {
+		return proxyCreateRequirements(super.proxyCreateDeferred(method, params));
+	}
+
+	/**
+	 * Creates an invocation for a streaming connection.
+	 *
+	 * @param method The method name.
+	 * @param params The method parameters.
+	 * @return The invocation with the requirements.
+	 */
+	protected Invocation proxyCreateStream(String method, Object[] params) {
+		return proxyCreateRequirements(super.proxyCreateStream(method, params));
+	}
+
+	/**
+	 * Creates an invocation for a synchronous call.
+	 *
+	 * @param method The method name.
+	 * @param params The method parameters.
+	 * @return The invocation with the requirements.
+	 */
+	protected Invocation proxyCreateSynchronous(String method, Object[] params) {
+		return proxyCreateRequirements(super.proxyCreateSynchronous(method, params));
+	}
+
+	/**
+	 * Adds the configured requirements to the non-functional requirements
+	 * of the invocation.
+	 *
+	 * @param invocation The invocation to manipulate.
+	 * @return The manipulated invocation.
+	 */
+	private Invocation proxyCreateRequirements(Invocation invocation) {
+		if (compression) {
+			invocation.getRequirements().addDimension(IExtension.EXTENSION_COMPRESSION,
+				new NFDimension(NFDimension.IDENTIFIER_REQUIRED, Static.TRUE));
+		}
+		if (encryption) {
+			invocation.getRequirements().addDimension(IExtension.EXTENSION_ENCRYPTION,
+				new NFDimension(NFDimension.IDENTIFIER_REQUIRED, Static.TRUE));
+		}
+		return invocation;
+	}
+
+}
@@ -0,0 +1,147 @@
+package info.pppc.base.load;
+
+import info.pppc.base.system.metric.Histogram;
+
+/**
+ * The load result contains the measurements of a single run of the load
+ * generator, i.e. a combination of semantic and payload size. Latencies
+ * are recorded in microseconds. For asynchronous calls, the latency is
+ * the time until the call has been handed to the transport since the
+ * client does not receive a response.
+ *
+ * @author Mac
+ */
+public class LoadResult {
+
+	/**
+	 * The semantic of the run.
+	 */
+	private String semantic;
+
+	/**
+	 * The payload size of the run in bytes.
+	 */
+	private int size;
+
+	/**
+	 * The latencies of the successful calls in microseconds.
+	 */
+	private Histogram latency;
+
+	/**
+	 * The number of failed calls.
+	 */
+	private long errors;
+
+	/**
+	 * The measurement period in nanoseconds.
+	 */
+	private long elapsed;
+
+	/**
+	 * Creates a new result.
+	 *
+	 * @param semantic The semantic of the run.
+	 * @param size The payload size of the run.
+	 * @param latency The latencies of the successful calls.
+	 * @param errors The number of failed calls.
+	 * @param elapsed The measurement period in nanoseconds.
+	 */
+	public LoadResult(String semantic, int size, Histogram latency, long errors, long elapsed) {
+		this.semantic = semantic;
+		this.size = size;
+		this.latency = latency;
+		this.errors = errors;
+		this.elapsed = elapsed;
+	}
+
+	/**
+	 * Returns the semantic of the run.
+	 *
+	 * @return The semantic.
+	 */
+	public String getSemantic() {
+		return semantic;
+	}
+
+	/**
+	 * Returns the payload size of the run in bytes.
+	 *
+	 * @return The payload size.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the latencies of the successful calls in microseconds.
+	 *
+	 * @return The latency histogram.
+	 */
+	public Histogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * Returns the number of failed calls.
+	 *
+	 * @return The number of failed calls.
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Returns the number of successful calls per second.
+	 *
+	 * @return The throughput in calls per second.
+	 */
+	public double getThroughput() {
+		if (elapsed <= 0) return 0;
+		return latency.getCount() * 1000000000.0 / elapsed;
+	}
+
+	/**
+	 * Returns the header of the table that is created by the rows.
+	 *
+	 * @return The table header.
+	 */
+	public static String getHeader() {
+		return pad("semantic", 10) + pad("size", 8) + pad("calls", 10) + pad("errors", 8)
+			+ pad("calls/s", 11) + pad("MB/s", 9) + pad("p50(us)", 10) + pad("p99(us)", 10)
+			+ pad("p999(us)", 10) + pad("max(us)", 10);
+	}
+
+	/**
+	 * Returns the result as a row of the result table.
+	 *
+	 * @return The table row.
+	 */
+	public String toString() {
+		double throughput = getThroughput();
+		return pad(semantic, 10) + pad(String.valueOf(size), 8)
+			+ pad(String.valueOf(latency.getCount()), 10) + pad(String.valueOf(errors), 8)
+			+ pad(String.valueOf(Math.round(throughput)), 11)
+			+ pad(String.valueOf(Math.round(throughput * size / 10485.76) / 100.0), 9)
+			+ pad(String.valueOf(latency.getPercentile(50)), 10)
+			+ pad(String.valueOf(latency.getPercentile(99)), 10)
+			+ pad(String.valueOf(latency.getPercentile(99.9)), 10)
+			+ pad(String.valueOf(latency.getMaximum()), 10);
+	}
+
+	/**
+	 * Pads the value with spaces to the specified width.
+	 *
+	 * @param value The value to pad.
+	 * @param width The width of the column.
+	 * @return The padded value.
+	 */
+	private static String pad(String value, int width) {
+		StringBuffer b = new StringBuffer(value);
+		do {
+			b.append(' ');
+		} while (b.length() < width);
+		return b.toString();
+	}
+
+}
@@ -0,0 +1,85 @@
+package info.pppc.base.load;
+
+import info.pppc.base.service.ServiceProperties;
+import info.pppc.base.service.ServiceRegistry;
+import info.pppc.base.service.ServiceRegistryException;
+import info.pppc.base.system.InvocationBroker;
+import info.pppc.base.system.SystemID;
+import info.pppc.base.system.util.Logging;
+
+import java.io.IOException;
+
+/**
+ * The launcher class for the server processes of a load test. A server
+ * starts a broker with the plug-ins specified on the command line and
+ * exports the benchmark service. Once the service is exported, it prints
+ * a ready line to the standard output. The server runs until its standard
+ * input is closed, which happens when the load generator terminates.
+ *
+ * @author Mac
+ */
+public class LoadServer {
+
+	/**
+	 * The prefix of the line that signals that the server is ready.
+	 */
+	public static final String READY = "READY ";
+
+	/**
+	 * The name of the benchmark service.
+	 */
+	public static final String SERVICE_NAME = "Load";
+
+	/**
+	 * Starts the server. The first argument is the index of the server,
+	 * the remaining arguments are plug-in options of the load configuration.
+	 *
+	 * @param args The command line arguments.
+	 */
+	public static void main(String[] args) {
+		LoadConfiguration configuration = null;
+		int index = 0;
+		try {
+			if (args.length == 0) {
+				throw new IllegalArgumentException("Missing server index.");
+			}
+			index = Integer.parseInt(args[0]);
+			String[] options = new String[args.length - 1];
+			System.arraycopy(args, 1, options, 0, options.length);
+			configuration = LoadConfiguration.parse(options);
+		} catch (RuntimeException e) {
+			System.out.println("Usage: LoadServer <index> [options]");
+			System.out.println(LoadConfiguration.getUsage());
+			System.exit(1);
+			return;
+		}
+		Logging.setOutput(System.err);
+		if (! configuration.isVerbose()) {
+			Logging.setVerbosity(Logging.MINIMUM_VERBOSITY);
+		}
+		InvocationBroker broker = configuration.startBroker(index);
+		LoadSkeleton skeleton = new LoadSkeleton();
+		LoadService service = new LoadService();
+		skeleton.setImplementation(service);
+		try {
+			ServiceRegistry.getInstance().export(SERVICE_NAME,
+				new String[] { ILoad.class.getName() }, new ServiceProperties(), skeleton, service);
+		} catch (ServiceRegistryException e) {
+			Logging.error(LoadServer.class, "Could not export service.", e);
+			System.exit(1);
+		}
+		System.out.println(READY + SystemID.SYSTEM);
+		System.out.flush();
+		// block until the load generator closes the pipe
+		try {
+			while (System.in.read() != -1) {
+				// ignore input
+			}
+		} catch (IOException e) {
+			Logging.debug(LoadServer.class, "Standard input failed.");
+		}
+		broker.shutdown();
+		System.exit(0);
+	}
+
+}
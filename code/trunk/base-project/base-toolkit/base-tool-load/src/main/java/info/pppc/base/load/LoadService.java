@@ -0,0 +1,77 @@
+package info.pppc.base.load;
+
+import info.pppc.base.service.Service;
+import info.pppc.base.system.InvocationBroker;
+import info.pppc.base.system.StreamDescriptor;
+import info.pppc.base.system.operation.IMonitor;
+import info.pppc.base.system.operation.IOperation;
+import info.pppc.base.system.plugin.IStreamConnector;
+import info.pppc.base.system.util.Logging;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The benchmark service that is exported by the load servers. It returns
+ * the payload of echo calls and it echoes the bytes written to incoming
+ * streams. Since the connect method should return quickly, the streams
+ * are served by individual operations.
+ *
+ * @author Mac
+ */
+public class LoadService extends Service implements ILoad {
+
+	/**
+	 * The size of the buffer that is used to echo streams.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Creates a new benchmark service.
+	 */
+	public LoadService() {
+		super();
+	}
+
+	/**
+	 * Returns the specified payload.
+	 *
+	 * @param payload The payload to return.
+	 * @return The payload that has been passed.
+	 */
+	public byte[] echo(byte[] payload) {
+		return payload;
+	}
+
+	/**
+	 * Accepts an incoming stream and starts an operation that echoes
+	 * the stream until it is closed by the client.
+	 *
+	 * @param descriptor The descriptor of the incoming stream.
+	 */
+	public void connect(StreamDescriptor descriptor) {
+		final IStreamConnector connector = descriptor.getConnector();
+		InvocationBroker.getInstance().performOperation(new IOperation() {
+			public void perform(IMonitor monitor) {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				try {
+					InputStream input = connector.getInputStream();
+					OutputStream output = connector.getOutputStream();
+					int read;
+					while ((read = input.read(buffer, 0, buffer.length)) != -1) {
+						output.write(buffer, 0, read);
+						if (input.available() == 0) {
+							output.flush();
+						}
+					}
+				} catch (IOException e) {
+					Logging.debug(getClass(), "Echo stream closed with exception.");
+				} finally {
+					connector.release();
+				}
+			}
+		});
+	}
+
+}